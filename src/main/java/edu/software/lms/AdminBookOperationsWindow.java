@@ -1,6 +1,8 @@
 package edu.software.lms;
 
-import java.util.List;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.util.Scanner;
 import java.util.logging.Logger;
 /**
@@ -25,7 +27,7 @@ public class AdminBookOperationsWindow implements Window {
      * @param userService the user service providing repositories and authentication context
      */
     public AdminBookOperationsWindow(UserService userService) {
-        Observer emailNotifier = new EmailNotifier();
+        Observer emailNotifier = userService.getNotifier();
         this.userService = userService;
         this.bookRepo = userService.getBookRepository();
         LoanRepository loanRepo = userService.getLoanRepository();
@@ -33,7 +35,7 @@ public class AdminBookOperationsWindow implements Window {
                 userService.getUserRepository(),
                 bookRepo,
                 loanRepo,
-                new SystemTimeProvider(),
+                userService.getTimeProvider(),
                 new BookFineStrategy(),
                 emailNotifier
         );
@@ -54,6 +56,7 @@ public class AdminBookOperationsWindow implements Window {
         logger.info("3) List all books");
         logger.info("4) Send Overdue Notifications to all users");
         logger.info("5) Unregister user");
+        logger.info("6) Import books / CDs from CSV");
         logger.info("back) Log out");
         logger.info("0) Exit application");
         logger.info("Choice: ");
@@ -81,20 +84,43 @@ public class AdminBookOperationsWindow implements Window {
             return;
         }
 
-        int nextId = bookRepo.getNextId();
+        int nextId = bookRepo.allocateId();
         Book book = cd ? new CD(nextId, title, author, isbn) : new Book(nextId, title, author, isbn);
         boolean added = bookRepo.addBook(book);
         if (added) logger.info("Item added successfully.");
         else logger.warning("Failed to add (maybe duplicate id or ISBN).");
     }
+    /**
+     * Imports books and CDs from a CSV file of {@code type,title,author,isbn}
+     * lines with {@link CatalogImporter} and prints the outcome.
+     */
+    private void importCatalogFlow() {
+        logger.info("Enter CSV file path: ");
+        String path = scanner.nextLine().trim();
+        if (path.isEmpty()) {
+            logger.warning("No file given. Aborting import.");
+            return;
+        }
+
+        try {
+            CatalogImporter.Report report = new CatalogImporter(bookRepo).importCsv(Path.of(path));
+            logger.info("Import finished: " + report);
+            report.errors().forEach(logger::warning);
+        } catch (IOException | InvalidPathException e) {
+            logger.warning("Could not read " + path + ": " + e.getMessage());
+        }
+    }
     /**
      * Prints all books (and CDs) stored in the repository.
      * Displays an informative message if no entries exist.
      */
     private void listAllBooks() {
-        List<Book> all = bookRepo.getAllBooks();
-        if (all.isEmpty()) logger.info("No items available.");
-        else all.forEach(BookService::printBook);
+        int[] count = {0};
+        bookRepo.forEachBook(book -> {
+            BookService.printBook(book);
+            count[0]++;
+        });
+        if (count[0] == 0) logger.info("No items available.");
     }
     /**
      * Processes the admin's choice and returns the next window to display.
@@ -127,6 +153,10 @@ public class AdminBookOperationsWindow implements Window {
                 unregisterUserFlow();
                 return this;
             }
+            case "6" -> {
+                importCatalogFlow();
+                return this;
+            }
             case "back" -> {
                 logger.info("Logging out...");
                 return WindowFactory.create(NextWindow.LOGIN_AND_SIGNUP, userService);
@@ -0,0 +1,318 @@
+package edu.software.lms;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link Observer} that delivers notifications to another observer in the
+ * background, so that a reminder run does not wait for slow deliveries such
+ * as SMTP sends.
+ *
+ * <p>{@link #notify(User, String)} puts the notification in a bounded queue
+ * and returns. A fixed number of virtual-thread workers take notifications
+ * from the queue and pass them to the delegate, which must therefore be
+ * thread-safe. If the delegate is a {@link BatchObserver}, a worker takes
+ * whatever is queued, up to {@value #MAX_BATCH} notifications, and hands it
+ * over in one call, so that an {@link EmailNotifier} can send it over one
+ * connection. When the queue is full, the {@link Backpressure} policy
+ * decides what happens to a new notification. Anything thrown by the
+ * delegate, errors included, is logged and counted, and does not stop the
+ * worker.</p>
+ *
+ * <p>{@link #awaitQuiescence(Duration)} waits until every accepted
+ * notification has been delivered, and {@link #close()} delivers the
+ * remaining ones for up to {@link #CLOSE_TIMEOUT}, stops the workers and
+ * closes the delegate if it is {@link AutoCloseable}.</p>
+ */
+public class AsyncNotifier implements Observer, AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(AsyncNotifier.class.getName());
+
+    /** Queue capacity used by {@link #AsyncNotifier(Observer)}. */
+    public static final int DEFAULT_CAPACITY = 10_000;
+
+    /** Number of workers used by {@link #AsyncNotifier(Observer)}. */
+    public static final int DEFAULT_WORKERS = 16;
+
+    /** How long {@link #close()} waits for the queued notifications to be delivered. */
+    public static final Duration CLOSE_TIMEOUT = Duration.ofMinutes(1);
+
+    /** Maximum number of notifications a worker passes to the delegate at once. */
+    static final int MAX_BATCH = 64;
+
+    /** What {@link #notify(User, String)} does when the queue is full. */
+    public enum Backpressure {
+        /** Wait until there is room in the queue. */
+        BLOCK,
+        /** Discard the new notification; it is counted by {@link #getDropped()}. */
+        DROP,
+        /** Deliver the notification on the calling thread, which slows the producer down. */
+        CALLER_RUNS
+    }
+
+    private record Notification(User user, String message) { }
+
+    private final Observer delegate;
+    private final Backpressure backpressure;
+    private final BlockingQueue<Notification> queue;
+    private final List<Thread> workers;
+
+    /** Notifications accepted but not yet delivered (or failed). */
+    private final AtomicLong pending = new AtomicLong();
+    private final Lock quiescenceLock = new ReentrantLock();
+    private final Condition quiescent = quiescenceLock.newCondition();
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean closed;
+    /** Set by {@link #close(Duration)} once no worker takes from the queue any more. */
+    private volatile boolean stopped;
+
+    /**
+     * Creates a notifier with {@value #DEFAULT_WORKERS} workers, a queue of
+     * {@value #DEFAULT_CAPACITY} notifications and the {@link Backpressure#BLOCK}
+     * policy.
+     *
+     * @param delegate observer that delivers the notifications; must be thread-safe
+     */
+    public AsyncNotifier(Observer delegate) {
+        this(delegate, DEFAULT_CAPACITY, DEFAULT_WORKERS, Backpressure.BLOCK);
+    }
+
+    /**
+     * @param delegate     observer that delivers the notifications; must be thread-safe
+     * @param capacity     maximum number of queued notifications; must be positive
+     * @param workers      number of worker threads; must be positive
+     * @param backpressure what to do with a notification when the queue is full
+     */
+    public AsyncNotifier(Observer delegate, int capacity, int workers, Backpressure backpressure) {
+        if (delegate == null || backpressure == null) {
+            throw new IllegalArgumentException("delegate and backpressure must not be null");
+        }
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        if (workers <= 0) throw new IllegalArgumentException("workers must be positive: " + workers);
+
+        this.delegate = delegate;
+        this.backpressure = backpressure;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.workers = new ArrayList<>(workers);
+        Thread.Builder builder = Thread.ofVirtual().name("async-notifier-", 0);
+        for (int i = 0; i < workers; i++) this.workers.add(builder.start(this::work));
+    }
+
+    /**
+     * Queues a notification for delivery, applying the backpressure policy
+     * if the queue is full.
+     *
+     * @param user    the recipient user
+     * @param message the notification message
+     * @throws IllegalStateException if the notifier is closed
+     */
+    @Override
+    public void notify(User user, String message) {
+        // counted before the check, so that close() either sees it pending or
+        // has already set closed and we take it back
+        pending.incrementAndGet();
+        if (closed) {
+            done();
+            throw new IllegalStateException("AsyncNotifier is closed");
+        }
+
+        Notification notification = new Notification(user, message);
+        if (queue.offer(notification)) return;
+
+        switch (backpressure) {
+            case BLOCK -> {
+                try {
+                    queue.put(notification);
+                    // close() may have given up and stopped the workers while we waited
+                    if (stopped && queue.remove(notification)) {
+                        dropped.increment();
+                        done();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.increment();
+                    done();
+                }
+            }
+            case DROP -> {
+                dropped.increment();
+                done();
+            }
+            case CALLER_RUNS -> deliver(notification);
+        }
+    }
+
+    /**
+     * Waits until every notification accepted so far has been delivered or
+     * has failed.
+     *
+     * @param timeout maximum time to wait
+     * @return true if the notifier is idle, false if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitQuiescence(Duration timeout) throws InterruptedException {
+        long nanos = timeout.toNanos();
+        quiescenceLock.lock();
+        try {
+            while (pending.get() > 0) {
+                if (nanos <= 0) return false;
+                nanos = quiescent.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            quiescenceLock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting notifications, delivers the queued ones for up to
+     * {@link #CLOSE_TIMEOUT} and stops the workers. Calling it again has no
+     * effect.
+     */
+    @Override
+    public void close() {
+        close(CLOSE_TIMEOUT);
+    }
+
+    /**
+     * Stops accepting notifications, delivers the queued ones and stops the
+     * workers. Notifications still queued when the timeout elapses are
+     * discarded and counted by {@link #getDropped()}; the workers are
+     * interrupted in the deliveries they are in. Calling it again has no
+     * effect.
+     *
+     * @param timeout maximum time to wait for the queued notifications
+     * @return true if every accepted notification was delivered or failed
+     */
+    public boolean close(Duration timeout) {
+        if (closed) return pending.get() == 0;
+        closed = true;
+        boolean drained = false;
+        try {
+            long remaining = timeout.toNanos();
+            long deadline = System.nanoTime() + remaining;
+            while (!(drained = awaitQuiescence(Duration.ofNanos(Math.min(remaining, TimeUnit.SECONDS.toNanos(1)))))) {
+                remaining = deadline - System.nanoTime();
+                if (remaining <= 0) break;
+                logger.log(Level.INFO, "AsyncNotifier: waiting for {0} notification(s)", pending.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!drained) discardQueued();
+        stopped = true;
+        for (Thread worker : workers) worker.interrupt();
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        // producers blocked on a full queue may have got in after the first discard
+        discardQueued();
+        if (delegate instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "AsyncNotifier: closing the delegate failed", e);
+            }
+        }
+        return drained;
+    }
+
+    /** Removes the notifications still queued and counts them as dropped. */
+    private void discardQueued() {
+        List<Notification> left = new ArrayList<>();
+        queue.drainTo(left);
+        if (left.isEmpty()) return;
+        logger.log(Level.WARNING, "AsyncNotifier: discarding {0} undelivered notification(s)", left.size());
+        dropped.add(left.size());
+        for (int i = 0; i < left.size(); i++) done();
+    }
+
+    /** @return notifications passed to the delegate without an exception */
+    public long getDelivered() { return delivered.sum(); }
+
+    /** @return notifications whose delivery threw an exception */
+    public long getFailed() { return failed.sum(); }
+
+    /** @return notifications discarded because the queue was full */
+    public long getDropped() { return dropped.sum(); }
+
+    /** @return notifications currently queued */
+    public int getQueued() { return queue.size(); }
+
+    // ------------------- Workers -------------------
+
+    private void work() {
+        try {
+            if (delegate instanceof BatchObserver batchDelegate) {
+                List<Notification> batch = new ArrayList<>(MAX_BATCH);
+                while (true) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    deliver(batchDelegate, batch);
+                    batch.clear();
+                }
+            }
+            while (true) deliver(queue.take());
+        } catch (InterruptedException _) {
+            // closed
+        }
+    }
+
+    private void deliver(BatchObserver batchDelegate, List<Notification> batch) {
+        List<Pair<User, String>> pairs = new ArrayList<>(batch.size());
+        for (Notification n : batch) pairs.add(new Pair<>(n.user(), n.message()));
+        int ok = 0;
+        try {
+            ok = batchDelegate.notifyBatch(pairs);
+        } catch (Throwable e) {
+            // whatever the delegate throws, the worker keeps running and the batch counts as failed
+            logger.log(Level.SEVERE, "AsyncNotifier: delivery failed", e);
+        } finally {
+            delivered.add(ok);
+            failed.add(batch.size() - ok);
+            for (int i = 0; i < batch.size(); i++) done();
+        }
+    }
+
+    private void deliver(Notification notification) {
+        try {
+            delegate.notify(notification.user(), notification.message());
+            delivered.increment();
+        } catch (Throwable e) {
+            failed.increment();
+            logger.log(Level.SEVERE, "AsyncNotifier: delivery failed", e);
+        } finally {
+            done();
+        }
+    }
+
+    /** Counts a notification as finished and wakes waiters once none are left. */
+    private void done() {
+        if (pending.decrementAndGet() != 0) return;
+        quiescenceLock.lock();
+        try {
+            quiescent.signalAll();
+        } finally {
+            quiescenceLock.unlock();
+        }
+    }
+}
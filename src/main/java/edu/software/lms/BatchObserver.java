@@ -0,0 +1,22 @@
+package edu.software.lms;
+
+import java.util.List;
+
+/**
+ * {@link Observer} that can deliver several notifications more cheaply
+ * together than one by one, for example over one SMTP connection.
+ *
+ * <p>An {@link AsyncNotifier} whose delegate implements this interface
+ * hands it everything it drained from its queue in one call.</p>
+ */
+public interface BatchObserver extends Observer {
+
+    /**
+     * Delivers the notifications in order. A notification that cannot be
+     * delivered does not stop the others.
+     *
+     * @param notifications (user, message) pairs
+     * @return number of notifications delivered
+     */
+    int notifyBatch(List<Pair<User, String>> notifications);
+}
@@ -1,17 +1,29 @@
 package edu.software.lms;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Represents a basic book entity with ID, title, author, ISBN, and borrowed status.
  * This class is also used as the parent class for {@link CD}.
  *
  * <p>Books are uniquely identified by ID and ISBN. The class provides
  * getters, setters, and equality checks to support repository operations.</p>
+ *
+ * <p>Titles and authors are canonicalized through {@link StringPool}, as
+ * many books share them.</p>
+ *
+ * <p>The borrowed flag is atomic: {@link #tryBorrow()} claims a free copy with
+ * a single compare-and-set, so two concurrent checkouts can never both win.</p>
  */
 public class Book {
     private int id;
     private final String name;
     private String author;
     private String isbn;
-    private boolean borrowed;
+    private final AtomicBoolean borrowed = new AtomicBoolean(false);
+
+    /** Repository index notified when a lookup key of this book changes; may be null. */
+    private BookChangeListener changeListener;
 
     /**
      * Constructs a new Book with the given attributes.
@@ -23,10 +35,9 @@ public class Book {
      */
     public Book(int id, String name, String author, String isbn) {
         this.id = id;
-        this.name = name;
-        this.author = author;
+        this.name = StringPool.canonical(name);
+        this.author = StringPool.canonical(author);
         this.isbn = isbn;
-        this.borrowed = false;
     }
     /**
      * Compares this book with another object for equality.
@@ -69,7 +80,11 @@ public class Book {
      *
      * @param id new identifier value
      */
-    public void setId(int id) { this.id = id; }
+    public void setId(int id) {
+        int oldId = this.id;
+        this.id = id;
+        if (changeListener != null && oldId != id) changeListener.idChanged(this, oldId);
+    }
     /**
      * Retrieves the book's title.
      *
@@ -87,7 +102,11 @@ public class Book {
      *
      * @param author new author name
      */
-    public void setAuthor(String author) { this.author = author; }
+    public void setAuthor(String author) {
+        String oldAuthor = this.author;
+        this.author = StringPool.canonical(author);
+        if (changeListener != null) changeListener.authorChanged(this, oldAuthor);
+    }
     /**
      * Retrieves the ISBN of the book.
      *
@@ -100,17 +119,48 @@ public class Book {
      *
      * @param isbn new ISBN string
      */
-    public void setIsbn(String isbn) { this.isbn = isbn; }
+    public void setIsbn(String isbn) {
+        String oldIsbn = this.isbn;
+        this.isbn = isbn;
+        if (changeListener != null) changeListener.isbnChanged(this, oldIsbn);
+    }
     /**
      * Checks whether the book is currently borrowed.
      *
      * @return true if borrowed, false otherwise
      */
-    public boolean isBorrowed() { return borrowed; }
+    public boolean isBorrowed() { return borrowed.get(); }
     /**
      * Updates the borrowed status of the book.
      *
      * @param borrowed true if the book is now borrowed, false otherwise
      */
-    public void setBorrowed(boolean borrowed) { this.borrowed = borrowed; }
+    public void setBorrowed(boolean borrowed) {
+        boolean old = this.borrowed.getAndSet(borrowed);
+        if (changeListener != null && old != borrowed) changeListener.borrowedChanged(this);
+    }
+
+    /**
+     * Atomically marks the book as borrowed if it is currently available.
+     *
+     * @return true if this call claimed the book, false if it was already borrowed
+     */
+    public boolean tryBorrow() {
+        if (!borrowed.compareAndSet(false, true)) return false;
+        if (changeListener != null) changeListener.borrowedChanged(this);
+        return true;
+    }
+
+    /**
+     * Registers the repository index that must be told about key changes.
+     * A book belongs to at most one indexed repository at a time.
+     *
+     * @param changeListener listener to notify, or {@code null} to detach
+     */
+    void setChangeListener(BookChangeListener changeListener) { this.changeListener = changeListener; }
+
+    /**
+     * @return the listener currently attached to this book, or {@code null}
+     */
+    BookChangeListener getChangeListener() { return changeListener; }
 }
@@ -0,0 +1,49 @@
+package edu.software.lms;
+
+/**
+ * Callback used by indexed repositories to keep their lookup indexes
+ * consistent when a stored {@link Book} has one of its key fields changed
+ * through a setter, and by storage-backed repositories to write changes
+ * through.
+ *
+ * <p>The book has already been updated when a callback runs; the previous
+ * value is passed so the listener can remove the stale index entry.</p>
+ */
+interface BookChangeListener {
+
+    /**
+     * Called after {@link Book#setId(int)} changed the book's ID.
+     *
+     * @param book  the updated book
+     * @param oldId ID before the change
+     */
+    void idChanged(Book book, int oldId);
+
+    /**
+     * Called after {@link Book#setIsbn(String)} changed the book's ISBN.
+     *
+     * @param book    the updated book
+     * @param oldIsbn ISBN before the change
+     */
+    void isbnChanged(Book book, String oldIsbn);
+
+    /**
+     * Called after {@link Book#setAuthor(String)} changed the book's author.
+     *
+     * @param book      the updated book
+     * @param oldAuthor author before the change
+     */
+    void authorChanged(Book book, String oldAuthor);
+
+    /**
+     * Called after the borrowed flag of the book changed, through
+     * {@link Book#setBorrowed(boolean)} or a successful {@link Book#tryBorrow()}.
+     * Indexes do not depend on the flag, so the default does nothing;
+     * repositories that store the flag outside the object override it.
+     *
+     * @param book the updated book
+     */
+    default void borrowedChanged(Book book) {
+        // not an index key
+    }
+}
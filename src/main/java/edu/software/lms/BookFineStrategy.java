@@ -31,4 +31,16 @@ public class BookFineStrategy implements FineStrategy {
         if (overdueDays <= 0) return 0;
         return overdueDays * perDay;
     }
+
+    /**
+     * Calculates the overdue fines of many book loans at once, using the
+     * Vector API when it is available.
+     *
+     * @param overdueDays overdue days per loan
+     * @param out         receives the fine per loan
+     */
+    @Override
+    public void calculateFines(int[] overdueDays, int[] out) {
+        PerDayFines.calculate(overdueDays, out, perDay);
+    }
 }
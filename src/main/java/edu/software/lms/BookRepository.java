@@ -1,6 +1,8 @@
 package edu.software.lms;
 
 import java.util.List;
+import java.util.function.Consumer;
+
 /**
  * Repository interface for managing books and CDs within the system.
  * Provides lookup, insertion, and retrieval operations.
@@ -47,6 +49,24 @@ public interface BookRepository {
      * @return true if successful, false if duplicate or invalid
      */
     boolean addBook(Book book);
+
+    /**
+     * Adds several books at once, for example during a catalog import.
+     *
+     * <p>The default implementation calls {@link #addBook(Book)} for each
+     * book; database-backed implementations send them in one batch.</p>
+     *
+     * @param books the books to add
+     * @return number of books added; duplicates and {@code null}s are skipped
+     */
+    default int addBooks(List<? extends Book> books) {
+        int added = 0;
+        for (Book book : books) {
+            if (addBook(book)) added++;
+        }
+        return added;
+    }
+
     /**
      * Retrieves all stored books.
      *
@@ -55,10 +75,52 @@ public interface BookRepository {
     List<Book> getAllBooks();
 
     /**
-     * Computes the next available numeric ID for creating a new book.
-     * Typically {@code max(existing IDs) + 1}.
+     * Passes every stored book to {@code action}, in insertion order,
+     * without building a list of all of them. Used to export large catalogs.
+     *
+     * <p>The action may change the books it is given, for example borrow
+     * them, and may call this repository: implementations do not hold a
+     * lock while it runs. The default implementation iterates
+     * {@link #getAllBooks()}. The in-memory and mapped repositories copy a
+     * chunk of books at a time under their read lock and run the action on
+     * it after releasing the lock, so a slow action does not hold up
+     * inserts, and books added meanwhile are visited too.</p>
+     *
+     * @param action called once per book
+     */
+    default void forEachBook(Consumer<? super Book> action) {
+        getAllBooks().forEach(action);
+    }
+
+    /**
+     * Returns the ID the repository's allocator would hand out next,
+     * without reserving it. This is always greater than every stored ID
+     * and every ID already reserved, and runs in constant time.
      *
      * @return next available ID
      */
     int getNextId();
+
+    /**
+     * Atomically reserves a single new ID for a book about to be added.
+     * IDs are monotonic: a reserved ID is never handed out again, even if
+     * the book that was meant to use it is never added.
+     *
+     * @return the reserved ID
+     */
+    default int allocateId() {
+        return reserveIds(1);
+    }
+
+    /**
+     * Atomically reserves a contiguous block of IDs for a batch insert.
+     *
+     * <p>Persistent implementations must make the new high-water mark durable
+     * before returning, so reserved IDs are not reused after a restart.</p>
+     *
+     * @param count number of IDs to reserve; must be positive
+     * @return the first ID of the block; the block is {@code [first, first + count)}
+     * @throws IllegalArgumentException if {@code count} is not positive
+     */
+    int reserveIds(int count);
 }
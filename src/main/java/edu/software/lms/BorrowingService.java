@@ -97,14 +97,16 @@ public class BorrowingService {
 
         Book book = bookRepository.getBookById(bookId);
         if (book == null) return new Pair<>(false, "Book not found");
-        if (book.isBorrowed()) return new Pair<>(false, "Book is already borrowed");
+        if (!book.tryBorrow()) return new Pair<>(false, "Book is already borrowed");
 
         LocalDate dueDate = borrowDate.plusDays(BOOK_LOAN_DAYS);
         Loan loan = new Loan(user.getId(), bookId, borrowDate, dueDate);
         boolean added = loanRepository.addLoan(loan);
-        if (!added) return new Pair<>(false, "Failed to record loan");
+        if (!added) {
+            book.setBorrowed(false);
+            return new Pair<>(false, "Failed to record loan");
+        }
 
-        book.setBorrowed(true);
         user.addLoanId(loan.getId());
 
         return new Pair<>(true, "Book borrowed successfully. Due date: " + dueDate.toString());
@@ -127,10 +129,9 @@ public class BorrowingService {
     public Pair<Boolean, String> returnBook(String loanId) {
         Loan loan = loanRepository.getLoanById(loanId);
         if (loan == null) return new Pair<>(false, "Loan not found");
-        if (loan.isReturned()) return new Pair<>(false, "Book already returned");
 
         LocalDate today = timeProvider.today();
-        loan.setReturnedDate(today);
+        if (!loan.markReturned(today)) return new Pair<>(false, "Book already returned");
 
         int fine = fineCalculator.computeFineForLoan(loan);
         loan.setFineApplied(fine);
@@ -138,6 +139,7 @@ public class BorrowingService {
             User user = userRepository.getUserById(loan.getUserId());
             if (user != null) {
                 user.addFine(fine);
+                userRepository.updateUser(user);
             }
             loan.setFinePaid(false);
         } else {
@@ -164,6 +166,7 @@ public class BorrowingService {
 
         int before = user.getFineBalance();
         user.payFine(amount);
+        userRepository.updateUser(user);
         int after = user.getFineBalance();
 
         String msg = "Paid " + amount + " NIS. Balance before: " + before + ", now: " + after;
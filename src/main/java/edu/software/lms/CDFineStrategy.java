@@ -30,4 +30,16 @@ public class CDFineStrategy implements FineStrategy {
         if (overdueDays <= 0) return 0;
         return overdueDays * perDay;
     }
+
+    /**
+     * Calculates the overdue fines of many CD loans at once, using the
+     * Vector API when it is available.
+     *
+     * @param overdueDays overdue days per loan
+     * @param out         receives the fine per loan
+     */
+    @Override
+    public void calculateFines(int[] overdueDays, int[] out) {
+        PerDayFines.calculate(overdueDays, out, perDay);
+    }
 }
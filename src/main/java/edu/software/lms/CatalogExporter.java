@@ -0,0 +1,306 @@
+package edu.software.lms;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming export of the catalog and the loan history as CSV or JSON Lines.
+ *
+ * <p>Items are written one at a time as {@link BookRepository#forEachBook}
+ * and {@link LoanRepository#forEachLoan} visit them, so memory use does not
+ * depend on the size of the repository: nothing is copied into a list and
+ * repositories that keep records off the heap only create the view being
+ * written. The output is UTF-8 and can optionally be gzip-compressed.</p>
+ *
+ * <p>Book records have the fields {@code id, type, title, author, isbn,
+ * borrowed}, where the type is {@code BOOK} or {@code CD}. Loan records have
+ * {@code id, userId, bookId, mediaType, borrowDate, dueDate, returnedDate,
+ * fineApplied, finePaid}, with ISO dates; a missing media type or return date
+ * is an empty CSV field or a JSON {@code null}. CSV output starts with a
+ * header line.</p>
+ */
+public class CatalogExporter {
+
+    /** Output formats. */
+    public enum Format {
+        /** Comma-separated values with a header line, quoted as in RFC 4180. */
+        CSV,
+        /** One JSON object per line. */
+        JSON_LINES
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String BOOK_HEADER = "id,type,title,author,isbn,borrowed";
+    private static final String LOAN_HEADER =
+            "id,userId,bookId,mediaType,borrowDate,dueDate,returnedDate,fineApplied,finePaid";
+
+    private final Format format;
+    private final boolean gzip;
+
+    /**
+     * @param format output format
+     * @param gzip   whether to gzip-compress the output
+     */
+    public CatalogExporter(Format format, boolean gzip) {
+        if (format == null) throw new IllegalArgumentException("format must not be null");
+        this.format = format;
+        this.gzip = gzip;
+    }
+
+    // ------------------- Books -------------------
+
+    /**
+     * Writes all books and CDs of the repository to the stream. The stream
+     * is flushed but not closed.
+     *
+     * @param repository repository to export
+     * @param out        destination
+     * @return number of items written
+     * @throws IOException if writing fails
+     */
+    public long exportBooks(BookRepository repository, OutputStream out) throws IOException {
+        return export(out, BOOK_HEADER, repository::forEachBook, this::writeBook);
+    }
+
+    /**
+     * Writes all books and CDs of the repository to a file through a
+     * {@link FileChannel}, replacing any existing content.
+     *
+     * @param repository repository to export
+     * @param file       destination file
+     * @return number of items written
+     * @throws IOException if the file cannot be written
+     */
+    public long exportBooks(BookRepository repository, Path file) throws IOException {
+        try (OutputStream out = openFile(file)) {
+            return exportBooks(repository, out);
+        }
+    }
+
+    // ------------------- Loans -------------------
+
+    /**
+     * Writes all loans of the repository to the stream. The stream is
+     * flushed but not closed.
+     *
+     * @param repository repository to export
+     * @param out        destination
+     * @return number of loans written
+     * @throws IOException if writing fails
+     */
+    public long exportLoans(LoanRepository repository, OutputStream out) throws IOException {
+        return export(out, LOAN_HEADER, repository::forEachLoan, this::writeLoan);
+    }
+
+    /**
+     * Writes all loans of the repository to a file through a
+     * {@link FileChannel}, replacing any existing content.
+     *
+     * @param repository repository to export
+     * @param file       destination file
+     * @return number of loans written
+     * @throws IOException if the file cannot be written
+     */
+    public long exportLoans(LoanRepository repository, Path file) throws IOException {
+        try (OutputStream out = openFile(file)) {
+            return exportLoans(repository, out);
+        }
+    }
+
+    // ------------------- Pipeline -------------------
+
+    /** Writes one record. */
+    private interface RecordWriter<T> {
+        void write(Writer writer, T item) throws IOException;
+    }
+
+    private <T> long export(OutputStream out, String header, Consumer<Consumer<T>> source,
+                            RecordWriter<T> recordWriter) throws IOException {
+        OutputStream target = new KeepOpenOutputStream(out);
+        if (gzip) target = new GZIPOutputStream(target, BUFFER_SIZE);
+
+        long[] count = {0};
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            if (format == Format.CSV) writer.write(header + "\n");
+            try {
+                source.accept(item -> {
+                    try {
+                        recordWriter.write(writer, item);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return count[0];
+    }
+
+    private static OutputStream openFile(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return Channels.newOutputStream(channel);
+    }
+
+    /** Passes writes through, but only flushes on close, leaving the caller's stream open. */
+    private static final class KeepOpenOutputStream extends FilterOutputStream {
+        KeepOpenOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    // ------------------- Records -------------------
+
+    private void writeBook(Writer w, Book book) throws IOException {
+        String type = book instanceof CD ? "CD" : "BOOK";
+        if (format == Format.CSV) {
+            w.write(Integer.toString(book.getId()));
+            w.write(',');
+            w.write(type);
+            w.write(',');
+            writeCsv(w, book.getName());
+            w.write(',');
+            writeCsv(w, book.getAuthor());
+            w.write(',');
+            writeCsv(w, book.getIsbn());
+            w.write(',');
+            w.write(Boolean.toString(book.isBorrowed()));
+        } else {
+            w.write("{\"id\":");
+            w.write(Integer.toString(book.getId()));
+            w.write(",\"type\":\"");
+            w.write(type);
+            w.write("\",\"title\":");
+            writeJson(w, book.getName());
+            w.write(",\"author\":");
+            writeJson(w, book.getAuthor());
+            w.write(",\"isbn\":");
+            writeJson(w, book.getIsbn());
+            w.write(",\"borrowed\":");
+            w.write(Boolean.toString(book.isBorrowed()));
+            w.write('}');
+        }
+        w.write('\n');
+    }
+
+    private void writeLoan(Writer w, Loan loan) throws IOException {
+        String mediaType = loan instanceof MediaLoan media && media.getMediaType() != null
+                ? media.getMediaType().name() : null;
+        String returned = dateOrNull(loan.getReturnedDate());
+        if (format == Format.CSV) {
+            w.write(loan.getId());
+            w.write(',');
+            writeCsv(w, loan.getUserId());
+            w.write(',');
+            w.write(Integer.toString(loan.getBookId()));
+            w.write(',');
+            writeCsv(w, mediaType);
+            w.write(',');
+            w.write(loan.getBorrowDate().toString());
+            w.write(',');
+            w.write(loan.getDueDate().toString());
+            w.write(',');
+            writeCsv(w, returned);
+            w.write(',');
+            w.write(Integer.toString(loan.getFineApplied()));
+            w.write(',');
+            w.write(Boolean.toString(loan.isFinePaid()));
+        } else {
+            w.write("{\"id\":\"");
+            w.write(loan.getId());
+            w.write("\",\"userId\":");
+            writeJson(w, loan.getUserId());
+            w.write(",\"bookId\":");
+            w.write(Integer.toString(loan.getBookId()));
+            w.write(",\"mediaType\":");
+            writeJson(w, mediaType);
+            w.write(",\"borrowDate\":\"");
+            w.write(loan.getBorrowDate().toString());
+            w.write("\",\"dueDate\":\"");
+            w.write(loan.getDueDate().toString());
+            w.write("\",\"returnedDate\":");
+            writeJson(w, returned);
+            w.write(",\"fineApplied\":");
+            w.write(Integer.toString(loan.getFineApplied()));
+            w.write(",\"finePaid\":");
+            w.write(Boolean.toString(loan.isFinePaid()));
+            w.write('}');
+        }
+        w.write('\n');
+    }
+
+    private static String dateOrNull(LocalDate date) {
+        return date == null ? null : date.toString();
+    }
+
+    /** Writes a CSV field, quoting it if it contains a separator, quote, line break or edge space. */
+    static void writeCsv(Writer w, String value) throws IOException {
+        if (value == null) return;
+        boolean quote = !value.isEmpty()
+                && (value.charAt(0) == ' ' || value.charAt(value.length() - 1) == ' ');
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char ch = value.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) {
+            w.write(value);
+            return;
+        }
+        w.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"') w.write('"');
+            w.write(ch);
+        }
+        w.write('"');
+    }
+
+    /** Writes a JSON string literal, or {@code null}. */
+    static void writeJson(Writer w, String value) throws IOException {
+        if (value == null) {
+            w.write("null");
+            return;
+        }
+        w.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"' -> w.write("\\\"");
+                case '\\' -> w.write("\\\\");
+                case '\n' -> w.write("\\n");
+                case '\r' -> w.write("\\r");
+                case '\t' -> w.write("\\t");
+                default -> {
+                    if (ch < 0x20) w.write(String.format("\\u%04x", (int) ch));
+                    else w.write(ch);
+                }
+            }
+        }
+        w.write('"');
+    }
+}
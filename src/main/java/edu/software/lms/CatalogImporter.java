@@ -0,0 +1,274 @@
+package edu.software.lms;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Bulk import of books and CDs from a CSV file into a {@link BookRepository}.
+ *
+ * <p>Each line holds {@code type,title,author,isbn}, where the type is
+ * {@code BOOK} or {@code CD}; an optional header line with these names is
+ * skipped, as are a UTF-8 byte order mark and blank lines. Fields may be
+ * quoted, with {@code ""} for a quote inside a quoted field, but a record
+ * must fit on one line.</p>
+ *
+ * <p>The file is streamed through a buffered reader and cut into chunks of
+ * lines, which are parsed in parallel on a {@link ForkJoinPool}. Parsed
+ * chunks are inserted in file order by the calling thread: rows whose ISBN
+ * is earlier in the same chunk are dropped, the rest get a block of IDs from
+ * {@link BookRepository#reserveIds(int)} and are inserted with one
+ * {@link BookRepository#addBooks(List)} call, which skips ISBNs already in
+ * the repository without a lookup per row. Both count as duplicates; the
+ * IDs reserved for rows the repository skipped stay unused. At most a few
+ * chunks per worker are in flight, so memory use does not depend on the
+ * file size.</p>
+ */
+public class CatalogImporter {
+
+    /** Lines per chunk used by {@link #CatalogImporter(BookRepository)}. */
+    static final int DEFAULT_CHUNK_ROWS = 8_192;
+
+    /** Maximum number of error messages kept in a {@link Report}. */
+    static final int MAX_REPORTED_ERRORS = 20;
+
+    private static final String HEADER = "type,title,author,isbn";
+
+    /** Byte order mark some editors write at the start of a UTF-8 file. */
+    private static final String BOM = "\uFEFF";
+
+    private final BookRepository repository;
+    private final ForkJoinPool pool;
+    private final int chunkRows;
+    private final int maxChunksInFlight;
+
+    /**
+     * Outcome of an import.
+     *
+     * @param rows       data lines read, not counting the header and blank lines
+     * @param imported   items added to the repository
+     * @param duplicates rows skipped because their ISBN was already present
+     * @param invalid    rows skipped because they could not be parsed
+     * @param errors     messages for the first invalid rows, with line numbers
+     * @param elapsed    duration of the import
+     */
+    public record Report(long rows, long imported, long duplicates, long invalid,
+                         List<String> errors, Duration elapsed) {
+
+        /** @return data lines processed per second */
+        public double rowsPerSecond() {
+            long nanos = Math.max(1, elapsed.toNanos());
+            return rows * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%d rows in %.1f s (%.0f rows/s): %d imported, %d duplicates, %d invalid",
+                    rows, elapsed.toNanos() / 1e9, rowsPerSecond(), imported, duplicates, invalid);
+        }
+    }
+
+    /** A parsed data line. */
+    private record Row(boolean cd, String title, String author, String isbn) { }
+
+    /** The parsed rows of a chunk, its invalid lines and the number of blank lines. */
+    private record Chunk(List<Row> rows, long invalid, List<String> errors, long blank) { }
+
+    /**
+     * Creates an importer that parses on the common fork-join pool.
+     *
+     * @param repository repository to import into
+     */
+    public CatalogImporter(BookRepository repository) {
+        this(repository, ForkJoinPool.commonPool(), DEFAULT_CHUNK_ROWS);
+    }
+
+    /**
+     * @param repository repository to import into
+     * @param pool       pool that parses chunks
+     * @param chunkRows  lines per chunk; must be positive
+     */
+    CatalogImporter(BookRepository repository, ForkJoinPool pool, int chunkRows) {
+        if (chunkRows <= 0) throw new IllegalArgumentException("chunkRows must be positive: " + chunkRows);
+        this.repository = repository;
+        this.pool = pool;
+        this.chunkRows = chunkRows;
+        this.maxChunksInFlight = 2 * Math.max(1, pool.getParallelism()) + 1;
+    }
+
+    /**
+     * Imports a CSV file.
+     *
+     * @param file UTF-8 CSV file
+     * @return counts of imported, duplicate and invalid rows
+     * @throws IOException if the file cannot be read
+     */
+    public Report importCsv(Path file) throws IOException {
+        long start = System.nanoTime();
+        Totals totals = new Totals();
+        Deque<ForkJoinTask<Chunk>> inFlight = new ArrayDeque<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<String> lines = new ArrayList<>(chunkRows);
+            long lineNumber = 0;
+            long firstLine = 1;
+            for (String line; (line = reader.readLine()) != null; ) {
+                lineNumber++;
+                if (lineNumber == 1 && line.startsWith(BOM)) line = line.substring(1);
+                if (lineNumber == 1 && isHeader(line)) {
+                    firstLine = 2;
+                    continue;
+                }
+                lines.add(line);
+                if (lines.size() == chunkRows) {
+                    submit(inFlight, lines, firstLine, totals);
+                    lines = new ArrayList<>(chunkRows);
+                    firstLine = lineNumber + 1;
+                }
+            }
+            if (!lines.isEmpty()) submit(inFlight, lines, firstLine, totals);
+            while (!inFlight.isEmpty()) insert(inFlight.removeFirst().join(), totals);
+        } finally {
+            for (ForkJoinTask<Chunk> task : inFlight) task.cancel(false);
+        }
+
+        return new Report(totals.rows, totals.imported, totals.duplicates, totals.invalid,
+                Collections.unmodifiableList(totals.errors), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    // ------------------- Pipeline -------------------
+
+    /** Running totals, only touched by the importing thread. */
+    private static final class Totals {
+        long rows;
+        long imported;
+        long duplicates;
+        long invalid;
+        final List<String> errors = new ArrayList<>();
+    }
+
+    /** Starts parsing a chunk, first inserting the oldest one if too many are pending. */
+    private void submit(Deque<ForkJoinTask<Chunk>> inFlight, List<String> lines, long firstLine, Totals totals) {
+        totals.rows += lines.size();
+        inFlight.addLast(pool.submit(() -> parse(lines, firstLine)));
+        if (inFlight.size() >= maxChunksInFlight) insert(inFlight.removeFirst().join(), totals);
+    }
+
+    private void insert(Chunk chunk, Totals totals) {
+        totals.rows -= chunk.blank();
+        totals.invalid += chunk.invalid();
+        for (String error : chunk.errors()) {
+            if (totals.errors.size() < MAX_REPORTED_ERRORS) totals.errors.add(error);
+        }
+
+        Set<String> isbns = new HashSet<>();
+        List<Row> fresh = new ArrayList<>(chunk.rows().size());
+        for (Row row : chunk.rows()) {
+            if (isbns.add(row.isbn())) fresh.add(row);
+        }
+        totals.duplicates += chunk.rows().size() - fresh.size();
+        if (fresh.isEmpty()) return;
+
+        int id = repository.reserveIds(fresh.size());
+        List<Book> books = new ArrayList<>(fresh.size());
+        for (Row row : fresh) {
+            books.add(row.cd()
+                    ? new CD(id++, row.title(), row.author(), row.isbn())
+                    : new Book(id++, row.title(), row.author(), row.isbn()));
+        }
+        int added = repository.addBooks(books);
+        totals.imported += added;
+        // rows whose ISBN the repository already had
+        totals.duplicates += fresh.size() - added;
+    }
+
+    // ------------------- Parsing -------------------
+
+    private static Chunk parse(List<String> lines, long firstLine) {
+        List<Row> rows = new ArrayList<>(lines.size());
+        List<String> errors = new ArrayList<>();
+        long invalid = 0;
+        long blank = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).isBlank()) {
+                blank++;
+                continue;
+            }
+            String error = parseLine(lines.get(i), rows);
+            if (error == null) continue;
+            invalid++;
+            if (errors.size() < MAX_REPORTED_ERRORS) errors.add("line " + (firstLine + i) + ": " + error);
+        }
+        return new Chunk(rows, invalid, errors, blank);
+    }
+
+    /** Parses one line into {@code rows}; returns an error message if it is invalid. */
+    private static String parseLine(String line, List<Row> rows) {
+        List<String> fields = splitCsv(line);
+        if (fields == null) return "unterminated quoted field";
+        if (fields.size() != 4) return "expected 4 fields but found " + fields.size();
+
+        String type = fields.get(0).trim();
+        String title = fields.get(1).trim();
+        String author = fields.get(2).trim();
+        String isbn = fields.get(3).trim();
+        boolean cd = type.equalsIgnoreCase("CD");
+        if (!cd && !type.equalsIgnoreCase("BOOK")) return "unknown type '" + type + "'";
+        if (title.isEmpty() || author.isEmpty() || isbn.isEmpty()) return "title, author and ISBN are required";
+
+        rows.add(new Row(cd, title, author, isbn));
+        return null;
+    }
+
+    /**
+     * Splits a CSV line into fields.
+     *
+     * @return the fields, or {@code null} if a quoted field is not closed
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch != '"') {
+                    field.append(ch);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(ch);
+            }
+        }
+        if (quoted) return null;
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static boolean isHeader(String line) {
+        return line.replace(" ", "").equalsIgnoreCase(HEADER);
+    }
+}
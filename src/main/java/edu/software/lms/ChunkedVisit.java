@@ -0,0 +1,53 @@
+package edu.software.lms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+
+/**
+ * The chunked iteration behind the {@code forEachBook} and
+ * {@code forEachLoan} implementations of the repositories that append their
+ * items to an indexed store.
+ */
+final class ChunkedVisit {
+
+    /** Items copied per hold of the lock. */
+    static final int CHUNK = 1_024;
+
+    private ChunkedVisit() {
+    }
+
+    /**
+     * Copies up to {@value #CHUNK} items at a time under {@code lock} and
+     * runs the action on them after releasing it. Visiting stops at the
+     * first chunk that comes back empty, so items appended meanwhile are
+     * visited too.
+     *
+     * @param lock   lock that guards the store, usually its read lock
+     * @param size   number of stored items; called with the lock held
+     * @param item   item at an index below {@code size}; called with the lock held
+     * @param action called once per item, without the lock
+     * @param <T>    item type
+     */
+    static <T> void forEach(Lock lock, IntSupplier size, IntFunction<? extends T> item,
+                            Consumer<? super T> action) {
+        List<T> chunk = new ArrayList<>(CHUNK);
+        int next = 0;
+        while (true) {
+            lock.lock();
+            try {
+                int end = Math.min(size.getAsInt(), next + CHUNK);
+                for (int i = next; i < end; i++) chunk.add(item.apply(i));
+            } finally {
+                lock.unlock();
+            }
+            if (chunk.isEmpty()) return;
+            next += chunk.size();
+            chunk.forEach(action);
+            chunk.clear();
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package edu.software.lms;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Column-oriented (struct-of-arrays) implementation of {@link LoanRepository}
+ * for report and reminder scans over a long loan history.
+ *
+ * <p>Each loan is a row across parallel primitive arrays: the two halves of
+ * its UUID, book ID, borrow, due and return dates as epoch days, fine, fine
+ * paid flag and media type. User IDs are dictionary-encoded into {@code int}
+ * codes. Scans such as {@link #countOverdue(LocalDate)},
+ * {@link #totalUnpaidFines()} or {@link #countOverdueByUser(LocalDate)} read
+ * only the columns they need, sequentially, without touching any objects.</p>
+ *
+ * <p>{@link Loan} objects are created as views of their row when they are
+ * looked up; while a view is reachable, lookups return the same instance, so
+ * {@link Loan#markReturned(LocalDate)} stays atomic. Changes made to a view
+ * are stored by {@link #updateLoan(Loan)}, as with the other
+ * implementations. Lookups by ID and by user use hash indexes; lookups by
+ * book and overdue queries scan the columns.</p>
+ *
+ * <p>The repository is thread-safe: reads share a read lock, while inserts
+ * and updates take the write lock.</p>
+ */
+public class ColumnarLoanRepository implements LoanRepository {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final byte NO_MEDIA_TYPE = -1;
+    private static final int NO_USER = -1;
+
+    private long[] idHigh = new long[INITIAL_CAPACITY];
+    private long[] idLow = new long[INITIAL_CAPACITY];
+    private int[] userCodes = new int[INITIAL_CAPACITY];
+    private int[] bookIds = new int[INITIAL_CAPACITY];
+    private int[] borrowDays = new int[INITIAL_CAPACITY];
+    private int[] dueDays = new int[INITIAL_CAPACITY];
+    private int[] returnedDays = new int[INITIAL_CAPACITY];
+    private int[] fines = new int[INITIAL_CAPACITY];
+    private boolean[] finePaid = new boolean[INITIAL_CAPACITY];
+    private byte[] mediaTypes = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    /** Row of each loan ID. */
+    private final Map<UUID, Integer> rowById = new HashMap<>();
+
+    /** User ID dictionary: ID to code, and code to ID. */
+    private final Map<String, Integer> userCodeById = new HashMap<>();
+    private final List<String> userIdByCode = new ArrayList<>();
+
+    /** Rows of each user's loans, by user code, in insertion order. */
+    private int[][] rowsByUser = new int[16][];
+    private int[] rowCountByUser = new int[16];
+
+    private final ViewCache<Loan> views = new ViewCache<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock readLock = lock.readLock();
+    private final Lock writeLock = lock.writeLock();
+
+    // ------------------- LoanRepository -------------------
+
+    @Override
+    public Loan getLoanById(String id) {
+        UUID key = parseId(id);
+        if (key == null) return null;
+
+        readLock.lock();
+        try {
+            Integer row = rowById.get(key);
+            return row == null ? null : view(row);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Loan> getLoansByUserId(String userId) {
+        if (userId == null) return new ArrayList<>();
+
+        readLock.lock();
+        try {
+            Integer code = userCodeById.get(userId);
+            if (code == null) return List.of();
+
+            int[] rows = rowsByUser[code];
+            List<Loan> result = new ArrayList<>(rowCountByUser[code]);
+            for (int i = 0; i < rowCountByUser[code]; i++) result.add(view(rows[i]));
+            return List.copyOf(result);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Loan> getLoansByBookId(int bookId) {
+        readLock.lock();
+        try {
+            List<Loan> result = new ArrayList<>();
+            for (int r = 0; r < size; r++) {
+                if (bookIds[r] == bookId) result.add(view(r));
+            }
+            return List.copyOf(result);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Scans the due and return columns for overdue, unreturned loans.
+     *
+     * @param today the date to evaluate against
+     * @return overdue loans ordered by due date
+     */
+    @Override
+    public List<Loan> getOverdueLoans(LocalDate today) {
+        int day = toDay(today);
+        readLock.lock();
+        try {
+            // (due day, row) packed into one long, so sorting needs no objects
+            long[] keys = new long[16];
+            int n = 0;
+            for (int r = 0; r < size; r++) {
+                if (returnedDays[r] == Loan.NOT_RETURNED && dueDays[r] < day) {
+                    if (n == keys.length) keys = Arrays.copyOf(keys, n * 2);
+                    keys[n++] = ((long) dueDays[r] << 32) | r;
+                }
+            }
+            Arrays.sort(keys, 0, n);
+
+            List<Loan> result = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) result.add(view((int) keys[i]));
+            return result;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Loan> getAllLoans() {
+        readLock.lock();
+        try {
+            List<Loan> result = new ArrayList<>(size);
+            for (int r = 0; r < size; r++) result.add(view(r));
+            return result;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void forEachLoan(Consumer<? super Loan> action) {
+        ChunkedVisit.forEach(readLock, () -> size, this::view, action);
+    }
+
+    /**
+     * Appends a row for the loan. The given object becomes the view of the
+     * row.
+     *
+     * @param loan the loan to insert
+     * @return true if added, false if null or the ID is taken
+     */
+    @Override
+    public boolean addLoan(Loan loan) {
+        if (loan == null) return false;
+
+        UUID id = loan.uuid();
+        writeLock.lock();
+        try {
+            if (rowById.containsKey(id)) return false;
+
+            int r = size;
+            if (r == idHigh.length) grow(r * 2);
+            idHigh[r] = id.getMostSignificantBits();
+            idLow[r] = id.getLeastSignificantBits();
+            bookIds[r] = loan.getBookId();
+            borrowDays[r] = loan.getBorrowEpochDay();
+            dueDays[r] = loan.getDueEpochDay();
+            mediaTypes[r] = loan instanceof MediaLoan ml ? (byte) ml.getMediaType().ordinal() : NO_MEDIA_TYPE;
+            writeState(r, loan);
+
+            int code = userCode(loan.getUserId());
+            userCodes[r] = code;
+            if (code != NO_USER) addUserRow(code, r);
+
+            rowById.put(id, r);
+            size = r + 1;
+            views.put(r, loan);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Stores the return date, fine and fine paid flag of the loan in its row.
+     * The given object becomes the view of the row; unknown IDs are ignored.
+     *
+     * @param loan loan object with updated state; ignored if null
+     */
+    @Override
+    public void updateLoan(Loan loan) {
+        if (loan == null) return;
+
+        writeLock.lock();
+        try {
+            Integer row = rowById.get(loan.uuid());
+            if (row == null) return;
+            writeState(row, loan);
+            if (views.get(row) != loan) views.put(row, loan);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // ------------------- Analytics scans -------------------
+
+    /**
+     * Counts unreturned loans whose due date is before {@code today}.
+     *
+     * @param today the date to evaluate against
+     * @return number of overdue loans
+     */
+    public int countOverdue(LocalDate today) {
+        int day = toDay(today);
+        readLock.lock();
+        try {
+            int count = 0;
+            for (int r = 0; r < size; r++) {
+                if (returnedDays[r] == Loan.NOT_RETURNED && dueDays[r] < day) count++;
+            }
+            return count;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @return sum of the fines applied to returned loans that are not paid
+     */
+    public long totalUnpaidFines() {
+        readLock.lock();
+        try {
+            long total = 0;
+            for (int r = 0; r < size; r++) {
+                if (!finePaid[r]) total += fines[r];
+            }
+            return total;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Counts overdue, unreturned loans per user with one pass over the user
+     * code, due and return columns.
+     *
+     * @param today the date to evaluate against
+     * @return user ID to number of overdue loans, for users with at least one
+     */
+    public Map<String, Integer> countOverdueByUser(LocalDate today) {
+        int day = toDay(today);
+        readLock.lock();
+        try {
+            int[] counts = new int[userIdByCode.size()];
+            for (int r = 0; r < size; r++) {
+                int code = userCodes[r];
+                if (code != NO_USER && returnedDays[r] == Loan.NOT_RETURNED && dueDays[r] < day) counts[code]++;
+            }
+            return byUser(counts);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Sums unpaid fines per user.
+     *
+     * @return user ID to unpaid fine total, for users owing anything
+     */
+    public Map<String, Integer> unpaidFinesByUser() {
+        readLock.lock();
+        try {
+            int[] totals = new int[userIdByCode.size()];
+            for (int r = 0; r < size; r++) {
+                int code = userCodes[r];
+                if (code != NO_USER && !finePaid[r]) totals[code] += fines[r];
+            }
+            return byUser(totals);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Computes the fines accrued so far by all unreturned loans, as the
+     * nightly fine accrual does.
+     *
+     * <p>The overdue days of every row are computed from the due and return
+     * columns into one array per media type, and each array is priced with a
+     * single {@link FineStrategy#calculateFines(int[], int[])} call. Loans
+     * without a media type are priced as books.</p>
+     *
+     * @param today        the date to evaluate against
+     * @param bookStrategy fine strategy for books
+     * @param cdStrategy   fine strategy for CDs
+     * @return sum of the fines of all overdue, unreturned loans
+     */
+    public long accruedFines(LocalDate today, FineStrategy bookStrategy, FineStrategy cdStrategy) {
+        int day = toDay(today);
+        int[] bookDays;
+        int[] cdDays;
+        readLock.lock();
+        try {
+            bookDays = new int[size];
+            cdDays = new int[size];
+            for (int r = 0; r < size; r++) {
+                if (returnedDays[r] != Loan.NOT_RETURNED) continue;
+                if (mediaTypes[r] == MediaType.CD.ordinal()) cdDays[r] = day - dueDays[r];
+                else bookDays[r] = day - dueDays[r];
+            }
+        } finally {
+            readLock.unlock();
+        }
+
+        // the arrays are reused for the output; each entry is read before it is written
+        bookStrategy.calculateFines(bookDays, bookDays);
+        cdStrategy.calculateFines(cdDays, cdDays);
+        long total = 0;
+        for (int r = 0; r < bookDays.length; r++) total += (long) bookDays[r] + cdDays[r];
+        return total;
+    }
+
+    /** @return number of stored loans */
+    public int size() {
+        readLock.lock();
+        try {
+            return size;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // ------------------- Rows -------------------
+
+    private void writeState(int r, Loan loan) {
+        returnedDays[r] = loan.getReturnedEpochDay();
+        fines[r] = loan.getFineApplied();
+        finePaid[r] = loan.isFinePaid();
+    }
+
+    private Loan view(int r) {
+        return views.computeIfAbsent(r, this::materialize);
+    }
+
+    private Loan materialize(int r) {
+        UUID id = new UUID(idHigh[r], idLow[r]);
+        String userId = userCodes[r] == NO_USER ? null : userIdByCode.get(userCodes[r]);
+        LocalDate borrow = LocalDate.ofEpochDay(borrowDays[r]);
+        LocalDate due = LocalDate.ofEpochDay(dueDays[r]);
+
+        Loan loan = mediaTypes[r] == NO_MEDIA_TYPE
+                ? new Loan(id, userId, bookIds[r], borrow, due)
+                : new MediaLoan(id, userId, bookIds[r], borrow, due, MediaType.values()[mediaTypes[r]]);
+        if (returnedDays[r] != Loan.NOT_RETURNED) loan.setReturnedDate(LocalDate.ofEpochDay(returnedDays[r]));
+        loan.setFineApplied(fines[r]);
+        loan.setFinePaid(finePaid[r]);
+        return loan;
+    }
+
+    private int userCode(String userId) {
+        if (userId == null) return NO_USER;
+
+        Integer code = userCodeById.get(userId);
+        if (code != null) return code;
+
+        int next = userIdByCode.size();
+        userIdByCode.add(userId);
+        userCodeById.put(userId, next);
+        if (next == rowsByUser.length) {
+            rowsByUser = Arrays.copyOf(rowsByUser, next * 2);
+            rowCountByUser = Arrays.copyOf(rowCountByUser, next * 2);
+        }
+        rowsByUser[next] = new int[4];
+        return next;
+    }
+
+    private void addUserRow(int code, int row) {
+        int n = rowCountByUser[code];
+        if (n == rowsByUser[code].length) rowsByUser[code] = Arrays.copyOf(rowsByUser[code], n * 2);
+        rowsByUser[code][n] = row;
+        rowCountByUser[code] = n + 1;
+    }
+
+    private Map<String, Integer> byUser(int[] perCode) {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int code = 0; code < perCode.length; code++) {
+            if (perCode[code] != 0) result.put(userIdByCode.get(code), perCode[code]);
+        }
+        return result;
+    }
+
+    private void grow(int capacity) {
+        idHigh = Arrays.copyOf(idHigh, capacity);
+        idLow = Arrays.copyOf(idLow, capacity);
+        userCodes = Arrays.copyOf(userCodes, capacity);
+        bookIds = Arrays.copyOf(bookIds, capacity);
+        borrowDays = Arrays.copyOf(borrowDays, capacity);
+        dueDays = Arrays.copyOf(dueDays, capacity);
+        returnedDays = Arrays.copyOf(returnedDays, capacity);
+        fines = Arrays.copyOf(fines, capacity);
+        finePaid = Arrays.copyOf(finePaid, capacity);
+        mediaTypes = Arrays.copyOf(mediaTypes, capacity);
+    }
+
+    private static int toDay(LocalDate date) {
+        return Math.toIntExact(date.toEpochDay());
+    }
+
+    private static UUID parseId(String id) {
+        if (id == null) return null;
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException _) {
+            return null;
+        }
+    }
+}
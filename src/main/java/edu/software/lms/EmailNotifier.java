@@ -1,8 +1,12 @@
 package edu.software.lms;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -17,12 +21,16 @@ import jakarta.mail.internet.MimeMessage;
 
 import io.github.cdimascio.dotenv.Dotenv;
 
-public class EmailNotifier implements Observer {
+public class EmailNotifier implements BatchObserver, AutoCloseable {
 
     private static final Logger logger = Logger.getLogger(EmailNotifier.class.getName());
 
-    /** Stores all formatted messages "sent" by this notifier (for logs/tests). */
-    private final List<String> sentMessages = new ArrayList<>();
+    /**
+     * Stores all formatted messages "sent" by this notifier (for logs/tests).
+     * Synchronized, since an {@link AsyncNotifier} calls {@link #notify}
+     * from several threads.
+     */
+    private final List<String> sentMessages = Collections.synchronizedList(new ArrayList<>());
 
     // SMTP configuration (nullable -> means "no real sending")
     private final String smtpHost;
@@ -31,6 +39,22 @@ public class EmailNotifier implements Observer {
     private final String password;
     private final String fromAddress;
 
+    /** Number of idle SMTP connections kept for reuse by default. */
+    public static final int DEFAULT_POOL_SIZE = 4;
+
+    /**
+     * Connect, read and write timeout of the SMTP connections, so that a
+     * server that stops answering fails the send instead of blocking a
+     * worker forever.
+     */
+    static final Duration SMTP_TIMEOUT = Duration.ofSeconds(30);
+
+    /** Shared mail session, created on first send. */
+    private Session session;
+
+    /** Idle connected transports, reused across sends. */
+    private final BlockingQueue<Connection> idleConnections;
+
     /**
      * Default constructor:
      * - Loads SMTP configuration from .env (via dotenv)
@@ -58,6 +82,7 @@ public class EmailNotifier implements Observer {
         this.username = dotenv.get("SMTP_USERNAME");
         this.password = dotenv.get("SMTP_PASSWORD");
         this.fromAddress = dotenv.get("SMTP_FROM");
+        this.idleConnections = new ArrayBlockingQueue<>(DEFAULT_POOL_SIZE);
 
         if (!isSmtpConfigured()) {
             logger.warning("EmailNotifier: SMTP not fully configured (.env missing or incomplete). " +
@@ -73,6 +98,17 @@ public class EmailNotifier implements Observer {
     public EmailNotifier(String smtpHost, int smtpPort,
                          String username, String password,
                          String fromAddress) {
+        this(smtpHost, smtpPort, username, password, fromAddress, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * Full SMTP constructor with the number of idle connections to keep.
+     */
+    public EmailNotifier(String smtpHost, int smtpPort,
+                         String username, String password,
+                         String fromAddress, int poolSize) {
+        if (poolSize <= 0) throw new IllegalArgumentException("poolSize must be positive: " + poolSize);
+        this.idleConnections = new ArrayBlockingQueue<>(poolSize);
         this.smtpHost = smtpHost;
         this.smtpPort = smtpPort;
         this.username = username;
@@ -116,32 +152,59 @@ public class EmailNotifier implements Observer {
     /**
      * Returns all messages that were "sent" through this notifier.
      *
-     * @return list of recorded messages
+     * @return snapshot of the recorded messages
      */
     public List<String> getSentMessages() {
-        return sentMessages;
+        synchronized (sentMessages) {
+            return List.copyOf(sentMessages);
+        }
     }
 
     /**
-     * Sends an email using Jakarta Mail and the configured SMTP settings.
+     * Records the notifications and, if SMTP is configured, sends them as
+     * emails over one pooled connection.
+     *
+     * @param notifications (user, message) pairs
+     * @return number of notifications recorded and, if SMTP is configured, sent
      */
-    private void sendEmail(String to, String body) {
-        try {
-            Properties props = new Properties();
-            props.put("mail.smtp.auth", "true");
-            props.put("mail.smtp.starttls.enable", "true");
-            props.put("mail.smtp.host", smtpHost);
-            props.put("mail.smtp.port", String.valueOf(smtpPort));
+    @Override
+    public int notifyBatch(List<Pair<User, String>> notifications) {
+        if (!isSmtpConfigured()) {
+            for (Pair<User, String> n : notifications) notify(n.first, n.second);
+            return notifications.size();
+        }
 
-            Session session = createSession(props);
+        List<Message> messages = new ArrayList<>(notifications.size());
+        for (Pair<User, String> n : notifications) {
+            sentMessages.add("To: " + n.first.getEmail() + " | " + n.second);
+            try {
+                messages.add(createMessage(n.first.getEmail(), n.second));
+            } catch (MessagingException e) {
+                String toLog = "Failed to send email to " + n.first.getEmail();
+                logger.log(Level.SEVERE, toLog, e);
+            }
+        }
+        int sent = doSendBatch(messages);
+        String toLog = "Sent " + sent + " of " + notifications.size() + " emails";
+        logger.info(toLog);
+        return sent;
+    }
 
-            Message msg = new MimeMessage(session);
-            msg.setFrom(new InternetAddress(fromAddress));
-            msg.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
-            msg.setSubject("Library notification");
-            msg.setText(body);
+    /**
+     * Closes the pooled SMTP connections. The notifier can still be used;
+     * new connections are opened as needed.
+     */
+    @Override
+    public void close() {
+        for (Connection c; (c = idleConnections.poll()) != null; ) c.close();
+    }
 
-            doSend(msg);
+    /**
+     * Sends an email using Jakarta Mail and the configured SMTP settings.
+     */
+    private void sendEmail(String to, String body) {
+        try {
+            doSend(createMessage(to, body));
             String toLog="Email sent successfully to " + to;
             logger.info(toLog);
         } catch (MessagingException e) {
@@ -150,6 +213,32 @@ public class EmailNotifier implements Observer {
         }
     }
 
+    private Message createMessage(String to, String body) throws MessagingException {
+        Message msg = new MimeMessage(session());
+        msg.setFrom(new InternetAddress(fromAddress));
+        msg.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
+        msg.setSubject("Library notification");
+        msg.setText(body);
+        msg.saveChanges();
+        return msg;
+    }
+
+    /** Returns the mail session, created on first use and then shared. */
+    private synchronized Session session() {
+        if (session == null) {
+            Properties props = new Properties();
+            props.put("mail.smtp.auth", "true");
+            props.put("mail.smtp.starttls.enable", "true");
+            props.put("mail.smtp.host", smtpHost);
+            props.put("mail.smtp.port", String.valueOf(smtpPort));
+            String timeout = String.valueOf(SMTP_TIMEOUT.toMillis());
+            props.put("mail.smtp.connectiontimeout", timeout);
+            props.put("mail.smtp.timeout", timeout);
+            props.put("mail.smtp.writetimeout", timeout);
+            session = createSession(props);
+        }
+        return session;
+    }
 
     /**
      * Creates a JavaMail Session. Extracted for testability.
@@ -167,9 +256,105 @@ public class EmailNotifier implements Observer {
     }
 
     /**
-     * Sends a prepared MimeMessage. Extracted for testability.
+     * Sends a prepared MimeMessage over a pooled connection. Extracted for
+     * testability.
      */
     protected void doSend(Message msg) throws MessagingException {
-        Transport.send(msg);
+        Connection connection = acquireConnection();
+        try {
+            connection.send(msg);
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
+    /**
+     * Sends prepared messages one after another over one pooled connection.
+     * A message that fails is logged and skipped. If the server cannot be
+     * reached, the rest of the batch is not attempted, so that an unreachable
+     * server costs one connect timeout per batch rather than per message.
+     *
+     * @return number of messages sent
+     */
+    protected int doSendBatch(List<Message> messages) {
+        int sent = 0;
+        Connection connection = acquireConnection();
+        try {
+            for (Message msg : messages) {
+                try {
+                    connection.send(msg);
+                    sent++;
+                } catch (MessagingException e) {
+                    logger.log(Level.SEVERE, "Failed to send email in batch", e);
+                    if (!connection.isOpen()) {
+                        String toLog = "SMTP server unreachable, skipping the remaining "
+                                + (messages.size() - sent - 1) + " emails of the batch";
+                        logger.warning(toLog);
+                        break;
+                    }
+                }
+            }
+        } finally {
+            releaseConnection(connection);
+        }
+        return sent;
+    }
+
+    // ------------------- Connection pool -------------------
+
+    private Connection acquireConnection() {
+        Connection connection = idleConnections.poll();
+        return connection != null ? connection : new Connection();
+    }
+
+    /** Keeps the connection for reuse, or closes it if the pool is full. */
+    private void releaseConnection(Connection connection) {
+        if (!idleConnections.offer(connection)) connection.close();
+    }
+
+    /**
+     * A long-lived SMTP connection that is opened on first use and opened
+     * again when it breaks.
+     */
+    private final class Connection {
+        private Transport transport;
+
+        /**
+         * Sends the message. If that fails because an established connection
+         * broke, it reconnects and tries once more; a message rejected by the
+         * server, or a connect that fails, is not retried.
+         */
+        void send(Message msg) throws MessagingException {
+            if (transport == null) transport = connect();
+            try {
+                transport.sendMessage(msg, msg.getAllRecipients());
+            } catch (MessagingException e) {
+                if (transport.isConnected()) throw e;
+                close();
+                transport = connect();
+                transport.sendMessage(msg, msg.getAllRecipients());
+            }
+        }
+
+        /** Whether the last connect succeeded; false before the first send. */
+        boolean isOpen() {
+            return transport != null;
+        }
+
+        private Transport connect() throws MessagingException {
+            Transport t = session().getTransport("smtp");
+            t.connect(smtpHost, smtpPort, username, password);
+            return t;
+        }
+
+        void close() {
+            if (transport == null) return;
+            try {
+                transport.close();
+            } catch (MessagingException _) {
+                // already broken
+            }
+            transport = null;
+        }
     }
 }
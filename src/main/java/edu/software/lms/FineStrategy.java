@@ -16,4 +16,23 @@ public interface FineStrategy {
      * @return total fine amount, typically zero if {@code overdueDays <= 0}
      */
     int calculateFine(int overdueDays);
+
+    /**
+     * Computes the fines for many loans at once, for example during the
+     * nightly fine accrual over the whole loan history.
+     *
+     * <p>{@code out[i]} receives {@code calculateFine(overdueDays[i])}. The
+     * default implementation simply loops; strategies with a simple formula
+     * may override it with a faster, data-parallel version.</p>
+     *
+     * @param overdueDays overdue days per loan; entries may be zero or negative
+     * @param out         receives the fine per loan; at least as long as {@code overdueDays}
+     * @throws IllegalArgumentException if {@code out} is shorter than {@code overdueDays}
+     */
+    default void calculateFines(int[] overdueDays, int[] out) {
+        PerDayFines.checkLengths(overdueDays, out);
+        for (int i = 0; i < overdueDays.length; i++) {
+            out[i] = calculateFine(overdueDays[i]);
+        }
+    }
 }
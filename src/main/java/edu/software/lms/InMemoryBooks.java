@@ -1,28 +1,63 @@
 package edu.software.lms;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * An in-memory implementation of the {@link BookRepository} interface.
  * Stores {@link Book} and {@link CD} objects inside a List.
  *
+ * <p>Lookups are served from hash indexes instead of scanning the list:
+ * unique indexes on ID (a primitive {@link IntBookMap}) and ISBN, and
+ * multi-valued indexes on title and author. Every lookup returns the book
+ * the original list scan would have found: the first one added with that
+ * key, also after keys have been changed.
+ * The repository registers itself as the {@link BookChangeListener} of every
+ * stored book, so calling {@link Book#setId(int)}, {@link Book#setIsbn(String)}
+ * or {@link Book#setAuthor(String)} on a stored book keeps the indexes in sync.</p>
+ *
+ * <p>The repository is thread-safe: lookups share a read lock, while inserts
+ * and index updates take the write lock.</p>
+ *
  * <p>This implementation is primarily used for testing or simple runtime
  * scenarios where persistent storage is not required.</p>
  */
-public class InMemoryBooks implements BookRepository {
+public class InMemoryBooks implements BookRepository, BookChangeListener {
 
-    /** Internal list storing all books and CDs. */
+    /** Internal list storing all books and CDs, in insertion order. */
     private final List<Book> books;
 
-    /**
-     * Creates a new repository using a pre-populated list of books.
-     *
-     * @param books initial collection of books to store
-     */
-    public InMemoryBooks(List<Book> books) {
-        this.books = books;
-    }
+    /** Unique index: book ID to book, keyed by primitive int. */
+    private final IntBookMap byId = new IntBookMap();
+
+    /** Unique index: ISBN to book. */
+    private final Map<String, Book> byIsbn = new HashMap<>();
+
+    /** Multi-valued index: title to books with that title. */
+    private final Map<String, List<Book>> byName = new HashMap<>();
+
+    /** Multi-valued index: author to books by that author. */
+    private final Map<String, List<Book>> byAuthor = new HashMap<>();
+
+    /** Position of each stored book in {@link #books}, to keep buckets in insertion order. */
+    private final Map<Book, Integer> positions = new IdentityHashMap<>();
+
+    /** High-water mark of the ID allocator: the next ID to hand out. */
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock readLock = lock.readLock();
+    private final Lock writeLock = lock.writeLock();
 
     /**
      * Creates an empty in-memory repository.
@@ -31,6 +66,22 @@ public class InMemoryBooks implements BookRepository {
         books = new ArrayList<>();
     }
 
+    /**
+     * Creates a new repository using a pre-populated list of books. The
+     * repository becomes the change listener of every book in the list.
+     *
+     * @param books initial collection of books to store
+     * @return the repository
+     */
+    public static InMemoryBooks of(List<Book> books) {
+        InMemoryBooks repo = new InMemoryBooks();
+        for (Book book : books) {
+            repo.books.add(book);
+            repo.index(book);
+        }
+        return repo;
+    }
+
     /**
      * Retrieves a book by its ID.
      *
@@ -39,10 +90,12 @@ public class InMemoryBooks implements BookRepository {
      */
     @Override
     public Book getBookById(int id) {
-        return books.stream()
-                .filter(book -> book.getId() == id)
-                .findFirst()
-                .orElse(null);
+        readLock.lock();
+        try {
+            return byId.get(id);
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -53,10 +106,12 @@ public class InMemoryBooks implements BookRepository {
      */
     @Override
     public Book getBookByName(String name) {
-        return books.stream()
-                .filter(book -> book.getName().equals(name))
-                .findFirst()
-                .orElse(null);
+        readLock.lock();
+        try {
+            return first(byName.get(name));
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -67,10 +122,12 @@ public class InMemoryBooks implements BookRepository {
      */
     @Override
     public Book getBookByAuthor(String author) {
-        return books.stream()
-                .filter(book -> book.getAuthor().equals(author))
-                .findFirst()
-                .orElse(null);
+        readLock.lock();
+        try {
+            return first(byAuthor.get(author));
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -81,10 +138,12 @@ public class InMemoryBooks implements BookRepository {
      */
     @Override
     public Book getBookByISBN(String isbn) {
-        return books.stream()
-                .filter(book -> book.getIsbn().equals(isbn))
-                .findFirst()
-                .orElse(null);
+        readLock.lock();
+        try {
+            return byIsbn.get(isbn);
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -103,13 +162,49 @@ public class InMemoryBooks implements BookRepository {
     public boolean addBook(Book book) {
         if (book == null) return false;
 
-        boolean exists = books.stream()
-                .anyMatch(b -> b.getId() == book.getId()
-                        || b.getIsbn().equals(book.getIsbn()));
+        writeLock.lock();
+        try {
+            return append(book);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds several books under one hold of the write lock, skipping those
+     * {@link #addBook(Book)} would reject.
+     *
+     * @param batch the books to add
+     * @return number of books added
+     */
+    @Override
+    public int addBooks(List<? extends Book> batch) {
+        return addAll(batch).size();
+    }
+
+    /**
+     * {@link #addBooks(List)} that returns the books it added, in order, for
+     * callers that record them.
+     */
+    List<Book> addAll(List<? extends Book> batch) {
+        List<Book> added = new ArrayList<>(batch.size());
+        writeLock.lock();
+        try {
+            for (Book book : batch) {
+                if (book != null && append(book)) added.add(book);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return added;
+    }
 
-        if (exists) return false;
+    /** Stores and indexes the book unless its ID or ISBN is taken; the write lock must be held. */
+    private boolean append(Book book) {
+        if (byId.containsKey(book.getId()) || byIsbn.containsKey(book.getIsbn())) return false;
 
         books.add(book);
+        index(book);
         return true;
     }
 
@@ -120,19 +215,166 @@ public class InMemoryBooks implements BookRepository {
      */
     @Override
     public List<Book> getAllBooks() {
-        return new ArrayList<>(books);
+        readLock.lock();
+        try {
+            return new ArrayList<>(books);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void forEachBook(Consumer<? super Book> action) {
+        ChunkedVisit.forEach(readLock, books::size, books::get, action);
     }
 
     /**
-     * Computes the next available ID based on the highest existing ID.
+     * Returns the next ID the allocator would hand out, without reserving it.
      *
-     * @return max ID + 1, or 1 if the repository is empty
+     * @return max(stored or reserved ID) + 1, or 1 if the repository is empty
      */
     @Override
     public int getNextId() {
-        return books.stream()
-                .mapToInt(Book::getId)
-                .max()
-                .orElse(0) + 1;
+        return nextId.get();
+    }
+
+    /**
+     * Reserves a block of IDs by advancing the high-water mark.
+     *
+     * @param count number of IDs to reserve
+     * @return first ID of the reserved block
+     * @throws IllegalStateException if the block would run past {@link Integer#MAX_VALUE}
+     */
+    @Override
+    public int reserveIds(int count) {
+        if (count <= 0) throw new IllegalArgumentException("count must be positive: " + count);
+        return nextId.getAndUpdate(next -> {
+            if (next > Integer.MAX_VALUE - count) {
+                throw new IllegalStateException("Cannot reserve " + count + " IDs after " + (next - 1));
+            }
+            return next + count;
+        });
+    }
+
+    // ------------------- Index maintenance -------------------
+
+    /**
+     * Moves the book to its new ID. If it held the old ID, the next book
+     * with that ID, if any, takes it over; it takes the new ID over from a
+     * later book.
+     */
+    @Override
+    public void idChanged(Book book, int oldId) {
+        writeLock.lock();
+        try {
+            if (byId.get(oldId) == book) {
+                Book next = nextHolder(book, b -> b.getId() == oldId);
+                if (next == null) byId.remove(oldId);
+                else byId.put(oldId, next);
+            }
+            if (precedes(book, byId.get(book.getId()))) byId.put(book.getId(), book);
+            raiseHighWaterMark(book.getId());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** Moves the book to its new ISBN, like {@link #idChanged(Book, int)}. */
+    @Override
+    public void isbnChanged(Book book, String oldIsbn) {
+        writeLock.lock();
+        try {
+            if (byIsbn.get(oldIsbn) == book) {
+                Book next = nextHolder(book, b -> Objects.equals(b.getIsbn(), oldIsbn));
+                if (next == null) byIsbn.remove(oldIsbn);
+                else byIsbn.put(oldIsbn, next);
+            }
+            if (precedes(book, byIsbn.get(book.getIsbn()))) byIsbn.put(book.getIsbn(), book);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** Moves the book to its new author's bucket, at its insertion position. */
+    @Override
+    public void authorChanged(Book book, String oldAuthor) {
+        writeLock.lock();
+        try {
+            unindex(byAuthor, oldAuthor, book);
+            insertOrdered(byAuthor.computeIfAbsent(book.getAuthor(), k -> new ArrayList<>(1)), book);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds a book to every index and attaches this repository as its listener.
+     * Unique keys that are already taken keep pointing to the earlier book.
+     */
+    private void index(Book book) {
+        positions.putIfAbsent(book, positions.size());
+        byId.putIfAbsent(book.getId(), book);
+        byIsbn.putIfAbsent(book.getIsbn(), book);
+        byName.computeIfAbsent(book.getName(), k -> new ArrayList<>(1)).add(book);
+        byAuthor.computeIfAbsent(book.getAuthor(), k -> new ArrayList<>(1)).add(book);
+        book.setChangeListener(this);
+        raiseHighWaterMark(book.getId());
+    }
+
+    /**
+     * Makes sure the allocator never hands out an ID that is already in use.
+     */
+    private void raiseHighWaterMark(int id) {
+        if (id == Integer.MAX_VALUE) return;
+        restoreNextId(id + 1);
+    }
+
+    /**
+     * Raises the allocator's next ID to at least the given value, e.g. when a
+     * persisted high-water mark is loaded.
+     *
+     * @param next lowest ID the allocator may hand out from now on
+     */
+    void restoreNextId(int next) {
+        nextId.accumulateAndGet(next, Math::max);
+    }
+
+    /**
+     * Returns the first book in insertion order, other than the given one,
+     * that matches. Only used when a key changes, so a scan is acceptable.
+     */
+    private Book nextHolder(Book book, Predicate<Book> matches) {
+        for (Book b : books) {
+            if (b != book && matches.test(b)) return b;
+        }
+        return null;
+    }
+
+    /** Whether the book was added before the current holder of a key, or the key is free. */
+    private boolean precedes(Book book, Book holder) {
+        return holder == null || positions.get(book) < positions.get(holder);
+    }
+
+    /** Inserts a book into a bucket, keeping the bucket in insertion order. */
+    private void insertOrdered(List<Book> bucket, Book book) {
+        int position = positions.get(book);
+        int i = bucket.size();
+        while (i > 0 && positions.get(bucket.get(i - 1)) > position) i--;
+        bucket.add(i, book);
+    }
+
+    /**
+     * Removes a book (by identity) from one bucket of a multi-valued index.
+     */
+    private static void unindex(Map<String, List<Book>> index, String key, Book book) {
+        List<Book> bucket = index.get(key);
+        if (bucket == null) return;
+
+        bucket.removeIf(b -> b == book);
+        if (bucket.isEmpty()) index.remove(key);
+    }
+
+    private static Book first(List<Book> bucket) {
+        return bucket == null || bucket.isEmpty() ? null : bucket.getFirst();
     }
 }
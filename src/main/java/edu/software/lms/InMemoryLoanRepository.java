@@ -1,19 +1,52 @@
 package edu.software.lms;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
 
 /**
- * In-memory implementation of the {@link LoanRepository} interface.
- * Stores all loans inside an internal list.
+ * Thread-safe in-memory implementation of the {@link LoanRepository} interface.
  *
- * <p>This implementation is suitable for testing and non-persistent runtime usage.
- * All methods operate directly on the internal list.</p>
+ * <p>Loans are held in a {@link ConcurrentHashMap} keyed by loan ID, with
+ * concurrent secondary indexes from user ID and from book ID to the IDs of
+ * their loans, so lookups by ID, user or book do not scan the whole history.
+ * A lock-free queue remembers insertion order for {@link #getAllLoans()}.
+ * Every index refers to a loan through one shared {@link UUID} key rather
+ * than the ID string, which keeps the per-loan overhead small.</p>
+ *
+ * <p>Loans that are still out are also kept in a concurrent skip list ordered
+ * by due date, so {@link #getOverdueLoans(LocalDate)} only walks the loans
+ * whose due date has passed instead of the whole history. A loan leaves that
+ * index when {@link #updateLoan(Loan)} is called with it marked as returned.</p>
+ *
+ * <p>All methods may be called from many threads at once. A loan becomes
+ * visible through {@link #getLoanById(String)} slightly before it shows up in
+ * the secondary indexes; readers never see a partially built loan.</p>
  */
 public class InMemoryLoanRepository implements LoanRepository {
 
-    /** Internal list storing all loans. */
-    private final List<Loan> loans = new ArrayList<>();
+    /** Primary index: loan ID to loan. */
+    private final ConcurrentMap<UUID, Loan> loansById = new ConcurrentHashMap<>();
+
+    /** Secondary index: user ID to loan IDs, in insertion order. */
+    private final ConcurrentMap<String, Queue<UUID>> loanIdsByUser = new ConcurrentHashMap<>();
+
+    /** Secondary index: book ID to loan IDs, in insertion order. */
+    private final ConcurrentMap<Integer, Queue<UUID>> loanIdsByBook = new ConcurrentHashMap<>();
+
+    /** All loan IDs in insertion order. */
+    private final Queue<UUID> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    /** Unreturned loans ordered by due date, then loan ID. */
+    private final ConcurrentSkipListSet<DueKey> activeByDueDate = new ConcurrentSkipListSet<>();
 
     /**
      * Retrieves a loan by its unique ID.
@@ -23,12 +56,8 @@ public class InMemoryLoanRepository implements LoanRepository {
      */
     @Override
     public Loan getLoanById(String id) {
-        if (id == null) return null;
-
-        return loans.stream()
-                .filter(l -> id.equals(l.getId()))
-                .findFirst()
-                .orElse(null);
+        UUID key = parseId(id);
+        return key == null ? null : loansById.get(key);
     }
 
     /**
@@ -41,9 +70,36 @@ public class InMemoryLoanRepository implements LoanRepository {
     public List<Loan> getLoansByUserId(String userId) {
         if (userId == null) return new ArrayList<>();
 
-        return loans.stream()
-                .filter(l -> userId.equals(l.getUserId()))
-                .toList();
+        return resolve(loanIdsByUser.get(userId));
+    }
+
+    /**
+     * Retrieves all loans, past and present, of a given book.
+     *
+     * @param bookId ID of the book or media item
+     * @return list of loans; empty list if the item was never borrowed
+     */
+    @Override
+    public List<Loan> getLoansByBookId(int bookId) {
+        return resolve(loanIdsByBook.get(bookId));
+    }
+
+    /**
+     * Retrieves unreturned loans due before {@code today}, walking only the
+     * head of the due-date index.
+     *
+     * @param today the date to evaluate against
+     * @return overdue loans ordered by due date
+     */
+    @Override
+    public List<Loan> getOverdueLoans(LocalDate today) {
+        List<Loan> result = new ArrayList<>();
+        for (DueKey key : activeByDueDate.headSet(DueKey.firstOn(today))) {
+            Loan loan = loansById.get(key.loanId());
+            // returned but not yet written back through updateLoan
+            if (loan != null && !loan.isReturned()) result.add(loan);
+        }
+        return result;
     }
 
     /**
@@ -53,7 +109,23 @@ public class InMemoryLoanRepository implements LoanRepository {
      */
     @Override
     public List<Loan> getAllLoans() {
-        return new ArrayList<>(loans);
+        List<Loan> result = new ArrayList<>();
+        forEachLoan(result::add);
+        return result;
+    }
+
+    /**
+     * Walks the insertion-order queue without locking. Loans added while
+     * the iteration runs may or may not be visited.
+     *
+     * @param action called once per loan
+     */
+    @Override
+    public void forEachLoan(Consumer<? super Loan> action) {
+        for (UUID id : insertionOrder) {
+            Loan loan = loansById.get(id);
+            if (loan != null) action.accept(loan);
+        }
     }
 
     /**
@@ -71,16 +143,23 @@ public class InMemoryLoanRepository implements LoanRepository {
     public boolean addLoan(Loan loan) {
         if (loan == null) return false;
 
-        if (getLoanById(loan.getId()) != null)
+        UUID id = loan.uuid();
+        if (loansById.putIfAbsent(id, loan) != null)
             return false;
 
-        loans.add(loan);
+        insertionOrder.add(id);
+        if (loan.getUserId() != null) {
+            loanIdsByUser.computeIfAbsent(loan.getUserId(), k -> new ConcurrentLinkedQueue<>()).add(id);
+        }
+        loanIdsByBook.computeIfAbsent(loan.getBookId(), k -> new ConcurrentLinkedQueue<>()).add(id);
+        if (!loan.isReturned()) activeByDueDate.add(new DueKey(loan.getDueEpochDay(), id));
         return true;
     }
 
     /**
      * Updates an existing loan entry.
-     * <p>This method finds the loan with the same ID and replaces it.</p>
+     * <p>The loan stored under the same ID is replaced; unknown IDs are ignored.
+     * The due-date index is brought in line with the loan's returned state.</p>
      *
      * @param loan loan object with updated state; ignored if null
      */
@@ -88,11 +167,57 @@ public class InMemoryLoanRepository implements LoanRepository {
     public void updateLoan(Loan loan) {
         if (loan == null) return;
 
-        for (int i = 0; i < loans.size(); i++) {
-            if (loans.get(i).getId().equals(loan.getId())) {
-                loans.set(i, loan);
-                return;
-            }
+        UUID id = loan.uuid();
+        if (loansById.replace(id, loan) == null) return;
+
+        DueKey key = new DueKey(loan.getDueEpochDay(), id);
+        if (loan.isReturned()) activeByDueDate.remove(key);
+        else activeByDueDate.add(key);
+    }
+
+    /**
+     * Maps a collection of loan IDs to the loans currently stored under them.
+     */
+    private List<Loan> resolve(Collection<UUID> ids) {
+        if (ids == null) return List.of();
+
+        List<Loan> result = new ArrayList<>();
+        for (UUID id : ids) {
+            Loan loan = loansById.get(id);
+            if (loan != null) result.add(loan);
+        }
+        return List.copyOf(result);
+    }
+
+    /**
+     * @return the UUID form of a loan ID, or {@code null} if it is not one
+     */
+    private static UUID parseId(String id) {
+        if (id == null) return null;
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException _) {
+            return null;
+        }
+    }
+
+    /**
+     * Sort key of the due-date index. Keys with the same due date (in epoch
+     * days) are ordered by loan ID so that every loan has its own entry.
+     */
+    private record DueKey(int dueDay, UUID loanId) implements Comparable<DueKey> {
+
+        private static final UUID SMALLEST_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+
+        /** Smallest possible key on the given day; everything before it is due earlier. */
+        static DueKey firstOn(LocalDate day) {
+            return new DueKey(Math.toIntExact(day.toEpochDay()), SMALLEST_ID);
+        }
+
+        @Override
+        public int compareTo(DueKey o) {
+            int c = Integer.compare(dueDay, o.dueDay);
+            return c != 0 ? c : loanId.compareTo(o.loanId);
         }
     }
 }
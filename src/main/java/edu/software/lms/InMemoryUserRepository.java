@@ -1,25 +1,52 @@
 package edu.software.lms;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * In-memory implementation of the {@link UserRepository} interface.
- * Stores all users in a simple list without persistence.
+ * Stores users in hash indexes by ID and by username, without persistence.
+ *
+ * <p>Lookups are lock-free reads of {@link ConcurrentHashMap}s. Adding and
+ * deleting take a short lock so that the ID and username indexes are always
+ * updated together and duplicate checks cannot race.</p>
+ *
+ * <p>Usernames are matched exactly by default. A repository created with
+ * {@code caseInsensitiveUsernames = true} keys its username index by the
+ * lower-cased name, so {@code "Alice"} and {@code "alice"} are the same user.</p>
  *
  * <p>This class is primarily suited for testing and lightweight runtime usage.</p>
  */
 public class InMemoryUserRepository implements UserRepository {
 
-    /** Internal list containing all registered users. */
-    private final List<User> users;
+    /** Primary index: user ID to user. */
+    private final ConcurrentMap<String, User> usersById = new ConcurrentHashMap<>();
+
+    /** Secondary index: (possibly case-folded) username to user. */
+    private final ConcurrentMap<String, User> usersByUsername = new ConcurrentHashMap<>();
+
+    /** Whether the username index is case-folded. */
+    private final boolean caseInsensitiveUsernames;
+
+    /** Guards writes so both indexes change together. */
+    private final Object writeLock = new Object();
 
     /**
-     * Constructs an empty in-memory user repository.
+     * Constructs an empty in-memory user repository with exact username matching.
      */
     public InMemoryUserRepository() {
-        this.users = new ArrayList<>();
+        this(false);
+    }
+
+    /**
+     * Constructs an empty in-memory user repository.
+     *
+     * @param caseInsensitiveUsernames true to match usernames ignoring case
+     */
+    public InMemoryUserRepository(boolean caseInsensitiveUsernames) {
+        this.caseInsensitiveUsernames = caseInsensitiveUsernames;
     }
 
     /**
@@ -32,10 +59,7 @@ public class InMemoryUserRepository implements UserRepository {
     public User getUserById(String id) {
         if (id == null) return null;
 
-        return users.stream()
-                .filter(u -> id.equals(u.getId()))
-                .findFirst()
-                .orElse(null);
+        return usersById.get(id);
     }
 
     /**
@@ -48,10 +72,7 @@ public class InMemoryUserRepository implements UserRepository {
     public User getUserByUsername(String username) {
         if (username == null) return null;
 
-        return users.stream()
-                .filter(u -> username.equals(u.getUsername()))
-                .findFirst()
-                .orElse(null);
+        return usersByUsername.get(usernameKey(username));
     }
 
     /**
@@ -63,6 +84,9 @@ public class InMemoryUserRepository implements UserRepository {
      *     <li>Username or ID is duplicate</li>
      * </ul>
      *
+     * <p>A user without an ID is accepted, as before; it can be found by
+     * username only.</p>
+     *
      * @param user the user to add
      * @return true if user added successfully, false otherwise
      */
@@ -70,15 +94,15 @@ public class InMemoryUserRepository implements UserRepository {
     public boolean addUser(User user) {
         if (user == null || user.getUsername() == null) return false;
 
-        boolean exists = users.stream().anyMatch(u ->
-                (u.getId() != null && u.getId().equals(user.getId())) ||
-                        (u.getUsername() != null && u.getUsername().equals(user.getUsername()))
-        );
-
-        if (exists) return false;
+        String id = user.getId();
+        String key = usernameKey(user.getUsername());
+        synchronized (writeLock) {
+            if ((id != null && usersById.containsKey(id)) || usersByUsername.containsKey(key)) return false;
 
-        users.add(user);
-        return true;
+            if (id != null) usersById.put(id, user);
+            usersByUsername.put(key, user);
+            return true;
+        }
     }
 
     /**
@@ -89,14 +113,27 @@ public class InMemoryUserRepository implements UserRepository {
      */
     @Override
     public boolean deleteUser(String id) {
-        Optional<User> found = users.stream()
-                .filter(u -> id != null && id.equals(u.getId()))
-                .findFirst();
+        if (id == null) return false;
+
+        synchronized (writeLock) {
+            User removed = usersById.remove(id);
+            if (removed == null) return false;
 
-        if (found.isPresent()) {
-            users.remove(found.get());
+            usersByUsername.remove(usernameKey(removed.getUsername()), removed);
             return true;
         }
-        return false;
+    }
+
+    /**
+     * Retrieves all stored users, e.g. to write a snapshot.
+     *
+     * @return an immutable copy of all users, in no particular order
+     */
+    public List<User> getAllUsers() {
+        return List.copyOf(usersByUsername.values());
+    }
+
+    private String usernameKey(String username) {
+        return caseInsensitiveUsernames ? username.toLowerCase(Locale.ROOT) : username;
     }
 }
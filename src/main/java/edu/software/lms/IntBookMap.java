@@ -0,0 +1,203 @@
+package edu.software.lms;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive {@code int} book IDs to {@link Book}s.
+ *
+ * <p>Keys and values live in two parallel arrays, so there is no boxing of
+ * IDs and no per-entry node object as with {@code HashMap<Integer, Book>}.
+ * Collisions are resolved with linear probing; removal uses backward-shift
+ * deletion, so no tombstones are left behind. A {@code null} value marks an
+ * empty slot, which means {@code null} books cannot be stored.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+final class IntBookMap {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /** Resize once the table is more than this fraction full. */
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private Book[] values;
+    private int size;
+    private int resizeAt;
+
+    /**
+     * Creates an empty map with a small default capacity.
+     */
+    IntBookMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty map sized for the given number of entries.
+     *
+     * @param expectedSize number of entries expected to be stored
+     */
+    IntBookMap(int expectedSize) {
+        allocate(tableSizeFor((int) Math.min(1 << 30, (long) Math.ceil(expectedSize / LOAD_FACTOR))));
+    }
+
+    /**
+     * @param key book ID
+     * @return the mapped book, or {@code null} if the ID is not present
+     */
+    Book get(int key) {
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            Book v = values[i];
+            if (v == null) return null;
+            if (keys[i] == key) return v;
+        }
+    }
+
+    /**
+     * @param key book ID
+     * @return true if the ID is mapped
+     */
+    boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps the key to the given book, replacing any previous mapping.
+     *
+     * @param key   book ID
+     * @param value book to store; must not be null
+     * @return the previous book for this ID, or {@code null}
+     */
+    Book put(int key, Book value) {
+        if (value == null) throw new IllegalArgumentException("value must not be null");
+
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                Book old = values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeAt) rehash(keys.length << 1);
+        return null;
+    }
+
+    /**
+     * Maps the key to the given book only if the key is not present yet.
+     *
+     * @param key   book ID
+     * @param value book to store; must not be null
+     * @return the existing book for this ID, or {@code null} if the value was stored
+     */
+    Book putIfAbsent(int key, Book value) {
+        Book existing = get(key);
+        if (existing != null) return existing;
+        put(key, value);
+        return null;
+    }
+
+    /**
+     * Removes the mapping for a key.
+     *
+     * @param key book ID
+     * @return the removed book, or {@code null} if the ID was not present
+     */
+    Book remove(int key) {
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            Book v = values[i];
+            if (v == null) return null;
+            if (keys[i] == key) {
+                shiftBack(i);
+                return v;
+            }
+        }
+    }
+
+    /**
+     * Removes the mapping only if the key is currently mapped to this exact book.
+     *
+     * @param key   book ID
+     * @param value expected book (compared by identity)
+     * @return true if the mapping was removed
+     */
+    boolean remove(int key, Book value) {
+        if (get(key) != value || value == null) return false;
+        remove(key);
+        return true;
+    }
+
+    /** @return number of stored entries */
+    int size() {
+        return size;
+    }
+
+    /** @return current length of the backing arrays */
+    int capacity() {
+        return keys.length;
+    }
+
+    /** Removes all entries, keeping the current capacity. */
+    void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Closes the gap left at {@code slot} by moving later entries of the same
+     * probe run back, so lookups never stop early at a hole.
+     */
+    private void shiftBack(int slot) {
+        int mask = keys.length - 1;
+        int gap = slot;
+        for (int i = (gap + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+            int home = mix(keys[i]) & mask;
+            // the entry at i may move into the gap only if its home slot is not in (gap, i]
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        values[gap] = null;
+        size--;
+    }
+
+    private void rehash(int newCapacity) {
+        int[] oldKeys = keys;
+        Book[] oldValues = values;
+        allocate(newCapacity);
+
+        int mask = newCapacity - 1;
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldValues[j] == null) continue;
+            int i = mix(oldKeys[j]) & mask;
+            while (values[i] != null) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Book[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /** Spreads sequential IDs across the table (Fibonacci hashing). */
+    static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int n) {
+        int cap = Integer.highestOneBit(Math.max(n - 1, 1)) << 1;
+        return Math.max(cap, DEFAULT_CAPACITY);
+    }
+}
@@ -0,0 +1,363 @@
+package edu.software.lms;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * {@link BookRepository} stored in the {@code books} table of a
+ * {@link JdbcStore}.
+ *
+ * <p>Lookups return canonical views keyed by row; setter calls and
+ * borrowed-flag changes on a view are written through with an
+ * {@code UPDATE}, as {@link MappedBookRepository} does with its records.
+ * Unlike the in-memory repositories, the table cannot hold two books with
+ * the same ID or ISBN, so changing a view to a key another row has is
+ * rejected.</p>
+ */
+class JdbcBookRepository implements BookRepository, BookChangeListener {
+
+    private static final String COLUMNS = "SELECT seq, id, name, author, isbn, cd, borrowed FROM books";
+    private static final String BY_ID = COLUMNS + " WHERE id = ?";
+    private static final String BY_NAME = COLUMNS + " WHERE name = ? ORDER BY seq FETCH FIRST ROW ONLY";
+    private static final String BY_AUTHOR = COLUMNS + " WHERE author = ? ORDER BY seq FETCH FIRST ROW ONLY";
+    private static final String BY_ISBN = COLUMNS + " WHERE isbn = ?";
+    private static final String ALL = COLUMNS + " ORDER BY seq";
+    private static final String INSERT = """
+            INSERT INTO books (id, name, author, isbn, cd, borrowed)
+            SELECT ?, ?, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM books WHERE id = ? OR isbn = ?)""";
+    private static final String SEQ_BY_ID = "SELECT seq FROM books WHERE id = ?";
+    private static final String RAISE_NEXT_ID = "UPDATE book_ids SET next_id = ? WHERE next_id <= ?";
+    private static final String NEXT_ID = "SELECT next_id FROM book_ids";
+    private static final String RESERVE_IDS = "UPDATE book_ids SET next_id = next_id + ?";
+
+    private final JdbcStore store;
+    private final ViewCache<Book> views = new ViewCache<>();
+
+    JdbcBookRepository(JdbcStore store) {
+        this.store = store;
+    }
+
+    // ------------------- Lookups -------------------
+
+    @Override
+    public Book getBookById(int id) {
+        return store.withConnection(c -> queryOne(c, BY_ID, ps -> ps.setInt(1, id)));
+    }
+
+    /**
+     * @return the first added book with this title, or {@code null}
+     */
+    @Override
+    public Book getBookByName(String name) {
+        if (name == null) return null;
+        return store.withConnection(c -> queryOne(c, BY_NAME, ps -> ps.setString(1, name)));
+    }
+
+    /**
+     * @return the first added book by this author, or {@code null}
+     */
+    @Override
+    public Book getBookByAuthor(String author) {
+        if (author == null) return null;
+        return store.withConnection(c -> queryOne(c, BY_AUTHOR, ps -> ps.setString(1, author)));
+    }
+
+    @Override
+    public Book getBookByISBN(String isbn) {
+        if (isbn == null) return null;
+        return store.withConnection(c -> queryOne(c, BY_ISBN, ps -> ps.setString(1, isbn)));
+    }
+
+    @Override
+    public List<Book> getAllBooks() {
+        return store.withConnection(c -> {
+            try (PreparedStatement ps = c.prepareStatement(ALL); ResultSet rs = ps.executeQuery()) {
+                List<Book> result = new ArrayList<>();
+                while (rs.next()) result.add(view(rs));
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Streams the rows of one query, creating a view per row as it is
+     * visited. The query sees the table as of its start; H2 spills large
+     * results to disk instead of holding them in memory.
+     *
+     * @param action called once per item
+     */
+    @Override
+    public void forEachBook(Consumer<? super Book> action) {
+        store.withConnection(c -> {
+            try (PreparedStatement ps = c.prepareStatement(ALL)) {
+                ps.setFetchSize(JdbcStore.FETCH_SIZE);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) action.accept(view(rs));
+                }
+            }
+            return null;
+        });
+    }
+
+    // ------------------- Writes -------------------
+
+    /**
+     * Inserts a row for the book. The given object becomes the view of the
+     * row, so later changes to it are written through.
+     *
+     * @param book the book to insert
+     * @return true if added, false if null or the ID or ISBN is taken
+     */
+    @Override
+    public boolean addBook(Book book) {
+        if (book == null) return false;
+        try {
+            return insert(List.of(book)) == 1;
+        } catch (UncheckedSQLException e) {
+            // a concurrent insert of the same ID or ISBN won the race
+            if (JdbcStore.isConstraintViolation(e.getCause())) return false;
+            throw e;
+        }
+    }
+
+    /**
+     * Inserts the books with one JDBC batch in one transaction. Books whose
+     * ID or ISBN is taken, also by an earlier book of the batch, are
+     * skipped; the others become views of their rows.
+     *
+     * @param books the books to add
+     * @return number of books added
+     */
+    @Override
+    public int addBooks(List<? extends Book> books) {
+        List<Book> batch = new ArrayList<>(books.size());
+        for (Book book : books) {
+            if (book != null) batch.add(book);
+        }
+        if (batch.isEmpty()) return 0;
+
+        try {
+            return insert(batch);
+        } catch (UncheckedSQLException e) {
+            if (!JdbcStore.isConstraintViolation(e.getCause())) throw e;
+            // a concurrent insert collided with the batch, which was rolled back
+            return BookRepository.super.addBooks(batch);
+        }
+    }
+
+    private int insert(List<Book> batch) {
+        List<Book> added = new ArrayList<>();
+        List<Integer> rows = new ArrayList<>();
+        store.inTransaction(c -> {
+            int maxId = Integer.MIN_VALUE;
+            try (PreparedStatement ps = c.prepareStatement(INSERT, new String[] {"SEQ"})) {
+                for (Book book : batch) {
+                    ps.setInt(1, book.getId());
+                    ps.setString(2, book.getName());
+                    ps.setString(3, book.getAuthor());
+                    ps.setString(4, book.getIsbn());
+                    ps.setBoolean(5, book instanceof CD);
+                    ps.setBoolean(6, book.isBorrowed());
+                    ps.setInt(7, book.getId());
+                    ps.setString(8, book.getIsbn());
+                    ps.addBatch();
+                }
+                int[] counts = ps.executeBatch();
+                // generated keys are returned for the inserted rows only, in batch order
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] <= 0) continue;
+                        keys.next();
+                        added.add(batch.get(i));
+                        rows.add(keys.getInt(1));
+                        maxId = Math.max(maxId, batch.get(i).getId());
+                    }
+                }
+            }
+            if (!added.isEmpty()) raiseNextId(c, maxId);
+            return null;
+        });
+
+        for (int i = 0; i < added.size(); i++) {
+            Book book = added.get(i);
+            views.put(rows.get(i), book);
+            book.setChangeListener(this);
+        }
+        return added.size();
+    }
+
+    @Override
+    public int getNextId() {
+        return store.withConnection(JdbcBookRepository::nextId);
+    }
+
+    /**
+     * Reserves a block of IDs by raising the high-water mark in
+     * {@code book_ids}; the row lock serializes concurrent callers.
+     *
+     * @param count number of IDs to reserve
+     * @return first ID of the reserved block
+     */
+    @Override
+    public int reserveIds(int count) {
+        if (count <= 0) throw new IllegalArgumentException("count must be positive: " + count);
+
+        return store.inTransaction(c -> {
+            try (PreparedStatement ps = c.prepareStatement(RESERVE_IDS)) {
+                ps.setInt(1, count);
+                ps.executeUpdate();
+            }
+            return nextId(c) - count;
+        });
+    }
+
+    // ------------------- Write-through from views -------------------
+
+    /**
+     * Writes the new ID to the book's row.
+     *
+     * @throws IllegalArgumentException if another row has the new ID; the
+     *                                  book gets its old ID back
+     */
+    @Override
+    public void idChanged(Book book, int oldId) {
+        try {
+            store.inTransaction(c -> {
+                int row = rowOf(c, book, oldId);
+                if (row < 0) return null;
+                update(c, "UPDATE books SET id = ? WHERE seq = ?", row, ps -> ps.setInt(1, book.getId()));
+                raiseNextId(c, book.getId());
+                return null;
+            });
+        } catch (UncheckedSQLException e) {
+            if (!JdbcStore.isConstraintViolation(e.getCause())) throw e;
+            int taken = book.getId();
+            revert(book, b -> b.setId(oldId));
+            throw new IllegalArgumentException("Book ID " + taken + " is taken by another book", e);
+        }
+    }
+
+    /**
+     * Writes the new ISBN to the book's row.
+     *
+     * @throws IllegalArgumentException if another row has the new ISBN; the
+     *                                  book gets its old ISBN back
+     */
+    @Override
+    public void isbnChanged(Book book, String oldIsbn) {
+        try {
+            writeThrough(book, "UPDATE books SET isbn = ? WHERE seq = ?", ps -> ps.setString(1, book.getIsbn()));
+        } catch (UncheckedSQLException e) {
+            if (!JdbcStore.isConstraintViolation(e.getCause())) throw e;
+            String taken = book.getIsbn();
+            revert(book, b -> b.setIsbn(oldIsbn));
+            throw new IllegalArgumentException("ISBN " + taken + " is taken by another book", e);
+        }
+    }
+
+    /** Puts a rejected key change back on the view without writing it through again. */
+    private void revert(Book book, Consumer<Book> restore) {
+        book.setChangeListener(null);
+        try {
+            restore.accept(book);
+        } finally {
+            book.setChangeListener(this);
+        }
+    }
+
+    @Override
+    public void authorChanged(Book book, String oldAuthor) {
+        writeThrough(book, "UPDATE books SET author = ? WHERE seq = ?", ps -> ps.setString(1, book.getAuthor()));
+    }
+
+    @Override
+    public void borrowedChanged(Book book) {
+        writeThrough(book, "UPDATE books SET borrowed = ? WHERE seq = ?", ps -> ps.setBoolean(1, book.isBorrowed()));
+    }
+
+    private void writeThrough(Book book, String sql, Binder binder) {
+        store.withConnection(c -> {
+            int row = rowOf(c, book, book.getId());
+            if (row >= 0) update(c, sql, row, binder);
+            return null;
+        });
+    }
+
+    /**
+     * Finds the row a view belongs to: by its ID first, and by searching the
+     * live views if that row has another view.
+     */
+    private int rowOf(Connection c, Book book, int id) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(SEQ_BY_ID)) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && views.get(rs.getInt(1)) == book) return rs.getInt(1);
+            }
+        }
+        return views.keyOf(book);
+    }
+
+    // ------------------- Helpers -------------------
+
+    /** Sets the parameters of a prepared statement. */
+    @FunctionalInterface
+    private interface Binder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    private Book queryOne(Connection c, String sql, Binder binder) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            binder.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? view(rs) : null;
+            }
+        }
+    }
+
+    private static void update(Connection c, String sql, int row, Binder binder) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            binder.bind(ps);
+            ps.setInt(2, row);
+            ps.executeUpdate();
+        }
+    }
+
+    /** @return the live view of the current row, creating one from the row if needed */
+    private Book view(ResultSet rs) throws SQLException {
+        int row = rs.getInt("seq");
+        Book live = views.get(row);
+        if (live != null) return live;
+
+        int id = rs.getInt("id");
+        String name = rs.getString("name");
+        String author = rs.getString("author");
+        String isbn = rs.getString("isbn");
+        Book book = rs.getBoolean("cd") ? new CD(id, name, author, isbn) : new Book(id, name, author, isbn);
+        book.setBorrowed(rs.getBoolean("borrowed"));
+        return views.computeIfAbsent(row, r -> {
+            book.setChangeListener(this);
+            return book;
+        });
+    }
+
+    private static void raiseNextId(Connection c, int id) throws SQLException {
+        if (id == Integer.MAX_VALUE) return;
+        try (PreparedStatement ps = c.prepareStatement(RAISE_NEXT_ID)) {
+            ps.setInt(1, id + 1);
+            ps.setInt(2, id);
+            ps.executeUpdate();
+        }
+    }
+
+    private static int nextId(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(NEXT_ID); ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
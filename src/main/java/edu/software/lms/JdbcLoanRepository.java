@@ -0,0 +1,321 @@
+package edu.software.lms;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * {@link LoanRepository} stored in the {@code loans} table of a
+ * {@link JdbcStore}.
+ *
+ * <p>Lookups by user and book use their indexes, and
+ * {@link #getOverdueLoans(LocalDate)} lets the database select overdue,
+ * unreturned loans through the due date index instead of filtering
+ * {@link #getAllLoans()}. Lookups return canonical views keyed by row;
+ * changes are stored by {@link #updateLoan(Loan)}.</p>
+ */
+class JdbcLoanRepository implements LoanRepository {
+
+    private static final String COLUMNS = """
+            SELECT seq, id, user_id, book_id, borrow_date, due_date, returned_date,
+                   fine_applied, fine_paid, media_type FROM loans""";
+    private static final String BY_ID = COLUMNS + " WHERE id = ?";
+    private static final String BY_USER = COLUMNS + " WHERE user_id = ? ORDER BY seq";
+    private static final String BY_BOOK = COLUMNS + " WHERE book_id = ? ORDER BY seq";
+    private static final String OVERDUE =
+            COLUMNS + " WHERE due_date < ? AND returned_date IS NULL ORDER BY due_date, seq";
+    private static final String ALL = COLUMNS + " ORDER BY seq";
+    private static final String INSERT = """
+            INSERT INTO loans (id, user_id, book_id, borrow_date, due_date, returned_date,
+                               fine_applied, fine_paid, media_type)
+            SELECT ?, ?, ?, ?, ?, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM loans WHERE id = ?)""";
+    private static final String UPDATE =
+            "UPDATE loans SET returned_date = ?, fine_applied = ?, fine_paid = ? WHERE id = ?";
+    private static final String SEQ_BY_ID = "SELECT seq FROM loans WHERE id = ?";
+
+    private final JdbcStore store;
+    private final ViewCache<Loan> views = new ViewCache<>();
+
+    JdbcLoanRepository(JdbcStore store) {
+        this.store = store;
+    }
+
+    // ------------------- Lookups -------------------
+
+    @Override
+    public Loan getLoanById(String id) {
+        UUID key = parseId(id);
+        if (key == null) return null;
+
+        List<Loan> found = store.withConnection(c -> query(c, BY_ID, ps -> ps.setObject(1, key)));
+        return found.isEmpty() ? null : found.getFirst();
+    }
+
+    @Override
+    public List<Loan> getLoansByUserId(String userId) {
+        if (userId == null) return new ArrayList<>();
+        return store.withConnection(c -> query(c, BY_USER, ps -> ps.setString(1, userId)));
+    }
+
+    @Override
+    public List<Loan> getLoansByBookId(int bookId) {
+        return store.withConnection(c -> query(c, BY_BOOK, ps -> ps.setInt(1, bookId)));
+    }
+
+    /**
+     * Selects unreturned loans due before {@code today} in SQL, using the
+     * due date index.
+     *
+     * @param today the date to evaluate against
+     * @return overdue loans ordered by due date
+     */
+    @Override
+    public List<Loan> getOverdueLoans(LocalDate today) {
+        return store.withConnection(c -> query(c, OVERDUE, ps -> ps.setObject(1, today)));
+    }
+
+    @Override
+    public List<Loan> getAllLoans() {
+        return store.withConnection(c -> query(c, ALL, ps -> { }));
+    }
+
+    /**
+     * Streams the rows of one query, creating a view per row as it is
+     * visited. The query sees the table as of its start.
+     *
+     * @param action called once per loan
+     */
+    @Override
+    public void forEachLoan(Consumer<? super Loan> action) {
+        store.withConnection(c -> {
+            try (PreparedStatement ps = c.prepareStatement(ALL)) {
+                ps.setFetchSize(JdbcStore.FETCH_SIZE);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) action.accept(view(rs));
+                }
+            }
+            return null;
+        });
+    }
+
+    // ------------------- Writes -------------------
+
+    /**
+     * Inserts a row for the loan, which becomes the view of the row.
+     *
+     * @param loan the loan to insert
+     * @return true if added, false if null or the ID is taken
+     */
+    @Override
+    public boolean addLoan(Loan loan) {
+        if (loan == null) return false;
+        try {
+            return insert(List.of(loan)) == 1;
+        } catch (UncheckedSQLException e) {
+            // a concurrent insert of the same ID won the race
+            if (JdbcStore.isConstraintViolation(e.getCause())) return false;
+            throw e;
+        }
+    }
+
+    /**
+     * Inserts the loans with one JDBC batch in one transaction, skipping
+     * those whose ID is taken. The added loans become views of their rows.
+     *
+     * @param loans the loans to add
+     * @return number of loans added
+     */
+    @Override
+    public int addLoans(List<? extends Loan> loans) {
+        List<Loan> batch = new ArrayList<>(loans.size());
+        for (Loan loan : loans) {
+            if (loan != null) batch.add(loan);
+        }
+        if (batch.isEmpty()) return 0;
+
+        try {
+            return insert(batch);
+        } catch (UncheckedSQLException e) {
+            if (!JdbcStore.isConstraintViolation(e.getCause())) throw e;
+            // a concurrent insert collided with the batch, which was rolled back
+            return LoanRepository.super.addLoans(batch);
+        }
+    }
+
+    /**
+     * Stores the return date, fine and fine paid flag of the loan. The given
+     * object becomes the view of the row; unknown IDs are ignored.
+     *
+     * @param loan loan object with updated state; ignored if null
+     */
+    @Override
+    public void updateLoan(Loan loan) {
+        if (loan == null) return;
+
+        UUID id = loan.uuid();
+        Integer row = store.inTransaction(c -> {
+            try (PreparedStatement ps = c.prepareStatement(UPDATE)) {
+                setDate(ps, 1, loan.getReturnedDate());
+                ps.setInt(2, loan.getFineApplied());
+                ps.setBoolean(3, loan.isFinePaid());
+                ps.setObject(4, id);
+                if (ps.executeUpdate() == 0) return null;
+            }
+            try (PreparedStatement ps = c.prepareStatement(SEQ_BY_ID)) {
+                ps.setObject(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    return rs.getInt(1);
+                }
+            }
+        });
+        if (row != null && views.get(row) != loan) views.put(row, loan);
+    }
+
+    /**
+     * Stores the state of the loans with one JDBC batch in one transaction.
+     * The given objects become the views of their rows; unknown IDs are
+     * ignored.
+     *
+     * @param loans loan objects with updated state; {@code null}s are skipped
+     */
+    @Override
+    public void updateLoans(List<? extends Loan> loans) {
+        List<Loan> batch = new ArrayList<>(loans.size());
+        for (Loan loan : loans) {
+            if (loan != null) batch.add(loan);
+        }
+        if (batch.isEmpty()) return;
+
+        List<Loan> updated = new ArrayList<>();
+        List<Integer> rows = new ArrayList<>();
+        store.inTransaction(c -> {
+            int[] counts;
+            try (PreparedStatement ps = c.prepareStatement(UPDATE)) {
+                for (Loan loan : batch) {
+                    setDate(ps, 1, loan.getReturnedDate());
+                    ps.setInt(2, loan.getFineApplied());
+                    ps.setBoolean(3, loan.isFinePaid());
+                    ps.setObject(4, loan.uuid());
+                    ps.addBatch();
+                }
+                counts = ps.executeBatch();
+            }
+            try (PreparedStatement ps = c.prepareStatement(SEQ_BY_ID)) {
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] <= 0) continue;
+                    ps.setObject(1, batch.get(i).uuid());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        updated.add(batch.get(i));
+                        rows.add(rs.getInt(1));
+                    }
+                }
+            }
+            return null;
+        });
+
+        for (int i = 0; i < updated.size(); i++) {
+            if (views.get(rows.get(i)) != updated.get(i)) views.put(rows.get(i), updated.get(i));
+        }
+    }
+
+    // ------------------- Helpers -------------------
+
+    /** Sets the parameters of a prepared statement. */
+    @FunctionalInterface
+    private interface Binder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    private int insert(List<Loan> batch) {
+        List<Loan> added = new ArrayList<>();
+        List<Integer> rows = new ArrayList<>();
+        store.inTransaction(c -> {
+            try (PreparedStatement ps = c.prepareStatement(INSERT, new String[] {"SEQ"})) {
+                for (Loan loan : batch) {
+                    UUID id = loan.uuid();
+                    ps.setObject(1, id);
+                    ps.setString(2, loan.getUserId());
+                    ps.setInt(3, loan.getBookId());
+                    ps.setObject(4, loan.getBorrowDate());
+                    ps.setObject(5, loan.getDueDate());
+                    setDate(ps, 6, loan.getReturnedDate());
+                    ps.setInt(7, loan.getFineApplied());
+                    ps.setBoolean(8, loan.isFinePaid());
+                    if (loan instanceof MediaLoan ml) ps.setByte(9, (byte) ml.getMediaType().ordinal());
+                    else ps.setNull(9, Types.TINYINT);
+                    ps.setObject(10, id);
+                    ps.addBatch();
+                }
+                int[] counts = ps.executeBatch();
+                // generated keys are returned for the inserted rows only, in batch order
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] <= 0) continue;
+                        keys.next();
+                        added.add(batch.get(i));
+                        rows.add(keys.getInt(1));
+                    }
+                }
+            }
+            return null;
+        });
+
+        for (int i = 0; i < added.size(); i++) views.put(rows.get(i), added.get(i));
+        return added.size();
+    }
+
+    private List<Loan> query(Connection c, String sql, Binder binder) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            binder.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Loan> result = new ArrayList<>();
+                while (rs.next()) result.add(view(rs));
+                return result;
+            }
+        }
+    }
+
+    /** @return the live view of the current row, creating one from the row if needed */
+    private Loan view(ResultSet rs) throws SQLException {
+        int row = rs.getInt("seq");
+        Loan live = views.get(row);
+        if (live != null) return live;
+
+        UUID id = rs.getObject("id", UUID.class);
+        String userId = rs.getString("user_id");
+        int bookId = rs.getInt("book_id");
+        LocalDate borrow = rs.getObject("borrow_date", LocalDate.class);
+        LocalDate due = rs.getObject("due_date", LocalDate.class);
+        int mediaType = rs.getInt("media_type");
+        Loan loan = rs.wasNull()
+                ? new Loan(id, userId, bookId, borrow, due)
+                : new MediaLoan(id, userId, bookId, borrow, due, MediaType.values()[mediaType]);
+        loan.setReturnedDate(rs.getObject("returned_date", LocalDate.class));
+        loan.setFineApplied(rs.getInt("fine_applied"));
+        loan.setFinePaid(rs.getBoolean("fine_paid"));
+        return views.computeIfAbsent(row, r -> loan);
+    }
+
+    private static void setDate(PreparedStatement ps, int index, LocalDate date) throws SQLException {
+        if (date == null) ps.setNull(index, Types.DATE);
+        else ps.setObject(index, date);
+    }
+
+    private static UUID parseId(String id) {
+        if (id == null) return null;
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException _) {
+            return null;
+        }
+    }
+}
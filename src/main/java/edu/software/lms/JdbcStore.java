@@ -0,0 +1,212 @@
+package edu.software.lms;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.util.Locale;
+
+/**
+ * Database repository mode: book, user and loan repositories stored in an
+ * embedded H2 database, so no database server is needed.
+ *
+ * <p>{@link #open(Path)} opens (or creates) the database file {@code lms}
+ * in a data directory; {@link #open(String, String, String)} accepts any H2
+ * URL, such as {@code jdbc:h2:mem:lms;DB_CLOSE_DELAY=-1}. The schema is
+ * created on first use:</p>
+ * <ul>
+ *     <li>{@code books}, with unique ID and ISBN and indexes on title and
+ *         author, and {@code book_ids}, the ID high-water mark</li>
+ *     <li>{@code users}, with unique ID and username</li>
+ *     <li>{@code loans}, with a unique loan ID and indexes on user ID, book
+ *         ID and due date</li>
+ * </ul>
+ *
+ * <p>Connections come from a {@link JdbcConnectionPool}. Every statement is
+ * prepared with the same SQL text, so H2 finds it in its per-connection
+ * query cache ({@value #QUERY_CACHE_SIZE} entries) instead of parsing and
+ * planning it again. Bulk inserts ({@link BookRepository#addBooks} and
+ * {@link LoanRepository#addLoans}) are sent as one JDBC batch in one
+ * transaction, and overdue loans are selected by the database through the
+ * due date index.</p>
+ *
+ * <p>As in {@link MappedBookRepository}, the repositories hand out
+ * canonical views: while a {@link Book}, {@link User} or {@link Loan}
+ * object from a lookup is reachable, other lookups of the same row return
+ * it, so {@link Book#tryBorrow()} and {@link Loan#markReturned} stay atomic
+ * within the application. Changes to books are written through at once;
+ * users and loans are written by {@code updateUser} and {@code updateLoan}.
+ * Database errors are thrown as {@link UncheckedSQLException}.</p>
+ */
+public final class JdbcStore implements Closeable {
+
+    /** Size of H2's per-connection cache of prepared statements. */
+    static final int QUERY_CACHE_SIZE = 64;
+
+    /** Maximum number of pooled connections. */
+    static final int MAX_CONNECTIONS = 16;
+
+    /** Rows fetched per round trip by streaming queries. */
+    static final int FETCH_SIZE = 1_000;
+
+    private static final String[] SCHEMA = {
+        """
+        CREATE TABLE IF NOT EXISTS books (
+            seq INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+            id INT NOT NULL UNIQUE,
+            name VARCHAR,
+            author VARCHAR,
+            isbn VARCHAR UNIQUE,
+            cd BOOLEAN NOT NULL,
+            borrowed BOOLEAN NOT NULL)""",
+        "CREATE INDEX IF NOT EXISTS books_name ON books (name)",
+        "CREATE INDEX IF NOT EXISTS books_author ON books (author)",
+        "CREATE TABLE IF NOT EXISTS book_ids (next_id INT NOT NULL)",
+        "INSERT INTO book_ids SELECT 1 WHERE NOT EXISTS (SELECT 1 FROM book_ids)",
+        """
+        CREATE TABLE IF NOT EXISTS users (
+            seq INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+            id VARCHAR NOT NULL UNIQUE,
+            username VARCHAR NOT NULL UNIQUE,
+            password VARCHAR,
+            email VARCHAR,
+            admin BOOLEAN NOT NULL,
+            fine_balance INT NOT NULL)""",
+        """
+        CREATE TABLE IF NOT EXISTS loans (
+            seq INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+            id UUID NOT NULL UNIQUE,
+            user_id VARCHAR,
+            book_id INT NOT NULL,
+            borrow_date DATE NOT NULL,
+            due_date DATE NOT NULL,
+            returned_date DATE,
+            fine_applied INT NOT NULL,
+            fine_paid BOOLEAN NOT NULL,
+            media_type TINYINT)""",
+        "CREATE INDEX IF NOT EXISTS loans_user ON loans (user_id)",
+        "CREATE INDEX IF NOT EXISTS loans_book ON loans (book_id)",
+        "CREATE INDEX IF NOT EXISTS loans_due ON loans (due_date)",
+    };
+
+    /** Work done with a pooled connection. */
+    @FunctionalInterface
+    interface SqlWork<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    private final JdbcConnectionPool pool;
+    private final JdbcBookRepository books;
+    private final JdbcUserRepository users;
+    private final JdbcLoanRepository loans;
+
+    private JdbcStore(JdbcConnectionPool pool) {
+        this.pool = pool;
+        this.books = new JdbcBookRepository(this);
+        this.users = new JdbcUserRepository(this);
+        this.loans = new JdbcLoanRepository(this);
+    }
+
+    /**
+     * Opens the database in a data directory, creating it if needed.
+     *
+     * @param directory directory holding the database files
+     * @return the store
+     * @throws UncheckedSQLException if the database cannot be opened
+     */
+    public static JdbcStore open(Path directory) {
+        return open("jdbc:h2:file:" + directory.toAbsolutePath().resolve("lms"), "sa", "");
+    }
+
+    /**
+     * Opens an H2 database by URL, creating the schema if needed.
+     *
+     * @param url      H2 JDBC URL
+     * @param user     database user
+     * @param password database password
+     * @return the store
+     * @throws UncheckedSQLException if the database cannot be opened
+     */
+    public static JdbcStore open(String url, String user, String password) {
+        if (!url.toUpperCase(Locale.ROOT).contains("QUERY_CACHE_SIZE")) url += ";QUERY_CACHE_SIZE=" + QUERY_CACHE_SIZE;
+        JdbcConnectionPool pool = JdbcConnectionPool.create(url, user, password);
+        pool.setMaxConnections(MAX_CONNECTIONS);
+        JdbcStore store = new JdbcStore(pool);
+        try {
+            store.inTransaction(c -> {
+                try (Statement s = c.createStatement()) {
+                    for (String ddl : SCHEMA) s.execute(ddl);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            pool.dispose();
+            throw e;
+        }
+        return store;
+    }
+
+    /** @return database-backed book repository */
+    public BookRepository getBookRepository() { return books; }
+
+    /** @return database-backed user repository */
+    public UserRepository getUserRepository() { return users; }
+
+    /** @return database-backed loan repository */
+    public LoanRepository getLoanRepository() { return loans; }
+
+    /** Closes all pooled connections. */
+    @Override
+    public void close() {
+        pool.dispose();
+    }
+
+    /**
+     * Runs work on a pooled connection in auto-commit mode.
+     *
+     * @throws UncheckedSQLException if the work fails with an SQL error
+     */
+    <T> T withConnection(SqlWork<T> work) {
+        try (Connection c = pool.getConnection()) {
+            return work.run(c);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException("Database operation failed", e);
+        }
+    }
+
+    /**
+     * Runs work on a pooled connection in one transaction, which is rolled
+     * back if the work throws.
+     *
+     * @throws UncheckedSQLException if the work fails with an SQL error
+     */
+    <T> T inTransaction(SqlWork<T> work) {
+        return withConnection(c -> {
+            c.setAutoCommit(false);
+            try {
+                T result = work.run(c);
+                c.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        });
+    }
+
+    /** @return whether the error, or one chained to it, is a unique constraint violation */
+    static boolean isConstraintViolation(SQLException e) {
+        for (SQLException x = e; x != null; x = x.getNextException()) {
+            for (Throwable t = x; t != null; t = t.getCause()) {
+                if (t instanceof SQLIntegrityConstraintViolationException) return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,149 @@
+package edu.software.lms;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * {@link UserRepository} stored in the {@code users} table of a
+ * {@link JdbcStore}.
+ *
+ * <p>Lookups return canonical views keyed by row. A user's active loan IDs
+ * are not stored with the user; like {@link PersistentStore}, they are
+ * derived from the unreturned loans when the view is created. Fine balance
+ * and profile changes are stored by {@link #updateUser(User)}.</p>
+ */
+class JdbcUserRepository implements UserRepository {
+
+    private static final String COLUMNS =
+            "SELECT seq, id, username, password, email, admin, fine_balance FROM users";
+    private static final String BY_ID = COLUMNS + " WHERE id = ?";
+    private static final String BY_USERNAME = COLUMNS + " WHERE username = ?";
+    private static final String INSERT = """
+            INSERT INTO users (id, username, password, email, admin, fine_balance)
+            SELECT ?, ?, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM users WHERE id = ? OR username = ?)""";
+    private static final String UPDATE =
+            "UPDATE users SET username = ?, password = ?, email = ?, admin = ?, fine_balance = ? WHERE id = ?";
+    private static final String DELETE = "DELETE FROM users WHERE id = ?";
+    private static final String ACTIVE_LOANS =
+            "SELECT id FROM loans WHERE user_id = ? AND returned_date IS NULL ORDER BY seq";
+
+    private final JdbcStore store;
+    private final ViewCache<User> views = new ViewCache<>();
+
+    JdbcUserRepository(JdbcStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public User getUserById(String id) {
+        if (id == null) return null;
+        return store.withConnection(c -> queryOne(c, BY_ID, id));
+    }
+
+    @Override
+    public User getUserByUsername(String username) {
+        if (username == null) return null;
+        return store.withConnection(c -> queryOne(c, BY_USERNAME, username));
+    }
+
+    /**
+     * Inserts a row for the user, who becomes the view of the row.
+     *
+     * @param user the user to add
+     * @return true if added, false if invalid or the ID or username is taken
+     */
+    @Override
+    public boolean addUser(User user) {
+        if (user == null || user.getUsername() == null || user.getId() == null) return false;
+
+        try {
+            Integer row = store.withConnection(c -> {
+                try (PreparedStatement ps = c.prepareStatement(INSERT, new String[] {"SEQ"})) {
+                    ps.setString(1, user.getId());
+                    ps.setString(2, user.getUsername());
+                    ps.setString(3, user.getPassword());
+                    ps.setString(4, user.getEmail());
+                    ps.setBoolean(5, user.isAdmin());
+                    ps.setInt(6, user.getFineBalance());
+                    ps.setString(7, user.getId());
+                    ps.setString(8, user.getUsername());
+                    if (ps.executeUpdate() == 0) return null;
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        keys.next();
+                        return keys.getInt(1);
+                    }
+                }
+            });
+            if (row == null) return false;
+            views.put(row, user);
+            return true;
+        } catch (UncheckedSQLException e) {
+            // a concurrent insert of the same ID or username won the race
+            if (JdbcStore.isConstraintViolation(e.getCause())) return false;
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean deleteUser(String id) {
+        if (id == null) return false;
+        return store.withConnection(c -> {
+            try (PreparedStatement ps = c.prepareStatement(DELETE)) {
+                ps.setString(1, id);
+                return ps.executeUpdate() > 0;
+            }
+        });
+    }
+
+    /**
+     * Stores the user's username, password, email, admin flag and fine
+     * balance; unknown users are ignored.
+     *
+     * @param user the changed user
+     */
+    @Override
+    public void updateUser(User user) {
+        if (user == null || user.getId() == null) return;
+        store.withConnection(c -> {
+            try (PreparedStatement ps = c.prepareStatement(UPDATE)) {
+                ps.setString(1, user.getUsername());
+                ps.setString(2, user.getPassword());
+                ps.setString(3, user.getEmail());
+                ps.setBoolean(4, user.isAdmin());
+                ps.setInt(5, user.getFineBalance());
+                ps.setString(6, user.getId());
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    private User queryOne(Connection c, String sql, String key) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? view(c, rs) : null;
+            }
+        }
+    }
+
+    /** @return the live view of the current row, creating one from the row if needed */
+    private User view(Connection c, ResultSet rs) throws SQLException {
+        int row = rs.getInt("seq");
+        User live = views.get(row);
+        if (live != null) return live;
+
+        User user = new User(rs.getString("username"), rs.getString("password"),
+                rs.getString("email"), rs.getBoolean("admin"));
+        user.setId(rs.getString("id"));
+        user.setFineBalance(rs.getInt("fine_balance"));
+        try (PreparedStatement ps = c.prepareStatement(ACTIVE_LOANS)) {
+            ps.setString(1, user.getId());
+            try (ResultSet loans = ps.executeQuery()) {
+                while (loans.next()) user.addLoanId(loans.getObject(1).toString());
+            }
+        }
+        return views.computeIfAbsent(row, r -> user);
+    }
+}
@@ -0,0 +1,387 @@
+package edu.software.lms;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary write-ahead journal with group-commit fsync.
+ *
+ * <p>Each record is framed as {@code [int length][byte op][payload][int crc32]},
+ * where the length covers the op byte and payload and the CRC covers the
+ * same bytes. Replay stops at the first incomplete or corrupt frame, which
+ * is what a crash in the middle of a write leaves behind, and the file is
+ * truncated there.</p>
+ *
+ * <p>Writers call {@link #commit(JournalOp, Supplier)}: the in-memory change
+ * and the encoding of its record run under one short lock, so the journal
+ * order always matches the order the changes were applied. The caller then
+ * waits until its record is on disk. Whichever waiting thread finds no flush
+ * in progress becomes the leader: it takes every record buffered so far,
+ * writes them with one call and issues a single {@code force}. Threads that
+ * committed meanwhile ride along with the next flush, so the number of
+ * fsyncs grows with time spent syncing, not with the number of operations.
+ * {@link #commit(Supplier)} commits the records of a batch operation
+ * together, so they share one flush even when a single thread writes.</p>
+ *
+ * <p>{@link #roll(Path)} switches appends to a new segment file, which lets
+ * {@link PersistentStore} compact the journal behind a snapshot. Snapshots use
+ * the same frame format, written with {@link #frame(JournalOp, byte[])} and
+ * read back with {@link #replay(Path, Handler)}.</p>
+ */
+final class Journal implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(Journal.class.getName());
+
+    /** Frame bytes besides op and payload: length prefix and CRC. */
+    private static final int FRAME_OVERHEAD = Integer.BYTES * 2;
+
+    /** Upper bound for a single record, to reject garbage lengths on replay. */
+    private static final int MAX_RECORD = 1 << 24;
+
+    /**
+     * Receives records during replay.
+     */
+    interface Handler {
+
+        /**
+         * Applies one replayed record.
+         *
+         * @param op      operation of the record
+         * @param payload payload bytes positioned at the start
+         * @throws IOException if the payload cannot be decoded
+         */
+        void apply(JournalOp op, DataInputStream payload) throws IOException;
+    }
+
+    /**
+     * One record of a batch passed to {@link #commit(Supplier)}.
+     *
+     * @param op      operation of the record
+     * @param payload encoded payload
+     */
+    record Entry(JournalOp op, byte[] payload) { }
+
+    /** Current segment; only the flushing leader writes to or replaces it. */
+    private FileChannel channel;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+
+    /** Encoded frames that are not written to the channel yet. */
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedSeq;
+    private long durableSeq;
+    private boolean flushing;
+    private IOException failure;
+    private boolean closed;
+    private long syncCount;
+
+    private Journal(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens (or creates) a journal file, replays every valid record into the
+     * handler, cuts off a torn tail and positions the journal for appending.
+     *
+     * @param file    journal file
+     * @param handler receives every valid record in order
+     * @return the journal, ready for {@link #commit(JournalOp, Supplier)}
+     * @throws IOException if the file cannot be read or a record cannot be applied
+     */
+    static Journal open(Path file, Handler handler) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long validLength = replay(channel, handler);
+            if (validLength < channel.size()) {
+                String msg = "Journal " + file + ": discarding " + (channel.size() - validLength)
+                        + " bytes of incomplete tail";
+                logger.warning(msg);
+                channel.truncate(validLength);
+                channel.force(true);
+            }
+            channel.position(validLength);
+            return new Journal(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Replays a closed journal segment or snapshot without opening it for
+     * writing.
+     *
+     * @param file    file to read
+     * @param handler receives every valid record in order
+     * @return true if the whole file consisted of valid frames
+     * @throws IOException if the file cannot be read or a record cannot be applied
+     */
+    static boolean replay(Path file, Handler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return replay(channel, handler) == channel.size();
+        }
+    }
+
+    /**
+     * Encodes one record as a complete frame.
+     *
+     * @param op      operation of the record
+     * @param payload encoded payload
+     * @return {@code [length][op][payload][crc32]}
+     */
+    static byte[] frame(JournalOp op, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(op.code);
+        crc.update(payload);
+
+        return ByteBuffer.allocate(payload.length + 1 + FRAME_OVERHEAD)
+                .putInt(payload.length + 1)
+                .put(op.code)
+                .put(payload)
+                .putInt((int) crc.getValue())
+                .array();
+    }
+
+    /**
+     * Reads frames from the start of the channel until the end or the first
+     * invalid frame.
+     *
+     * @return length of the valid prefix of the file
+     */
+    private static long replay(FileChannel channel, Handler handler) throws IOException {
+        channel.position(0);
+        InputStream raw = new BufferedInputStream(Channels.newInputStream(channel), 1 << 16);
+        DataInputStream in = new DataInputStream(raw);
+        long valid = 0;
+        CRC32 crc = new CRC32();
+
+        while (true) {
+            int length;
+            byte[] body;
+            int storedCrc;
+            try {
+                length = in.readInt();
+                if (length < 1 || length > MAX_RECORD) break;
+                body = in.readNBytes(length);
+                if (body.length < length) break;
+                storedCrc = in.readInt();
+            } catch (EOFException _) {
+                break;
+            }
+
+            crc.reset();
+            crc.update(body);
+            JournalOp op = JournalOp.fromCode(body[0]);
+            if ((int) crc.getValue() != storedCrc || op == null) break;
+
+            handler.apply(op, new DataInputStream(new ByteArrayInputStream(body, 1, body.length - 1)));
+            valid += length + FRAME_OVERHEAD;
+        }
+        return valid;
+    }
+
+    /**
+     * Applies an in-memory change and makes its record durable.
+     *
+     * <p>{@code mutation} runs under the journal lock; it should apply the
+     * change and return the encoded record, or return {@code null} if the
+     * change was rejected, in which case nothing is written. The call returns
+     * only once the record has been forced to disk.</p>
+     *
+     * @param op       operation being recorded
+     * @param mutation applies the change and encodes it
+     * @return true if a record was written, false if the mutation declined
+     * @throws UncheckedIOException if the journal failed; it then rejects all further writes
+     */
+    boolean commit(JournalOp op, Supplier<byte[]> mutation) {
+        long seq;
+        lock.lock();
+        try {
+            checkWritable();
+            byte[] payload = mutation.get();
+            if (payload == null) return false;
+            pending.writeBytes(frame(op, payload));
+            seq = ++appendedSeq;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(seq);
+        return true;
+    }
+
+    /**
+     * Applies a batch of in-memory changes and makes all of their records
+     * durable together, with at most one flush.
+     *
+     * <p>{@code mutation} runs under the journal lock, like the one of
+     * {@link #commit(JournalOp, Supplier)}; it should apply the changes and
+     * return the records of those it accepted, in order. Nothing is written
+     * if it returns an empty list.</p>
+     *
+     * @param mutation applies the changes and encodes them
+     * @return number of records written
+     * @throws UncheckedIOException if the journal failed; it then rejects all further writes
+     */
+    int commit(Supplier<List<Entry>> mutation) {
+        long seq;
+        int written;
+        lock.lock();
+        try {
+            checkWritable();
+            List<Entry> entries = mutation.get();
+            written = entries.size();
+            if (written == 0) return 0;
+            for (Entry entry : entries) pending.writeBytes(frame(entry.op(), entry.payload()));
+            seq = ++appendedSeq;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(seq);
+        return written;
+    }
+
+    /**
+     * @return number of fsyncs issued so far; lower than the number of
+     *         commits whenever group commit batched writers together
+     */
+    long syncCount() {
+        lock.lock();
+        try {
+            return syncCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes every record committed so far durable in the current segment and
+     * directs all later records to a new, empty segment file.
+     *
+     * <p>Writers are not blocked: records committed while the old segment is
+     * being forced are buffered and go to the new segment.</p>
+     *
+     * @param nextFile new segment file; must not exist yet
+     * @throws IOException if the new file cannot be created or the old segment cannot be forced
+     */
+    void roll(Path nextFile) throws IOException {
+        FileChannel next = FileChannel.open(nextFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        lock.lock();
+        try {
+            checkWritable();
+            while (flushing) flushed.awaitUninterruptibly();
+            flushAsLeader(next);
+            if (failure != null) throw new IOException("Journal write failed", failure);
+        } catch (IOException | RuntimeException e) {
+            if (channel != next) next.close();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the record with the given sequence number is on disk,
+     * flushing as the group leader when no other thread is.
+     */
+    private void awaitDurable(long seq) {
+        lock.lock();
+        try {
+            while (durableSeq < seq) {
+                if (failure != null) throw new UncheckedIOException("Journal write failed", failure);
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                    continue;
+                }
+                flushAsLeader(null);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called with the lock held; releases it while doing I/O. If
+     * {@code rollTo} is given, the current segment is closed after the flush
+     * and replaced by it.
+     */
+    private void flushAsLeader(FileChannel rollTo) {
+        flushing = true;
+        ByteArrayOutputStream batch = pending;
+        pending = new ByteArrayOutputStream();
+        long target = appendedSeq;
+        boolean sync = batch.size() > 0;
+
+        IOException error = null;
+        lock.unlock();
+        try {
+            if (sync) {
+                ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+                while (buffer.hasRemaining()) channel.write(buffer);
+                channel.force(false);
+            }
+            if (rollTo != null) {
+                channel.close();
+                channel = rollTo;
+            }
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            lock.lock();
+        }
+
+        flushing = false;
+        if (error != null) failure = error;
+        else {
+            durableSeq = target;
+            if (sync) syncCount++;
+        }
+        flushed.signalAll();
+    }
+
+    private void checkWritable() {
+        if (closed) throw new IllegalStateException("Journal is closed");
+        if (failure != null) throw new UncheckedIOException("Journal write failed", failure);
+    }
+
+    /**
+     * Flushes records that are still pending and closes the file.
+     *
+     * @throws IOException if closing the channel fails
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            // drain records whose writers are still waiting, then stop
+            while (failure == null && (flushing || durableSeq < appendedSeq)) {
+                if (flushing) flushed.awaitUninterruptibly();
+                else flushAsLeader(null);
+            }
+        } finally {
+            lock.unlock();
+        }
+        channel.close();
+    }
+}
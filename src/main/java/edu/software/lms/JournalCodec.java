@@ -0,0 +1,166 @@
+package edu.software.lms;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+
+/**
+ * Binary encoding of books, users and loans for the {@link Journal}.
+ *
+ * <p>Dates are stored as epoch days and nullable strings carry a presence
+ * flag. Every encoding holds the complete state of the object, so decoding
+ * a record is enough to recreate it.</p>
+ */
+final class JournalCodec {
+
+    private static final byte KIND_BOOK = 0;
+    private static final byte KIND_CD = 1;
+
+    /** Media type marker for a plain {@link Loan}. */
+    private static final byte NO_MEDIA_TYPE = -1;
+
+    /** Epoch-day marker for an unreturned loan. */
+    private static final long NOT_RETURNED = Long.MIN_VALUE;
+
+    private JournalCodec() {}
+
+    /**
+     * Encoder body that may throw, wrapped by {@link #encode(Writer)}.
+     */
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] encode(Writer writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // ------------------- Books -------------------
+
+    static byte[] encodeBook(Book book) {
+        return encode(out -> {
+            out.writeByte(book instanceof CD ? KIND_CD : KIND_BOOK);
+            out.writeInt(book.getId());
+            writeString(out, book.getName());
+            writeString(out, book.getAuthor());
+            writeString(out, book.getIsbn());
+        });
+    }
+
+    static Book decodeBook(DataInput in) throws IOException {
+        byte kind = in.readByte();
+        int id = in.readInt();
+        String name = readString(in);
+        String author = readString(in);
+        String isbn = readString(in);
+        return kind == KIND_CD ? new CD(id, name, author, isbn) : new Book(id, name, author, isbn);
+    }
+
+    static byte[] encodeInt(int value) {
+        return encode(out -> out.writeInt(value));
+    }
+
+    // ------------------- Users -------------------
+
+    static byte[] encodeUser(User user) {
+        return encode(out -> {
+            writeString(out, user.getUsername());
+            writeString(out, user.getPassword());
+            writeString(out, user.getId());
+            writeString(out, user.getEmail());
+            out.writeBoolean(user.isAdmin());
+            out.writeInt(user.getFineBalance());
+        });
+    }
+
+    static User decodeUser(DataInput in) throws IOException {
+        String username = readString(in);
+        String password = readString(in);
+        String id = readString(in);
+        String email = readString(in);
+        boolean admin = in.readBoolean();
+        int fine = in.readInt();
+
+        User user = new User(username, password, email, admin);
+        user.setId(id);
+        user.setFineBalance(fine);
+        return user;
+    }
+
+    static byte[] encodeString(String value) {
+        return encode(out -> writeString(out, value));
+    }
+
+    static String decodeString(DataInput in) throws IOException {
+        return readString(in);
+    }
+
+    // ------------------- Loans -------------------
+
+    static byte[] encodeLoan(Loan loan) {
+        return encode(out -> {
+            writeString(out, loan.getId());
+            writeString(out, loan.getUserId());
+            out.writeInt(loan.getBookId());
+            out.writeLong(loan.getBorrowDate().toEpochDay());
+            out.writeLong(loan.getDueDate().toEpochDay());
+            LocalDate returned = loan.getReturnedDate();
+            out.writeLong(returned == null ? NOT_RETURNED : returned.toEpochDay());
+            out.writeInt(loan.getFineApplied());
+            out.writeBoolean(loan.isFinePaid());
+            out.writeByte(loan instanceof MediaLoan ml ? ml.getMediaType().ordinal() : NO_MEDIA_TYPE);
+        });
+    }
+
+    static Loan decodeLoan(DataInput in) throws IOException {
+        String id = readString(in);
+        String userId = readString(in);
+        int bookId = in.readInt();
+        LocalDate borrow = LocalDate.ofEpochDay(in.readLong());
+        LocalDate due = LocalDate.ofEpochDay(in.readLong());
+        long returned = in.readLong();
+        int fine = in.readInt();
+        boolean finePaid = in.readBoolean();
+        byte mediaType = in.readByte();
+
+        Loan loan = mediaType == NO_MEDIA_TYPE
+                ? new Loan(id, userId, bookId, borrow, due)
+                : new MediaLoan(id, userId, bookId, borrow, due, MediaType.values()[mediaType]);
+        if (returned != NOT_RETURNED) loan.setReturnedDate(LocalDate.ofEpochDay(returned));
+        loan.setFineApplied(fine);
+        loan.setFinePaid(finePaid);
+        return loan;
+    }
+
+    /**
+     * Copies the mutable state of a decoded loan onto the stored instance.
+     *
+     * @param target stored loan
+     * @param source decoded loan with the same ID
+     */
+    static void copyLoanState(Loan target, Loan source) {
+        target.setReturnedDate(source.getReturnedDate());
+        target.setFineApplied(source.getFineApplied());
+        target.setFinePaid(source.isFinePaid());
+    }
+
+    // ------------------- Strings -------------------
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
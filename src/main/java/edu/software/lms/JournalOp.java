@@ -0,0 +1,49 @@
+package edu.software.lms;
+
+/**
+ * Kinds of records written to the persistent {@link Journal}.
+ *
+ * <p>Every record carries the full state of the affected object, so
+ * replaying a record twice leaves the repositories in the same state.</p>
+ */
+enum JournalOp {
+
+    /** A book or CD was added; payload is the encoded item. */
+    ADD_BOOK(1),
+
+    /** The book ID allocator was advanced; payload is the new high-water mark. */
+    BOOK_ID_HIGH_WATER(2),
+
+    /** A user was added; payload is the encoded user. */
+    ADD_USER(3),
+
+    /** A stored user's mutable state changed; payload is the encoded user. */
+    UPDATE_USER(4),
+
+    /** A user was deleted; payload is the user ID. */
+    DELETE_USER(5),
+
+    /** A loan was recorded; payload is the encoded loan. */
+    ADD_LOAN(6),
+
+    /** A stored loan changed; payload is the encoded loan. */
+    UPDATE_LOAN(7);
+
+    /** Stable on-disk code of this operation. */
+    final byte code;
+
+    JournalOp(int code) {
+        this.code = (byte) code;
+    }
+
+    /**
+     * @param code on-disk code
+     * @return matching operation, or {@code null} for an unknown code
+     */
+    static JournalOp fromCode(byte code) {
+        for (JournalOp op : values()) {
+            if (op.code == code) return op;
+        }
+        return null;
+    }
+}
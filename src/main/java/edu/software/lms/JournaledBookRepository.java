@@ -0,0 +1,100 @@
+package edu.software.lms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * {@link BookRepository} that journals every change to an {@link InMemoryBooks}
+ * delegate before acknowledging it.
+ *
+ * <p>Additions and ID reservations are written to the {@link Journal}, a
+ * batch of additions as one group; the ID high-water mark is journaled too,
+ * so reserved IDs are never handed out again after a restart. Changes made
+ * through {@link Book}'s setters and the borrowed flag are not journaled:
+ * the flag is rebuilt from active loans when the store is opened.</p>
+ */
+final class JournaledBookRepository implements BookRepository {
+
+    private final InMemoryBooks delegate;
+    private final Journal journal;
+
+    /**
+     * @param delegate in-memory state, already rebuilt from the journal
+     * @param journal  journal to append changes to
+     */
+    JournaledBookRepository(InMemoryBooks delegate, Journal journal) {
+        this.delegate = delegate;
+        this.journal = journal;
+    }
+
+    @Override
+    public Book getBookById(int id) { return delegate.getBookById(id); }
+
+    @Override
+    public Book getBookByName(String name) { return delegate.getBookByName(name); }
+
+    @Override
+    public Book getBookByAuthor(String author) { return delegate.getBookByAuthor(author); }
+
+    @Override
+    public Book getBookByISBN(String isbn) { return delegate.getBookByISBN(isbn); }
+
+    @Override
+    public List<Book> getAllBooks() { return delegate.getAllBooks(); }
+
+    @Override
+    public void forEachBook(Consumer<? super Book> action) { delegate.forEachBook(action); }
+
+    @Override
+    public int getNextId() { return delegate.getNextId(); }
+
+    /**
+     * Adds the book in memory and journals it.
+     *
+     * @param book the book to add
+     * @return true if added, false if duplicate or invalid
+     */
+    @Override
+    public boolean addBook(Book book) {
+        if (book == null) return false;
+
+        return journal.commit(JournalOp.ADD_BOOK,
+                () -> delegate.addBook(book) ? JournalCodec.encodeBook(book) : null);
+    }
+
+    /**
+     * Adds the books in memory under one lock and journals them as one
+     * group, so a whole import chunk waits for a single fsync.
+     *
+     * @param books the books to add
+     * @return number of books added; duplicates and {@code null}s are skipped
+     */
+    @Override
+    public int addBooks(List<? extends Book> books) {
+        return journal.commit(() -> {
+            List<Book> added = delegate.addAll(books);
+            List<Journal.Entry> entries = new ArrayList<>(added.size());
+            for (Book book : added) entries.add(new Journal.Entry(JournalOp.ADD_BOOK, JournalCodec.encodeBook(book)));
+            return entries;
+        });
+    }
+
+    /**
+     * Reserves IDs and journals the new high-water mark before returning.
+     *
+     * @param count number of IDs to reserve
+     * @return first ID of the reserved block
+     */
+    @Override
+    public int reserveIds(int count) {
+        if (count <= 0) throw new IllegalArgumentException("count must be positive: " + count);
+
+        int[] first = new int[1];
+        journal.commit(JournalOp.BOOK_ID_HIGH_WATER, () -> {
+            first[0] = delegate.reserveIds(count);
+            return JournalCodec.encodeInt(first[0] + count);
+        });
+        return first[0];
+    }
+}
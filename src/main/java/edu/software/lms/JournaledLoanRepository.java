@@ -0,0 +1,102 @@
+package edu.software.lms;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * {@link LoanRepository} that journals every change to an
+ * {@link InMemoryLoanRepository} delegate before acknowledging it. The
+ * changes of a batch call are journaled as one group.
+ */
+final class JournaledLoanRepository implements LoanRepository {
+
+    private final InMemoryLoanRepository delegate;
+    private final Journal journal;
+
+    /**
+     * @param delegate in-memory state, already rebuilt from the journal
+     * @param journal  journal to append changes to
+     */
+    JournaledLoanRepository(InMemoryLoanRepository delegate, Journal journal) {
+        this.delegate = delegate;
+        this.journal = journal;
+    }
+
+    @Override
+    public Loan getLoanById(String id) { return delegate.getLoanById(id); }
+
+    @Override
+    public List<Loan> getLoansByUserId(String userId) { return delegate.getLoansByUserId(userId); }
+
+    @Override
+    public List<Loan> getLoansByBookId(int bookId) { return delegate.getLoansByBookId(bookId); }
+
+    @Override
+    public List<Loan> getOverdueLoans(LocalDate today) { return delegate.getOverdueLoans(today); }
+
+    @Override
+    public List<Loan> getAllLoans() { return delegate.getAllLoans(); }
+
+    @Override
+    public void forEachLoan(Consumer<? super Loan> action) { delegate.forEachLoan(action); }
+
+    @Override
+    public boolean addLoan(Loan loan) {
+        if (loan == null) return false;
+
+        return journal.commit(JournalOp.ADD_LOAN,
+                () -> delegate.addLoan(loan) ? JournalCodec.encodeLoan(loan) : null);
+    }
+
+    /**
+     * Adds the loans in memory and journals the added ones as one group, so
+     * a batch borrow waits for a single fsync.
+     *
+     * @param loans the loans to add
+     * @return number of loans added; duplicates and {@code null}s are skipped
+     */
+    @Override
+    public int addLoans(List<? extends Loan> loans) {
+        return journal.commit(() -> {
+            List<Journal.Entry> entries = new ArrayList<>(loans.size());
+            for (Loan loan : loans) {
+                if (loan != null && delegate.addLoan(loan)) {
+                    entries.add(new Journal.Entry(JournalOp.ADD_LOAN, JournalCodec.encodeLoan(loan)));
+                }
+            }
+            return entries;
+        });
+    }
+
+    @Override
+    public void updateLoan(Loan loan) {
+        if (loan == null) return;
+
+        journal.commit(JournalOp.UPDATE_LOAN, () -> {
+            if (delegate.getLoanById(loan.getId()) == null) return null;
+            delegate.updateLoan(loan);
+            return JournalCodec.encodeLoan(loan);
+        });
+    }
+
+    /**
+     * Updates the known loans in memory and journals them as one group, so
+     * a batch return waits for a single fsync.
+     *
+     * @param loans loan objects with updated state; {@code null}s and unknown loans are skipped
+     */
+    @Override
+    public void updateLoans(List<? extends Loan> loans) {
+        journal.commit(() -> {
+            List<Journal.Entry> entries = new ArrayList<>(loans.size());
+            for (Loan loan : loans) {
+                if (loan == null || delegate.getLoanById(loan.getId()) == null) continue;
+                delegate.updateLoan(loan);
+                entries.add(new Journal.Entry(JournalOp.UPDATE_LOAN, JournalCodec.encodeLoan(loan)));
+            }
+            return entries;
+        });
+    }
+}
@@ -0,0 +1,55 @@
+package edu.software.lms;
+
+/**
+ * {@link UserRepository} that journals every change to an
+ * {@link InMemoryUserRepository} delegate before acknowledging it.
+ */
+final class JournaledUserRepository implements UserRepository {
+
+    private final InMemoryUserRepository delegate;
+    private final Journal journal;
+
+    /**
+     * @param delegate in-memory state, already rebuilt from the journal
+     * @param journal  journal to append changes to
+     */
+    JournaledUserRepository(InMemoryUserRepository delegate, Journal journal) {
+        this.delegate = delegate;
+        this.journal = journal;
+    }
+
+    @Override
+    public User getUserById(String id) { return delegate.getUserById(id); }
+
+    @Override
+    public User getUserByUsername(String username) { return delegate.getUserByUsername(username); }
+
+    @Override
+    public boolean addUser(User user) {
+        if (user == null) return false;
+
+        return journal.commit(JournalOp.ADD_USER,
+                () -> delegate.addUser(user) ? JournalCodec.encodeUser(user) : null);
+    }
+
+    @Override
+    public boolean deleteUser(String id) {
+        if (id == null) return false;
+
+        return journal.commit(JournalOp.DELETE_USER,
+                () -> delegate.deleteUser(id) ? JournalCodec.encodeString(id) : null);
+    }
+
+    /**
+     * Journals the current state (e.g. fine balance) of a stored user.
+     *
+     * @param user the stored user whose state changed
+     */
+    @Override
+    public void updateUser(User user) {
+        if (user == null) return;
+
+        journal.commit(JournalOp.UPDATE_USER,
+                () -> delegate.getUserById(user.getId()) != null ? JournalCodec.encodeUser(user) : null);
+    }
+}
@@ -8,21 +8,41 @@ import java.util.UUID;
  *
  * <p>Includes borrow date, due date, return date, fine information,
  * and the IDs of both the user and item.</p>
+ *
+ * <p>The record is stored compactly, since the loan history grows without
+ * bound: the UUID is kept as two {@code long}s and the dates as {@code int}
+ * epoch days, so a loan needs one small object instead of an ID string and
+ * three {@link LocalDate}s. The {@code String} and {@code LocalDate} getters
+ * create those values on demand; overdue checks work on the epoch days
+ * directly.</p>
+ *
+ * <p>The user ID is canonicalized through {@link StringPool}, since all of
+ * a user's loans repeat it.</p>
+ *
+ * <p>New loans get their ID from a pluggable {@link LoanIdGenerator}; by
+ * default a {@link TimeOrderedLoanIdGenerator}, so IDs increase over time.</p>
  */
 public class Loan {
 
-    private final String id;
+    /** Epoch-day marker for a loan that is not returned. */
+    static final int NOT_RETURNED = Integer.MIN_VALUE;
+
+    /** Generator used for the IDs of new loans. */
+    private static volatile LoanIdGenerator idGenerator = new TimeOrderedLoanIdGenerator();
+
+    private final long idMostSigBits;
+    private final long idLeastSigBits;
     private final String userId;
     private final int bookId;
-    private final LocalDate borrowDate;
-    private final LocalDate dueDate;
+    private final int borrowDay;
+    private final int dueDay;
 
-    private LocalDate returnedDate;
+    private volatile int returnedDay = NOT_RETURNED;
     private int fineApplied;
     private boolean finePaid;
 
     /**
-     * Creates a new loan record with generated UUID.
+     * Creates a new loan record with an ID from the current {@link LoanIdGenerator}.
      *
      * @param userId      ID of borrowing user
      * @param bookId      ID of borrowed book or media
@@ -30,18 +50,59 @@ public class Loan {
      * @param dueDate     date the item is due for return
      */
     public Loan(String userId, int bookId, LocalDate borrowDate, LocalDate dueDate) {
-        this.id = UUID.randomUUID().toString();
-        this.userId = userId;
+        this(idGenerator.nextId(), userId, bookId, borrowDate, dueDate);
+    }
+
+    /**
+     * Recreates a loan record with a known ID, e.g. when loading it from storage.
+     *
+     * @param id          existing loan ID in UUID form
+     * @param userId      ID of borrowing user
+     * @param bookId      ID of borrowed book or media
+     * @param borrowDate  date loan was initiated
+     * @param dueDate     date the item is due for return
+     * @throws IllegalArgumentException if the ID is not a UUID
+     */
+    Loan(String id, String userId, int bookId, LocalDate borrowDate, LocalDate dueDate) {
+        this(UUID.fromString(id), userId, bookId, borrowDate, dueDate);
+    }
+
+    /**
+     * Creates a loan record with the given ID.
+     *
+     * @param id          loan ID
+     * @param userId      ID of borrowing user
+     * @param bookId      ID of borrowed book or media
+     * @param borrowDate  date loan was initiated
+     * @param dueDate     date the item is due for return
+     */
+    Loan(UUID id, String userId, int bookId, LocalDate borrowDate, LocalDate dueDate) {
+        this.idMostSigBits = id.getMostSignificantBits();
+        this.idLeastSigBits = id.getLeastSignificantBits();
+        this.userId = StringPool.canonical(userId);
         this.bookId = bookId;
-        this.borrowDate = borrowDate;
-        this.dueDate = dueDate;
-        this.returnedDate = null;
-        this.fineApplied = 0;
-        this.finePaid = false;
+        this.borrowDay = toDay(borrowDate);
+        this.dueDay = toDay(dueDate);
     }
 
+    /**
+     * Replaces the generator used for the IDs of new loans.
+     *
+     * @param generator the new generator
+     */
+    public static void setIdGenerator(LoanIdGenerator generator) {
+        if (generator == null) throw new IllegalArgumentException("generator must not be null");
+        idGenerator = generator;
+    }
+
+    /** @return the generator used for the IDs of new loans */
+    public static LoanIdGenerator getIdGenerator() { return idGenerator; }
+
     /** @return unique loan ID */
-    public String getId() { return id; }
+    public String getId() { return uuid().toString(); }
+
+    /** @return the loan ID as a UUID, e.g. for use as a compact map key */
+    UUID uuid() { return new UUID(idMostSigBits, idLeastSigBits); }
 
     /** @return ID of the user who borrowed the item */
     public String getUserId() { return userId; }
@@ -50,16 +111,42 @@ public class Loan {
     public int getBookId() { return bookId; }
 
     /** @return date the loan started */
-    public LocalDate getBorrowDate() { return borrowDate; }
+    public LocalDate getBorrowDate() { return LocalDate.ofEpochDay(borrowDay); }
 
     /** @return due date for return */
-    public LocalDate getDueDate() { return dueDate; }
+    public LocalDate getDueDate() { return LocalDate.ofEpochDay(dueDay); }
+
+    /** @return borrow date as an epoch day */
+    int getBorrowEpochDay() { return borrowDay; }
+
+    /** @return due date as an epoch day */
+    int getDueEpochDay() { return dueDay; }
+
+    /** @return return date as an epoch day, or {@link #NOT_RETURNED} */
+    int getReturnedEpochDay() { return returnedDay; }
 
     /** @return return date or null if item not yet returned */
-    public LocalDate getReturnedDate() { return returnedDate; }
+    public LocalDate getReturnedDate() {
+        int returned = returnedDay;
+        return returned == NOT_RETURNED ? null : LocalDate.ofEpochDay(returned);
+    }
 
     /** Sets the return date. */
-    public void setReturnedDate(LocalDate returnedDate) { this.returnedDate = returnedDate; }
+    public synchronized void setReturnedDate(LocalDate returnedDate) {
+        this.returnedDay = returnedDate == null ? NOT_RETURNED : toDay(returnedDate);
+    }
+
+    /**
+     * Atomically marks the loan as returned unless it already is.
+     *
+     * @param date the return date
+     * @return true if this call returned the loan, false if it was already returned
+     */
+    public synchronized boolean markReturned(LocalDate date) {
+        if (returnedDay != NOT_RETURNED) return false;
+        returnedDay = toDay(date);
+        return true;
+    }
 
     /** @return fine applied to this loan */
     public int getFineApplied() { return fineApplied; }
@@ -77,7 +164,7 @@ public class Loan {
      * @return true if the loan has been returned
      */
     public boolean isReturned() {
-        return returnedDate != null;
+        return returnedDay != NOT_RETURNED;
     }
 
     /**
@@ -87,10 +174,11 @@ public class Loan {
      * @return true if overdue, false otherwise
      */
     public boolean isOverdue(LocalDate currentDate) {
-        if (isReturned()) {
-            return returnedDate.isAfter(dueDate);
+        int returned = returnedDay;
+        if (returned != NOT_RETURNED) {
+            return returned > dueDay;
         }
-        return currentDate.isAfter(dueDate);
+        return currentDate.toEpochDay() > dueDay;
     }
 
     /**
@@ -100,9 +188,14 @@ public class Loan {
      * @return number of days overdue, or 0 if not overdue
      */
     public int overdueDays(LocalDate currentDate) {
-        LocalDate checkDate = isReturned() ? returnedDate : currentDate;
-        if (!checkDate.isAfter(dueDate)) return 0;
+        int returned = returnedDay;
+        long checkDay = returned != NOT_RETURNED ? returned : currentDate.toEpochDay();
+        if (checkDay <= dueDay) return 0;
+
+        return (int) (checkDay - dueDay);
+    }
 
-        return (int) (checkDate.toEpochDay() - dueDate.toEpochDay());
+    private static int toDay(LocalDate date) {
+        return Math.toIntExact(date.toEpochDay());
     }
 }
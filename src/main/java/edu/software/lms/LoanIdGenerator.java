@@ -0,0 +1,22 @@
+package edu.software.lms;
+
+import java.util.UUID;
+
+/**
+ * Source of IDs for new {@link Loan}s.
+ *
+ * <p>The generator used by {@link Loan} and {@link MediaLoan} can be replaced
+ * with {@link Loan#setIdGenerator(LoanIdGenerator)}, e.g. by tests that need
+ * predictable IDs. IDs are UUIDs, so their string form is what
+ * {@link LoanRepository#getLoanById(String)} expects.</p>
+ */
+@FunctionalInterface
+public interface LoanIdGenerator {
+
+    /**
+     * Returns a new, unique loan ID.
+     *
+     * @return the ID
+     */
+    UUID nextId();
+}
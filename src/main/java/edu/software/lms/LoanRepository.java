@@ -1,6 +1,9 @@
 package edu.software.lms;
 
+import java.time.LocalDate;
+import java.util.Comparator;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Repository interface for managing {@link Loan} data storage.
@@ -26,11 +29,60 @@ public interface LoanRepository {
      */
     List<Loan> getLoansByUserId(String userId);
 
+    /**
+     * Retrieves all loans, past and present, of a specific book or media item.
+     *
+     * <p>The default implementation filters {@link #getAllLoans()}; indexed
+     * implementations should override it.</p>
+     *
+     * @param bookId book or media ID
+     * @return list of loans; empty list if none exist
+     */
+    default List<Loan> getLoansByBookId(int bookId) {
+        return getAllLoans().stream()
+                .filter(l -> l.getBookId() == bookId)
+                .toList();
+    }
+
+    /**
+     * Retrieves all loans that are still out and whose due date has passed,
+     * i.e. unreturned loans with {@code dueDate < today}, ordered by due date.
+     *
+     * <p>The default implementation filters {@link #getAllLoans()}; indexed
+     * implementations should only visit loans that are actually overdue.</p>
+     *
+     * @param today the date to evaluate against
+     * @return list of overdue, unreturned loans; empty list if none exist
+     */
+    default List<Loan> getOverdueLoans(LocalDate today) {
+        return getAllLoans().stream()
+                .filter(l -> !l.isReturned() && l.isOverdue(today))
+                .sorted(Comparator.comparing(Loan::getDueDate))
+                .toList();
+    }
+
     /**
      * @return all loans in the system
      */
     List<Loan> getAllLoans();
 
+    /**
+     * Passes every stored loan to {@code action}, in insertion order,
+     * without building a list of all of them. Used to export long histories.
+     *
+     * <p>The action may change the loans it is given and pass them to
+     * {@link #updateLoan(Loan)}: implementations do not hold a lock while it
+     * runs. The default implementation iterates {@link #getAllLoans()}. The
+     * columnar and off-heap repositories copy a chunk of loans at a time
+     * under their read lock and run the action on it after releasing the
+     * lock, so loans added meanwhile are visited too.</p>
+     *
+     * @param action called once per loan
+     */
+    default void forEachLoan(Consumer<? super Loan> action) {
+        getAllLoans().forEach(action);
+    }
+
     /**
      * Adds a loan to the repository.
      *
@@ -39,10 +91,40 @@ public interface LoanRepository {
      */
     boolean addLoan(Loan loan);
 
+    /**
+     * Adds several loans at once, for example when importing a history.
+     *
+     * <p>The default implementation calls {@link #addLoan(Loan)} for each
+     * loan; database-backed implementations send them in one batch.</p>
+     *
+     * @param loans the loans to add
+     * @return number of loans added; duplicates and {@code null}s are skipped
+     */
+    default int addLoans(List<? extends Loan> loans) {
+        int added = 0;
+        for (Loan loan : loans) {
+            if (addLoan(loan)) added++;
+        }
+        return added;
+    }
+
     /**
      * Updates the state of an existing loan.
      *
      * @param loan updated loan object
      */
     void updateLoan(Loan loan);
+
+    /**
+     * Updates the state of several existing loans at once, for example after
+     * a batch return.
+     *
+     * <p>The default implementation calls {@link #updateLoan(Loan)} for each
+     * loan; database-backed implementations send them in one batch.</p>
+     *
+     * @param loans loan objects with updated state; {@code null}s are skipped
+     */
+    default void updateLoans(List<? extends Loan> loans) {
+        for (Loan loan : loans) updateLoan(loan);
+    }
 }
@@ -1,5 +1,11 @@
 package edu.software.lms;
 
+import io.github.cdimascio.dotenv.Dotenv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -7,6 +13,13 @@ import java.util.logging.Logger;
  *
  * <p>Initializes the first window and executes the window navigation loop
  * until the user selects the exit option.</p>
+ *
+ * <p>If {@code LMS_DATA_DIR} is set (in the environment or {@code .env}),
+ * books, users and loans are kept in a {@link PersistentStore} in that
+ * directory. If {@code LMS_DB_URL} is set instead, they are kept in the
+ * embedded H2 database at that JDBC URL through a {@link JdbcStore}
+ * ({@code LMS_DB_USER} and {@code LMS_DB_PASSWORD} default to {@code sa}
+ * and an empty password). Otherwise they live in memory only.</p>
  */
 public class Main {
 
@@ -17,14 +30,47 @@ public class Main {
      * Starts the program and runs the window navigation loop.
      *
      * @param args command-line arguments (ignored)
+     * @throws IOException if the persistent store cannot be opened or closed
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+
+        Dotenv dotenv = Dotenv.configure()
+                .ignoreIfMissing()
+                .load();
+        String dataDir = dotenv.get("LMS_DATA_DIR");
+        String dbUrl = dotenv.get("LMS_DB_URL");
+
+        Closeable store = null;
+        UserService userService;
+        if (dataDir != null && !dataDir.isBlank()) {
+            PersistentStore persistent = PersistentStore.open(Path.of(dataDir));
+            store = persistent;
+            userService = new UserService(persistent.getUserRepository(), persistent.getBookRepository(),
+                    persistent.getLoanRepository());
+            logger.log(Level.INFO, "Using data directory {0}", dataDir);
+        } else if (dbUrl != null && !dbUrl.isBlank()) {
+            JdbcStore database = JdbcStore.open(dbUrl, dotenv.get("LMS_DB_USER", "sa"),
+                    dotenv.get("LMS_DB_PASSWORD", ""));
+            store = database;
+            userService = new UserService(database.getUserRepository(), database.getBookRepository(),
+                    database.getLoanRepository());
+            logger.log(Level.INFO, "Using database {0}", dbUrl);
+        } else {
+            userService = new UserService();
+        }
 
-        Window window = WindowFactory.create(NextWindow.LOGIN_AND_SIGNUP, new UserService());
+        userService.startDayRollover();
+        try {
+            Window window = WindowFactory.create(NextWindow.LOGIN_AND_SIGNUP, userService);
 
-        // Application flow loop
-        while (window != null) {
-            window = window.buildNextWindow();   // transitions to next window based on user input, using factory pattern
+            // Application flow loop
+            while (window != null) {
+                window = window.buildNextWindow();   // transitions to next window based on user input, using factory pattern
+            }
+        } finally {
+            userService.stopDayRollover();
+            userService.closeNotifier();
+            if (store != null) store.close();
         }
 
         logger.info("Thank you for using Our Library System!");
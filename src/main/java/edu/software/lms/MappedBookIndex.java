@@ -0,0 +1,196 @@
+package edu.software.lms;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.file.Path;
+import java.util.function.IntPredicate;
+
+/**
+ * Off-heap hash index from an {@code int} key to a record number, stored in a
+ * memory-mapped file so it survives restarts without being rebuilt.
+ *
+ * <p>The table uses open addressing with linear probing and backward-shift
+ * deletion, like {@link IntBookMap}, but its slots live in the mapped file:
+ * {@code [int key][int record + 1]}, where 0 marks an empty slot. Keys may be
+ * hashes (e.g. of an ISBN); callers then pass a predicate that checks whether
+ * a candidate record really holds the searched key.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+final class MappedBookIndex implements Closeable {
+
+    private static final int MAGIC = 0x4C4D5349; // "LMSI"
+    private static final long HEADER = 16;
+    private static final long SLOT = 8;
+    private static final int MIN_CAPACITY = 1024;
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED;
+
+    private final MappedFile file;
+    private int capacity;
+    private int size;
+
+    private MappedBookIndex(MappedFile file) {
+        this.file = file;
+        MemorySegment s = file.segment();
+        if (s.get(INT, 0) != MAGIC) {
+            capacity = MIN_CAPACITY;
+            file.segment().asSlice(HEADER, capacity * SLOT).fill((byte) 0);
+            s.set(INT, 0, MAGIC);
+            writeHeader();
+        } else {
+            capacity = s.get(INT, 4);
+            size = s.get(INT, 8);
+        }
+    }
+
+    /**
+     * Opens an existing index file or creates an empty one.
+     *
+     * @param path index file
+     * @return the index
+     * @throws IOException if the file cannot be mapped
+     */
+    static MappedBookIndex open(Path path) throws IOException {
+        MappedFile file = MappedFile.open(path, HEADER + MIN_CAPACITY * SLOT);
+        try {
+            return new MappedBookIndex(file);
+        } catch (RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param key     key to look up
+     * @param matches confirms that a candidate record holds the key
+     * @return the record number, or -1 if no record matches
+     */
+    int get(int key, IntPredicate matches) {
+        MemorySegment s = file.segment();
+        int mask = capacity - 1;
+        for (int i = IntBookMap.mix(key) & mask; ; i = (i + 1) & mask) {
+            int value = s.get(INT, slot(i) + 4);
+            if (value == 0) return -1;
+            if (s.get(INT, slot(i)) == key && matches.test(value - 1)) return value - 1;
+        }
+    }
+
+    /**
+     * Adds an entry unless a matching one exists.
+     *
+     * @param key     key of the record
+     * @param record  record number
+     * @param matches confirms that a candidate record holds the same key
+     * @return true if added, false if the key is already indexed
+     * @throws IOException if the index has to grow and cannot be remapped
+     */
+    boolean putIfAbsent(int key, int record, IntPredicate matches) throws IOException {
+        if (get(key, matches) >= 0) return false;
+        if (size + 1 > capacity / 2) rehash(capacity * 2);
+        insert(key, record);
+        size++;
+        writeHeader();
+        return true;
+    }
+
+    /**
+     * Removes the entry for exactly this key and record.
+     *
+     * @param key    key of the record
+     * @param record record number
+     * @return true if an entry was removed
+     */
+    boolean remove(int key, int record) {
+        MemorySegment s = file.segment();
+        int mask = capacity - 1;
+        for (int i = IntBookMap.mix(key) & mask; ; i = (i + 1) & mask) {
+            int value = s.get(INT, slot(i) + 4);
+            if (value == 0) return false;
+            if (s.get(INT, slot(i)) == key && value - 1 == record) {
+                shiftBack(i);
+                size--;
+                writeHeader();
+                return true;
+            }
+        }
+    }
+
+    /** Removes all entries, keeping the current capacity. */
+    void clear() {
+        file.segment().asSlice(HEADER, capacity * SLOT).fill((byte) 0);
+        size = 0;
+        writeHeader();
+    }
+
+    /** @return number of indexed entries */
+    int size() {
+        return size;
+    }
+
+    /** Writes changes back to the storage device. */
+    void force() {
+        file.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private void insert(int key, int record) {
+        MemorySegment s = file.segment();
+        int mask = capacity - 1;
+        int i = IntBookMap.mix(key) & mask;
+        while (s.get(INT, slot(i) + 4) != 0) i = (i + 1) & mask;
+        s.set(INT, slot(i), key);
+        s.set(INT, slot(i) + 4, record + 1);
+    }
+
+    /** Backward-shift deletion, as in {@link IntBookMap}. */
+    private void shiftBack(int slot) {
+        MemorySegment s = file.segment();
+        int mask = capacity - 1;
+        int gap = slot;
+        for (int i = (gap + 1) & mask; s.get(INT, slot(i) + 4) != 0; i = (i + 1) & mask) {
+            int key = s.get(INT, slot(i));
+            int home = IntBookMap.mix(key) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                s.set(INT, slot(gap), key);
+                s.set(INT, slot(gap) + 4, s.get(INT, slot(i) + 4));
+                gap = i;
+            }
+        }
+        s.set(INT, slot(gap) + 4, 0);
+    }
+
+    private void rehash(int newCapacity) throws IOException {
+        MemorySegment old = file.segment();
+        int[] keys = new int[size];
+        int[] values = new int[size];
+        int n = 0;
+        for (int i = 0; i < capacity; i++) {
+            int value = old.get(INT, slot(i) + 4);
+            if (value == 0) continue;
+            keys[n] = old.get(INT, slot(i));
+            values[n++] = value - 1;
+        }
+
+        file.ensureCapacity(HEADER + newCapacity * SLOT);
+        file.segment().asSlice(HEADER, newCapacity * SLOT).fill((byte) 0);
+        capacity = newCapacity;
+        for (int j = 0; j < n; j++) insert(keys[j], values[j]);
+    }
+
+    private void writeHeader() {
+        MemorySegment s = file.segment();
+        s.set(INT, 4, capacity);
+        s.set(INT, 8, size);
+    }
+
+    private static long slot(int i) {
+        return HEADER + i * SLOT;
+    }
+}
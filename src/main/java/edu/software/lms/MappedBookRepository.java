@@ -0,0 +1,580 @@
+package edu.software.lms;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/**
+ * A file-backed {@link BookRepository} that keeps the catalog in
+ * memory-mapped files instead of on the Java heap.
+ *
+ * <p>The data directory holds four files:</p>
+ * <ul>
+ *     <li>{@code books.rec}: a header and one fixed 32-byte record per item:
+ *         {@code [int id][int flags][long name][long author][long isbn]},
+ *         where the flags mark CDs and borrowed items and the three longs
+ *         point into the string heap</li>
+ *     <li>{@code books.str}: an append-only string heap of
+ *         {@code [int length][UTF-8 bytes]} entries</li>
+ *     <li>{@code books.id.idx} and {@code books.isbn.idx}: off-heap
+ *         {@link MappedBookIndex hash indexes} on ID and ISBN</li>
+ * </ul>
+ *
+ * <p>Opening the repository only maps the files, so a cold start does not
+ * parse the catalog. {@link Book} objects are created lazily as views of
+ * their record when they are looked up. While a view is reachable, every
+ * lookup of the same item returns that same instance, so
+ * {@link Book#tryBorrow()} stays atomic; once it is no longer referenced it
+ * can be garbage collected. Setter calls and borrowed-flag changes on a view
+ * are written through to its record. Lookups by title and author scan the
+ * record file without creating objects.</p>
+ *
+ * <p>Replaced strings are not reclaimed from the heap. If the repository was
+ * not closed cleanly, the indexes are rebuilt from the records on the next
+ * open. Like {@link InMemoryBooks}, lookups share a read lock while inserts
+ * and write-through take the write lock.</p>
+ */
+public class MappedBookRepository implements BookRepository, BookChangeListener, Closeable {
+
+    static final String RECORD_FILE = "books.rec";
+    static final String STRING_FILE = "books.str";
+    static final String ID_INDEX_FILE = "books.id.idx";
+    static final String ISBN_INDEX_FILE = "books.isbn.idx";
+
+    private static final int MAGIC = 0x4C4D5342; // "LMSB"
+    private static final int VERSION = 1;
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED;
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED;
+
+    // record file header: magic, version, count, next ID, clean flag
+    private static final long HEADER = 32;
+    private static final long COUNT_AT = 8;
+    private static final long NEXT_ID_AT = 12;
+    private static final long CLEAN_AT = 16;
+
+    // record layout
+    private static final long RECORD = 32;
+    private static final long FLAGS = 4;
+    private static final long NAME = 8;
+    private static final long AUTHOR = 16;
+    private static final long ISBN = 24;
+
+    private static final int FLAG_CD = 1;
+    private static final int FLAG_BORROWED = 2;
+
+    // string heap header: magic, used bytes
+    private static final long HEAP_HEADER = 16;
+    private static final long HEAP_USED_AT = 8;
+    private static final long NULL_STRING = -1;
+
+    private static final IntPredicate ANY = r -> true;
+
+    private final MappedFile records;
+    private final MappedFile strings;
+    private final MappedBookIndex byId;
+    private final MappedBookIndex byIsbn;
+
+    /** Live views by record number. */
+    private final ViewCache<Book> views = new ViewCache<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock readLock = lock.readLock();
+    private final Lock writeLock = lock.writeLock();
+
+    private int count;
+    private boolean closed;
+
+    private MappedBookRepository(MappedFile records, MappedFile strings,
+                                 MappedBookIndex byId, MappedBookIndex byIsbn) {
+        this.records = records;
+        this.strings = strings;
+        this.byId = byId;
+        this.byIsbn = byIsbn;
+    }
+
+    /**
+     * Opens the repository stored in the given directory, creating an empty
+     * one if the directory holds none.
+     *
+     * @param directory data directory
+     * @return the opened repository
+     * @throws IOException if the files cannot be created or mapped
+     */
+    public static MappedBookRepository open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        MappedFile records = MappedFile.open(directory.resolve(RECORD_FILE), HEADER + 1024 * RECORD);
+        MappedFile strings = MappedFile.open(directory.resolve(STRING_FILE), HEAP_HEADER + 64 * 1024);
+        MappedBookIndex byId = MappedBookIndex.open(directory.resolve(ID_INDEX_FILE));
+        MappedBookIndex byIsbn = MappedBookIndex.open(directory.resolve(ISBN_INDEX_FILE));
+
+        MappedBookRepository repo = new MappedBookRepository(records, strings, byId, byIsbn);
+        try {
+            repo.init(directory);
+        } catch (IOException | RuntimeException e) {
+            repo.closeFiles();
+            throw e;
+        }
+        return repo;
+    }
+
+    private void init(Path directory) throws IOException {
+        MemorySegment header = records.segment();
+        if (header.get(INT, 0) != MAGIC) {
+            header.set(INT, 4, VERSION);
+            header.set(INT, COUNT_AT, 0);
+            header.set(INT, NEXT_ID_AT, 1);
+            strings.segment().set(LONG, HEAP_USED_AT, HEAP_HEADER);
+            strings.segment().set(INT, 0, MAGIC);
+            header.set(INT, 0, MAGIC);
+        } else if (header.get(INT, 4) != VERSION) {
+            throw new IOException("Unsupported catalog version " + header.get(INT, 4) + " in " + directory);
+        }
+        count = header.get(INT, COUNT_AT);
+
+        boolean clean = header.get(INT, CLEAN_AT) != 0;
+        if (!clean || byId.size() != count) rebuildIndexes();
+
+        // marked clean again by close(); until then a crash triggers a rebuild
+        header.set(INT, CLEAN_AT, 0);
+        records.force();
+    }
+
+    /** Re-inserts every record into the (possibly stale or missing) indexes. */
+    private void rebuildIndexes() throws IOException {
+        byId.clear();
+        byIsbn.clear();
+        for (int r = 0; r < count; r++) {
+            String isbn = readString(ref(r, ISBN));
+            byId.putIfAbsent(id(r), r, ANY);
+            byIsbn.putIfAbsent(isbnHash(isbn), r, other -> isbnEquals(other, isbn));
+        }
+    }
+
+    // ------------------- Lookups -------------------
+
+    @Override
+    public Book getBookById(int id) {
+        readLock.lock();
+        try {
+            return view(byId.get(id, ANY));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Book getBookByName(String name) {
+        return findFirst(NAME, name);
+    }
+
+    @Override
+    public Book getBookByAuthor(String author) {
+        return findFirst(AUTHOR, author);
+    }
+
+    @Override
+    public Book getBookByISBN(String isbn) {
+        readLock.lock();
+        try {
+            return view(byIsbn.get(isbnHash(isbn), r -> isbnEquals(r, isbn)));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves all stored items, creating views for those that have none.
+     *
+     * @return a fresh list in insertion order
+     */
+    @Override
+    public List<Book> getAllBooks() {
+        readLock.lock();
+        try {
+            List<Book> all = new ArrayList<>(count);
+            for (int r = 0; r < count; r++) all.add(view(r));
+            return all;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void forEachBook(Consumer<? super Book> action) {
+        ChunkedVisit.forEach(readLock, () -> count, this::view, action);
+    }
+
+    /** @return number of stored items */
+    public int size() {
+        readLock.lock();
+        try {
+            return count;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // ------------------- Writes -------------------
+
+    /**
+     * Appends a record for the book. The given object becomes the view of the
+     * new record, so later changes to it are written through.
+     *
+     * @param book the book to insert
+     * @return true if added, false if null or the ID or ISBN is taken
+     */
+    @Override
+    public boolean addBook(Book book) {
+        if (book == null) return false;
+
+        writeLock.lock();
+        try {
+            checkOpen();
+            records.ensureCapacity(HEADER + (count + 1L) * RECORD);
+            return append(book);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Appends records for several books under one hold of the write lock,
+     * growing the file once for the whole batch, and skips those
+     * {@link #addBook(Book)} would reject.
+     *
+     * @param books the books to add
+     * @return number of books added
+     */
+    @Override
+    public int addBooks(List<? extends Book> books) {
+        writeLock.lock();
+        try {
+            checkOpen();
+            records.ensureCapacity(HEADER + ((long) count + books.size()) * RECORD);
+            int added = 0;
+            for (Book book : books) {
+                if (book != null && append(book)) added++;
+            }
+            return added;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Appends the record unless the ID or ISBN is taken; the write lock must
+     * be held and the file must have room for it.
+     */
+    private boolean append(Book book) throws IOException {
+        String isbn = book.getIsbn();
+        if (byId.get(book.getId(), ANY) >= 0 || byIsbn.get(isbnHash(isbn), r -> isbnEquals(r, isbn)) >= 0) {
+            return false;
+        }
+
+        int r = count;
+        long name = appendString(book.getName());
+        long author = appendString(book.getAuthor());
+        long isbnRef = appendString(isbn);
+
+        MemorySegment s = records.segment();
+        long at = offset(r);
+        s.set(INT, at, book.getId());
+        s.set(INT, at + FLAGS, (book instanceof CD ? FLAG_CD : 0) | (book.isBorrowed() ? FLAG_BORROWED : 0));
+        s.set(LONG, at + NAME, name);
+        s.set(LONG, at + AUTHOR, author);
+        s.set(LONG, at + ISBN, isbnRef);
+        count = r + 1;
+        s.set(INT, COUNT_AT, count);
+
+        byId.putIfAbsent(book.getId(), r, ANY);
+        byIsbn.putIfAbsent(isbnHash(isbn), r, other -> isbnEquals(other, isbn));
+        raiseHighWaterMark(book.getId());
+
+        views.put(r, book);
+        book.setChangeListener(this);
+        return true;
+    }
+
+    @Override
+    public int getNextId() {
+        readLock.lock();
+        try {
+            return records.segment().get(INT, NEXT_ID_AT);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Reserves a block of IDs; the new high-water mark is stored in the file
+     * header, so reserved IDs are not handed out again after a restart.
+     *
+     * @param count number of IDs to reserve
+     * @return first ID of the reserved block
+     */
+    @Override
+    public int reserveIds(int count) {
+        if (count <= 0) throw new IllegalArgumentException("count must be positive: " + count);
+
+        writeLock.lock();
+        try {
+            checkOpen();
+            int first = records.segment().get(INT, NEXT_ID_AT);
+            records.segment().set(INT, NEXT_ID_AT, first + count);
+            return first;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // ------------------- Write-through from views -------------------
+
+    @Override
+    public void idChanged(Book book, int oldId) {
+        writeLock.lock();
+        try {
+            checkOpen();
+            int r = recordOf(book, oldId);
+            if (r < 0) return;
+            byId.remove(oldId, r);
+            records.segment().set(INT, offset(r), book.getId());
+            byId.putIfAbsent(book.getId(), r, ANY);
+            raiseHighWaterMark(book.getId());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void isbnChanged(Book book, String oldIsbn) {
+        writeLock.lock();
+        try {
+            checkOpen();
+            int r = recordOf(book, book.getId());
+            if (r < 0) return;
+            String isbn = book.getIsbn();
+            byIsbn.remove(isbnHash(oldIsbn), r);
+            records.segment().set(LONG, offset(r) + ISBN, appendString(isbn));
+            byIsbn.putIfAbsent(isbnHash(isbn), r, other -> isbnEquals(other, isbn));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void authorChanged(Book book, String oldAuthor) {
+        writeLock.lock();
+        try {
+            checkOpen();
+            int r = recordOf(book, book.getId());
+            if (r < 0) return;
+            records.segment().set(LONG, offset(r) + AUTHOR, appendString(book.getAuthor()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void borrowedChanged(Book book) {
+        writeLock.lock();
+        try {
+            checkOpen();
+            int r = recordOf(book, book.getId());
+            if (r < 0) return;
+            MemorySegment s = records.segment();
+            int flags = s.get(INT, offset(r) + FLAGS);
+            flags = book.isBorrowed() ? flags | FLAG_BORROWED : flags & ~FLAG_BORROWED;
+            s.set(INT, offset(r) + FLAGS, flags);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Finds the record a view belongs to: through the ID index first, and by
+     * searching the live views if its ID entry points elsewhere.
+     */
+    private int recordOf(Book book, int id) {
+        int r = byId.get(id, ANY);
+        return r >= 0 && views.get(r) == book ? r : views.keyOf(book);
+    }
+
+    // ------------------- Views -------------------
+
+    /**
+     * @return the live view of the record, creating one if needed, or
+     *         {@code null} for a negative record number
+     */
+    private Book view(int r) {
+        return r < 0 ? null : views.computeIfAbsent(r, this::materialize);
+    }
+
+    private Book materialize(int r) {
+        MemorySegment s = records.segment();
+        long at = offset(r);
+        int flags = s.get(INT, at + FLAGS);
+        int id = s.get(INT, at);
+        String name = readString(s.get(LONG, at + NAME));
+        String author = readString(s.get(LONG, at + AUTHOR));
+        String isbn = readString(s.get(LONG, at + ISBN));
+
+        Book book = (flags & FLAG_CD) != 0 ? new CD(id, name, author, isbn) : new Book(id, name, author, isbn);
+        book.setBorrowed((flags & FLAG_BORROWED) != 0);
+        book.setChangeListener(this);
+        return book;
+    }
+
+    /** Scans the records for the first one whose string field equals the value. */
+    private Book findFirst(long field, String value) {
+        byte[] target = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        readLock.lock();
+        try {
+            for (int r = 0; r < count; r++) {
+                if (stringEquals(ref(r, field), target)) return view(r);
+            }
+            return null;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // ------------------- Records and strings -------------------
+
+    private static long offset(int r) {
+        return HEADER + r * RECORD;
+    }
+
+    private int id(int r) {
+        return records.segment().get(INT, offset(r));
+    }
+
+    private long ref(int r, long field) {
+        return records.segment().get(LONG, offset(r) + field);
+    }
+
+    private void raiseHighWaterMark(int id) {
+        if (id == Integer.MAX_VALUE) return;
+        MemorySegment s = records.segment();
+        if (s.get(INT, NEXT_ID_AT) <= id) s.set(INT, NEXT_ID_AT, id + 1);
+    }
+
+    private long appendString(String value) throws IOException {
+        if (value == null) return NULL_STRING;
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long at = strings.segment().get(LONG, HEAP_USED_AT);
+        strings.ensureCapacity(at + Integer.BYTES + bytes.length);
+
+        MemorySegment s = strings.segment();
+        s.set(INT, at, bytes.length);
+        MemorySegment.copy(bytes, 0, s, ValueLayout.JAVA_BYTE, at + Integer.BYTES, bytes.length);
+        s.set(LONG, HEAP_USED_AT, at + Integer.BYTES + bytes.length);
+        return at;
+    }
+
+    private String readString(long ref) {
+        if (ref == NULL_STRING) return null;
+
+        MemorySegment s = strings.segment();
+        byte[] bytes = new byte[s.get(INT, ref)];
+        MemorySegment.copy(s, ValueLayout.JAVA_BYTE, ref + Integer.BYTES, bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Compares a stored string with UTF-8 bytes without decoding it. */
+    private boolean stringEquals(long ref, byte[] target) {
+        if (ref == NULL_STRING || target == null) return ref == NULL_STRING && target == null;
+
+        MemorySegment s = strings.segment();
+        int length = s.get(INT, ref);
+        if (length != target.length) return false;
+        long from = ref + Integer.BYTES;
+        return MemorySegment.mismatch(s, from, from + length, MemorySegment.ofArray(target), 0, length) == -1;
+    }
+
+    private boolean isbnEquals(int r, String isbn) {
+        return Objects.equals(readString(ref(r, ISBN)), isbn);
+    }
+
+    private static int isbnHash(String isbn) {
+        return Objects.hashCode(isbn);
+    }
+
+    private void checkOpen() {
+        if (closed) throw new IllegalStateException("Repository is closed");
+    }
+
+    // ------------------- Lifecycle -------------------
+
+    /**
+     * Writes all changes back to the storage device without closing.
+     */
+    public void force() {
+        readLock.lock();
+        try {
+            checkOpen();
+            strings.force();
+            records.force();
+            byId.force();
+            byIsbn.force();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Marks the files as cleanly closed, writes them back and unmaps them.
+     * Views obtained earlier must not be modified afterwards.
+     *
+     * @throws IOException if a file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            try {
+                strings.force();
+                byId.force();
+                byIsbn.force();
+                records.segment().set(INT, CLEAN_AT, 1);
+                records.force();
+            } finally {
+                closeFiles();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void closeFiles() throws IOException {
+        try (records; strings; byId; byIsbn) {
+            // closed in reverse order by try-with-resources
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package edu.software.lms;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file mapped read-write into memory as one {@link MemorySegment}.
+ *
+ * <p>Unlike a {@code MappedByteBuffer}, the mapping may exceed 2 GiB. Growing
+ * the file remaps it and unmaps the previous mapping, which invalidates any
+ * segment obtained earlier; callers must not grow the file while other
+ * threads read from it.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+final class MappedFile implements Closeable {
+
+    private final FileChannel channel;
+    private Arena arena;
+    private MemorySegment segment;
+
+    private MappedFile(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens or creates a file and maps it, growing it to at least
+     * {@code initialSize} bytes.
+     *
+     * @param file        file to map
+     * @param initialSize minimum size of the mapping
+     * @return the mapped file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    static MappedFile open(Path file, long initialSize) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedFile mapped = new MappedFile(channel);
+        try {
+            mapped.map(Math.max(initialSize, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return mapped;
+    }
+
+    /** @return the current mapping of the whole file */
+    MemorySegment segment() {
+        return segment;
+    }
+
+    /**
+     * Grows the file so that at least {@code size} bytes are mapped. The file
+     * at least doubles, so repeated appends remap only a logarithmic number
+     * of times.
+     *
+     * @param size required size in bytes
+     * @throws IOException if the file cannot be remapped
+     */
+    void ensureCapacity(long size) throws IOException {
+        if (size <= segment.byteSize()) return;
+        map(Math.max(size, segment.byteSize() * 2));
+    }
+
+    private void map(long size) throws IOException {
+        Arena next = Arena.ofShared();
+        try {
+            // mapping beyond the end of a read-write channel extends the file
+            MemorySegment mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size, next);
+            if (arena != null) arena.close();
+            arena = next;
+            segment = mapped;
+        } catch (IOException | RuntimeException e) {
+            next.close();
+            throw e;
+        }
+    }
+
+    /** Writes changes in the mapping back to the storage device. */
+    void force() {
+        segment.force();
+    }
+
+    /**
+     * Forces, unmaps and closes the file.
+     *
+     * @throws IOException if the channel cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (arena != null) {
+            segment.force();
+            arena.close();
+            arena = null;
+        }
+        channel.close();
+    }
+}
@@ -1,13 +1,24 @@
 package edu.software.lms;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Service responsible for borrowing and returning media items (Books or CDs).
  *
  * <p>Implements business rules such as overdue checks, fine calculations,
  * loan creation, and updating media availability.</p>
+ *
+ * <p>Checkouts and batch returns hold a lock for the user they concern, so
+ * the policy checks and the resulting writes for one user do not interleave.
+ * The locks are striped: users share a fixed number of locks by ID hash.</p>
  */
 public class MediaBorrowingService {
 
@@ -15,6 +26,7 @@ public class MediaBorrowingService {
     private final BookRepository bookRepository;
     private final LoanRepository loanRepository;
     private final TimeProvider timeProvider;
+    private final OverdueTimerWheel overdueWheel;
 
     /** Loan duration for books (in days). */
     private static final int BOOK_LOAN_DAYS = 28;
@@ -22,6 +34,14 @@ public class MediaBorrowingService {
     /** Loan duration for CDs (in days). */
     private static final int CD_LOAN_DAYS = 7;
 
+    /** Number of user lock stripes; a power of two. */
+    static final int USER_LOCK_STRIPES = 64;
+
+    private static final FineStrategy BOOK_FINES = new BookFineStrategy();
+    private static final FineStrategy CD_FINES = new CDFineStrategy();
+
+    private final Lock[] userLocks = new Lock[USER_LOCK_STRIPES];
+
     /**
      * Constructs a new media borrowing service.
      *
@@ -34,10 +54,30 @@ public class MediaBorrowingService {
                                  BookRepository bookRepository,
                                  LoanRepository loanRepository,
                                  TimeProvider timeProvider) {
+        this(userRepository, bookRepository, loanRepository, timeProvider, null);
+    }
+
+    /**
+     * Constructs a media borrowing service that registers new loans in an
+     * overdue timer wheel and cancels them when they are returned.
+     *
+     * @param userRepository repository of users
+     * @param bookRepository repository of books/media items
+     * @param loanRepository repository managing loan records
+     * @param timeProvider provider of the current date
+     * @param overdueWheel wheel tracking when loans become overdue; may be {@code null}
+     */
+    public MediaBorrowingService(UserRepository userRepository,
+                                 BookRepository bookRepository,
+                                 LoanRepository loanRepository,
+                                 TimeProvider timeProvider,
+                                 OverdueTimerWheel overdueWheel) {
         this.userRepository = userRepository;
         this.bookRepository = bookRepository;
         this.loanRepository = loanRepository;
         this.timeProvider = timeProvider;
+        this.overdueWheel = overdueWheel;
+        for (int i = 0; i < userLocks.length; i++) userLocks[i] = new ReentrantLock();
     }
 
     /**
@@ -65,39 +105,119 @@ public class MediaBorrowingService {
         User user = userRepository.getUserByUsername(username);
         if (user == null) return new Pair<>(false, "User not found");
 
-        if (user.getFineBalance() > 0)
-            return new Pair<>(false, "Cannot borrow: outstanding fine balance = " + user.getFineBalance());
+        Lock lock = lockFor(user.getId());
+        lock.lock();
+        try {
+            LocalDate borrowDate = timeProvider.today();
+            String refusal = checkBorrower(user, borrowDate);
+            if (refusal != null) return new Pair<>(false, refusal);
+
+            Book book = bookRepository.getBookById(mediaId);
+            if (book == null) return new Pair<>(false, "Media not found");
+            // Claim the copy atomically; a concurrent checkout of the same item loses here
+            if (!book.tryBorrow()) return new Pair<>(false, "Media is already borrowed");
+
+            // Create loan record
+            MediaLoan loan = newLoan(user, book, borrowDate);
+            boolean added = loanRepository.addLoan(loan);
+            if (!added) {
+                book.setBorrowed(false);
+                return new Pair<>(false, "Failed to record loan");
+            }
+
+            user.addLoanId(loan.getId());
+            if (overdueWheel != null) overdueWheel.schedule(loan);
+
+            return new Pair<>(true, "Media borrowed successfully. Due date: " + loan.getDueDate());
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        List<Loan> userLoans = loanRepository.getLoansByUserId(user.getId());
-        LocalDate borrowDate = timeProvider.today();
+    /**
+     * Checks out several media items for one user, as when a stack of items
+     * is scanned at the desk.
+     *
+     * <p>The user is looked up and the fine and overdue checks of
+     * {@link #borrowMedia(String, int)} are made once for the whole batch,
+     * under one acquisition of the user's lock; if they fail, every item
+     * fails with the same message. Each available item is then claimed and
+     * all loans are recorded with one {@link LoanRepository#addLoans(List)}
+     * call.</p>
+     *
+     * @param username username of the borrower
+     * @param mediaIds IDs of the media items
+     * @return one (success flag, user message) pair per item, in the order given
+     */
+    public List<Pair<Boolean, String>> borrowMany(String username, int[] mediaIds) {
+        if (username == null || username.isEmpty()) return allFailed(mediaIds.length, "Invalid user");
 
-        // User cannot borrow if they have active overdue loans
-        boolean hasOverdue = userLoans.stream()
-                .anyMatch(l -> l.isOverdue(borrowDate) && !l.isReturned());
+        User user = userRepository.getUserByUsername(username);
+        if (user == null) return allFailed(mediaIds.length, "User not found");
+
+        Lock lock = lockFor(user.getId());
+        lock.lock();
+        try {
+            LocalDate borrowDate = timeProvider.today();
+            String refusal = checkBorrower(user, borrowDate);
+            if (refusal != null) return allFailed(mediaIds.length, refusal);
+
+            List<Pair<Boolean, String>> results = new ArrayList<>(mediaIds.length);
+            List<MediaLoan> loans = new ArrayList<>(mediaIds.length);
+            List<Book> claimed = new ArrayList<>(mediaIds.length);
+            int[] itemOfLoan = new int[mediaIds.length];
+            for (int i = 0; i < mediaIds.length; i++) {
+                Book book = bookRepository.getBookById(mediaIds[i]);
+                if (book == null) {
+                    results.add(new Pair<>(false, "Media not found"));
+                } else if (!book.tryBorrow()) {
+                    results.add(new Pair<>(false, "Media is already borrowed"));
+                } else {
+                    results.add(null);
+                    itemOfLoan[loans.size()] = i;
+                    loans.add(newLoan(user, book, borrowDate));
+                    claimed.add(book);
+                }
+            }
+            if (loans.isEmpty()) return results;
+
+            boolean allAdded = loanRepository.addLoans(loans) == loans.size();
+            for (int k = 0; k < loans.size(); k++) {
+                MediaLoan loan = loans.get(k);
+                if (allAdded || loanRepository.getLoanById(loan.getId()) != null) {
+                    user.addLoanId(loan.getId());
+                    if (overdueWheel != null) overdueWheel.schedule(loan);
+                    results.set(itemOfLoan[k],
+                            new Pair<>(true, "Media borrowed successfully. Due date: " + loan.getDueDate()));
+                } else {
+                    claimed.get(k).setBorrowed(false);
+                    results.set(itemOfLoan[k], new Pair<>(false, "Failed to record loan"));
+                }
+            }
+            return results;
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        if (hasOverdue)
-            return new Pair<>(false, "Cannot borrow: you have overdue item(s).");
+    /**
+     * @return why the user may not borrow, or {@code null} if they may
+     */
+    private String checkBorrower(User user, LocalDate today) {
+        if (user.getFineBalance() > 0)
+            return "Cannot borrow: outstanding fine balance = " + user.getFineBalance();
 
-        Book book = bookRepository.getBookById(mediaId);
-        if (book == null) return new Pair<>(false, "Media not found");
-        if (book.isBorrowed()) return new Pair<>(false, "Media is already borrowed");
+        // User cannot borrow if they have active overdue loans
+        boolean hasOverdue = loanRepository.getLoansByUserId(user.getId()).stream()
+                .anyMatch(l -> l.isOverdue(today) && !l.isReturned());
+        return hasOverdue ? "Cannot borrow: you have overdue item(s)." : null;
+    }
 
-        // Determine media type and loan duration
+    /** Creates the loan record for a claimed item, with the due date of its media type. */
+    private static MediaLoan newLoan(User user, Book book, LocalDate borrowDate) {
         MediaType type = (book instanceof CD) ? MediaType.CD : MediaType.BOOK;
         int days = (type == MediaType.CD) ? CD_LOAN_DAYS : BOOK_LOAN_DAYS;
-
-        LocalDate dueDate = borrowDate.plusDays(days);
-
-        // Create loan record
-        MediaLoan loan = new MediaLoan(user.getId(), mediaId, borrowDate, dueDate, type);
-        boolean added = loanRepository.addLoan(loan);
-        if (!added) return new Pair<>(false, "Failed to record loan");
-
-        // Mark media as borrowed
-        book.setBorrowed(true);
-        user.addLoanId(loan.getId());
-
-        return new Pair<>(true, "Media borrowed successfully. Due date: " + dueDate);
+        return new MediaLoan(user.getId(), book.getId(), borrowDate, borrowDate.plusDays(days), type);
     }
 
     /**
@@ -110,34 +230,22 @@ public class MediaBorrowingService {
 
         Loan loan = loanRepository.getLoanById(loanId);
         if (loan == null) return new Pair<>(false, "Loan not found");
-        if (loan.isReturned()) return new Pair<>(false, "Already returned");
 
         LocalDate today = timeProvider.today();
-        loan.setReturnedDate(today);
-
-        // Determine media type (Book or CD)
-        MediaType type = MediaType.BOOK;
-
-        if (loan instanceof MediaLoan mediaLoan) {
-            type = mediaLoan.getMediaType();
-        } else {
-            // fallback detection from book repository
-            Book b = bookRepository.getBookById(loan.getBookId());
-            if (b instanceof CD) type = MediaType.CD;
-        }
-
-        // Calculate fine
-        int overdueDays = loan.overdueDays(today);
-        int fine = (type == MediaType.CD)
-                ? new CDFineStrategy().calculateFine(overdueDays)
-                : new BookFineStrategy().calculateFine(overdueDays);
+        // Only one concurrent return of the same loan may apply the fine
+        if (!loan.markReturned(today)) return new Pair<>(false, "Already returned");
+        if (overdueWheel != null) overdueWheel.cancel(loan.getId());
 
+        int fine = fineFor(loan, today);
         loan.setFineApplied(fine);
 
         // If fine exists, apply it to the user
         if (fine > 0) {
             User user = userRepository.getUserById(loan.getUserId());
-            if (user != null) user.addFine(fine);
+            if (user != null) {
+                user.addFine(fine);
+                userRepository.updateUser(user);
+            }
             loan.setFinePaid(false);
         } else {
             loan.setFinePaid(true);
@@ -149,6 +257,109 @@ public class MediaBorrowingService {
         return new Pair<>(true, "Media returned. Applied fine: " + fine + " NIS");
     }
 
+    /**
+     * Returns several loans at once.
+     *
+     * <p>The loans are grouped by borrower. For each borrower, the loans are
+     * marked returned and their fines calculated under one acquisition of the
+     * borrower's lock, and the total fine is added with one user lookup and
+     * one {@link UserRepository#updateUser(User)}. All returned loans are
+     * then stored with one {@link LoanRepository#updateLoans(List)} call
+     * before their media items are released.</p>
+     *
+     * @param loanIds IDs of the loan records
+     * @return one (success flag, result message) pair per loan, in the order given
+     */
+    public List<Pair<Boolean, String>> returnMany(List<String> loanIds) {
+        List<Pair<Boolean, String>> results = new ArrayList<>(loanIds.size());
+        Map<String, List<Integer>> itemsByUser = new LinkedHashMap<>();
+        Loan[] loans = new Loan[loanIds.size()];
+        for (int i = 0; i < loans.length; i++) {
+            loans[i] = loanRepository.getLoanById(loanIds.get(i));
+            if (loans[i] == null) {
+                results.add(new Pair<>(false, "Loan not found"));
+            } else {
+                results.add(null);
+                itemsByUser.computeIfAbsent(loans[i].getUserId(), k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        LocalDate today = timeProvider.today();
+        List<Loan> returned = new ArrayList<>(loans.length);
+        Map<String, User> users = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Integer>> group : itemsByUser.entrySet()) {
+            Lock lock = lockFor(group.getKey());
+            lock.lock();
+            try {
+                User user = userRepository.getUserById(group.getKey());
+                if (user != null) users.put(group.getKey(), user);
+                int totalFine = 0;
+                for (int i : group.getValue()) {
+                    Loan loan = loans[i];
+                    // Only one concurrent return of the same loan may apply the fine
+                    if (!loan.markReturned(today)) {
+                        results.set(i, new Pair<>(false, "Already returned"));
+                        continue;
+                    }
+                    if (overdueWheel != null) overdueWheel.cancel(loan.getId());
+                    int fine = fineFor(loan, today);
+                    loan.setFineApplied(fine);
+                    loan.setFinePaid(fine == 0);
+                    totalFine += fine;
+                    returned.add(loan);
+                    results.set(i, new Pair<>(true, "Media returned. Applied fine: " + fine + " NIS"));
+                }
+
+                if (totalFine > 0 && user != null) {
+                    user.addFine(totalFine);
+                    userRepository.updateUser(user);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (returned.isEmpty()) return results;
+
+        loanRepository.updateLoans(returned);
+        for (Loan loan : returned) {
+            Book book = bookRepository.getBookById(loan.getBookId());
+            if (book != null) book.setBorrowed(false);
+
+            User user = users.get(loan.getUserId());
+            if (user != null) user.removeLoanId(loan.getId());
+        }
+        return results;
+    }
+
+    /** Calculates the fine for a loan returned on the given day. */
+    private int fineFor(Loan loan, LocalDate today) {
+        // Determine media type (Book or CD)
+        MediaType type = MediaType.BOOK;
+
+        if (loan instanceof MediaLoan mediaLoan) {
+            type = mediaLoan.getMediaType();
+        } else {
+            // fallback detection from book repository
+            Book b = bookRepository.getBookById(loan.getBookId());
+            if (b instanceof CD) type = MediaType.CD;
+        }
+
+        int overdueDays = loan.overdueDays(today);
+        return (type == MediaType.CD)
+                ? CD_FINES.calculateFine(overdueDays)
+                : BOOK_FINES.calculateFine(overdueDays);
+    }
+
+    /** Striped lock guarding the given user's checks and writes. */
+    private Lock lockFor(String userId) {
+        int h = Objects.hashCode(userId);
+        return userLocks[(h ^ (h >>> 16)) & (userLocks.length - 1)];
+    }
+
+    private static List<Pair<Boolean, String>> allFailed(int count, String message) {
+        return new ArrayList<>(Collections.nCopies(count, new Pair<>(false, message)));
+    }
+
     /**
      * Static helper used for updating repositories after return.
      *
@@ -1,6 +1,7 @@
 package edu.software.lms;
 
 import java.time.LocalDate;
+import java.util.UUID;
 
 /**
  * Specialized form of {@link Loan} that includes the media type (BOOK or CD).
@@ -29,6 +30,48 @@ public class MediaLoan extends Loan {
         this.mediaType = mediaType;
     }
 
+    /**
+     * Recreates a media loan record with a known ID, e.g. when loading it from storage.
+     *
+     * @param id existing loan ID
+     * @param userId ID of user borrowing the item
+     * @param bookId ID of the media item
+     * @param borrowDate date the item was borrowed
+     * @param dueDate date the item is due
+     * @param mediaType type of media (BOOK or CD)
+     */
+    MediaLoan(String id,
+              String userId,
+              int bookId,
+              LocalDate borrowDate,
+              LocalDate dueDate,
+              MediaType mediaType) {
+
+        super(id, userId, bookId, borrowDate, dueDate);
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * Creates a media loan record with the given ID.
+     *
+     * @param id loan ID
+     * @param userId ID of user borrowing the item
+     * @param bookId ID of the media item
+     * @param borrowDate date the item was borrowed
+     * @param dueDate date the item is due
+     * @param mediaType type of media (BOOK or CD)
+     */
+    MediaLoan(UUID id,
+              String userId,
+              int bookId,
+              LocalDate borrowDate,
+              LocalDate dueDate,
+              MediaType mediaType) {
+
+        super(id, userId, bookId, borrowDate, dueDate);
+        this.mediaType = mediaType;
+    }
+
     /**
      * Returns the media type for this loan.
      *
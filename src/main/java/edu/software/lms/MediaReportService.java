@@ -12,6 +12,9 @@ import java.util.List;
  */
 public class MediaReportService {
 
+    private static final FineStrategy BOOK_FINES = new BookFineStrategy();
+    private static final FineStrategy CD_FINES = new CDFineStrategy();
+
     private final LoanRepository loanRepository;
     private final BookRepository bookRepository;
     private final TimeProvider timeProvider;
@@ -50,16 +53,16 @@ public class MediaReportService {
     public String generateOverdueSummary() {
         LocalDate today = timeProvider.today();
 
-        List<Loan> overdue = loanRepository.getAllLoans().stream()
-                .filter(l -> !l.isReturned() && l.isOverdue(today))
-                .toList();
-
-        int totalFine = 0;
-        StringBuilder sb = new StringBuilder();
-
-        sb.append("Overdue Report (").append(overdue.size()).append(" items)\n");
+        List<Loan> overdue = loanRepository.getOverdueLoans(today);
+        int n = overdue.size();
 
-        for (Loan l : overdue) {
+        // price all overdue items of a media type with one batch call
+        MediaType[] types = new MediaType[n];
+        int[] overdueDays = new int[n];
+        int[] bookDays = new int[n];
+        int[] cdDays = new int[n];
+        for (int i = 0; i < n; i++) {
+            Loan l = overdue.get(i);
 
             // Determine media type safely
             MediaType type = MediaType.BOOK;
@@ -70,11 +73,24 @@ public class MediaReportService {
                 if (b instanceof CD) type = MediaType.CD;
             }
 
-            int overdueDays = l.overdueDays(today);
+            types[i] = type;
+            overdueDays[i] = l.overdueDays(today);
+            if (type == MediaType.CD) cdDays[i] = overdueDays[i];
+            else bookDays[i] = overdueDays[i];
+        }
+        int[] bookFines = new int[n];
+        int[] cdFines = new int[n];
+        BOOK_FINES.calculateFines(bookDays, bookFines);
+        CD_FINES.calculateFines(cdDays, cdFines);
+
+        int totalFine = 0;
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("Overdue Report (").append(n).append(" items)\n");
 
-            int fine = (type == MediaType.CD)
-                    ? new CDFineStrategy().calculateFine(overdueDays)
-                    : new BookFineStrategy().calculateFine(overdueDays);
+        for (int i = 0; i < n; i++) {
+            Loan l = overdue.get(i);
+            int fine = types[i] == MediaType.CD ? cdFines[i] : bookFines[i];
 
             totalFine += fine;
 
@@ -82,8 +98,8 @@ public class MediaReportService {
 
             sb.append("LoanId: ").append(l.getId())
                     .append(" | Media: ").append(b == null ? "<unknown>" : b.getName())
-                    .append(" | Type: ").append(type)
-                    .append(" | OverdueDays: ").append(overdueDays)
+                    .append(" | Type: ").append(types[i])
+                    .append(" | OverdueDays: ").append(overdueDays[i])
                     .append(" | Fine: ").append(fine).append(" NIS\n");
         }
 
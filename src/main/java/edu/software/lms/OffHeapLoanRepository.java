@@ -0,0 +1,454 @@
+package edu.software.lms;
+
+import java.io.Closeable;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * {@link LoanRepository} that keeps the loan history outside the Java heap,
+ * in memory segments of the Foreign Memory API.
+ *
+ * <p>Each loan occupies a fixed-size slot of {@value #SLOT_SIZE} bytes:</p>
+ * <pre>
+ *   0  long  ID, most significant bits      24 int  borrow epoch day
+ *   8  long  ID, least significant bits     28 int  due epoch day
+ *   16 int   user code                      32 int  returned epoch day
+ *   20 int   book ID                        36 int  fine applied
+ *   40 int   next slot of the same user     44 byte fine paid, 45 byte media type
+ * </pre>
+ * <p>Slots are allocated in chunks of {@value #CHUNK_SLOTS}, so the store
+ * grows without copying. An off-heap open-addressing table maps loan IDs to
+ * slots, and each user's loans are chained through their slots; only the
+ * small user ID dictionary lives on the heap. With tens of millions of loans
+ * the garbage collector therefore has nothing to trace but the loans that
+ * are currently in use.</p>
+ *
+ * <p>{@link Loan} objects are created as views of their slot when they are
+ * looked up; while a view is reachable, lookups return the same instance, so
+ * {@link Loan#markReturned(LocalDate)} stays atomic. Changes made to a view
+ * are stored by {@link #updateLoan(Loan)}, as with the other
+ * implementations.</p>
+ *
+ * <p>The repository is thread-safe: reads share a read lock, while inserts
+ * and updates take the write lock. The memory is released by
+ * {@link #close()}; the repository cannot be used afterwards.</p>
+ */
+public class OffHeapLoanRepository implements LoanRepository, Closeable {
+
+    static final int SLOT_SIZE = 48;
+    static final int CHUNK_SLOTS = 1 << 16;
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final long ID_HIGH = 0;
+    private static final long ID_LOW = 8;
+    private static final long USER = 16;
+    private static final long BOOK = 20;
+    private static final long BORROW = 24;
+    private static final long DUE = 28;
+    private static final long RETURNED = 32;
+    private static final long FINE = 36;
+    private static final long NEXT_OF_USER = 40;
+    private static final long FINE_PAID = 44;
+    private static final long MEDIA_TYPE = 45;
+
+    private static final int MIN_INDEX_CAPACITY = 1024;
+    private static final byte NO_MEDIA_TYPE = -1;
+    private static final int NONE = -1;
+
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG;
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT;
+    private static final ValueLayout.OfByte BYTE = ValueLayout.JAVA_BYTE;
+
+    /** Owns the loan slots; released by {@link #close()}. */
+    private final Arena slotArena = Arena.ofShared();
+    private MemorySegment[] chunks = new MemorySegment[16];
+    private int size;
+
+    /** ID index: one {@code int} per bucket, holding slot + 1, or 0 if empty. */
+    private Arena indexArena;
+    private MemorySegment index;
+    private int indexCapacity;
+
+    /** User ID dictionary: ID to code, and code to ID. */
+    private final Map<String, Integer> userCodeById = new HashMap<>();
+    private final List<String> userIdByCode = new ArrayList<>();
+
+    /** First and last slot of each user's chain, by user code. */
+    private int[] firstOfUser = new int[16];
+    private int[] lastOfUser = new int[16];
+
+    private final ViewCache<Loan> views = new ViewCache<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock readLock = lock.readLock();
+    private final Lock writeLock = lock.writeLock();
+    private boolean closed;
+
+    /** Creates an empty repository. */
+    public OffHeapLoanRepository() {
+        allocateIndex(MIN_INDEX_CAPACITY);
+    }
+
+    // ------------------- LoanRepository -------------------
+
+    @Override
+    public Loan getLoanById(String id) {
+        UUID key = parseId(id);
+        if (key == null) return null;
+
+        readLock.lock();
+        try {
+            ensureOpen();
+            int slot = find(key.getMostSignificantBits(), key.getLeastSignificantBits());
+            return slot == NONE ? null : view(slot);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Loan> getLoansByUserId(String userId) {
+        if (userId == null) return new ArrayList<>();
+
+        readLock.lock();
+        try {
+            ensureOpen();
+            Integer code = userCodeById.get(userId);
+            if (code == null) return List.of();
+
+            List<Loan> result = new ArrayList<>();
+            for (int s = firstOfUser[code]; s != NONE; s = getInt(s, NEXT_OF_USER)) result.add(view(s));
+            return List.copyOf(result);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Loan> getLoansByBookId(int bookId) {
+        readLock.lock();
+        try {
+            ensureOpen();
+            List<Loan> result = new ArrayList<>();
+            for (int s = 0; s < size; s++) {
+                if (getInt(s, BOOK) == bookId) result.add(view(s));
+            }
+            return List.copyOf(result);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Scans the due and return fields of all slots for overdue, unreturned
+     * loans.
+     *
+     * @param today the date to evaluate against
+     * @return overdue loans ordered by due date
+     */
+    @Override
+    public List<Loan> getOverdueLoans(LocalDate today) {
+        int day = (int) today.toEpochDay();
+        readLock.lock();
+        try {
+            ensureOpen();
+            // (due day, slot) packed into one long, so sorting needs no objects
+            long[] keys = new long[16];
+            int n = 0;
+            for (int s = 0; s < size; s++) {
+                int due = getInt(s, DUE);
+                if (getInt(s, RETURNED) == Loan.NOT_RETURNED && due < day) {
+                    if (n == keys.length) keys = Arrays.copyOf(keys, n * 2);
+                    keys[n++] = ((long) due << 32) | s;
+                }
+            }
+            Arrays.sort(keys, 0, n);
+
+            List<Loan> result = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) result.add(view((int) keys[i]));
+            return result;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Loan> getAllLoans() {
+        readLock.lock();
+        try {
+            ensureOpen();
+            List<Loan> result = new ArrayList<>(size);
+            for (int s = 0; s < size; s++) result.add(view(s));
+            return result;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void forEachLoan(Consumer<? super Loan> action) {
+        ChunkedVisit.forEach(readLock, () -> {
+            ensureOpen();
+            return size;
+        }, this::view, action);
+    }
+
+    /**
+     * Copies the loan into a new slot. The given object becomes the view of
+     * the slot.
+     *
+     * @param loan the loan to insert
+     * @return true if added, false if null or the ID is taken
+     */
+    @Override
+    public boolean addLoan(Loan loan) {
+        if (loan == null) return false;
+
+        UUID id = loan.uuid();
+        long high = id.getMostSignificantBits();
+        long low = id.getLeastSignificantBits();
+        writeLock.lock();
+        try {
+            ensureOpen();
+            if (find(high, low) != NONE) return false;
+
+            int s = size;
+            if ((s & (CHUNK_SLOTS - 1)) == 0) addChunk(s >>> CHUNK_SHIFT);
+            MemorySegment chunk = chunks[s >>> CHUNK_SHIFT];
+            long base = offset(s);
+            chunk.set(LONG, base + ID_HIGH, high);
+            chunk.set(LONG, base + ID_LOW, low);
+            chunk.set(INT, base + BOOK, loan.getBookId());
+            chunk.set(INT, base + BORROW, loan.getBorrowEpochDay());
+            chunk.set(INT, base + DUE, loan.getDueEpochDay());
+            chunk.set(INT, base + NEXT_OF_USER, NONE);
+            chunk.set(BYTE, base + MEDIA_TYPE,
+                    loan instanceof MediaLoan ml ? (byte) ml.getMediaType().ordinal() : NO_MEDIA_TYPE);
+            writeState(s, loan);
+
+            int code = userCode(loan.getUserId());
+            chunk.set(INT, base + USER, code);
+            if (code != NONE) linkToUser(code, s);
+
+            if (size + 1 > indexCapacity / 4 * 3) rehash(indexCapacity * 2);
+            insert(high, low, s);
+            size = s + 1;
+            views.put(s, loan);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Stores the return date, fine and fine paid flag of the loan in its
+     * slot. The given object becomes the view of the slot; unknown IDs are
+     * ignored.
+     *
+     * @param loan loan object with updated state; ignored if null
+     */
+    @Override
+    public void updateLoan(Loan loan) {
+        if (loan == null) return;
+
+        UUID id = loan.uuid();
+        writeLock.lock();
+        try {
+            ensureOpen();
+            int s = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (s == NONE) return;
+            writeState(s, loan);
+            if (views.get(s) != loan) views.put(s, loan);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** @return number of stored loans */
+    public int size() {
+        readLock.lock();
+        try {
+            return size;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /** @return bytes of native memory held for slots and the ID index */
+    public long offHeapBytes() {
+        readLock.lock();
+        try {
+            if (closed) return 0;
+            long bytes = index.byteSize();
+            for (MemorySegment chunk : chunks) {
+                if (chunk != null) bytes += chunk.byteSize();
+            }
+            return bytes;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Releases the native memory. Views obtained earlier keep their values,
+     * but the repository itself can no longer be used.
+     */
+    @Override
+    public void close() {
+        writeLock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            indexArena.close();
+            slotArena.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // ------------------- Slots -------------------
+
+    private void writeState(int s, Loan loan) {
+        MemorySegment chunk = chunks[s >>> CHUNK_SHIFT];
+        long base = offset(s);
+        chunk.set(INT, base + RETURNED, loan.getReturnedEpochDay());
+        chunk.set(INT, base + FINE, loan.getFineApplied());
+        chunk.set(BYTE, base + FINE_PAID, loan.isFinePaid() ? (byte) 1 : 0);
+    }
+
+    private Loan view(int s) {
+        return views.computeIfAbsent(s, this::materialize);
+    }
+
+    private Loan materialize(int s) {
+        MemorySegment chunk = chunks[s >>> CHUNK_SHIFT];
+        long base = offset(s);
+        UUID id = new UUID(chunk.get(LONG, base + ID_HIGH), chunk.get(LONG, base + ID_LOW));
+        int code = chunk.get(INT, base + USER);
+        String userId = code == NONE ? null : userIdByCode.get(code);
+        int bookId = chunk.get(INT, base + BOOK);
+        LocalDate borrow = LocalDate.ofEpochDay(chunk.get(INT, base + BORROW));
+        LocalDate due = LocalDate.ofEpochDay(chunk.get(INT, base + DUE));
+        byte mediaType = chunk.get(BYTE, base + MEDIA_TYPE);
+
+        Loan loan = mediaType == NO_MEDIA_TYPE
+                ? new Loan(id, userId, bookId, borrow, due)
+                : new MediaLoan(id, userId, bookId, borrow, due, MediaType.values()[mediaType]);
+        int returned = chunk.get(INT, base + RETURNED);
+        if (returned != Loan.NOT_RETURNED) loan.setReturnedDate(LocalDate.ofEpochDay(returned));
+        loan.setFineApplied(chunk.get(INT, base + FINE));
+        loan.setFinePaid(chunk.get(BYTE, base + FINE_PAID) != 0);
+        return loan;
+    }
+
+    private void addChunk(int c) {
+        if (c == chunks.length) chunks = Arrays.copyOf(chunks, c * 2);
+        // allocated memory is zeroed
+        chunks[c] = slotArena.allocate((long) CHUNK_SLOTS * SLOT_SIZE, Long.BYTES);
+    }
+
+    private int getInt(int s, long field) {
+        return chunks[s >>> CHUNK_SHIFT].get(INT, offset(s) + field);
+    }
+
+    private long getLong(int s, long field) {
+        return chunks[s >>> CHUNK_SHIFT].get(LONG, offset(s) + field);
+    }
+
+    private static long offset(int s) {
+        return (long) (s & (CHUNK_SLOTS - 1)) * SLOT_SIZE;
+    }
+
+    // ------------------- Users -------------------
+
+    private int userCode(String userId) {
+        if (userId == null) return NONE;
+
+        Integer code = userCodeById.get(userId);
+        if (code != null) return code;
+
+        int next = userIdByCode.size();
+        userIdByCode.add(userId);
+        userCodeById.put(userId, next);
+        if (next == firstOfUser.length) {
+            firstOfUser = Arrays.copyOf(firstOfUser, next * 2);
+            lastOfUser = Arrays.copyOf(lastOfUser, next * 2);
+        }
+        firstOfUser[next] = NONE;
+        lastOfUser[next] = NONE;
+        return next;
+    }
+
+    private void linkToUser(int code, int s) {
+        int last = lastOfUser[code];
+        if (last == NONE) firstOfUser[code] = s;
+        else chunks[last >>> CHUNK_SHIFT].set(INT, offset(last) + NEXT_OF_USER, s);
+        lastOfUser[code] = s;
+    }
+
+    // ------------------- ID index -------------------
+
+    private int find(long high, long low) {
+        int mask = indexCapacity - 1;
+        for (int i = hash(high, low) & mask; ; i = (i + 1) & mask) {
+            int value = index.getAtIndex(INT, i);
+            if (value == 0) return NONE;
+            int s = value - 1;
+            if (getLong(s, ID_LOW) == low && getLong(s, ID_HIGH) == high) return s;
+        }
+    }
+
+    private void insert(long high, long low, int s) {
+        int mask = indexCapacity - 1;
+        int i = hash(high, low) & mask;
+        while (index.getAtIndex(INT, i) != 0) i = (i + 1) & mask;
+        index.setAtIndex(INT, i, s + 1);
+    }
+
+    /** Rebuilds the index from the slots in a new arena and frees the old one. */
+    private void rehash(int newCapacity) {
+        Arena old = indexArena;
+        allocateIndex(newCapacity);
+        for (int s = 0; s < size; s++) insert(getLong(s, ID_HIGH), getLong(s, ID_LOW), s);
+        old.close();
+    }
+
+    private void allocateIndex(int capacity) {
+        indexArena = Arena.ofShared();
+        index = indexArena.allocate((long) capacity * Integer.BYTES, Integer.BYTES);
+        indexCapacity = capacity;
+    }
+
+    private static int hash(long high, long low) {
+        long h = high ^ low;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("Repository is closed");
+    }
+
+    private static UUID parseId(String id) {
+        if (id == null) return null;
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException _) {
+            return null;
+        }
+    }
+}
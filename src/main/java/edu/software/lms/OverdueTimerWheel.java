@@ -0,0 +1,207 @@
+package edu.software.lms;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timer wheel that tells, day by day, which loans have just
+ * become overdue.
+ *
+ * <p>A loan is registered with {@link #schedule(Loan)} when it is created and
+ * cancelled with {@link #cancel(String)} when it is returned. It is due to
+ * fire on the day after its due date, the first day on which
+ * {@link Loan#isOverdue(LocalDate)} holds.</p>
+ *
+ * <p>Days are epoch days. The wheel has {@value #LEVELS} levels of
+ * {@value #SLOTS} slots: a slot of level 0 holds the loans firing on one day
+ * of the current 64-day block, a slot of level 1 those firing in one 64-day
+ * block of the current 4096-day block, and so on. When the clock enters a
+ * new block, the loans of that block's slot move down a level. Every loan
+ * therefore moves at most {@value #LEVELS} times, and
+ * {@link #advanceTo(LocalDate)} does work proportional to the days passed and
+ * the loans that fire, not to the number of registered loans. Slots are
+ * intrusive doubly linked lists, so cancelling is constant time.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class OverdueTimerWheel {
+
+    /** Slots per level. */
+    static final int SLOTS = 64;
+
+    /** Number of levels; together they cover 64<sup>4</sup> days ahead. */
+    static final int LEVELS = 4;
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int OVERFLOW = LEVELS;
+
+    /** A registered loan, linked into one slot. */
+    private static final class Entry {
+        final String loanId;
+        final long day;
+        int level;
+        int slot;
+        Entry prev;
+        Entry next;
+
+        Entry(String loanId, long day) {
+            this.loanId = loanId;
+            this.day = day;
+        }
+    }
+
+    /** Heads of the slot lists, by level; the last row holds the overflow list. */
+    private final Entry[][] heads = new Entry[LEVELS + 1][SLOTS];
+    private final Map<String, Entry> byLoanId = new HashMap<>();
+    private long now;
+
+    /**
+     * Creates an empty wheel whose clock is at the given day.
+     *
+     * @param today the current date
+     */
+    public OverdueTimerWheel(LocalDate today) {
+        this.now = today.toEpochDay();
+    }
+
+    /**
+     * Registers a loan to fire on the day after its due date, replacing any
+     * earlier registration of the same loan.
+     *
+     * @param loan the loan
+     * @return true if registered; false if the loan is returned or already overdue
+     */
+    public synchronized boolean schedule(Loan loan) {
+        Entry old = byLoanId.remove(loan.getId());
+        if (old != null) unlink(old);
+        if (loan.isReturned()) return false;
+
+        long day = loan.getDueEpochDay() + 1L;
+        if (day <= now) return false;
+
+        Entry entry = new Entry(loan.getId(), day);
+        byLoanId.put(entry.loanId, entry);
+        place(entry);
+        return true;
+    }
+
+    /**
+     * Registers the unreturned, not yet overdue loans of a repository, for
+     * example when the application starts.
+     *
+     * @param repository repository to scan
+     * @return number of loans registered
+     */
+    public int scheduleAll(LoanRepository repository) {
+        int[] count = {0};
+        repository.forEachLoan(loan -> {
+            if (schedule(loan)) count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * Removes a loan's registration, typically because it was returned.
+     *
+     * @param loanId ID of the loan
+     * @return true if the loan was registered
+     */
+    public synchronized boolean cancel(String loanId) {
+        Entry entry = byLoanId.remove(loanId);
+        if (entry == null) return false;
+        unlink(entry);
+        return true;
+    }
+
+    /**
+     * Moves the clock forward to the given day, firing every loan that
+     * became overdue on one of the days passed. Moving backwards does
+     * nothing.
+     *
+     * @param today the new current date
+     * @return IDs of the loans that became overdue, in the order of the days they did
+     */
+    public synchronized List<String> advanceTo(LocalDate today) {
+        long target = today.toEpochDay();
+        List<String> fired = new ArrayList<>();
+        while (now < target) {
+            now++;
+            cascade();
+            for (Entry e = heads[0][(int) (now & SLOT_MASK)]; e != null; e = heads[0][(int) (now & SLOT_MASK)]) {
+                unlink(e);
+                byLoanId.remove(e.loanId);
+                fired.add(e.loanId);
+            }
+        }
+        return fired;
+    }
+
+    /** @return number of registered loans */
+    public synchronized int size() {
+        return byLoanId.size();
+    }
+
+    /** @return the day the clock is at */
+    public synchronized LocalDate today() {
+        return LocalDate.ofEpochDay(now);
+    }
+
+    // ------------------- Slots -------------------
+
+    /**
+     * When the clock has entered a new block at some levels, moves the loans
+     * of the slots for those blocks down, starting at the highest level so
+     * that they cascade all the way.
+     */
+    private void cascade() {
+        for (int level = LEVELS; level >= 1; level--) {
+            int shift = SLOT_BITS * level;
+            if ((now & ((1L << shift) - 1)) != 0) continue;
+
+            int slot = level == OVERFLOW ? 0 : (int) ((now >>> shift) & SLOT_MASK);
+            Entry e = heads[level][slot];
+            heads[level][slot] = null;
+            while (e != null) {
+                Entry next = e.next;
+                e.prev = null;
+                e.next = null;
+                place(e);
+                e = next;
+            }
+        }
+    }
+
+    /** Links the entry into the lowest level whose current block contains its day. */
+    private void place(Entry entry) {
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = SLOT_BITS * (level + 1);
+            if ((entry.day >>> shift) == (now >>> shift)) {
+                link(entry, level, (int) ((entry.day >>> (SLOT_BITS * level)) & SLOT_MASK));
+                return;
+            }
+        }
+        link(entry, OVERFLOW, 0);
+    }
+
+    private void link(Entry entry, int level, int slot) {
+        Entry head = heads[level][slot];
+        entry.level = level;
+        entry.slot = slot;
+        entry.prev = null;
+        entry.next = head;
+        if (head != null) head.prev = entry;
+        heads[level][slot] = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev != null) entry.prev.next = entry.next;
+        else heads[entry.level][entry.slot] = entry.next;
+        if (entry.next != null) entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+}
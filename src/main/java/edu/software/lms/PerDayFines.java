@@ -0,0 +1,54 @@
+package edu.software.lms;
+
+/**
+ * Batch computation of flat per-day fines ({@code max(days, 0) * perDay}),
+ * shared by {@link BookFineStrategy} and {@link CDFineStrategy}.
+ *
+ * <p>When the {@code jdk.incubator.vector} module is present (the JVM was
+ * started with {@code --add-modules jdk.incubator.vector}), the work is done
+ * by {@link VectorPerDayFines} with SIMD instructions. Otherwise a plain loop
+ * is used, so the application runs on any JVM.</p>
+ */
+final class PerDayFines {
+
+    /** Whether batches are computed with the Vector API. */
+    static final boolean VECTORIZED =
+            ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private PerDayFines() { }
+
+    /**
+     * Computes {@code out[i] = max(overdueDays[i], 0) * perDay}.
+     *
+     * @param overdueDays overdue days per loan
+     * @param out         receives the fine per loan
+     * @param perDay      fine per overdue day
+     */
+    static void calculate(int[] overdueDays, int[] out, int perDay) {
+        checkLengths(overdueDays, out);
+        if (VECTORIZED) {
+            // only referenced here, so the class is never loaded without the module
+            VectorPerDayFines.calculate(overdueDays, out, perDay);
+        } else {
+            calculateScalar(overdueDays, out, 0, perDay);
+        }
+    }
+
+    /**
+     * Scalar version of {@link #calculate(int[], int[], int)}, from index
+     * {@code from} to the end of {@code overdueDays}.
+     */
+    static void calculateScalar(int[] overdueDays, int[] out, int from, int perDay) {
+        for (int i = from; i < overdueDays.length; i++) {
+            int days = overdueDays[i];
+            out[i] = days <= 0 ? 0 : days * perDay;
+        }
+    }
+
+    static void checkLengths(int[] overdueDays, int[] out) {
+        if (out.length < overdueDays.length) {
+            throw new IllegalArgumentException("Output holds " + out.length
+                    + " fines but " + overdueDays.length + " are needed");
+        }
+    }
+}
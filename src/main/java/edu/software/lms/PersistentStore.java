@@ -0,0 +1,366 @@
+package edu.software.lms;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent repository mode: book, user and loan repositories whose changes
+ * are written to an append-only {@link Journal} in a data directory.
+ *
+ * <p>{@link #open(Path)} rebuilds the in-memory state from the data directory,
+ * then hands out repositories that journal every {@code addBook}, ID
+ * reservation, {@code addUser}, {@code updateUser}, {@code deleteUser},
+ * {@code addLoan} and {@code updateLoan} with group-commit fsync before
+ * returning. Book availability and users' active loan IDs are not journaled;
+ * they are derived from unreturned loans after loading.</p>
+ *
+ * <p>The journal is split into numbered segments ({@code journal-N.wal}).
+ * A snapshot {@code snapshot-N.snap} holds the complete state as of the start
+ * of segment {@code N}, so startup loads the latest snapshot and replays only
+ * the segments from {@code N} on. Snapshots are taken in the background at a
+ * fixed interval, or on demand with {@link #snapshotNow()}:</p>
+ * <ol>
+ *     <li>the journal rolls over to segment {@code N}; writers keep going</li>
+ *     <li>the repositories are copied into {@code snapshot-N.snap} without
+ *         blocking writers</li>
+ *     <li>older segments and snapshots are deleted</li>
+ * </ol>
+ * <p>Because writers are not stopped, a snapshot may already contain changes
+ * that are also recorded at the start of segment {@code N}. Every record
+ * holds the full state of its object, so replaying them again leaves the
+ * same result.</p>
+ */
+public final class PersistentStore implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(PersistentStore.class.getName());
+
+    /** Interval between background snapshots used by {@link #open(Path)}. */
+    public static final Duration DEFAULT_SNAPSHOT_INTERVAL = Duration.ofMinutes(10);
+
+    /** Single-file journal written by earlier versions; becomes segment 0. */
+    static final String LEGACY_JOURNAL_FILE = "journal.wal";
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d+)\\.wal");
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.snap");
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final Journal journal;
+    private final InMemoryBooks books;
+    private final InMemoryUserRepository users;
+    private final InMemoryLoanRepository loans;
+    private final BookRepository bookRepository;
+    private final UserRepository userRepository;
+    private final LoanRepository loanRepository;
+
+    /** Serializes snapshots with each other and with {@link #close()}. */
+    private final Object snapshotLock = new Object();
+    private long currentSegment;
+    private boolean closed;
+    private ScheduledExecutorService snapshotScheduler;
+
+    private PersistentStore(Path directory, Journal journal, long currentSegment, InMemoryBooks books,
+                            InMemoryUserRepository users, InMemoryLoanRepository loans) {
+        this.directory = directory;
+        this.journal = journal;
+        this.currentSegment = currentSegment;
+        this.books = books;
+        this.users = users;
+        this.loans = loans;
+        this.bookRepository = new JournaledBookRepository(books, journal);
+        this.userRepository = new JournaledUserRepository(users, journal);
+        this.loanRepository = new JournaledLoanRepository(loans, journal);
+    }
+
+    /**
+     * Opens the store with {@link #DEFAULT_SNAPSHOT_INTERVAL background snapshots}.
+     *
+     * @param directory data directory
+     * @return the opened store
+     * @throws IOException if the data cannot be read or the journal opened for writing
+     */
+    public static PersistentStore open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Opens the store in the given directory, creating it if needed, and
+     * recovers the state recorded in its latest snapshot and journal tail.
+     *
+     * @param directory        data directory
+     * @param snapshotInterval time between background snapshots; {@code null}
+     *                         or zero disables them
+     * @return the opened store
+     * @throws IOException if the data cannot be read or the journal opened for writing
+     */
+    public static PersistentStore open(Path directory, Duration snapshotInterval) throws IOException {
+        Files.createDirectories(directory);
+        migrateLegacyJournal(directory);
+
+        InMemoryBooks books = new InMemoryBooks();
+        InMemoryUserRepository users = new InMemoryUserRepository();
+        InMemoryLoanRepository loans = new InMemoryLoanRepository();
+        Journal.Handler handler = (op, payload) -> apply(op, payload, books, users, loans);
+
+        long snapshot = latest(directory, SNAPSHOT_NAME);
+        if (snapshot >= 0 && !Journal.replay(snapshotFile(directory, snapshot), handler)) {
+            throw new IOException("Corrupt snapshot " + snapshotFile(directory, snapshot));
+        }
+
+        long firstSegment = Math.max(snapshot, 0);
+        List<Long> segments = numbered(directory, SEGMENT_NAME, firstSegment);
+        long current = segments.isEmpty() ? firstSegment : segments.getLast();
+        for (long segment : segments) {
+            if (segment == current) break;
+            if (!Journal.replay(segmentFile(directory, segment), handler)) {
+                logger.log(Level.WARNING, "Journal segment {0} ends with an invalid record", segment);
+            }
+        }
+        Journal journal = Journal.open(segmentFile(directory, current), handler);
+        rebuildDerivedState(books, users, loans);
+
+        PersistentStore store = new PersistentStore(directory, journal, current, books, users, loans);
+        store.deleteOlderThan(firstSegment, true);
+        store.scheduleSnapshots(snapshotInterval);
+        return store;
+    }
+
+    /** @return journaled book repository */
+    public BookRepository getBookRepository() { return bookRepository; }
+
+    /** @return journaled user repository */
+    public UserRepository getUserRepository() { return userRepository; }
+
+    /** @return journaled loan repository */
+    public LoanRepository getLoanRepository() { return loanRepository; }
+
+    /** @return journal backing this store */
+    Journal journal() { return journal; }
+
+    /**
+     * Applies one journal record to the in-memory repositories. Records hold
+     * full object state, so applying a record whose effect is already
+     * present leaves the state unchanged.
+     */
+    static void apply(JournalOp op, DataInputStream in, InMemoryBooks books,
+                      InMemoryUserRepository users, InMemoryLoanRepository loans) throws IOException {
+        switch (op) {
+            case ADD_BOOK -> books.addBook(JournalCodec.decodeBook(in));
+            case BOOK_ID_HIGH_WATER -> books.restoreNextId(in.readInt());
+            case ADD_USER -> users.addUser(JournalCodec.decodeUser(in));
+            case UPDATE_USER -> {
+                User decoded = JournalCodec.decodeUser(in);
+                User stored = users.getUserById(decoded.getId());
+                if (stored != null) stored.setFineBalance(decoded.getFineBalance());
+                else users.addUser(decoded);
+            }
+            case DELETE_USER -> users.deleteUser(JournalCodec.decodeString(in));
+            case ADD_LOAN, UPDATE_LOAN -> {
+                Loan decoded = JournalCodec.decodeLoan(in);
+                Loan stored = loans.getLoanById(decoded.getId());
+                if (stored == null) {
+                    loans.addLoan(decoded);
+                } else {
+                    JournalCodec.copyLoanState(stored, decoded);
+                    loans.updateLoan(stored);
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks items of unreturned loans as borrowed and re-attaches active loan
+     * IDs to their users.
+     */
+    static void rebuildDerivedState(InMemoryBooks books, InMemoryUserRepository users,
+                                    InMemoryLoanRepository loans) {
+        for (Loan loan : loans.getAllLoans()) {
+            if (loan.isReturned()) continue;
+
+            Book book = books.getBookById(loan.getBookId());
+            if (book != null) book.setBorrowed(true);
+
+            User user = users.getUserById(loan.getUserId());
+            if (user != null) user.addLoanId(loan.getId());
+        }
+    }
+
+    // ------------------- Snapshots and compaction -------------------
+
+    /**
+     * Takes a snapshot and deletes the journal segments it covers. Writers
+     * are not blocked while the snapshot is written.
+     *
+     * @return false if nothing was journaled since the last snapshot, so none was taken
+     * @throws IOException if the journal cannot be rolled or the snapshot written
+     */
+    public boolean snapshotNow() throws IOException {
+        synchronized (snapshotLock) {
+            if (closed) throw new IllegalStateException("Store is closed");
+            if (Files.size(segmentFile(directory, currentSegment)) == 0) return false;
+
+            long next = currentSegment + 1;
+            journal.roll(segmentFile(directory, next));
+            currentSegment = next;
+            syncDirectory();
+
+            writeSnapshot(snapshotFile(directory, next));
+            deleteOlderThan(next, false);
+            return true;
+        }
+    }
+
+    /**
+     * Writes the current state as journal frames to a temporary file, forces
+     * it and renames it into place, so a snapshot file is always complete.
+     */
+    private void writeSnapshot(Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            out.write(Journal.frame(JournalOp.BOOK_ID_HIGH_WATER, JournalCodec.encodeInt(books.getNextId())));
+            for (Book book : books.getAllBooks()) {
+                out.write(Journal.frame(JournalOp.ADD_BOOK, JournalCodec.encodeBook(book)));
+            }
+            for (User user : users.getAllUsers()) {
+                out.write(Journal.frame(JournalOp.ADD_USER, JournalCodec.encodeUser(user)));
+            }
+            for (Loan loan : loans.getAllLoans()) {
+                out.write(Journal.frame(JournalOp.ADD_LOAN, JournalCodec.encodeLoan(loan)));
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+    }
+
+    private void scheduleSnapshots(Duration interval) {
+        if (interval == null || interval.isZero() || interval.isNegative()) return;
+
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "lms-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        snapshotScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshotNow();
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "Background snapshot failed", e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Deletes segments and snapshots numbered below {@code keepFrom} and,
+     * when opening, leftover temporary snapshot files.
+     */
+    private void deleteOlderThan(long keepFrom, boolean deleteTemp) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long segment = number(SEGMENT_NAME, name);
+                long snapshot = number(SNAPSHOT_NAME, name);
+                boolean obsolete = (segment >= 0 && segment < keepFrom)
+                        || (snapshot >= 0 && snapshot < keepFrom)
+                        || (deleteTemp && name.endsWith(TEMP_SUFFIX));
+                if (obsolete) Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /** Makes renames and newly created files in the data directory durable. */
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException _) {
+            // not supported on every platform; file contents are forced regardless
+        }
+    }
+
+    // ------------------- File naming -------------------
+
+    static Path segmentFile(Path directory, long number) {
+        return directory.resolve(String.format("journal-%010d.wal", number));
+    }
+
+    static Path snapshotFile(Path directory, long number) {
+        return directory.resolve(String.format("snapshot-%010d.snap", number));
+    }
+
+    private static void migrateLegacyJournal(Path directory) throws IOException {
+        Path legacy = directory.resolve(LEGACY_JOURNAL_FILE);
+        if (Files.exists(legacy) && numbered(directory, SEGMENT_NAME, 0).isEmpty()) {
+            Files.move(legacy, segmentFile(directory, 0), StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /** @return sorted numbers of matching files that are at least {@code from} */
+    private static List<Long> numbered(Path directory, Pattern pattern, long from) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                long n = number(pattern, file.getFileName().toString());
+                if (n >= from) numbers.add(n);
+            }
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    /** @return highest number of a matching file, or -1 if there is none */
+    private static long latest(Path directory, Pattern pattern) throws IOException {
+        List<Long> numbers = numbered(directory, pattern, 0);
+        return numbers.isEmpty() ? -1 : numbers.getLast();
+    }
+
+    private static long number(Pattern pattern, String fileName) {
+        Matcher m = pattern.matcher(fileName);
+        return m.matches() ? Long.parseLong(m.group(1)) : -1;
+    }
+
+    /**
+     * Stops background snapshots, flushes pending journal records and closes
+     * the journal.
+     *
+     * @throws IOException if the journal cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdown();
+            try {
+                snapshotScheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException _) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (snapshotLock) {
+            closed = true;
+            journal.close();
+        }
+    }
+}
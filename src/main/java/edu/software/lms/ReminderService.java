@@ -1,7 +1,13 @@
 package edu.software.lms;
 
+import java.io.Serial;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Service responsible for scanning loans for overdue items and
@@ -11,9 +17,13 @@ import java.util.*;
  */
 public class ReminderService implements Subject {
 
+    /** Maximum number of loans counted by one fork-join task. */
+    static final int PARALLEL_THRESHOLD = 16_384;
+
     private final LoanRepository loanRepo;
     private final TimeProvider timeProvider;
     private final UserRepository userRepo;
+    private final OverdueTimerWheel overdueWheel;
     private final List<Observer> observers = new ArrayList<>();
 
     /**
@@ -26,9 +36,27 @@ public class ReminderService implements Subject {
     public ReminderService(LoanRepository loanRepo,
                            TimeProvider timeProvider,
                            UserRepository userRepo) {
+        this(loanRepo, timeProvider, userRepo, null);
+    }
+
+    /**
+     * Constructs a reminder service that can also report, at each day
+     * rollover, the loans that have just become overdue.
+     *
+     * @param loanRepo     repository containing loan records
+     * @param timeProvider time provider for computing overdue loans
+     * @param userRepo     repository of users for resolving usernames
+     * @param overdueWheel wheel in which the loans are registered, see
+     *                     {@link #processDayRollover()}; may be {@code null}
+     */
+    public ReminderService(LoanRepository loanRepo,
+                           TimeProvider timeProvider,
+                           UserRepository userRepo,
+                           OverdueTimerWheel overdueWheel) {
         this.loanRepo = loanRepo;
         this.timeProvider = timeProvider;
         this.userRepo = userRepo;
+        this.overdueWheel = overdueWheel;
     }
 
     @Override
@@ -49,29 +77,125 @@ public class ReminderService implements Subject {
     }
 
     /**
-     * Scans all loans for overdue items and sends aggregated notifications
-     * to each user.
+     * Collects the overdue, unreturned loans from the repository's due-date
+     * index and sends aggregated notifications to each user.
      *
      * <p>Each user receives one notification indicating the number
-     * of overdue items they have.</p>
+     * of overdue items they have. Counts are kept per user ID and each user
+     * is looked up once; loans of unknown users are skipped.</p>
      */
     public void sendOverdueNotifications() {
 
         LocalDate today = timeProvider.today();
-        Map<User, Long> overdueCountByUser = new HashMap<>();
+        Map<String, Long> overdueCountByUserId = new HashMap<>();
+
+        for (Loan loan : loanRepo.getOverdueLoans(today)) {
+            if (loan.getUserId() != null && !loan.isReturned() && loan.isOverdue(today)) {
+                overdueCountByUserId.merge(loan.getUserId(), 1L, Long::sum);
+            }
+        }
+
+        notifyOverdue(overdueCountByUserId);
+    }
+
+    /**
+     * Parallel variant of {@link #sendOverdueNotifications()} for large loan
+     * histories.
+     *
+     * <p>The overdue loans are split into fork-join tasks of at most
+     * {@value #PARALLEL_THRESHOLD} loans, which count them per user ID in a
+     * shared concurrent map of {@link LongAdder}s. Users are then looked up
+     * once each and notified on the calling thread, so observers need not be
+     * thread-safe.</p>
+     *
+     * @param pool pool that runs the counting tasks
+     */
+    public void sendOverdueNotifications(ForkJoinPool pool) {
+
+        LocalDate today = timeProvider.today();
+        List<Loan> overdue = loanRepo.getOverdueLoans(today);
+        if (!(overdue instanceof RandomAccess)) overdue = new ArrayList<>(overdue);
+
+        ConcurrentMap<String, LongAdder> overdueCountByUserId = new ConcurrentHashMap<>();
+        pool.invoke(new CountOverdue(overdue, 0, overdue.size(), today, overdueCountByUserId));
+
+        Map<String, Long> counts = new HashMap<>(overdueCountByUserId.size() * 2);
+        overdueCountByUserId.forEach((userId, count) -> counts.put(userId, count.sum()));
+        notifyOverdue(counts);
+    }
+
+    /** Sends each known user the number of their overdue items. */
+    private void notifyOverdue(Map<String, Long> overdueCountByUserId) {
+        notifyUsers(overdueCountByUserId, " overdue book(s).");
+    }
+
+    /** Resolves each user ID once and sends the known users their count, followed by the suffix. */
+    private void notifyUsers(Map<String, Long> countByUserId, String suffix) {
+        for (Map.Entry<String, Long> entry : countByUserId.entrySet()) {
+            User user = userRepo.getUserById(entry.getKey());
+            if (user == null) continue;
+            notifyObservers(user, "You have " + entry.getValue() + suffix);
+        }
+    }
+
+    /** Counts the overdue loans of a range of the list per user ID. */
+    private static final class CountOverdue extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Loan> loans;
+        private final int from;
+        private final int to;
+        private final LocalDate today;
+        private final transient ConcurrentMap<String, LongAdder> counts;
 
-        for (Loan loan : loanRepo.getAllLoans()) {
-            if (loan.isOverdue(today)) {
-                User u = userRepo.getUserById(loan.getUserId());
-                overdueCountByUser.merge(u, 1L, Long::sum);
+        CountOverdue(List<Loan> loans, int from, int to, LocalDate today, ConcurrentMap<String, LongAdder> counts) {
+            this.loans = loans;
+            this.from = from;
+            this.to = to;
+            this.today = today;
+            this.counts = counts;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new CountOverdue(loans, from, mid, today, counts),
+                        new CountOverdue(loans, mid, to, today, counts));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                Loan loan = loans.get(i);
+                if (loan.getUserId() != null && !loan.isReturned() && loan.isOverdue(today)) {
+                    // after the first loan of a user this is a lock-free read and add
+                    counts.computeIfAbsent(loan.getUserId(), k -> new LongAdder()).increment();
+                }
             }
         }
+    }
 
-        for (Map.Entry<User, Long> entry : overdueCountByUser.entrySet()) {
-            User user = entry.getKey();
-            long count = entry.getValue();
-            String msg = "You have " + count + " overdue book(s).";
-            notifyObservers(user, msg);
+    /**
+     * Advances the overdue timer wheel to today and notifies each user whose
+     * loans became overdue since the previous rollover.
+     *
+     * <p>Only the loans fired by the wheel are looked up, so the work is
+     * proportional to the newly overdue loans rather than to all loans.
+     * Loans returned without being cancelled in the wheel are skipped.</p>
+     *
+     * @throws IllegalStateException if the service has no overdue wheel
+     */
+    public void processDayRollover() {
+        if (overdueWheel == null) throw new IllegalStateException("No overdue timer wheel configured");
+
+        LocalDate today = timeProvider.today();
+        Map<String, Long> newlyOverdueByUserId = new LinkedHashMap<>();
+        for (String loanId : overdueWheel.advanceTo(today)) {
+            Loan loan = loanRepo.getLoanById(loanId);
+            if (loan == null || loan.isReturned() || loan.getUserId() == null) continue;
+            newlyOverdueByUserId.merge(loan.getUserId(), 1L, Long::sum);
         }
+        notifyUsers(newlyOverdueByUserId, " newly overdue item(s).");
     }
 }
@@ -0,0 +1,97 @@
+package edu.software.lms;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free pool that canonicalizes frequently repeated strings
+ * such as authors, titles and user IDs.
+ *
+ * <p>Many books share an author and every loan repeats its borrower's user
+ * ID. When records are created, these fields go through
+ * {@link #intern(String)}, so equal values usually end up as one shared
+ * instance: the duplicates become garbage right away, and hash lookups by
+ * these fields succeed on the identity check in {@link String#equals}
+ * without comparing characters.</p>
+ *
+ * <p>The pool is a fixed-size, direct-mapped table: each string has one
+ * slot, chosen by its hash code, and a newer string simply replaces an older
+ * one that collides with it. Memory use is therefore bounded, and
+ * deduplication is best-effort: equal strings may occasionally stay
+ * distinct, which only costs memory. Unlike {@link String#intern()}, the
+ * pool never grows and needs no locking.</p>
+ */
+final class StringPool {
+
+    /** Default number of slots of the shared pool. */
+    static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static volatile StringPool shared = new StringPool(DEFAULT_CAPACITY);
+
+    private final AtomicReferenceArray<String> slots;
+    private final int mask;
+
+    /**
+     * Creates a pool.
+     *
+     * @param capacity number of slots, rounded up to a power of two; 0
+     *                 creates a pool that returns every string unchanged
+     * @throws IllegalArgumentException if {@code capacity} is negative or too large
+     */
+    StringPool(int capacity) {
+        if (capacity < 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = capacity <= 1 ? capacity : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /** @return the pool used by the record constructors and setters */
+    static StringPool shared() {
+        return shared;
+    }
+
+    /**
+     * Replaces the shared pool.
+     *
+     * @param pool the new pool
+     * @throws IllegalArgumentException if {@code pool} is null
+     */
+    static void setShared(StringPool pool) {
+        if (pool == null) throw new IllegalArgumentException("String pool must not be null");
+        shared = pool;
+    }
+
+    /**
+     * Shorthand for {@code shared().intern(s)}.
+     *
+     * @param s string to canonicalize; may be null
+     * @return the pooled instance equal to {@code s}, or {@code s} itself
+     */
+    static String canonical(String s) {
+        return shared.intern(s);
+    }
+
+    /**
+     * Returns the pooled instance equal to {@code s}, pooling {@code s} if
+     * there is none.
+     *
+     * @param s string to canonicalize; may be null
+     * @return an equal string, or {@code null} if {@code s} is null
+     */
+    String intern(String s) {
+        if (s == null || mask < 0) return s;
+
+        int h = s.hashCode();
+        int i = (h ^ (h >>> 16)) & mask;
+        String pooled = slots.getAcquire(i);
+        if (s.equals(pooled)) return pooled;
+        slots.setRelease(i, s);
+        return s;
+    }
+
+    /** @return number of slots */
+    int capacity() {
+        return slots.length();
+    }
+}
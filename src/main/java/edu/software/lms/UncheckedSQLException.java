@@ -0,0 +1,29 @@
+package edu.software.lms;
+
+import java.io.Serial;
+import java.sql.SQLException;
+
+/**
+ * Wraps an {@link SQLException} thrown by a database-backed repository,
+ * whose interface methods cannot throw checked exceptions; the counterpart
+ * of {@link java.io.UncheckedIOException}.
+ */
+public class UncheckedSQLException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message description of the failed operation
+     * @param cause   the database error
+     */
+    public UncheckedSQLException(String message, SQLException cause) {
+        super(message, cause);
+    }
+
+    /** @return the database error */
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -1,26 +1,30 @@
 package edu.software.lms;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents a user in the library system.
  *
  * <p>Users may be administrators or regular borrowers. Each user maintains
  * fine balance information and a list of active loan IDs.</p>
+ *
+ * <p>The fine balance and loan ID list are safe to update from several
+ * sessions at once; fine updates are atomic and never lost.</p>
  */
 public class User {
 
     private String username;
     private String password;
     private String id;
-    private int fineBalance;
+    private final AtomicInteger fineBalance = new AtomicInteger();
     private String email;
     private boolean isAdmin;
 
     /** List of loan IDs associated with this user. */
-    private final List<String> loanIds;
+    private final CopyOnWriteArrayList<String> loanIds;
 
     /**
      * Constructs a new user.
@@ -31,11 +35,10 @@ public class User {
      * @param isAdmin  whether this user is an administrator
      */
     public User(String username, String password, String email, boolean isAdmin) {
-        this.username = username;
+        this.username = StringPool.canonical(username);
         this.password = password;
-        this.id = username; // user ID defaults to username
-        this.fineBalance = 0;
-        this.loanIds = new ArrayList<>();
+        this.id = this.username; // user ID defaults to username
+        this.loanIds = new CopyOnWriteArrayList<>();
         this.email = email;
         this.isAdmin = isAdmin;
     }
@@ -46,7 +49,7 @@ public class User {
     public String getUsername() { return username; }
 
     /** Updates the username. */
-    public void setUsername(String username) { this.username = username; }
+    public void setUsername(String username) { this.username = StringPool.canonical(username); }
 
     /** @return hashed password */
     public String getPassword() { return password; }
@@ -56,7 +59,7 @@ public class User {
     public String getId() { return id; }
 
     /** Updates the user ID. */
-    public void setId(String id) { this.id = id; }
+    public void setId(String id) { this.id = StringPool.canonical(id); }
 
     /** @return user’s email address */
     public String getEmail() { return email; }
@@ -70,14 +73,14 @@ public class User {
     /**
      * @return current unpaid fine balance
      */
-    public int getFineBalance() { return fineBalance; }
+    public int getFineBalance() { return fineBalance.get(); }
 
     /**
      * Adds a fine amount to the user's balance.
      *
      * @param amount amount to add (may not be negative)
      */
-    public void addFine(int amount) { this.fineBalance += amount; }
+    public void addFine(int amount) { fineBalance.addAndGet(amount); }
 
     /**
      * Pays part or all of the user's fine balance.
@@ -86,9 +89,16 @@ public class User {
      */
     public void payFine(int amount) {
         if (amount <= 0) return;
-        this.fineBalance = Math.max(0, this.fineBalance - amount);
+        fineBalance.updateAndGet(balance -> Math.max(0, balance - amount));
     }
 
+    /**
+     * Overwrites the fine balance, e.g. when loading the user from storage.
+     *
+     * @param balance new balance
+     */
+    void setFineBalance(int balance) { fineBalance.set(balance); }
+
     // ------------------- Loan Handling -------------------
 
     /**
@@ -102,8 +112,8 @@ public class User {
      * @param loanId ID of loan
      */
     public void addLoanId(String loanId) {
-        if (loanId != null && !loanIds.contains(loanId)) {
-            loanIds.add(loanId);
+        if (loanId != null) {
+            loanIds.addIfAbsent(loanId);
         }
     }
 
@@ -123,7 +133,7 @@ public class User {
 
     @Override
     public String toString() {
-        return "User{id='" + id + "', username='" + username + "', fineBalance=" + fineBalance + "}";
+        return "User{id='" + id + "', username='" + username + "', fineBalance=" + getFineBalance() + "}";
     }
 
     @Override
@@ -38,7 +38,7 @@ public class UserBookOperations implements Window {
      * @param userService shared service holding user/session data
      */
     public UserBookOperations(UserService userService) {
-        Observer emailNotifier = new EmailNotifier();
+        Observer emailNotifier = userService.getNotifier();
         this.userService = userService;
         this.bookRepo = userService.getBookRepository();
         LoanRepository loanRepo = userService.getLoanRepository();
@@ -47,7 +47,7 @@ public class UserBookOperations implements Window {
                 userService.getUserRepository(),
                 bookRepo,
                 loanRepo,
-                new SystemTimeProvider(),
+                userService.getTimeProvider(),
                 new BookFineStrategy(),
                 emailNotifier
         );
@@ -56,7 +56,8 @@ public class UserBookOperations implements Window {
                 userService.getUserRepository(),
                 bookRepo,
                 loanRepo,
-                new SystemTimeProvider()
+                userService.getTimeProvider(),
+                userService.getOverdueWheel()
         );
     }
 
@@ -4,6 +4,12 @@ package edu.software.lms;
  * Repository abstraction for storing and retrieving users.
  *
  * <p>Allows different storage methods (in-memory, database, etc.) to be plugged in.</p>
+ *
+ * <p>Implementations must be safe to call from many sessions at once: lookups
+ * may run concurrently with each other and with {@link #addUser(User)} and
+ * {@link #deleteUser(String)}, and a user must never be visible under its ID
+ * but missing under its username once {@code addUser} has returned. A user's
+ * ID and username must not be changed while it is stored.</p>
  */
 public interface UserRepository {
 
@@ -38,4 +44,18 @@ public interface UserRepository {
      * @return true if deletion was successful
      */
     boolean deleteUser(String id);
+
+    /**
+     * Persists changes to the mutable state (such as the fine balance) of a
+     * stored user. Callers invoke it after changing a user they obtained from
+     * this repository.
+     *
+     * <p>In-memory implementations hand out the live objects, so the default
+     * implementation does nothing.</p>
+     *
+     * @param user the stored user whose state changed
+     */
+    default void updateUser(User user) {
+        // in-memory users are updated in place
+    }
 }
@@ -1,6 +1,11 @@
 package edu.software.lms;
 
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Central service managing users, authentication, repositories, and admin tasks.
@@ -9,10 +14,24 @@ import java.util.List;
  */
 public class UserService {
 
+    private static final Logger logger = Logger.getLogger(UserService.class.getName());
+
     private UserRepository userRepository = new InMemoryUserRepository();
     private BookRepository bookRepository = new InMemoryBooks();
     private LoanRepository loanRepository = new InMemoryLoanRepository();
 
+    /** Clock shared by the services and the overdue timer wheel. */
+    private TimeProvider timeProvider = new SystemTimeProvider();
+
+    /** Shared overdue timer wheel, built from the loan repository on first use. */
+    private OverdueTimerWheel overdueWheel;
+
+    /** Runs {@link #processDayRollover()} every hour once started. */
+    private ScheduledExecutorService rolloverScheduler;
+
+    /** Shared e-mail notifier, created on first use. */
+    private AsyncNotifier notifier;
+
     /** Holds the currently logged-in user (session user). */
     private User currentUser;
 
@@ -20,7 +39,23 @@ public class UserService {
      * Creates a UserService and automatically initializes the admin account.
      */
     public UserService() {
-        createAdmin("admin","admin@ADMIN123","admin@gmail.com");
+        addAdmin("admin","admin@ADMIN123","admin@gmail.com");
+    }
+
+    /**
+     * Creates a UserService on top of the given repositories (e.g. those of a
+     * {@link PersistentStore}) and makes sure the admin account exists.
+     *
+     * @param userRepository user storage
+     * @param bookRepository book storage
+     * @param loanRepository loan storage
+     */
+    public UserService(UserRepository userRepository, BookRepository bookRepository,
+                       LoanRepository loanRepository) {
+        this.userRepository = userRepository;
+        this.bookRepository = bookRepository;
+        this.loanRepository = loanRepository;
+        addAdmin("admin","admin@ADMIN123","admin@gmail.com");
     }
 
     // ------------ Repository getters/setters ------------
@@ -32,7 +67,100 @@ public class UserService {
     public void setBookRepository(BookRepository bookRepository) { this.bookRepository = bookRepository; }
 
     public LoanRepository getLoanRepository() { return loanRepository; }
-    public void setLoanRepository(LoanRepository loanRepository) { this.loanRepository = loanRepository; }
+    public synchronized void setLoanRepository(LoanRepository loanRepository) {
+        this.loanRepository = loanRepository;
+        this.overdueWheel = null;
+    }
+
+    public TimeProvider getTimeProvider() { return timeProvider; }
+    public synchronized void setTimeProvider(TimeProvider timeProvider) {
+        this.timeProvider = timeProvider;
+        this.overdueWheel = null;
+    }
+
+    /**
+     * Returns the overdue timer wheel shared by the borrowing services. On
+     * first use it is created at the current date of the service's
+     * {@link TimeProvider} and the unreturned loans of the loan repository
+     * are registered in it.
+     *
+     * @return the shared wheel
+     */
+    public synchronized OverdueTimerWheel getOverdueWheel() {
+        if (overdueWheel == null) {
+            overdueWheel = new OverdueTimerWheel(timeProvider.today());
+            overdueWheel.scheduleAll(loanRepository);
+        }
+        return overdueWheel;
+    }
+
+    /**
+     * Advances the shared overdue wheel to today and sends the users whose
+     * loans have become overdue since the previous rollover a reminder
+     * through the shared notifier. Within the same day it does nothing.
+     */
+    public void processDayRollover() {
+        processDayRollover(getNotifier());
+    }
+
+    /** {@link #processDayRollover()} with the reminders sent to the given observer. */
+    void processDayRollover(Observer observer) {
+        ReminderService reminders;
+        synchronized (this) {
+            reminders = new ReminderService(loanRepository, timeProvider, userRepository, getOverdueWheel());
+        }
+        reminders.addObserver(observer);
+        reminders.processDayRollover();
+    }
+
+    /**
+     * Starts checking every hour, on a daemon thread, whether the day has
+     * changed, and then runs {@link #processDayRollover()}. Does nothing if
+     * already started.
+     */
+    public synchronized void startDayRollover() {
+        if (rolloverScheduler != null) return;
+        getOverdueWheel();
+        rolloverScheduler = Executors.newSingleThreadScheduledExecutor(
+                r -> Thread.ofPlatform().daemon().name("overdue-rollover").unstarted(r));
+        rolloverScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                processDayRollover();
+            } catch (RuntimeException e) {
+                // a failed run must not cancel the later ones
+                logger.log(Level.WARNING, "Overdue day rollover failed", e);
+            }
+        }, 1, 1, TimeUnit.HOURS);
+    }
+
+    /** Stops the hourly rollover check started by {@link #startDayRollover()}. */
+    public synchronized void stopDayRollover() {
+        if (rolloverScheduler == null) return;
+        rolloverScheduler.shutdownNow();
+        rolloverScheduler = null;
+    }
+
+    /**
+     * Returns the notifier shared by the windows: an {@link EmailNotifier}
+     * behind an {@link AsyncNotifier}, so that sending reminders does not
+     * block the UI.
+     *
+     * @return the shared notifier
+     */
+    public synchronized Observer getNotifier() {
+        if (notifier == null) notifier = new AsyncNotifier(new EmailNotifier());
+        return notifier;
+    }
+
+    /**
+     * Delivers the notifications still queued in the shared notifier and
+     * stops it; a new one is created if it is needed again.
+     */
+    public synchronized void closeNotifier() {
+        if (notifier == null) return;
+        notifier.close();
+        notifier = null;
+    }
 
     public User getCurrentUser() { return currentUser; }
     public void setCurrentUser(User currentUser) { this.currentUser = currentUser; }
@@ -85,6 +213,14 @@ public class UserService {
      * @param email admin email
      */
     public void createAdmin(String username, String pwd, String email) {
+        addAdmin(username, pwd, email);
+    }
+
+    /**
+     * Implements {@link #createAdmin}. Private, so that the constructors can
+     * call it without running code a subclass overrides.
+     */
+    private void addAdmin(String username, String pwd, String email) {
         if (pwd.equals("0") || username.equals("0"))
             return;
         if (pwd.length() < 8)
@@ -0,0 +1,31 @@
+package edu.software.lms;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API kernel for {@link PerDayFines}. It must only be used when the
+ * {@code jdk.incubator.vector} module is present.
+ */
+final class VectorPerDayFines {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private VectorPerDayFines() { }
+
+    /**
+     * Computes {@code out[i] = max(overdueDays[i], 0) * perDay}, one vector
+     * of lanes at a time, and finishes the tail with scalar code.
+     */
+    static void calculate(int[] overdueDays, int[] out, int perDay) {
+        int i = 0;
+        int bound = SPECIES.loopBound(overdueDays.length);
+        for (; i < bound; i += SPECIES.length()) {
+            IntVector.fromArray(SPECIES, overdueDays, i)
+                    .max(0)
+                    .mul(perDay)
+                    .intoArray(out, i);
+        }
+        PerDayFines.calculateScalar(overdueDays, out, i, perDay);
+    }
+}
@@ -0,0 +1,107 @@
+package edu.software.lms;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * Canonical, weakly held views of stored records, keyed by record number.
+ *
+ * <p>Repositories that do not keep domain objects on the heap create an
+ * object for a record only when it is looked up. While that object is
+ * reachable, every lookup of the record must return the same instance, so
+ * that state changes made through it (such as {@link Book#tryBorrow()} or
+ * {@link Loan#markReturned(java.time.LocalDate)}) stay atomic. Once nobody
+ * references it, it may be garbage collected and is recreated on the next
+ * lookup.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @param <T> type of the views
+ */
+final class ViewCache<T> {
+
+    private final Map<Integer, Ref<T>> views = new ConcurrentHashMap<>();
+    private final ReferenceQueue<T> collected = new ReferenceQueue<>();
+
+    /** Weak reference to a view that remembers its record number. */
+    private static final class Ref<T> extends WeakReference<T> {
+        final int key;
+
+        Ref(T view, int key, ReferenceQueue<T> queue) {
+            super(view, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * @param key record number
+     * @return the live view of the record, or {@code null} if there is none
+     */
+    T get(int key) {
+        Ref<T> ref = views.get(key);
+        return ref == null ? null : ref.get();
+    }
+
+    /**
+     * Returns the live view of the record, creating one if needed.
+     *
+     * @param key    record number
+     * @param create creates a view of the record
+     * @return the canonical view
+     */
+    T computeIfAbsent(int key, IntFunction<T> create) {
+        T existing = get(key);
+        if (existing != null) return existing;
+
+        expungeCollected();
+        Object[] result = new Object[1];
+        views.compute(key, (k, current) -> {
+            T live = current == null ? null : current.get();
+            if (live != null) {
+                result[0] = live;
+                return current;
+            }
+            T view = create.apply(key);
+            result[0] = view;
+            return new Ref<>(view, key, collected);
+        });
+        @SuppressWarnings("unchecked")
+        T view = (T) result[0];
+        return view;
+    }
+
+    /**
+     * Makes the given object the view of the record, replacing any other.
+     *
+     * @param key  record number
+     * @param view the new canonical view
+     */
+    void put(int key, T view) {
+        expungeCollected();
+        views.put(key, new Ref<>(view, key, collected));
+    }
+
+    /**
+     * Finds the record an object is the live view of by scanning the cache.
+     *
+     * @param view the view
+     * @return its record number, or -1 if it is not a live view
+     */
+    int keyOf(T view) {
+        for (Ref<T> ref : views.values()) {
+            if (ref.get() == view) return ref.key;
+        }
+        return -1;
+    }
+
+    /** Drops entries of views that were garbage collected. */
+    private void expungeCollected() {
+        for (Object ref; (ref = collected.poll()) != null; ) {
+            Ref<?> cleared = (Ref<?>) ref;
+            views.remove(cleared.key, cleared);
+        }
+    }
+}
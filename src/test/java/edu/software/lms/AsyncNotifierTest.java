@@ -0,0 +1,260 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link AsyncNotifier}: background delivery, the backpressure
+ * policies, failures and shutdown.
+ */
+class AsyncNotifierTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(10);
+    private static final User USER = new User("u", "p", "to@test.com", false);
+
+    /** Observer that blocks every delivery until released. */
+    private static final class GatedObserver implements Observer {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void notify(User user, String message) {
+            threads.add(Thread.currentThread().getName());
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Test
+    void deliversEverythingFromVirtualThreadsWithoutBlockingTheCaller() throws Exception {
+        EmailNotifier email = new EmailNotifier(null, -1, null, null, null);
+        Set<Boolean> virtual = ConcurrentHashMap.newKeySet();
+        Observer slow = (user, message) -> {
+            virtual.add(Thread.currentThread().isVirtual());
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            email.notify(user, message);
+        };
+
+        try (AsyncNotifier notifier = new AsyncNotifier(slow, 1_000, 50, AsyncNotifier.Backpressure.BLOCK)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 500; i++) notifier.notify(USER, "m" + i);
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2), "500 x 5 ms must not run inline");
+
+            assertTrue(notifier.awaitQuiescence(WAIT));
+            assertEquals(500, notifier.getDelivered());
+            assertEquals(0, notifier.getQueued());
+        }
+        assertEquals(500, email.getSentMessages().size(), "recording is thread-safe");
+        assertEquals(Set.of(true), virtual);
+    }
+
+    @Test
+    void dropPolicyDiscardsWhenTheQueueIsFull() throws Exception {
+        GatedObserver gate = new GatedObserver();
+        AsyncNotifier notifier = new AsyncNotifier(gate, 2, 1, AsyncNotifier.Backpressure.DROP);
+        notifier.notify(USER, "taken by the worker");
+        assertTrue(gate.started.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) notifier.notify(USER, "m" + i);
+
+        assertEquals(3, notifier.getDropped());
+        assertEquals(2, notifier.getQueued());
+        assertFalse(notifier.awaitQuiescence(Duration.ofMillis(50)));
+
+        gate.release.countDown();
+        assertTrue(notifier.awaitQuiescence(WAIT));
+        assertEquals(3, notifier.getDelivered());
+        notifier.close();
+    }
+
+    @Test
+    void callerRunsPolicyDeliversOnTheCallingThread() throws Exception {
+        GatedObserver gate = new GatedObserver();
+        AtomicReference<String> inline = new AtomicReference<>();
+        Observer observer = (user, message) -> {
+            if (message.equals("overflow")) inline.set(Thread.currentThread().getName());
+            else gate.notify(user, message);
+        };
+        AsyncNotifier notifier = new AsyncNotifier(observer, 1, 1, AsyncNotifier.Backpressure.CALLER_RUNS);
+        notifier.notify(USER, "taken by the worker");
+        assertTrue(gate.started.await(10, TimeUnit.SECONDS));
+        notifier.notify(USER, "queued");
+        notifier.notify(USER, "overflow");
+
+        assertEquals(Thread.currentThread().getName(), inline.get());
+        gate.release.countDown();
+        assertTrue(notifier.awaitQuiescence(WAIT));
+        assertEquals(3, notifier.getDelivered());
+        notifier.close();
+    }
+
+    @Test
+    void blockPolicyWaitsForRoom() throws Exception {
+        GatedObserver gate = new GatedObserver();
+        AsyncNotifier notifier = new AsyncNotifier(gate, 1, 1, AsyncNotifier.Backpressure.BLOCK);
+        notifier.notify(USER, "taken by the worker");
+        assertTrue(gate.started.await(10, TimeUnit.SECONDS));
+        notifier.notify(USER, "queued");
+
+        Thread producer = Thread.ofPlatform().start(() -> notifier.notify(USER, "blocked"));
+        producer.join(200);
+        assertTrue(producer.isAlive(), "the producer waits while the queue is full");
+
+        gate.release.countDown();
+        producer.join(10_000);
+        assertFalse(producer.isAlive());
+        assertTrue(notifier.awaitQuiescence(WAIT));
+        assertEquals(3, notifier.getDelivered());
+        assertEquals(0, notifier.getDropped());
+        notifier.close();
+    }
+
+    @Test
+    void failuresAreCountedAndCloseDrainsTheQueue() throws Exception {
+        GatedObserver gate = new GatedObserver();
+        Observer observer = (user, message) -> {
+            if (message.startsWith("bad")) throw new IllegalStateException("smtp down");
+            gate.notify(user, message);
+        };
+        AsyncNotifier notifier = new AsyncNotifier(observer, 100, 2, AsyncNotifier.Backpressure.BLOCK);
+        for (String message : List.of("ok1", "bad1", "ok2", "bad2", "ok3")) notifier.notify(USER, message);
+
+        Thread closer = Thread.ofPlatform().start(notifier::close);
+        closer.join(200);
+        assertTrue(closer.isAlive(), "close waits for queued notifications");
+        gate.release.countDown();
+        closer.join(10_000);
+        assertFalse(closer.isAlive());
+
+        assertEquals(3, notifier.getDelivered());
+        assertEquals(2, notifier.getFailed());
+        assertThrows(IllegalStateException.class, () -> notifier.notify(USER, "late"));
+        assertTrue(gate.threads.stream().allMatch(name -> name.startsWith("async-notifier-")));
+        notifier.close();
+    }
+
+    @Test
+    void errorsThrownByTheDelegateDoNotStopTheWorkers() throws Exception {
+        Observer observer = (user, message) -> {
+            if (message.startsWith("bad")) throw new AssertionError("broken delegate");
+        };
+        BatchObserver batchObserver = new BatchObserver() {
+            @Override
+            public void notify(User user, String message) { }
+
+            @Override
+            public int notifyBatch(List<Pair<User, String>> notifications) {
+                throw new StackOverflowError();
+            }
+        };
+
+        try (AsyncNotifier notifier = new AsyncNotifier(observer, 100, 1, AsyncNotifier.Backpressure.BLOCK)) {
+            for (String message : List.of("bad1", "ok1", "bad2", "ok2")) notifier.notify(USER, message);
+            assertTrue(notifier.awaitQuiescence(WAIT));
+            assertEquals(2, notifier.getDelivered());
+            assertEquals(2, notifier.getFailed());
+        }
+        try (AsyncNotifier notifier = new AsyncNotifier(batchObserver, 100, 1, AsyncNotifier.Backpressure.BLOCK)) {
+            for (int i = 0; i < 5; i++) notifier.notify(USER, "m" + i);
+            assertTrue(notifier.awaitQuiescence(WAIT));
+            assertEquals(0, notifier.getDelivered());
+            assertEquals(5, notifier.getFailed());
+        }
+    }
+
+    @Test
+    void notificationsRacingCloseAreDeliveredOrRejected() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            AsyncNotifier notifier = new AsyncNotifier((user, message) -> { }, 1_000, 2,
+                    AsyncNotifier.Backpressure.BLOCK);
+            int[] rejected = new int[4];
+            List<Thread> producers = new ArrayList<>();
+            for (int p = 0; p < rejected.length; p++) {
+                int id = p;
+                producers.add(Thread.ofPlatform().start(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        try {
+                            notifier.notify(USER, "m");
+                        } catch (IllegalStateException _) {
+                            rejected[id]++;
+                        }
+                    }
+                }));
+            }
+            notifier.close();
+            for (Thread producer : producers) producer.join();
+
+            long accepted = 400 - Arrays.stream(rejected).sum();
+            assertEquals(accepted, notifier.getDelivered(), "round " + round);
+            assertEquals(0, notifier.getQueued(), "round " + round);
+        }
+    }
+
+    @Test
+    void closeGivesUpOnAStuckDelegateAfterTheTimeout() throws Exception {
+        GatedObserver gate = new GatedObserver();
+        AsyncNotifier notifier = new AsyncNotifier(gate, 100, 1, AsyncNotifier.Backpressure.BLOCK);
+        for (int i = 0; i < 5; i++) notifier.notify(USER, "m" + i);
+        assertTrue(gate.started.await(10, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        assertFalse(notifier.close(Duration.ofMillis(200)));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(WAIT) < 0);
+
+        assertEquals(4, notifier.getDropped(), "the queued notifications are discarded");
+        assertEquals(0, notifier.getQueued());
+        assertTrue(notifier.awaitQuiescence(WAIT), "the interrupted delivery has finished");
+        assertEquals(1, notifier.getDelivered());
+        assertThrows(IllegalStateException.class, () -> notifier.notify(USER, "late"));
+    }
+
+    @Test
+    void producerBlockedWhenCloseGivesUpIsCountedAsDropped() throws Exception {
+        GatedObserver gate = new GatedObserver();
+        AsyncNotifier notifier = new AsyncNotifier(gate, 1, 1, AsyncNotifier.Backpressure.BLOCK);
+        notifier.notify(USER, "in delivery");
+        assertTrue(gate.started.await(10, TimeUnit.SECONDS));
+        notifier.notify(USER, "queued");
+        Thread producer = Thread.ofPlatform().start(() -> notifier.notify(USER, "blocked"));
+        while (producer.getState() != Thread.State.WAITING) Thread.sleep(1);
+
+        assertFalse(notifier.close(Duration.ofMillis(100)));
+        producer.join(10_000);
+
+        assertTrue(notifier.awaitQuiescence(Duration.ofSeconds(1)), "nothing is left pending");
+        assertEquals(0, notifier.getQueued());
+        assertEquals(2, notifier.getDropped());
+        assertEquals(1, notifier.getDelivered());
+    }
+
+    @Test
+    void invalidConfigurationIsRejected() {
+        Observer observer = (user, message) -> { };
+        assertThrows(IllegalArgumentException.class,
+                () -> new AsyncNotifier(null, 1, 1, AsyncNotifier.Backpressure.BLOCK));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AsyncNotifier(observer, 0, 1, AsyncNotifier.Backpressure.BLOCK));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AsyncNotifier(observer, 1, 0, AsyncNotifier.Backpressure.BLOCK));
+        assertThrows(IllegalArgumentException.class, () -> new AsyncNotifier(observer, 1, 1, null));
+    }
+}
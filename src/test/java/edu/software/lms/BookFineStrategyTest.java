@@ -2,7 +2,11 @@ package edu.software.lms;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class BookFineStrategyTest {
 
@@ -22,4 +26,31 @@ class BookFineStrategyTest {
         assertEquals(30, sDefault.calculateFine(3));
         assertEquals(15, sCustom.calculateFine(3));
     }
+
+    @Test
+    void calculateFines_matchesCalculateFine() {
+        // odd length so the scalar tail after the vector loop is exercised too
+        int[] days = new Random(42).ints(1_003, -50, 400).toArray();
+        for (FineStrategy s : new FineStrategy[] { new BookFineStrategy(), new BookFineStrategy(7), new CDFineStrategy() }) {
+            int[] expected = new int[days.length];
+            for (int i = 0; i < days.length; i++) expected[i] = s.calculateFine(days[i]);
+
+            int[] out = new int[days.length];
+            s.calculateFines(days, out);
+            assertArrayEquals(expected, out);
+        }
+    }
+
+    @Test
+    void calculateFines_usesVectorApiWhenModuleIsPresent() {
+        // surefire adds the module, so the vector kernel is what the test above checked
+        assertEquals(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(), PerDayFines.VECTORIZED);
+    }
+
+    @Test
+    void calculateFines_rejectsShortOutput() {
+        FineStrategy custom = days -> days;
+        assertThrows(IllegalArgumentException.class, () -> new BookFineStrategy().calculateFines(new int[4], new int[3]));
+        assertThrows(IllegalArgumentException.class, () -> custom.calculateFines(new int[4], new int[3]));
+    }
 }
@@ -0,0 +1,188 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link CatalogExporter} and the {@code forEach} methods of the
+ * repositories it streams from.
+ */
+class CatalogExporterTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 1, 1);
+
+    @TempDir
+    Path dir;
+
+    private static InMemoryBooks catalog() {
+        InMemoryBooks books = new InMemoryBooks();
+        books.addBook(new Book(1, "Dune", "Herbert", "111"));
+        books.addBook(new CD(2, "Blue, \"Live\"", "Mitchell", "222"));
+        books.getBookById(2).setBorrowed(true);
+        return books;
+    }
+
+    @Test
+    void booksAsCsvCanBeSplitBackIntoFields() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = new CatalogExporter(CatalogExporter.Format.CSV, false).exportBooks(catalog(), out);
+
+        assertEquals(2, written);
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals("id,type,title,author,isbn,borrowed", lines.get(0));
+        assertEquals("1,BOOK,Dune,Herbert,111,false", lines.get(1));
+        assertEquals(List.of("2", "CD", "Blue, \"Live\"", "Mitchell", "222", "true"),
+                CatalogImporter.splitCsv(lines.get(2)));
+    }
+
+    @Test
+    void loansAsJsonLinesEscapeStringsAndWriteNulls() throws IOException {
+        InMemoryLoanRepository loans = new InMemoryLoanRepository();
+        MediaLoan open = new MediaLoan("line\nbreak\\", 1, DAY, DAY.plusDays(28), MediaType.BOOK);
+        Loan returned = new Loan("u2", 2, DAY, DAY.plusDays(7));
+        returned.markReturned(DAY.plusDays(3));
+        returned.setFineApplied(20);
+        loans.addLoan(open);
+        loans.addLoan(returned);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, new CatalogExporter(CatalogExporter.Format.JSON_LINES, false).exportLoans(loans, out));
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(2, lines.size());
+        assertEquals("{\"id\":\"" + open.getId() + "\",\"userId\":\"line\\nbreak\\\\\",\"bookId\":1,"
+                + "\"mediaType\":\"BOOK\",\"borrowDate\":\"2025-01-01\",\"dueDate\":\"2025-01-29\","
+                + "\"returnedDate\":null,\"fineApplied\":0,\"finePaid\":false}", lines.get(0));
+        assertTrue(lines.get(1).contains("\"mediaType\":null"));
+        assertTrue(lines.get(1).contains("\"returnedDate\":\"2025-01-04\",\"fineApplied\":20"));
+    }
+
+    @Test
+    void gzipOutputToAFileDecompressesToTheSameText() throws IOException {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        new CatalogExporter(CatalogExporter.Format.CSV, false).exportBooks(catalog(), plain);
+
+        Path file = dir.resolve("catalog.csv.gz");
+        Files.writeString(file, "stale content that must be replaced");
+        assertEquals(2, new CatalogExporter(CatalogExporter.Format.CSV, true).exportBooks(catalog(), file));
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+            assertEquals(plain.toString(StandardCharsets.UTF_8), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void callersStreamIsLeftOpenAndWriteErrorsPropagate() throws IOException {
+        boolean[] closed = {false};
+        ByteArrayOutputStream sink = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        new CatalogExporter(CatalogExporter.Format.JSON_LINES, true).exportBooks(catalog(), sink);
+        assertFalse(closed[0]);
+
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        InMemoryBooks big = new InMemoryBooks();
+        for (int i = 0; i < 10_000; i++) big.addBook(new Book(i, "Title " + i, "Author", "isbn-" + i));
+        IOException e = assertThrows(IOException.class,
+                () -> new CatalogExporter(CatalogExporter.Format.CSV, false).exportBooks(big, failing));
+        assertEquals("disk full", e.getMessage());
+    }
+
+    @Test
+    void everyRepositoryVisitsItsItemsInInsertionOrder() throws IOException {
+        List<Supplier<LoanRepository>> loanRepos = List.of(
+                InMemoryLoanRepository::new, ColumnarLoanRepository::new, OffHeapLoanRepository::new);
+        for (Supplier<LoanRepository> factory : loanRepos) {
+            LoanRepository repo = factory.get();
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                Loan loan = new Loan("u" + i, i, DAY, DAY.plusDays(7));
+                ids.add(loan.getId());
+                repo.addLoan(loan);
+            }
+            List<String> visited = new ArrayList<>();
+            repo.forEachLoan(loan -> visited.add(loan.getId()));
+            assertEquals(ids, visited, repo.getClass().getSimpleName());
+            if (repo instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    fail(e);
+                }
+            }
+        }
+
+        try (MappedBookRepository mapped = MappedBookRepository.open(dir.resolve("books"));
+             JdbcStore store = JdbcStore.open(dir.resolve("db"))) {
+            for (BookRepository repo : List.of(mapped, store.getBookRepository())) {
+                repo.addBook(new Book(1, "Dune", "Herbert", "111"));
+                repo.addBook(new CD(2, "Blue", "Mitchell", "222"));
+                List<Book> visited = new ArrayList<>();
+                repo.forEachBook(visited::add);
+                assertEquals(List.of(1, 2), visited.stream().map(Book::getId).toList());
+                assertSame(repo.getBookById(2), visited.get(1), "views are canonical");
+                assertInstanceOf(CD.class, visited.get(1));
+            }
+
+            LoanRepository jdbcLoans = store.getLoanRepository();
+            Loan loan = new Loan("u1", 1, DAY, DAY.plusDays(7));
+            jdbcLoans.addLoan(loan);
+            List<Loan> visited = new ArrayList<>();
+            jdbcLoans.forEachLoan(visited::add);
+            assertEquals(List.of(loan), visited);
+        }
+    }
+    @Test
+    void actionsMayChangeWhatTheyVisit() {
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            try (MappedBookRepository mapped = MappedBookRepository.open(dir.resolve("visit"))) {
+                for (BookRepository repo : List.of(new InMemoryBooks(), mapped)) {
+                    for (int i = 0; i < 3_000; i++) repo.addBook(new Book(i, "T" + i, "A", "isbn-" + i));
+                    int[] visited = {0};
+                    repo.forEachBook(book -> {
+                        assertTrue(book.tryBorrow());
+                        book.setAuthor("B");
+                        visited[0]++;
+                    });
+                    assertEquals(3_000, visited[0]);
+                    assertTrue(repo.getBookById(2_999).isBorrowed());
+                    assertEquals("B", repo.getBookById(0).getAuthor());
+                }
+            }
+
+            for (LoanRepository repo : List.<LoanRepository>of(new ColumnarLoanRepository(), new OffHeapLoanRepository())) {
+                for (int i = 0; i < 3_000; i++) repo.addLoan(new Loan("u" + i, i, DAY, DAY.plusDays(7)));
+                repo.forEachLoan(loan -> {
+                    loan.markReturned(DAY.plusDays(1));
+                    repo.updateLoan(loan);
+                });
+                assertTrue(repo.getAllLoans().stream().allMatch(Loan::isReturned));
+                if (repo instanceof AutoCloseable closeable) closeable.close();
+            }
+        });
+    }
+}
@@ -0,0 +1,80 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Throughput and memory of {@link CatalogImporter} on a large generated CSV
+ * file (10M rows by default, {@code -Dlms.benchmark.rows=N} to change).
+ * The target repository only counts, so the measurement covers reading,
+ * parsing and batching. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class CatalogImporterBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("lms.benchmark.rows", 10_000_000);
+
+    @TempDir
+    Path dir;
+
+    /** Accepts every book without keeping it, and samples the heap on each batch. */
+    private static final class CountingRepository implements BookRepository {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private int nextId = 1;
+        long added;
+        long peakHeap;
+
+        @Override public Book getBookById(int id) { return null; }
+        @Override public Book getBookByName(String name) { return null; }
+        @Override public Book getBookByAuthor(String author) { return null; }
+        @Override public Book getBookByISBN(String isbn) { return null; }
+        @Override public boolean addBook(Book book) { return addBooks(List.of(book)) == 1; }
+        @Override public List<Book> getAllBooks() { return List.of(); }
+        @Override public int getNextId() { return nextId; }
+
+        @Override
+        public int reserveIds(int count) {
+            int first = nextId;
+            nextId += count;
+            return first;
+        }
+
+        @Override
+        public int addBooks(List<? extends Book> books) {
+            added += books.size();
+            peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+            return books.size();
+        }
+    }
+
+    @Test
+    void importsLargeFileInBoundedMemory() throws IOException {
+        Path csv = dir.resolve("catalog.csv");
+        try (BufferedWriter out = Files.newBufferedWriter(csv)) {
+            out.write("type,title,author,isbn\n");
+            for (int i = 0; i < ROWS; i++) {
+                out.write(i % 10 == 0 ? "CD," : "BOOK,");
+                out.write("\"Title " + i + "\",Author " + (i % 50_000) + ",ISBN-" + i + "\n");
+            }
+        }
+
+        CountingRepository repo = new CountingRepository();
+        CatalogImporter.Report report = new CatalogImporter(repo).importCsv(csv);
+
+        assertEquals(ROWS, report.imported());
+        assertEquals(ROWS, repo.added);
+        System.out.printf("%s; file %,d MB, peak heap during import %,d MB%n",
+                report, Files.size(csv) >> 20, repo.peakHeap >> 20);
+    }
+}
@@ -0,0 +1,134 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link CatalogImporter}: CSV parsing, validation, duplicate
+ * ISBNs and ID reservation across chunks.
+ */
+class CatalogImporterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void importsBooksAndCdsWithReservedIds() throws IOException {
+        Path csv = write("""
+                type,title,author,isbn
+                BOOK,Dune,Frank Herbert,111
+                cd,"Blue, Deluxe","Joni ""J"" Mitchell",222
+                Book, Emma , Austen ,333
+                """);
+        InMemoryBooks books = new InMemoryBooks();
+        books.reserveIds(9);
+
+        CatalogImporter.Report report = new CatalogImporter(books).importCsv(csv);
+
+        assertEquals(3, report.rows());
+        assertEquals(3, report.imported());
+        assertEquals(0, report.invalid());
+        assertEquals(List.of(10, 11, 12), books.getAllBooks().stream().map(Book::getId).toList());
+        Book cd = books.getBookByISBN("222");
+        assertInstanceOf(CD.class, cd);
+        assertEquals("Blue, Deluxe", cd.getName());
+        assertEquals("Joni \"J\" Mitchell", cd.getAuthor());
+        assertEquals("Emma", books.getBookByISBN("333").getName());
+        assertTrue(report.rowsPerSecond() > 0);
+    }
+
+    @Test
+    void invalidRowsAreReportedWithLineNumbers() throws IOException {
+        Path csv = write("""
+                BOOK,Dune,Herbert,111
+                MAGAZINE,Wired,Various,222
+                BOOK,No ISBN,Someone,
+                BOOK,"Open quote,Someone,333
+                BOOK,Too,Many,Fields,444
+
+                BOOK,Emma,Austen,555
+                """);
+        InMemoryBooks books = new InMemoryBooks();
+
+        CatalogImporter.Report report = new CatalogImporter(books).importCsv(csv);
+
+        assertEquals(6, report.rows(), "the blank line is skipped");
+        assertEquals(2, report.imported());
+        assertEquals(4, report.invalid());
+        assertEquals(4, report.errors().size());
+        assertTrue(report.errors().get(0).startsWith("line 2: unknown type"), report.errors().get(0));
+        assertTrue(report.errors().get(2).startsWith("line 4: unterminated"), report.errors().get(2));
+        assertTrue(report.errors().get(3).startsWith("line 5: expected 4 fields"), report.errors().get(3));
+    }
+
+    @Test
+    void byteOrderMarkBeforeTheHeaderIsIgnored() throws IOException {
+        Path csv = write("\uFEFFtype,title,author,isbn\n\nBOOK,Dune,Herbert,111\n   \nCD,Blue,Mitchell,222\n");
+        InMemoryBooks books = new InMemoryBooks();
+
+        CatalogImporter.Report report = new CatalogImporter(books).importCsv(csv);
+
+        assertEquals(2, report.rows());
+        assertEquals(2, report.imported());
+        assertEquals(0, report.invalid(), report.errors().toString());
+    }
+
+    @Test
+    void duplicateIsbnsAreSkippedWithinChunksAcrossChunksAndAgainstTheRepository() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1_000; i++) sb.append("BOOK,Title ").append(i).append(",Author,ISBN-").append(i % 700).append('\n');
+        Path csv = write(sb.toString());
+        InMemoryBooks books = new InMemoryBooks();
+        books.addBook(new Book(books.allocateId(), "Existing", "Someone", "ISBN-5"));
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            CatalogImporter.Report report = new CatalogImporter(books, pool, 64).importCsv(csv);
+
+            assertEquals(1_000, report.rows());
+            assertEquals(699, report.imported());
+            assertEquals(301, report.duplicates());
+            assertEquals(700, books.getAllBooks().size());
+            assertEquals("Title 0", books.getBookByISBN("ISBN-0").getName(), "the first row wins");
+            List<Integer> ids = books.getAllBooks().stream().map(Book::getId).toList();
+            assertEquals(ids.stream().sorted().distinct().toList(), ids, "reserved IDs ascend without reuse");
+            assertTrue(books.getNextId() > ids.getLast());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void importsThroughTheDatabaseBatch() throws IOException {
+        Path csv = write("BOOK,Dune,Herbert,111\nCD,Blue,Mitchell,222\nBOOK,Dup,X,111\n");
+        try (JdbcStore store = JdbcStore.open(dir.resolve("db"))) {
+            BookRepository books = store.getBookRepository();
+
+            CatalogImporter.Report report = new CatalogImporter(books).importCsv(csv);
+
+            assertEquals(2, report.imported());
+            assertEquals(1, report.duplicates());
+            assertInstanceOf(CD.class, books.getBookByISBN("222"));
+        }
+    }
+
+    @Test
+    void splitCsvHandlesQuotes() {
+        assertEquals(List.of("a", "b,c", "d\"e", ""), CatalogImporter.splitCsv("a,\"b,c\",\"d\"\"e\","));
+        assertNull(CatalogImporter.splitCsv("a,\"b"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CatalogImporter(new InMemoryBooks(), ForkJoinPool.commonPool(), 0));
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.writeString(dir.resolve("catalog.csv"), content);
+    }
+}
@@ -0,0 +1,95 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Scan cost of {@link ColumnarLoanRepository} against the object-based
+ * {@link InMemoryLoanRepository} for overdue counting, unpaid fine totals and
+ * per-user aggregation. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class ColumnarLoanRepositoryBenchmarkTest {
+
+    private static final int LOANS = 1_000_000;
+    private static final int USERS = 10_000;
+    private static final LocalDate DAY = LocalDate.of(2020, 1, 1);
+    private static final LocalDate TODAY = DAY.plusDays(2_000);
+
+    @Test
+    void columnarScansBeatObjectScans() {
+        ColumnarLoanRepository columnar = new ColumnarLoanRepository();
+        InMemoryLoanRepository objects = new InMemoryLoanRepository();
+        for (int i = 0; i < LOANS; i++) {
+            LocalDate borrow = DAY.plusDays(i % 2_000);
+            Loan loan = new Loan("user" + (i % USERS), i % 50_000, borrow, borrow.plusDays(28));
+            if (i % 10 != 0) {
+                loan.markReturned(borrow.plusDays(i % 40));
+                loan.setFineApplied(i % 40 > 28 ? 10 : 0);
+                loan.setFinePaid(i % 3 == 0);
+            }
+            columnar.addLoan(loan);
+            objects.addLoan(loan);
+        }
+
+        assertEquals(objectOverdueCount(objects), columnar.countOverdue(TODAY));
+        assertEquals(objectUnpaidFines(objects), columnar.totalUnpaidFines());
+
+        report("overdue count", () -> columnar.countOverdue(TODAY), () -> objectOverdueCount(objects));
+        report("unpaid fines", columnar::totalUnpaidFines, () -> objectUnpaidFines(objects));
+        report("overdue by user", () -> columnar.countOverdueByUser(TODAY).size(),
+                () -> objectOverdueByUser(objects).size());
+    }
+
+    private static long objectOverdueCount(InMemoryLoanRepository repo) {
+        long count = 0;
+        for (Loan loan : repo.getAllLoans()) {
+            if (!loan.isReturned() && loan.isOverdue(TODAY)) count++;
+        }
+        return count;
+    }
+
+    private static long objectUnpaidFines(InMemoryLoanRepository repo) {
+        long total = 0;
+        for (Loan loan : repo.getAllLoans()) {
+            if (!loan.isFinePaid()) total += loan.getFineApplied();
+        }
+        return total;
+    }
+
+    private static Map<String, Integer> objectOverdueByUser(InMemoryLoanRepository repo) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Loan loan : repo.getAllLoans()) {
+            if (!loan.isReturned() && loan.isOverdue(TODAY)) counts.merge(loan.getUserId(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static void report(String name, LongSupplier columnar, LongSupplier objects) {
+        long columnarNs = time(columnar);
+        long objectNs = time(objects);
+        System.out.printf("%s over %,d loans: columnar %.2f ms, objects %.2f ms%n",
+                name, LOANS, columnarNs / 1e6, objectNs / 1e6);
+    }
+
+    /** Best of several runs after warm-up. */
+    private static long time(LongSupplier scan) {
+        long sink = 0;
+        for (int i = 0; i < 5; i++) sink += scan.getAsLong();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            long start = System.nanoTime();
+            sink += scan.getAsLong();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        assertTrue(sink >= 0);
+        return best;
+    }
+}
@@ -0,0 +1,77 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarLoanRepositoryTest extends LoanRepositoryContractTest<ColumnarLoanRepository> {
+
+    @Override
+    ColumnarLoanRepository createRepository() {
+        return new ColumnarLoanRepository();
+    }
+
+    @Override
+    boolean rebuildsViews() {
+        return true;
+    }
+
+    @Test
+    void overdueScanAndAggregates() {
+        LocalDate today = DAY.plusDays(30);
+        Loan late = new Loan("u1", 1, DAY, DAY.plusDays(7));
+        Loan later = new Loan("u2", 2, DAY, DAY.plusDays(14));
+        Loan dueToday = new Loan("u1", 3, DAY, today);
+        Loan returned = new Loan("u2", 4, DAY, DAY.plusDays(3));
+        Loan alsoLate = new Loan("u1", 5, DAY, DAY.plusDays(20));
+        repo.addLoan(later);
+        repo.addLoan(alsoLate);
+        repo.addLoan(late);
+        repo.addLoan(dueToday);
+        repo.addLoan(returned);
+
+        returned.markReturned(DAY.plusDays(10));
+        returned.setFineApplied(70);
+        repo.updateLoan(returned);
+
+        assertEquals(List.of(late, later, alsoLate), repo.getOverdueLoans(today));
+        assertEquals(3, repo.countOverdue(today));
+        assertEquals(Map.of("u1", 2, "u2", 1), repo.countOverdueByUser(today));
+        assertEquals(70, repo.totalUnpaidFines());
+        assertEquals(Map.of("u2", 70), repo.unpaidFinesByUser());
+
+        returned.setFinePaid(true);
+        repo.updateLoan(returned);
+        assertEquals(0, repo.totalUnpaidFines());
+    }
+
+    @Test
+    void accruedFinesPriceEachMediaType() {
+        LocalDate today = DAY.plusDays(30);
+        repo.addLoan(new Loan("u1", 1, DAY, DAY.plusDays(7)));                          // book, 23 days
+        repo.addLoan(new MediaLoan("u1", 2, DAY, DAY.plusDays(20), MediaType.CD));     // CD, 10 days
+        repo.addLoan(new MediaLoan("u2", 3, DAY, DAY.plusDays(40), MediaType.BOOK));   // not due yet
+        Loan returned = new MediaLoan("u2", 4, DAY, DAY.plusDays(3), MediaType.CD);
+        repo.addLoan(returned);
+        returned.markReturned(DAY.plusDays(10));
+        repo.updateLoan(returned);
+
+        assertEquals(23 * 10 + 10 * 20, repo.accruedFines(today, new BookFineStrategy(), new CDFineStrategy()));
+        assertEquals(23 + 10, repo.accruedFines(today, days -> Math.max(days, 0), days -> Math.max(days, 0)));
+    }
+
+    @Test
+    void growsPastInitialCapacity() {
+        for (int i = 0; i < 5_000; i++) {
+            assertTrue(repo.addLoan(new Loan("u" + (i % 50), i, DAY, DAY.plusDays(i % 60))));
+        }
+        assertEquals(5_000, repo.size());
+        assertEquals(100, repo.getLoansByUserId("u7").size());
+        assertEquals(repo.getOverdueLoans(DAY.plusDays(30)).size(), repo.countOverdue(DAY.plusDays(30)));
+    }
+
+}
@@ -0,0 +1,136 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Multi-threaded stress tests: many users race for the same few items and
+ * no item may ever end up with more than one active loan.
+ */
+class ConcurrentCheckoutTest {
+
+    private static final int THREADS = 32;
+
+    private final InMemoryUserRepository users = new InMemoryUserRepository();
+    private final InMemoryBooks books = new InMemoryBooks();
+    private final InMemoryLoanRepository loans = new InMemoryLoanRepository();
+    private final MockTimeProvider time = new MockTimeProvider(LocalDate.of(2025, 3, 1));
+    private final MediaBorrowingService service = new MediaBorrowingService(users, books, loans, time);
+
+    @Test
+    void eachItemIsCheckedOutExactlyOnce() throws Exception {
+        int items = 8;
+        for (int i = 1; i <= items; i++) {
+            books.addBook(i % 2 == 0 ? new CD(i, "T" + i, "A", "I" + i) : new Book(i, "T" + i, "A", "I" + i));
+        }
+        for (int t = 0; t < THREADS; t++) users.addUser(new User("user" + t, "pw", "u@mail", false));
+
+        AtomicInteger successes = new AtomicInteger();
+        runConcurrently(t -> {
+            for (int round = 0; round < 50; round++) {
+                for (int item = 1; item <= items; item++) {
+                    if (service.borrowMedia("user" + t, item).first) successes.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(items, successes.get());
+        for (int item = 1; item <= items; item++) {
+            assertEquals(1, activeLoans(item), "item " + item);
+            assertTrue(books.getBookById(item).isBorrowed());
+        }
+    }
+
+    @Test
+    void borrowReturnCyclesNeverDoubleLoan() throws Exception {
+        books.addBook(new Book(1, "Hot", "A", "HOT"));
+        for (int t = 0; t < THREADS; t++) users.addUser(new User("user" + t, "pw", "u@mail", false));
+
+        AtomicInteger maxActive = new AtomicInteger();
+        AtomicInteger returns = new AtomicInteger();
+        runConcurrently(t -> {
+            for (int round = 0; round < 300; round++) {
+                if (service.borrowMedia("user" + t, 1).first) {
+                    maxActive.accumulateAndGet(activeLoans(1), Math::max);
+                    Loan mine = loans.getLoansByUserId("user" + t).stream()
+                            .filter(l -> !l.isReturned()).findFirst().orElseThrow();
+                    if (service.returnMedia(mine.getId()).first) returns.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(1, maxActive.get());
+        assertEquals(0, activeLoans(1));
+        assertEquals(loans.getLoansByBookId(1).size(), returns.get());
+        assertFalse(books.getBookById(1).isBorrowed());
+    }
+
+    @Test
+    void concurrentReturnsApplyFineOnce() throws Exception {
+        books.addBook(new Book(1, "Late", "A", "LATE"));
+        User u = new User("late", "pw", "u@mail", false);
+        users.addUser(u);
+        assertTrue(service.borrowMedia("late", 1).first);
+        String loanId = loans.getLoansByUserId("late").getFirst().getId();
+        time.plusDays(28 + 3);
+
+        AtomicInteger returned = new AtomicInteger();
+        runConcurrently(t -> {
+            if (service.returnMedia(loanId).first) returned.incrementAndGet();
+        });
+
+        assertEquals(1, returned.get());
+        assertEquals(30, u.getFineBalance());
+    }
+
+    @Test
+    void fineUpdatesAreNotLost() throws Exception {
+        User u = new User("fined", "pw", "u@mail", false);
+        u.addFine(1_000_000);
+
+        runConcurrently(t -> {
+            for (int i = 0; i < 10_000; i++) {
+                u.addFine(3);
+                u.payFine(2);
+            }
+        });
+
+        assertEquals(1_000_000 + THREADS * 10_000, u.getFineBalance());
+    }
+
+    private int activeLoans(int bookId) {
+        return (int) loans.getLoansByBookId(bookId).stream().filter(l -> !l.isReturned()).count();
+    }
+
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    private static void runConcurrently(Worker worker) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                worker.run(thread);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,92 @@
+package edu.software.lms;
+
+import jakarta.mail.Authenticator;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.PasswordAuthentication;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Sends 2,000 emails (or {@code -Dlms.benchmark.emails=N}) to a
+ * {@link FakeSmtpServer}: with a new connection per email, as
+ * {@code Transport.send} does, one by one over the pooled connection, and as
+ * one batch. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class EmailNotifierBenchmarkTest {
+
+    private static final int EMAILS = Integer.getInteger("lms.benchmark.emails", 2_000);
+
+    @Test
+    void pooledConnectionOutperformsConnectionPerEmail() throws Exception {
+        List<Pair<User, String>> notifications = new ArrayList<>(EMAILS);
+        for (int i = 0; i < EMAILS; i++) {
+            notifications.add(new Pair<>(new User("u" + i, "p", "u" + i + "@test.com", false), "Overdue item " + i));
+        }
+
+        try (FakeSmtpServer server = FakeSmtpServer.start()) {
+            long perEmailNs = time(() -> {
+                for (Pair<User, String> n : notifications) sendWithNewConnection(server, n.first.getEmail(), n.second);
+            });
+            int afterPerEmail = server.getConnections();
+
+            long pooledNs;
+            long batchNs;
+            try (EmailNotifier email = new EmailNotifier(server.getHost(), server.getPort(),
+                    "user", "secret", "library@test.com", 1)) {
+                pooledNs = time(() -> {
+                    for (Pair<User, String> n : notifications) email.notify(n.first, n.second);
+                });
+                batchNs = time(() -> assertEquals(EMAILS, email.notifyBatch(notifications)));
+            }
+
+            assertEquals(EMAILS, afterPerEmail);
+            assertEquals(EMAILS + 1, server.getConnections(), "the notifier used a single connection");
+            assertEquals(3L * EMAILS, server.getMessageCount());
+            System.out.printf("%,d emails to a local SMTP server: connection per email %.0f ms, "
+                            + "pooled connection %.0f ms, batch %.0f ms%n",
+                    EMAILS, perEmailNs / 1e6, pooledNs / 1e6, batchNs / 1e6);
+        }
+    }
+
+    /** The former send path: a new session and {@code Transport.send}, which connects and disconnects. */
+    private static void sendWithNewConnection(FakeSmtpServer server, String to, String body) {
+        Properties props = new Properties();
+        props.put("mail.smtp.auth", "true");
+        props.put("mail.smtp.host", server.getHost());
+        props.put("mail.smtp.port", String.valueOf(server.getPort()));
+        Session session = Session.getInstance(props, new Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                return new PasswordAuthentication("user", "secret");
+            }
+        });
+        try {
+            Message msg = new MimeMessage(session);
+            msg.setFrom(new InternetAddress("library@test.com"));
+            msg.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
+            msg.setSubject("Library notification");
+            msg.setText(body);
+            Transport.send(msg);
+        } catch (MessagingException e) {
+            fail(e);
+        }
+    }
+
+    private static long time(Runnable run) {
+        long start = System.nanoTime();
+        run.run();
+        return System.nanoTime() - start;
+    }
+}
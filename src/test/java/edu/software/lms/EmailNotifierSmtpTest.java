@@ -0,0 +1,217 @@
+package edu.software.lms;
+
+import jakarta.mail.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for the pooled SMTP connections of {@link EmailNotifier}, against a
+ * {@link FakeSmtpServer}.
+ */
+class EmailNotifierSmtpTest {
+
+    private FakeSmtpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = FakeSmtpServer.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    private EmailNotifier notifier(int poolSize) {
+        return new EmailNotifier(server.getHost(), server.getPort(), "user", "secret", "library@test.com", poolSize);
+    }
+
+    private static List<Pair<User, String>> notifications(int count) {
+        List<Pair<User, String>> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(new Pair<>(new User("u" + i, "p", "u" + i + "@test.com", false), "message " + i));
+        }
+        return list;
+    }
+
+    @Test
+    void consecutiveSendsReuseOneConnection() {
+        try (EmailNotifier email = notifier(1)) {
+            for (Pair<User, String> n : notifications(20)) email.notify(n.first, n.second);
+        }
+
+        assertEquals(20, server.getMessageCount());
+        assertEquals(1, server.getConnections());
+        FakeSmtpServer.Received first = server.getMessages().getFirst();
+        assertEquals("library@test.com", first.from());
+        assertEquals(List.of("u0@test.com"), first.recipients());
+        assertTrue(first.data().contains("message 0"));
+    }
+
+    @Test
+    void batchIsSentOverOneConnection() {
+        try (EmailNotifier email = notifier(2)) {
+            assertEquals(50, email.notifyBatch(notifications(50)));
+            assertEquals(50, email.getSentMessages().size());
+        }
+
+        assertEquals(50, server.getMessageCount());
+        assertEquals(1, server.getConnections());
+        assertEquals(List.of("u49@test.com"), server.getMessages().getLast().recipients());
+    }
+
+    @Test
+    void brokenConnectionIsReopenedAndTheMessageResent() {
+        try (EmailNotifier email = notifier(1)) {
+            List<Pair<User, String>> list = notifications(3);
+            email.notify(list.get(0).first, list.get(0).second);
+            server.dropConnections();
+            assertEquals(2, email.notifyBatch(list.subList(1, 3)));
+        }
+
+        assertEquals(3, server.getMessageCount());
+        assertEquals(2, server.getConnections());
+    }
+
+    @Test
+    void rejectedMessagesAreNotCountedAsSentOrRetried() {
+        server.failEvery(3, FakeSmtpServer.Fault.REJECT);
+        try (EmailNotifier email = notifier(1)) {
+            assertEquals(6, email.notifyBatch(notifications(9)));
+        }
+
+        assertEquals(6, server.getMessageCount());
+        assertEquals(3, server.getRejectedCount());
+        assertEquals(1, server.getConnections(), "a rejection does not break the connection");
+    }
+
+    @Test
+    void disconnectDuringAMessageIsRetriedOverANewConnection() {
+        server.failEvery(4, FakeSmtpServer.Fault.DISCONNECT);
+        try (EmailNotifier email = notifier(1)) {
+            assertEquals(6, email.notifyBatch(notifications(6)));
+        }
+
+        assertEquals(6, server.getMessageCount());
+        assertEquals(1, server.getDisconnectCount());
+        assertEquals(2, server.getConnections());
+        assertEquals(List.of("u3@test.com"), server.getMessages().get(3).recipients());
+    }
+
+    @Test
+    void latencyDelaysEveryReply() {
+        server.setLatency(Duration.ofMillis(20));
+        long start = System.nanoTime();
+        try (EmailNotifier email = notifier(1)) {
+            assertEquals(1, email.notifyBatch(notifications(1)));
+        }
+        long elapsedMs = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        assertTrue(elapsedMs >= 100, "greeting, EHLO, AUTH, MAIL, RCPT, DATA and end of data: " + elapsedMs + " ms");
+    }
+
+    @Test
+    void asyncNotifierBatchesOverAtMostPoolSizeConnections() throws Exception {
+        EmailNotifier email = notifier(4);
+        try (AsyncNotifier async = new AsyncNotifier(email, 1_000, 4, AsyncNotifier.Backpressure.BLOCK)) {
+            for (Pair<User, String> n : notifications(500)) async.notify(n.first, n.second);
+            assertTrue(async.awaitQuiescence(Duration.ofSeconds(30)));
+            assertEquals(500, async.getDelivered());
+            assertEquals(0, async.getFailed());
+        }
+
+        assertEquals(500, server.getMessageCount());
+        assertTrue(server.getConnections() <= 4, "connections: " + server.getConnections());
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (server.getOpenConnections() > 0 && System.nanoTime() < deadline) Thread.sleep(10);
+        assertEquals(0, server.getOpenConnections(), "closing the AsyncNotifier closes the pool");
+    }
+
+    @Test
+    void connectionsHaveFiniteTimeouts() {
+        List<Properties> sessions = new ArrayList<>();
+        try (EmailNotifier email = new EmailNotifier(server.getHost(), server.getPort(),
+                "user", "secret", "library@test.com", 1) {
+            @Override
+            protected Session createSession(Properties props) {
+                sessions.add(props);
+                return super.createSession(props);
+            }
+        }) {
+            assertEquals(2, email.notifyBatch(notifications(2)));
+        }
+
+        assertEquals(1, sessions.size(), "the session is shared");
+        String timeout = String.valueOf(EmailNotifier.SMTP_TIMEOUT.toMillis());
+        for (String key : List.of("mail.smtp.connectiontimeout", "mail.smtp.timeout", "mail.smtp.writetimeout")) {
+            assertEquals(timeout, sessions.getFirst().getProperty(key), key);
+        }
+    }
+
+    @Test
+    void unreachableServerFailsTheBatchWithoutThrowing() {
+        int port = server.getPort();
+        server.close();
+        try (EmailNotifier email = new EmailNotifier(server.getHost(), port, "user", "secret", "library@test.com", 1)) {
+            assertEquals(0, email.notifyBatch(notifications(3)));
+            assertEquals(3, email.getSentMessages().size());
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> new EmailNotifier("h", 25, "u", "p", "f", 0));
+    }
+
+    @Test
+    void blackHoledServerCostsOneConnectTimeoutPerBatch() throws IOException {
+        int connectTimeoutMillis = 300;
+        List<Socket> backlog = new ArrayList<>();
+        try (ServerSocket blackHole = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            // Never accepted: once the backlog is full, connects hang until they time out.
+            boolean full = false;
+            for (int i = 0; i < 16 && !full; i++) {
+                Socket socket = new Socket();
+                backlog.add(socket);
+                try {
+                    socket.connect(blackHole.getLocalSocketAddress(), 100);
+                } catch (SocketTimeoutException _) {
+                    full = true;
+                }
+            }
+            assumeTrue(full, "the backlog of the listening socket did not fill up");
+
+            InetSocketAddress address = (InetSocketAddress) blackHole.getLocalSocketAddress();
+            try (EmailNotifier email = new EmailNotifier(address.getHostString(), address.getPort(),
+                    "user", "secret", "library@test.com", 1) {
+                @Override
+                protected Session createSession(Properties props) {
+                    props.put("mail.smtp.connectiontimeout", String.valueOf(connectTimeoutMillis));
+                    return super.createSession(props);
+                }
+            }) {
+                long start = System.nanoTime();
+                assertEquals(0, email.notifyBatch(notifications(8)));
+                Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+                assertEquals(8, email.getSentMessages().size());
+                assertTrue(elapsed.toMillis() < 3L * connectTimeoutMillis,
+                        "one connect attempt for the whole batch, took " + elapsed);
+            }
+        } finally {
+            for (Socket socket : backlog) socket.close();
+        }
+    }
+}
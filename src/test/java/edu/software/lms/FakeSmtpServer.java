@@ -0,0 +1,314 @@
+package edu.software.lms;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process SMTP server for tests and load tests. It speaks enough of the
+ * protocol for Jakarta Mail (EHLO, AUTH PLAIN/LOGIN, MAIL, RCPT, DATA, RSET,
+ * NOOP, QUIT) and accepts every message, unless told to fail some.
+ *
+ * <p>It is built on a blocking {@link ServerSocketChannel}, and each
+ * connection is served by its own platform thread, so that the server keeps
+ * running while virtual-thread clients pin their carriers inside Jakarta
+ * Mail.</p>
+ *
+ * <p>{@link #setLatency(Duration)} delays every reply, like a slow or
+ * distant server. {@link #failEvery(int, Fault)} makes every n-th message
+ * fail, either with a temporary rejection or by dropping the connection.
+ * Messages are counted, and kept in memory unless
+ * {@link #setKeepMessages(boolean)} turns that off for large runs.</p>
+ */
+final class FakeSmtpServer implements AutoCloseable {
+
+    /** A message accepted by the server. */
+    record Received(String from, List<String> recipients, String data) { }
+
+    /** How an injected failure shows to the client. */
+    enum Fault {
+        /** Reply {@code 451} to the end of the message data. */
+        REJECT,
+        /** Close the connection instead of replying to the end of the message data. */
+        DISCONNECT
+    }
+
+    private final ServerSocketChannel serverChannel;
+    private final Thread acceptor;
+    private final Set<SocketChannel> open = ConcurrentHashMap.newKeySet();
+    private final List<Received> messages = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong disconnected = new AtomicLong();
+    /** Messages whose data was fully received, accepted or not; drives {@link #failEvery}. */
+    private final AtomicLong attempts = new AtomicLong();
+
+    private volatile long latencyNanos;
+    private volatile int failEvery;
+    private volatile Fault fault = Fault.REJECT;
+    private volatile boolean keepMessages = true;
+
+    private FakeSmtpServer() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        acceptor = Thread.ofPlatform().daemon().name("fake-smtp-accept").start(this::acceptLoop);
+    }
+
+    /** Starts a server on a free loopback port. */
+    static FakeSmtpServer start() throws IOException {
+        return new FakeSmtpServer();
+    }
+
+    String getHost() {
+        return InetAddress.getLoopbackAddress().getHostAddress();
+    }
+
+    int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    // ------------------- Configuration -------------------
+
+    /** Delays every reply by the given time; zero turns the delay off. */
+    void setLatency(Duration latency) {
+        latencyNanos = latency.toNanos();
+    }
+
+    /**
+     * Makes every n-th message fail in the given way; zero turns failures
+     * off.
+     */
+    void failEvery(int n, Fault fault) {
+        if (n < 0) throw new IllegalArgumentException("n must not be negative: " + n);
+        this.fault = fault;
+        this.failEvery = n;
+    }
+
+    /** Whether accepted messages are kept for {@link #getMessages()}; they are always counted. */
+    void setKeepMessages(boolean keepMessages) {
+        this.keepMessages = keepMessages;
+    }
+
+    // ------------------- Counters -------------------
+
+    /** @return connections accepted so far */
+    int getConnections() {
+        return connections.get();
+    }
+
+    /** @return connections currently open */
+    int getOpenConnections() {
+        return open.size();
+    }
+
+    /** @return messages accepted so far */
+    long getMessageCount() {
+        return accepted.get();
+    }
+
+    /** @return messages rejected by an injected {@link Fault#REJECT} */
+    long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /** @return connections closed by an injected {@link Fault#DISCONNECT} */
+    long getDisconnectCount() {
+        return disconnected.get();
+    }
+
+    /** @return snapshot of the messages accepted so far, if they are kept */
+    List<Received> getMessages() {
+        synchronized (messages) {
+            return List.copyOf(messages);
+        }
+    }
+
+    /** Closes every open client connection without a reply, as a crashed server would. */
+    void dropConnections() {
+        for (SocketChannel channel : open) closeQuietly(channel);
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverChannel.close();
+        } catch (IOException _) {
+            // closing anyway
+        }
+        dropConnections();
+        acceptor.interrupt();
+    }
+
+    // ------------------- Protocol -------------------
+
+    private void acceptLoop() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                int n = connections.incrementAndGet();
+                open.add(channel);
+                Thread.ofPlatform().daemon().name("fake-smtp-" + n).start(() -> serve(channel));
+            } catch (IOException _) {
+                // closed
+            }
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        try (channel) {
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            reply(channel, "220 localhost fake SMTP ready");
+
+            String from = null;
+            List<String> recipients = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() < 4 ? line.toUpperCase(Locale.ROOT)
+                        : line.substring(0, 4).toUpperCase(Locale.ROOT);
+                switch (command) {
+                    case "EHLO" -> reply(channel, "250-localhost\r\n250-AUTH PLAIN LOGIN\r\n250 8BITMIME");
+                    case "HELO" -> reply(channel, "250 localhost");
+                    case "AUTH" -> authenticate(line, in, channel);
+                    case "MAIL" -> {
+                        from = argument(line);
+                        recipients.clear();
+                        reply(channel, "250 OK");
+                    }
+                    case "RCPT" -> {
+                        recipients.add(argument(line));
+                        reply(channel, "250 OK");
+                    }
+                    case "DATA" -> {
+                        reply(channel, "354 End data with <CR><LF>.<CR><LF>");
+                        String data = readData(in);
+                        if (data == null) return;
+                        if (!endOfData(channel, new Received(from, List.copyOf(recipients), data))) return;
+                        from = null;
+                        recipients.clear();
+                    }
+                    case "RSET" -> {
+                        from = null;
+                        recipients.clear();
+                        reply(channel, "250 OK");
+                    }
+                    case "NOOP" -> reply(channel, "250 OK");
+                    case "QUIT" -> {
+                        reply(channel, "221 Bye");
+                        return;
+                    }
+                    default -> reply(channel, "502 Command not implemented");
+                }
+            }
+        } catch (IOException _) {
+            // client went away or the connection was dropped
+        } finally {
+            open.remove(channel);
+        }
+    }
+
+    /**
+     * Accepts the message or applies the injected fault.
+     *
+     * @return false if the connection is to be closed
+     */
+    private boolean endOfData(SocketChannel channel, Received message) throws IOException {
+        int n = failEvery;
+        if (n > 0 && attempts.incrementAndGet() % n == 0) {
+            if (fault == Fault.DISCONNECT) {
+                disconnected.incrementAndGet();
+                return false;
+            }
+            rejected.incrementAndGet();
+            reply(channel, "451 4.3.0 Temporary failure, try again later");
+            return true;
+        }
+        accepted.incrementAndGet();
+        if (keepMessages) messages.add(message);
+        reply(channel, "250 OK queued");
+        return true;
+    }
+
+    /** Accepts any credentials, for PLAIN with or without an initial response and for LOGIN. */
+    private void authenticate(String line, BufferedReader in, SocketChannel channel) throws IOException {
+        String[] parts = line.split(" ");
+        String mechanism = parts.length > 1 ? parts[1].toUpperCase(Locale.ROOT) : "";
+        switch (mechanism) {
+            case "PLAIN" -> {
+                if (parts.length < 3) {
+                    reply(channel, "334 ");
+                    in.readLine();
+                }
+            }
+            case "LOGIN" -> {
+                reply(channel, "334 VXNlcm5hbWU6");
+                in.readLine();
+                reply(channel, "334 UGFzc3dvcmQ6");
+                in.readLine();
+            }
+            default -> {
+                reply(channel, "504 Unrecognized authentication type");
+                return;
+            }
+        }
+        reply(channel, "235 Authentication successful");
+    }
+
+    /** Reads message data up to the lone dot, undoing dot-stuffing; null on end of stream. */
+    private static String readData(BufferedReader in) throws IOException {
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.equals(".")) return data.toString();
+            data.append(line.startsWith(".") ? line.substring(1) : line).append("\r\n");
+        }
+        return null;
+    }
+
+    /** The address in {@code MAIL FROM:<a>} or {@code RCPT TO:<a>}. */
+    private static String argument(String line) {
+        int start = line.indexOf('<');
+        int end = line.indexOf('>', start + 1);
+        return start >= 0 && end > start ? line.substring(start + 1, end) : line.substring(line.indexOf(':') + 1).trim();
+    }
+
+    private void reply(SocketChannel channel, String reply) throws IOException {
+        long latency = latencyNanos;
+        if (latency > 0) {
+            try {
+                Thread.sleep(Duration.ofNanos(latency));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted", e);
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap((reply + "\r\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException _) {
+            // already closed
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cost of pricing a large batch of loans with the Vector API version of
+ * {@link BookFineStrategy#calculateFines(int[], int[])} against the scalar
+ * default of {@link FineStrategy}. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class FineStrategyBenchmarkTest {
+
+    private static final int LOANS = 10_000_000;
+
+    @Test
+    void vectorBatchBeatsScalarLoop() {
+        int[] days = new Random(7).ints(LOANS, -30, 365).toArray();
+        int[] vectorOut = new int[LOANS];
+        int[] scalarOut = new int[LOANS];
+
+        FineStrategy vector = new BookFineStrategy();
+        BookFineStrategy rates = new BookFineStrategy();
+        FineStrategy scalar = rates::calculateFine; // keeps the default, one-at-a-time loop
+
+        long vectorNs = time(() -> vector.calculateFines(days, vectorOut));
+        long scalarNs = time(() -> scalar.calculateFines(days, scalarOut));
+        assertArrayEquals(scalarOut, vectorOut);
+
+        System.out.printf("fines for %,d loans (vectorized=%b): batch %.2f ms, scalar %.2f ms (%.1fx)%n",
+                LOANS, PerDayFines.VECTORIZED, vectorNs / 1e6, scalarNs / 1e6, (double) scalarNs / vectorNs);
+    }
+
+    /** Best of several runs after warm-up. */
+    private static long time(Runnable batch) {
+        for (int i = 0; i < 5; i++) batch.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            long start = System.nanoTime();
+            batch.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
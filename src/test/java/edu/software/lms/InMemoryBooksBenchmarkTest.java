@@ -0,0 +1,49 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Lookup cost of {@link InMemoryBooks} at growing catalog sizes.
+ * Run with {@code mvn test -Pbenchmark}; the average cost per lookup
+ * should stay flat as the catalog grows.
+ */
+@Tag("benchmark")
+class InMemoryBooksBenchmarkTest {
+
+    private static final int LOOKUPS = 200_000;
+
+    @Test
+    void lookupCostDoesNotGrowWithCatalogSize() {
+        for (int size : new int[]{1_000, 10_000, 100_000, 300_000}) {
+            InMemoryBooks repo = new InMemoryBooks();
+            for (int i = 1; i <= size; i++) {
+                repo.addBook(new Book(i, "Title " + i, "Author " + (i % 1000), "ISBN-" + i));
+            }
+
+            // warm-up, then measured run
+            runLookups(repo, size);
+            long start = System.nanoTime();
+            int found = runLookups(repo, size);
+            long elapsed = System.nanoTime() - start;
+
+            assertEquals(LOOKUPS * 4, found);
+            System.out.printf("InMemoryBooks size=%,d: %.1f ns/lookup%n",
+                    size, (double) elapsed / (LOOKUPS * 4));
+        }
+    }
+
+    private static int runLookups(InMemoryBooks repo, int size) {
+        int found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            int id = 1 + (i * 7919) % size;
+            if (repo.getBookById(id) != null) found++;
+            if (repo.getBookByISBN("ISBN-" + id) != null) found++;
+            if (repo.getBookByName("Title " + id) != null) found++;
+            if (repo.getBookByAuthor("Author " + (id % 1000)) != null) found++;
+        }
+        return found;
+    }
+}
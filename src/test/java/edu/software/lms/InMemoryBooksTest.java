@@ -4,6 +4,8 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class InMemoryBooksTest {
@@ -111,4 +113,122 @@ class InMemoryBooksTest {
         inMemoryBooks.addBook(new Book(3, "Algo", "Bill", "999"));
         assertEquals(6, inMemoryBooks.getNextId());
     }
+
+    @Test
+    void setIsbnOnStoredBookUpdatesIndex() {
+        testBook.setIsbn("456");
+        assertNull(inMemoryBooks.getBookByISBN("123"));
+        assertSame(testBook, inMemoryBooks.getBookByISBN("456"));
+        assertTrue(inMemoryBooks.addBook(new Book(2, "Data Structure", "John Marston", "123")));
+    }
+
+    @Test
+    void setAuthorOnStoredBookUpdatesIndex() {
+        testBook.setAuthor("Dutch");
+        assertNull(inMemoryBooks.getBookByAuthor("Arthur Morgan"));
+        assertSame(testBook, inMemoryBooks.getBookByAuthor("Dutch"));
+    }
+
+    @Test
+    void setIdOnStoredBookUpdatesIndex() {
+        testBook.setId(7);
+        assertNull(inMemoryBooks.getBookById(1));
+        assertSame(testBook, inMemoryBooks.getBookById(7));
+    }
+
+    @Test
+    void sameAuthorReturnsFirstAddedBook() {
+        Book second = new Book(2, "Algorithms", "Arthur Morgan", "777");
+        inMemoryBooks.addBook(second);
+        assertSame(testBook, inMemoryBooks.getBookByAuthor("Arthur Morgan"));
+
+        testBook.setAuthor("Dutch");
+        assertSame(second, inMemoryBooks.getBookByAuthor("Arthur Morgan"));
+    }
+
+    @Test
+    void authorMovedAwayAndBackKeepsInsertionOrder() {
+        Book a = new Book(2, "A", "X", "a-isbn");
+        Book b = new Book(3, "B", "X", "b-isbn");
+        inMemoryBooks.addBook(a);
+        inMemoryBooks.addBook(b);
+
+        a.setAuthor("Q");
+        a.setAuthor("X");
+        assertSame(a, inMemoryBooks.getBookByAuthor("X"));
+    }
+
+    @Test
+    void hiddenDuplicateKeyTakesOverWhenTheHolderMovesAway() {
+        Book first = new Book(5, "First", "A", "dup-isbn");
+        Book second = new Book(6, "Second", "B", "other-isbn");
+        inMemoryBooks.addBook(first);
+        inMemoryBooks.addBook(second);
+        second.setId(5);
+        second.setIsbn("dup-isbn");
+        assertSame(first, inMemoryBooks.getBookById(5));
+        assertSame(first, inMemoryBooks.getBookByISBN("dup-isbn"));
+
+        first.setId(50);
+        first.setIsbn("moved-isbn");
+        assertSame(second, inMemoryBooks.getBookById(5));
+        assertSame(second, inMemoryBooks.getBookByISBN("dup-isbn"));
+
+        first.setId(5);
+        assertSame(first, inMemoryBooks.getBookById(5), "the earlier book wins the key back");
+    }
+
+    @Test
+    void prePopulatedListIsIndexed() {
+        InMemoryBooks repo = InMemoryBooks.of(new java.util.ArrayList<>(java.util.List.of(
+                new Book(3, "T1", "A1", "I1"), new CD(4, "T2", "A2", "I2"))));
+        assertNotNull(repo.getBookById(4));
+        assertNotNull(repo.getBookByISBN("I1"));
+        assertFalse(repo.addBook(new Book(3, "T3", "A3", "I3")));
+    }
+
+    @Test
+    void allocateIdIsMonotonic() {
+        assertEquals(2, inMemoryBooks.allocateId());
+        assertEquals(3, inMemoryBooks.allocateId());
+        assertEquals(4, inMemoryBooks.getNextId());
+    }
+
+    @Test
+    void reserveIdsReturnsContiguousBlock() {
+        int first = inMemoryBooks.reserveIds(10);
+        assertEquals(2, first);
+        assertEquals(12, inMemoryBooks.getNextId());
+        assertThrows(IllegalArgumentException.class, () -> inMemoryBooks.reserveIds(0));
+    }
+
+    @Test
+    void addBooksSkipsDuplicatesAndNulls() {
+        Book twin = new Book(50, "Twin", "X", inMemoryBooks.getBookById(1).getIsbn());
+        Book fresh = new Book(51, "Fresh", "Y", "fresh-isbn");
+        Book again = new Book(51, "Again", "Z", "again-isbn");
+        int before = inMemoryBooks.getAllBooks().size();
+
+        assertEquals(1, inMemoryBooks.addBooks(Arrays.asList(twin, fresh, null, again)));
+        assertSame(fresh, inMemoryBooks.getBookById(51));
+        assertNull(inMemoryBooks.getBookByISBN("again-isbn"));
+        assertEquals(before + 1, inMemoryBooks.getAllBooks().size());
+        assertEquals(52, inMemoryBooks.getNextId());
+    }
+
+    @Test
+    void reserveIdsRefusesToWrapPastMaxValue() {
+        inMemoryBooks.addBook(new Book(Integer.MAX_VALUE - 10, "X", "Y", "Z"));
+        assertEquals(Integer.MAX_VALUE - 9, inMemoryBooks.reserveIds(5));
+
+        assertThrows(IllegalStateException.class, () -> inMemoryBooks.reserveIds(10));
+        assertEquals(Integer.MAX_VALUE - 4, inMemoryBooks.getNextId(), "a refused block reserves nothing");
+    }
+
+    @Test
+    void addingHigherIdRaisesHighWaterMark() {
+        inMemoryBooks.reserveIds(3);
+        inMemoryBooks.addBook(new Book(100, "X", "Y", "Z"));
+        assertEquals(101, inMemoryBooks.allocateId());
+    }
 }
@@ -0,0 +1,61 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryLoanRepositoryTest extends LoanRepositoryContractTest<InMemoryLoanRepository> {
+
+    @Override
+    InMemoryLoanRepository createRepository() {
+        return new InMemoryLoanRepository();
+    }
+
+    @Test
+    void concurrentAddsAreAllIndexed() throws Exception {
+        int threads = 8;
+        int perThread = 5_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<String>>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            String user = "user-" + t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                List<String> ids = new ArrayList<>();
+                for (int i = 0; i < perThread; i++) {
+                    Loan loan = new Loan(user, i % 100, DAY, DAY.plusDays(7));
+                    assertTrue(repo.addLoan(loan));
+                    ids.add(loan.getId());
+                }
+                return ids;
+            }));
+        }
+        start.countDown();
+
+        Set<String> all = new HashSet<>();
+        for (int t = 0; t < threads; t++) {
+            List<String> ids = futures.get(t).get();
+            all.addAll(ids);
+            Set<String> indexed = new HashSet<>();
+            for (Loan loan : repo.getLoansByUserId("user-" + t)) indexed.add(loan.getId());
+            assertEquals(new HashSet<>(ids), indexed);
+        }
+        pool.shutdown();
+
+        assertEquals(threads * perThread, all.size());
+        assertEquals(threads * perThread, repo.getAllLoans().size());
+        assertEquals(threads * perThread / 100, repo.getLoansByBookId(7).size());
+        for (String id : all) assertNotNull(repo.getLoanById(id));
+    }
+}
@@ -3,6 +3,13 @@ package edu.software.lms;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class InMemoryUserRepositoryTest {
@@ -53,6 +60,83 @@ class InMemoryUserRepositoryTest {
         assertFalse(repo.deleteUser("c-id")); // already deleted
     }
 
+    @Test
+    void preventDuplicateId() {
+        User u1 = new User("erin", "p1","user@gmail.com",false);
+        u1.setId("same-id");
+        User u2 = new User("frank", "p2","user@gmail.com",false);
+        u2.setId("same-id");
+        assertTrue(repo.addUser(u1));
+        assertFalse(repo.addUser(u2));
+        assertNull(repo.getUserByUsername("frank"));
+    }
+
+    @Test
+    void userWithoutIdIsAcceptedAndFoundByUsername() {
+        User u = new User("carol", "p","user@gmail.com",false);
+        u.setId(null);
+        assertTrue(repo.addUser(u));
+
+        assertSame(u, repo.getUserByUsername("carol"));
+        assertNull(repo.getUserById(null));
+        assertFalse(repo.deleteUser(null));
+        assertEquals(List.of(u), repo.getAllUsers());
+
+        User other = new User("dave", "p","user@gmail.com",false);
+        other.setId(null);
+        assertTrue(repo.addUser(other), "a missing ID does not clash with another missing ID");
+    }
+
+    @Test
+    void deleteFreesUsername() {
+        User u = new User("gina", "pw","user@gmail.com",false);
+        repo.addUser(u);
+        assertTrue(repo.deleteUser("gina"));
+        assertNull(repo.getUserByUsername("gina"));
+        assertFalse(repo.deleteUser(null));
+        assertTrue(repo.addUser(new User("gina", "pw2","user@gmail.com",false)));
+    }
+
+    @Test
+    void usernamesAreCaseSensitiveByDefault() {
+        repo.addUser(new User("Hank", "pw","user@gmail.com",false));
+        assertNull(repo.getUserByUsername("hank"));
+        assertTrue(repo.addUser(new User("hank", "pw","user@gmail.com",false)));
+    }
+
+    @Test
+    void caseInsensitiveRepositoryFoldsUsernames() {
+        InMemoryUserRepository folded = new InMemoryUserRepository(true);
+        User u = new User("Ivy", "pw","user@gmail.com",false);
+        assertTrue(folded.addUser(u));
+        assertSame(u, folded.getUserByUsername("IVY"));
+        assertFalse(folded.addUser(new User("ivy", "pw","user@gmail.com",false)));
+        assertTrue(folded.deleteUser("Ivy"));
+        assertNull(folded.getUserByUsername("ivy"));
+    }
+
+    @Test
+    void concurrentAddsOfSameUsernameAdmitOne() throws Exception {
+        int threads = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger added = new AtomicInteger();
+        for (int t = 0; t < threads; t++) {
+            int n = t;
+            pool.submit(() -> {
+                start.await();
+                User u = new User("joe", "pw","user@gmail.com",false);
+                u.setId("joe-" + n);
+                if (repo.addUser(u)) added.incrementAndGet();
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1, added.get());
+    }
+
     @Test
     void validateCredentials() {
         User u = new User("dave", "mysecret","user@gmail.com",false);
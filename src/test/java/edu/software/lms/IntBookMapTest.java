@@ -0,0 +1,111 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntBookMapTest {
+
+    private final Book book = new Book(1, "T", "A", "I");
+
+    @Test
+    void putGetAndReplace() {
+        IntBookMap map = new IntBookMap();
+        Book other = new Book(2, "T2", "A2", "I2");
+
+        assertNull(map.put(1, book));
+        assertSame(book, map.get(1));
+        assertSame(book, map.put(1, other));
+        assertSame(other, map.get(1));
+        assertEquals(1, map.size());
+        assertNull(map.get(2));
+    }
+
+    @Test
+    void negativeAndZeroKeys() {
+        IntBookMap map = new IntBookMap();
+        map.put(0, book);
+        map.put(-5, book);
+        map.put(Integer.MIN_VALUE, book);
+        assertTrue(map.containsKey(0));
+        assertTrue(map.containsKey(-5));
+        assertTrue(map.containsKey(Integer.MIN_VALUE));
+        assertFalse(map.containsKey(5));
+    }
+
+    @Test
+    void putIfAbsentKeepsExisting() {
+        IntBookMap map = new IntBookMap();
+        Book other = new Book(2, "T2", "A2", "I2");
+        assertNull(map.putIfAbsent(1, book));
+        assertSame(book, map.putIfAbsent(1, other));
+        assertSame(book, map.get(1));
+    }
+
+    @Test
+    void removeByIdentity() {
+        IntBookMap map = new IntBookMap();
+        map.put(1, book);
+        assertFalse(map.remove(1, new Book(1, "T", "A", "I")));
+        assertTrue(map.remove(1, book));
+        assertNull(map.get(1));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void nullValueRejected() {
+        IntBookMap map = new IntBookMap();
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, null));
+    }
+
+    @Test
+    void resizeAndRemoveAgreeWithHashMap() {
+        IntBookMap map = new IntBookMap();
+        Map<Integer, Book> reference = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(50_000) - 25_000;
+            if (random.nextInt(3) == 0) {
+                assertSame(reference.remove(key), map.remove(key));
+            } else {
+                Book b = new Book(key, "T", "A", "I" + i);
+                assertSame(reference.put(key, b), map.put(key, b));
+            }
+        }
+
+        assertEquals(reference.size(), map.size());
+        for (int key = -25_000; key < 25_000; key++) {
+            assertSame(reference.get(key), map.get(key));
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(reference.keySet().iterator().next()));
+    }
+
+    /** Walks a million-entry graph; run with {@code mvn test -Pbenchmark}. */
+    @Test
+    @Tag("benchmark")
+    void footprintIsFarBelowBoxedHashMap() {
+        int entries = 1_000_000;
+        IntBookMap map = new IntBookMap(entries);
+        Map<Integer, Book> boxed = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+            map.put(i * 3, book);
+            boxed.put(i * 3, book);
+        }
+
+        // the shared Book is counted once on both sides
+        long primitiveBytes = GraphLayout.parseInstance(map).totalSize();
+        long boxedBytes = GraphLayout.parseInstance(boxed).totalSize();
+
+        assertTrue(primitiveBytes * 2 < boxedBytes,
+                "IntBookMap " + primitiveBytes + " B vs HashMap " + boxedBytes + " B");
+    }
+}
@@ -0,0 +1,223 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the embedded-database {@link JdbcStore}: lookups, batch
+ * inserts, canonical views, SQL overdue queries and state surviving a
+ * restart.
+ */
+class JdbcStoreTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 1, 1);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void booksLookupsAndBatchInsert() {
+        try (JdbcStore store = JdbcStore.open(dir)) {
+            BookRepository books = store.getBookRepository();
+            assertTrue(books.addBook(new Book(1, "Dune", "Herbert", "111")));
+            assertFalse(books.addBook(new Book(1, "Other", "X", "999")), "duplicate ID");
+            assertFalse(books.addBook(new Book(9, "Other", "X", "111")), "duplicate ISBN");
+            assertFalse(books.addBook(null));
+
+            List<Book> batch = new ArrayList<>();
+            batch.add(new CD(2, "Blue", "Mitchell", "222"));
+            batch.add(new Book(3, "Dune", "Someone", "333"));
+            batch.add(new Book(1, "Taken", "X", "444"));
+            batch.add(null);
+            batch.add(new Book(4, "Twin", "X", "333"));
+            assertEquals(2, books.addBooks(batch));
+
+            assertInstanceOf(CD.class, books.getBookByISBN("222"));
+            assertEquals(1, books.getBookByName("Dune").getId(), "first added wins");
+            assertEquals(3, books.getBookByAuthor("Someone").getId());
+            assertNull(books.getBookById(4));
+            assertNull(books.getBookByName(null));
+            assertEquals(List.of(1, 2, 3), books.getAllBooks().stream().map(Book::getId).toList());
+            assertEquals(4, books.getNextId());
+            assertEquals(4, books.reserveIds(10));
+            assertEquals(14, books.getNextId());
+        }
+    }
+
+    @Test
+    void bookWithTheLargestIdDoesNotWrapTheAllocator() {
+        try (JdbcStore store = JdbcStore.open(dir)) {
+            BookRepository books = store.getBookRepository();
+            assertTrue(books.addBook(new Book(5, "Dune", "Herbert", "111")));
+            assertTrue(books.addBook(new Book(Integer.MAX_VALUE, "Last", "X", "222")));
+            assertEquals(6, books.getNextId());
+            assertEquals(6, books.allocateId());
+        }
+    }
+
+    @Test
+    void viewsAreCanonicalAndWriteThrough() {
+        try (JdbcStore store = JdbcStore.open(dir)) {
+            BookRepository books = store.getBookRepository();
+            Book added = new Book(1, "Dune", "Herbert", "111");
+            books.addBook(added);
+
+            assertSame(added, books.getBookById(1));
+            assertTrue(added.tryBorrow());
+            assertFalse(books.getBookByISBN("111").tryBorrow());
+            added.setIsbn("111-X");
+            added.setId(20);
+        }
+
+        try (JdbcStore store = JdbcStore.open(dir)) {
+            BookRepository books = store.getBookRepository();
+            assertNull(books.getBookById(1));
+            Book dune = books.getBookByISBN("111-X");
+            assertEquals(20, dune.getId());
+            assertTrue(dune.isBorrowed());
+            assertEquals(21, books.getNextId());
+        }
+    }
+
+    @Test
+    void changingAViewToATakenKeyIsRejectedAndUndone() {
+        try (JdbcStore store = JdbcStore.open(dir)) {
+            BookRepository books = store.getBookRepository();
+            Book dune = new Book(1, "Dune", "Herbert", "111");
+            books.addBook(dune);
+            books.addBook(new Book(2, "Emma", "Austen", "222"));
+
+            assertThrows(IllegalArgumentException.class, () -> dune.setId(2));
+            assertEquals(1, dune.getId());
+            assertThrows(IllegalArgumentException.class, () -> dune.setIsbn("222"));
+            assertEquals("111", dune.getIsbn());
+
+            assertSame(dune, books.getBookById(1));
+            assertSame(dune, books.getBookByISBN("111"));
+            assertEquals("Emma", books.getBookById(2).getName());
+            dune.setIsbn("111-X");
+            assertSame(dune, books.getBookByISBN("111-X"), "the view still writes through");
+        }
+    }
+
+    @Test
+    void usersAndLoans() {
+        try (JdbcStore store = JdbcStore.open(dir)) {
+            UserRepository users = store.getUserRepository();
+            LoanRepository loans = store.getLoanRepository();
+            assertTrue(users.addUser(new User("alice", "pw", "a@mail", false)));
+            assertFalse(users.addUser(new User("alice", "pw2", "b@mail", false)));
+            assertTrue(users.addUser(new User("bob", "pw", "b@mail", true)));
+
+            Loan late = new Loan("alice", 1, DAY, DAY.plusDays(7));
+            Loan later = new MediaLoan("alice", 2, DAY, DAY.plusDays(14), MediaType.CD);
+            Loan notDue = new Loan("bob", 1, DAY, DAY.plusDays(60));
+            assertEquals(3, loans.addLoans(List.of(later, notDue, late, late)));
+            assertFalse(loans.addLoan(late));
+
+            assertSame(late, loans.getLoanById(late.getId()));
+            assertNull(loans.getLoanById("not-a-uuid"));
+            assertEquals(List.of(later, late), loans.getLoansByUserId("alice"));
+            assertEquals(List.of(notDue, late), loans.getLoansByBookId(1));
+            assertEquals(List.of(late, later), loans.getOverdueLoans(DAY.plusDays(30)));
+
+            assertTrue(later.markReturned(DAY.plusDays(20)));
+            later.setFineApplied(120);
+            loans.updateLoan(later);
+            assertEquals(List.of(late), loans.getOverdueLoans(DAY.plusDays(30)));
+
+            User alice = users.getUserById("alice");
+            alice.addFine(120);
+            users.updateUser(alice);
+            assertTrue(users.deleteUser("bob"));
+            assertFalse(users.deleteUser("bob"));
+        }
+
+        try (JdbcStore store = JdbcStore.open(dir)) {
+            UserRepository users = store.getUserRepository();
+            LoanRepository loans = store.getLoanRepository();
+            User alice = users.getUserByUsername("alice");
+            assertEquals(120, alice.getFineBalance());
+            assertNull(users.getUserById("bob"));
+
+            Loan late = loans.getOverdueLoans(DAY.plusDays(30)).getFirst();
+            assertEquals(List.of(late.getId()), alice.getLoanIds(), "active loans are derived");
+            Loan returned = loans.getLoansByBookId(2).getFirst();
+            assertInstanceOf(MediaLoan.class, returned);
+            assertEquals(DAY.plusDays(20), returned.getReturnedDate());
+            assertEquals(120, returned.getFineApplied());
+            assertNull(late.getReturnedDate());
+        }
+    }
+
+    @Test
+    void overdueQueryUsesTheDueDateIndex() {
+        try (JdbcStore store = JdbcStore.open("jdbc:h2:mem:overdue;DB_CLOSE_DELAY=-1", "sa", "")) {
+            String plan = store.withConnection(c -> {
+                try (PreparedStatement ps = c.prepareStatement(
+                        "EXPLAIN SELECT id FROM loans WHERE due_date < ? AND returned_date IS NULL")) {
+                    ps.setObject(1, DAY);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        return rs.getString(1);
+                    }
+                }
+            });
+            assertTrue(plan.toUpperCase().contains("LOANS_DUE"), plan);
+        }
+    }
+
+    @Test
+    void worksWithBorrowingService() {
+        try (JdbcStore store = JdbcStore.open(dir)) {
+            BookRepository books = store.getBookRepository();
+            UserRepository users = store.getUserRepository();
+            LoanRepository loans = store.getLoanRepository();
+            books.addBook(new Book(books.allocateId(), "Dune", "Herbert", "111"));
+            users.addUser(new User("alice", "pw", "a@mail", false));
+            MockTimeProvider time = new MockTimeProvider(DAY);
+            MediaBorrowingService service = new MediaBorrowingService(users, books, loans, time);
+
+            assertTrue(service.borrowMedia("alice", 1).first);
+            assertFalse(service.borrowMedia("alice", 1).first);
+            String loanId = loans.getLoansByUserId("alice").getFirst().getId();
+            time.plusDays(40);
+            assertTrue(service.returnMedia(loanId).first);
+            assertFalse(books.getBookById(1).isBorrowed());
+            assertTrue(users.getUserById("alice").getFineBalance() > 0);
+        }
+    }
+
+    @Test
+    void batchCheckoutAndReturnWriteThroughInOneBatch() {
+        try (JdbcStore store = JdbcStore.open(dir)) {
+            BookRepository books = store.getBookRepository();
+            UserRepository users = store.getUserRepository();
+            LoanRepository loans = store.getLoanRepository();
+            books.addBook(new Book(1, "Dune", "Herbert", "111"));
+            books.addBook(new CD(2, "Blue", "Mitchell", "222"));
+            users.addUser(new User("alice", "pw", "a@mail", false));
+            MockTimeProvider time = new MockTimeProvider(DAY);
+            MediaBorrowingService service = new MediaBorrowingService(users, books, loans, time);
+
+            assertTrue(service.borrowMany("alice", new int[] {1, 2}).stream().allMatch(r -> r.first));
+            List<String> loanIds = loans.getLoansByUserId("alice").stream().map(Loan::getId).toList();
+            time.plusDays(10);
+            assertTrue(service.returnMany(loanIds).stream().allMatch(r -> r.first));
+
+            assertEquals(List.of(), loans.getOverdueLoans(DAY.plusDays(60)));
+            assertEquals(60, loans.getLoanById(loanIds.get(1)).getFineApplied(), "CD 3 days late");
+            assertEquals(60, users.getUserById("alice").getFineBalance());
+            assertFalse(books.getBookById(2).isBorrowed());
+        }
+    }
+}
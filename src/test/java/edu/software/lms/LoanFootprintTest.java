@@ -0,0 +1,98 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the compact {@link Loan} representation: the view API returns the
+ * same values as before, and a loan history takes at least three times less
+ * heap than with string IDs and {@link LocalDate} fields.
+ */
+class LoanFootprintTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 2, 29);
+
+    /** Field layout of {@link Loan} before it was made compact. */
+    @SuppressWarnings("unused")
+    private static final class LegacyLoan {
+        private final String id;
+        private final String userId;
+        private final int bookId;
+        private final LocalDate borrowDate;
+        private final LocalDate dueDate;
+        private volatile LocalDate returnedDate;
+        private int fineApplied;
+        private boolean finePaid;
+
+        LegacyLoan(String userId, int bookId, LocalDate borrowDate, LocalDate dueDate, LocalDate returnedDate) {
+            this.id = UUID.randomUUID().toString();
+            this.userId = userId;
+            this.bookId = bookId;
+            this.borrowDate = borrowDate;
+            this.dueDate = dueDate;
+            this.returnedDate = returnedDate;
+        }
+    }
+
+    @Test
+    void viewReturnsStoredValues() {
+        String id = UUID.randomUUID().toString();
+        MediaLoan loan = new MediaLoan(id, "u1", 7, DAY, DAY.plusDays(7), MediaType.CD);
+
+        assertEquals(id, loan.getId());
+        assertEquals(UUID.fromString(id), loan.uuid());
+        assertEquals(DAY, loan.getBorrowDate());
+        assertEquals(DAY.plusDays(7), loan.getDueDate());
+        assertNull(loan.getReturnedDate());
+
+        loan.setReturnedDate(DAY.plusDays(10));
+        assertEquals(DAY.plusDays(10), loan.getReturnedDate());
+        assertEquals(3, loan.overdueDays(DAY));
+        loan.setReturnedDate(null);
+        assertFalse(loan.isReturned());
+    }
+
+    @Test
+    void datesBeforeTheEpochWork() {
+        LocalDate old = LocalDate.of(1901, 1, 1);
+        Loan loan = new Loan("u1", 1, old, old.plusDays(14));
+
+        assertEquals(old.plusDays(14), loan.getDueDate());
+        assertEquals(6, loan.overdueDays(old.plusDays(20)));
+        assertTrue(loan.markReturned(old.plusDays(15)));
+        assertTrue(loan.isOverdue(old));
+    }
+
+    /** Walks 200,000 loan graphs; run with {@code mvn test -Pbenchmark}. */
+    @Test
+    @Tag("benchmark")
+    void historyFootprintIsAtLeastThreeTimesSmaller() {
+        // 10M loans are too many for a unit test; the ratio is per loan, so a slice shows it
+        int n = 100_000;
+        String[] users = new String[64];
+        for (int u = 0; u < users.length; u++) users[u] = "user" + u;
+
+        Loan[] compact = new Loan[n];
+        LegacyLoan[] legacy = new LegacyLoan[n];
+        for (int i = 0; i < n; i++) {
+            LocalDate borrow = DAY.plusDays(i % 1000);
+            LocalDate due = borrow.plusDays(28);
+            LocalDate returned = borrow.plusDays(i % 40);
+            compact[i] = new Loan(users[i % users.length], i, borrow, due);
+            compact[i].markReturned(returned);
+            legacy[i] = new LegacyLoan(users[i % users.length], i, borrow, due, returned);
+        }
+
+        long compactBytes = GraphLayout.parseInstance((Object) compact).totalSize();
+        long legacyBytes = GraphLayout.parseInstance((Object) legacy).totalSize();
+
+        assertTrue(legacyBytes >= 3 * compactBytes,
+                "compact=" + compactBytes + " legacy=" + legacyBytes);
+    }
+}
@@ -0,0 +1,148 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Behaviour every {@link LoanRepository} must have. Each implementation's
+ * test extends this class and adds only the cases specific to it.
+ *
+ * @param <R> the repository under test
+ */
+abstract class LoanRepositoryContractTest<R extends LoanRepository> {
+
+    static final LocalDate DAY = LocalDate.of(2025, 1, 1);
+
+    R repo;
+
+    /** @return a new, empty repository */
+    abstract R createRepository();
+
+    /**
+     * Whether the repository hands out views rebuilt from its own storage
+     * rather than the added loans themselves.
+     */
+    boolean rebuildsViews() {
+        return false;
+    }
+
+    @BeforeEach
+    void setUp() {
+        repo = createRepository();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (repo instanceof AutoCloseable closeable) closeable.close();
+    }
+
+    @Test
+    void addAndLookupByIdUserAndBook() {
+        Loan a = new Loan("u1", 1, DAY, DAY.plusDays(28));
+        Loan b = new MediaLoan("u1", 2, DAY, DAY.plusDays(7), MediaType.CD);
+        Loan c = new Loan("u2", 1, DAY, DAY.plusDays(28));
+        assertTrue(repo.addLoan(a));
+        assertTrue(repo.addLoan(b));
+        assertTrue(repo.addLoan(c));
+        assertFalse(repo.addLoan(a));
+        assertFalse(repo.addLoan(null));
+
+        assertSame(a, repo.getLoanById(a.getId()));
+        assertEquals(List.of(a, b), repo.getLoansByUserId("u1"));
+        assertEquals(List.of(a, c), repo.getLoansByBookId(1));
+        assertEquals(List.of(a, b, c), repo.getAllLoans());
+        assertTrue(repo.getLoansByUserId("nobody").isEmpty());
+        assertTrue(repo.getLoansByUserId(null).isEmpty());
+        assertNull(repo.getLoanById(null));
+        assertNull(repo.getLoanById("not-a-uuid"));
+        assertNull(repo.getLoanById(new Loan("u1", 1, DAY, DAY).getId()));
+    }
+
+    @Test
+    void updateReplacesOnlyKnownLoans() {
+        Loan a = new Loan("u1", 1, DAY, DAY.plusDays(28));
+        repo.addLoan(a);
+        a.setReturnedDate(DAY.plusDays(3));
+        repo.updateLoan(a);
+        repo.updateLoan(null);
+        repo.updateLoan(new Loan("u9", 9, DAY, DAY));
+
+        assertTrue(repo.getLoanById(a.getId()).isReturned());
+        assertEquals(1, repo.getAllLoans().size());
+    }
+
+    @Test
+    void overdueLoansAreOrderedByDueDate() {
+        LocalDate today = DAY.plusDays(30);
+        Loan later = new Loan("u2", 2, DAY, DAY.plusDays(14));
+        Loan late = new Loan("u1", 1, DAY, DAY.plusDays(7));
+        Loan returned = new Loan("u2", 4, DAY, DAY.plusDays(3));
+        repo.addLoan(later);
+        repo.addLoan(late);
+        repo.addLoan(new Loan("u1", 3, DAY, today));
+        repo.addLoan(returned);
+        returned.markReturned(DAY.plusDays(10));
+        repo.updateLoan(returned);
+
+        assertEquals(List.of(late, later), repo.getOverdueLoans(today));
+        assertTrue(repo.getOverdueLoans(DAY).isEmpty());
+    }
+
+    @Test
+    void viewsAreRecreatedFromStorageOnceCollected() throws InterruptedException {
+        assumeTrue(rebuildsViews(), "the repository keeps the added loans");
+        Loan loan = new MediaLoan("u1", 2, DAY, DAY.plusDays(7), MediaType.CD);
+        repo.addLoan(loan);
+        loan.markReturned(DAY.plusDays(9));
+        loan.setFineApplied(40);
+        loan.setFinePaid(true);
+        repo.updateLoan(loan);
+        String id = loan.getId();
+        loan = null;
+
+        WeakReference<Loan> first = new WeakReference<>(repo.getLoanById(id));
+        for (int i = 0; i < 50 && first.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assumeTrue(first.get() == null, "view was not collected");
+
+        Loan view = repo.getLoanById(id);
+        assertInstanceOf(MediaLoan.class, view);
+        assertEquals(MediaType.CD, ((MediaLoan) view).getMediaType());
+        assertEquals("u1", view.getUserId());
+        assertEquals(2, view.getBookId());
+        assertEquals(DAY, view.getBorrowDate());
+        assertEquals(DAY.plusDays(7), view.getDueDate());
+        assertEquals(DAY.plusDays(9), view.getReturnedDate());
+        assertEquals(40, view.getFineApplied());
+        assertTrue(view.isFinePaid());
+        assertSame(view, repo.getLoanById(id), "lookups share the live view");
+    }
+
+    @Test
+    void worksWithBorrowingService() {
+        InMemoryUserRepository users = new InMemoryUserRepository();
+        users.addUser(new User("alice", "pw", "a@mail", false));
+        InMemoryBooks books = new InMemoryBooks();
+        books.addBook(new Book(1, "Dune", "Herbert", "111"));
+        MockTimeProvider time = new MockTimeProvider(DAY);
+        MediaBorrowingService service = new MediaBorrowingService(users, books, repo, time);
+
+        assertTrue(service.borrowMedia("alice", 1).first);
+        String loanId = repo.getLoansByUserId("alice").getFirst().getId();
+        time.plusDays(40);
+        assertTrue(service.returnMedia(loanId).first);
+        assertFalse(service.returnMedia(loanId).first);
+        assertTrue(repo.getLoanById(loanId).isReturned());
+        assertTrue(repo.getLoanById(loanId).getFineApplied() > 0);
+    }
+}
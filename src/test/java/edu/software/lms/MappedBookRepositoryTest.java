@@ -0,0 +1,155 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link MappedBookRepository}: lookups, canonical views,
+ * write-through of changes, growth and reopening.
+ */
+class MappedBookRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void addAndLookUp() throws IOException {
+        try (MappedBookRepository repo = MappedBookRepository.open(dir)) {
+            assertTrue(repo.addBook(new Book(1, "Dune", "Herbert", "111")));
+            assertTrue(repo.addBook(new CD(2, "Blue", "Mitchell", "222")));
+            assertTrue(repo.addBook(new Book(3, "Dune", "Someone", "333")));
+
+            assertFalse(repo.addBook(null));
+            assertFalse(repo.addBook(new Book(1, "Other", "X", "999")), "duplicate ID");
+            assertFalse(repo.addBook(new Book(9, "Other", "X", "111")), "duplicate ISBN");
+
+            assertEquals("Blue", repo.getBookById(2).getName());
+            assertInstanceOf(CD.class, repo.getBookByISBN("222"));
+            assertEquals(1, repo.getBookByName("Dune").getId(), "first added wins");
+            assertEquals(3, repo.getBookByAuthor("Someone").getId());
+            assertNull(repo.getBookById(42));
+            assertNull(repo.getBookByISBN("404"));
+            assertNull(repo.getBookByName("Missing"));
+            assertEquals(List.of(1, 2, 3), repo.getAllBooks().stream().map(Book::getId).toList());
+            assertEquals(4, repo.getNextId());
+        }
+    }
+
+    @Test
+    void batchInsertSkipsDuplicatesAndGrowsTheFileOnce() throws IOException {
+        List<Book> batch = new ArrayList<>();
+        for (int i = 1; i <= 5_000; i++) batch.add(new Book(i, "T" + i, "A" + (i % 7), "isbn-" + i));
+        batch.add(new Book(1, "Taken", "X", "other"));
+        batch.add(new Book(9_999, "Twin", "X", "isbn-3"));
+        batch.add(null);
+
+        try (MappedBookRepository repo = MappedBookRepository.open(dir)) {
+            assertEquals(5_000, repo.addBooks(batch));
+            assertSame(batch.get(41), repo.getBookById(42));
+            assertEquals(3, repo.getBookByISBN("isbn-3").getId());
+            assertEquals(5_001, repo.getNextId());
+        }
+
+        try (MappedBookRepository repo = MappedBookRepository.open(dir)) {
+            assertEquals(5_000, repo.getAllBooks().size());
+            assertEquals("T4999", repo.getBookById(4_999).getName());
+        }
+    }
+
+    @Test
+    void lookupsReturnTheSameLiveView() throws IOException {
+        try (MappedBookRepository repo = MappedBookRepository.open(dir)) {
+            Book added = new Book(1, "Dune", "Herbert", "111");
+            repo.addBook(added);
+
+            assertSame(added, repo.getBookById(1));
+            assertSame(added, repo.getBookByISBN("111"));
+            assertTrue(added.tryBorrow());
+            assertFalse(repo.getBookByName("Dune").tryBorrow());
+        }
+    }
+
+    @Test
+    void changesAreWrittenThroughAndSurviveReopen() throws IOException {
+        try (MappedBookRepository repo = MappedBookRepository.open(dir)) {
+            repo.addBook(new Book(1, "Dune", "Herbert", "111"));
+            repo.addBook(new Book(2, "Emma", "Austen", "222"));
+            Book dune = repo.getBookById(1);
+            dune.setIsbn("111-X");
+            dune.setAuthor("F. Herbert");
+            dune.setId(10);
+            assertTrue(dune.tryBorrow());
+            assertEquals(11, repo.reserveIds(5));
+        }
+
+        try (MappedBookRepository repo = MappedBookRepository.open(dir)) {
+            assertNull(repo.getBookById(1));
+            assertNull(repo.getBookByISBN("111"));
+            Book dune = repo.getBookById(10);
+            assertEquals("111-X", dune.getIsbn());
+            assertEquals("F. Herbert", dune.getAuthor());
+            assertTrue(dune.isBorrowed());
+            assertSame(dune, repo.getBookByISBN("111-X"));
+            assertFalse(repo.getBookById(2).isBorrowed());
+            assertEquals(16, repo.getNextId());
+        }
+    }
+
+    @Test
+    void growsBeyondInitialMappingAndReopensWithoutParsing() throws IOException {
+        int n = 20_000;
+        try (MappedBookRepository repo = MappedBookRepository.open(dir)) {
+            for (int i = 1; i <= n; i++) {
+                assertTrue(repo.addBook(new Book(i, "Title " + i, "Author " + (i % 100), "ISBN-" + i)));
+            }
+        }
+
+        try (MappedBookRepository repo = MappedBookRepository.open(dir)) {
+            assertEquals(n, repo.size());
+            for (int i = 1; i <= n; i += 997) {
+                assertEquals("Title " + i, repo.getBookById(i).getName());
+                assertEquals(i, repo.getBookByISBN("ISBN-" + i).getId());
+            }
+            assertEquals(7, repo.getBookByAuthor("Author 7").getId());
+            assertEquals(n + 1, repo.getNextId());
+        }
+    }
+
+    @Test
+    void missingIndexesAreRebuilt() throws IOException {
+        try (MappedBookRepository repo = MappedBookRepository.open(dir)) {
+            repo.addBook(new Book(1, "Dune", "Herbert", "111"));
+            repo.addBook(new Book(2, "Emma", "Austen", "222"));
+        }
+        Files.delete(dir.resolve(MappedBookRepository.ID_INDEX_FILE));
+        Files.delete(dir.resolve(MappedBookRepository.ISBN_INDEX_FILE));
+
+        try (MappedBookRepository repo = MappedBookRepository.open(dir)) {
+            assertEquals("Emma", repo.getBookById(2).getName());
+            assertEquals(1, repo.getBookByISBN("111").getId());
+        }
+    }
+
+    @Test
+    void worksWithBorrowingService() throws IOException {
+        try (MappedBookRepository repo = MappedBookRepository.open(dir)) {
+            repo.addBook(new Book(1, "Dune", "Herbert", "111"));
+            InMemoryUserRepository users = new InMemoryUserRepository();
+            users.addUser(new User("alice", "pw", "a@mail", false));
+            MediaBorrowingService service = new MediaBorrowingService(users, repo,
+                    new InMemoryLoanRepository(), new MockTimeProvider(LocalDate.of(2025, 1, 1)));
+
+            assertTrue(service.borrowMedia("alice", 1).first);
+            assertFalse(service.borrowMedia("alice", 1).first);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package edu.software.lms;
 
 import org.junit.jupiter.api.Test;
 import java.time.LocalDate;
+import java.util.List;
 import static org.junit.jupiter.api.Assertions.*;
 
 class MediaBorrowingServiceTest {
@@ -69,4 +70,78 @@ class MediaBorrowingServiceTest {
         User stored = ur.getUserByUsername("bob");
         assertEquals(5 * 20, stored.getFineBalance());
     }
+
+    @Test
+    void borrowMany_checksTheUserOnceAndReportsEachItem() {
+        InMemoryUserRepository ur = new InMemoryUserRepository();
+        InMemoryBooks br = new InMemoryBooks();
+        InMemoryLoanRepository lr = new InMemoryLoanRepository();
+        MockTimeProvider tp = new MockTimeProvider(LocalDate.of(2025, 1, 1));
+
+        ur.addUser(new User("carol","pwd","user@gmail.com",false));
+        br.addBook(new Book(1,"Novel","Author","ISBN-1"));
+        br.addBook(new CD(2,"Hits","Various","CD-2"));
+        Book taken = new Book(3,"Taken","Author","ISBN-3");
+        taken.setBorrowed(true);
+        br.addBook(taken);
+
+        MediaBorrowingService mbs = new MediaBorrowingService(ur, br, lr, tp);
+
+        List<Pair<Boolean,String>> results = mbs.borrowMany("carol", new int[] {1, 2, 3, 99, 1});
+        assertEquals(5, results.size());
+        assertEquals(new Pair<>(true, "Media borrowed successfully. Due date: 2025-01-29"), results.get(0));
+        assertEquals(new Pair<>(true, "Media borrowed successfully. Due date: 2025-01-08"), results.get(1));
+        assertEquals(new Pair<>(false, "Media is already borrowed"), results.get(2));
+        assertEquals(new Pair<>(false, "Media not found"), results.get(3));
+        assertEquals(new Pair<>(false, "Media is already borrowed"), results.get(4), "duplicate in the batch");
+
+        assertEquals(2, lr.getLoansByUserId("carol").size());
+        assertEquals(2, ur.getUserByUsername("carol").getLoanIds().size());
+        assertTrue(br.getBookById(2).isBorrowed());
+
+        tp.plusDays(10); // the CD is now overdue
+        List<Pair<Boolean,String>> refused = mbs.borrowMany("carol", new int[] {3, 4});
+        assertEquals(List.of(new Pair<>(false, "Cannot borrow: you have overdue item(s)."),
+                new Pair<>(false, "Cannot borrow: you have overdue item(s).")), refused);
+        assertEquals(List.of(new Pair<>(false, "User not found")), mbs.borrowMany("nobody", new int[] {1}));
+        assertEquals(List.of(), mbs.borrowMany("carol", new int[0]));
+    }
+
+    @Test
+    void returnMany_appliesFinesPerUserAndReleasesItems() {
+        InMemoryUserRepository ur = new InMemoryUserRepository();
+        InMemoryBooks br = new InMemoryBooks();
+        InMemoryLoanRepository lr = new InMemoryLoanRepository();
+        MockTimeProvider tp = new MockTimeProvider(LocalDate.of(2025, 1, 1));
+
+        ur.addUser(new User("dave","pwd","user@gmail.com",false));
+        ur.addUser(new User("erin","pwd","user@gmail.com",false));
+        br.addBook(new CD(1,"Hits","Various","CD-1"));
+        br.addBook(new Book(2,"Novel","Author","ISBN-2"));
+        br.addBook(new CD(3,"Live","Band","CD-3"));
+
+        MediaBorrowingService mbs = new MediaBorrowingService(ur, br, lr, tp);
+        mbs.borrowMany("dave", new int[] {1, 2});
+        mbs.borrowMedia("erin", 3);
+        String cd1 = lr.getLoansByBookId(1).getFirst().getId();
+        String book2 = lr.getLoansByBookId(2).getFirst().getId();
+        String cd3 = lr.getLoansByBookId(3).getFirst().getId();
+
+        tp.plusDays(10); // CDs 3 days late, book on time
+        List<Pair<Boolean,String>> results = mbs.returnMany(List.of(cd1, "missing", book2, cd3, cd1));
+
+        assertEquals(new Pair<>(true, "Media returned. Applied fine: 60 NIS"), results.get(0));
+        assertEquals(new Pair<>(false, "Loan not found"), results.get(1));
+        assertEquals(new Pair<>(true, "Media returned. Applied fine: 0 NIS"), results.get(2));
+        assertEquals(new Pair<>(true, "Media returned. Applied fine: 60 NIS"), results.get(3));
+        assertEquals(new Pair<>(false, "Already returned"), results.get(4));
+
+        assertEquals(60, ur.getUserByUsername("dave").getFineBalance());
+        assertEquals(60, ur.getUserByUsername("erin").getFineBalance());
+        assertTrue(ur.getUserByUsername("dave").getLoanIds().isEmpty());
+        assertFalse(lr.getLoanById(cd1).isFinePaid());
+        assertTrue(lr.getLoanById(book2).isFinePaid());
+        assertTrue(lr.getOverdueLoans(tp.today()).isEmpty());
+        for (int id = 1; id <= 3; id++) assertFalse(br.getBookById(id).isBorrowed());
+    }
 }
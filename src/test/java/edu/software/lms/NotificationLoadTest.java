@@ -0,0 +1,77 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives {@link ReminderService} through an {@link AsyncNotifier} into an
+ * {@link EmailNotifier} sending to a {@link FakeSmtpServer}, for 100,000
+ * users with overdue loans (or {@code -Dlms.benchmark.notifications=N}).
+ * The server rejects every 1,000th message
+ * ({@code -Dlms.benchmark.smtp.failEvery=N}, 0 for none) and can delay its
+ * replies ({@code -Dlms.benchmark.smtp.latencyMicros=N}). Run with
+ * {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class NotificationLoadTest {
+
+    private static final int NOTIFICATIONS = Integer.getInteger("lms.benchmark.notifications", 100_000);
+    private static final int FAIL_EVERY = Integer.getInteger("lms.benchmark.smtp.failEvery", 1_000);
+    private static final long LATENCY_MICROS = Long.getLong("lms.benchmark.smtp.latencyMicros", 0);
+    private static final LocalDate TODAY = LocalDate.of(2025, 6, 1);
+
+    @Test
+    void reminderRunIsDeliveredToTheSmtpServer() throws Exception {
+        InMemoryUserRepository users = new InMemoryUserRepository();
+        List<Loan> loans = new ArrayList<>(NOTIFICATIONS);
+        for (int i = 0; i < NOTIFICATIONS; i++) {
+            users.addUser(new User("user" + i, "password", "user" + i + "@test.com", false));
+            loans.add(new Loan("user" + i, i, TODAY.minusDays(30), TODAY.minusDays(2)));
+        }
+        LoanRepository repo = new InMemoryLoanRepository() {
+            @Override
+            public List<Loan> getOverdueLoans(LocalDate today) {
+                return loans;
+            }
+        };
+
+        try (FakeSmtpServer server = FakeSmtpServer.start()) {
+            server.setKeepMessages(false);
+            server.failEvery(FAIL_EVERY, FakeSmtpServer.Fault.REJECT);
+            server.setLatency(Duration.ofNanos(LATENCY_MICROS * 1_000));
+
+            EmailNotifier email = new EmailNotifier(server.getHost(), server.getPort(),
+                    "user", "secret", "library@test.com", EmailNotifier.DEFAULT_POOL_SIZE);
+            AsyncNotifier async = new AsyncNotifier(email, AsyncNotifier.DEFAULT_CAPACITY,
+                    EmailNotifier.DEFAULT_POOL_SIZE, AsyncNotifier.Backpressure.BLOCK);
+            ReminderService service = new ReminderService(repo, () -> TODAY, users);
+            service.addObserver(async);
+
+            long start = System.nanoTime();
+            try (async) {
+                service.sendOverdueNotifications();
+                assertTrue(async.awaitQuiescence(Duration.ofMinutes(10)));
+            }
+            long elapsedNs = System.nanoTime() - start;
+
+            long expectedFailures = FAIL_EVERY > 0 ? NOTIFICATIONS / FAIL_EVERY : 0;
+            assertEquals(NOTIFICATIONS - expectedFailures, async.getDelivered());
+            assertEquals(expectedFailures, async.getFailed());
+            assertEquals(async.getDelivered(), server.getMessageCount());
+            assertEquals(expectedFailures, server.getRejectedCount());
+            assertTrue(server.getConnections() <= EmailNotifier.DEFAULT_POOL_SIZE);
+
+            System.out.printf("%,d reminder emails over %d connection(s), %d us latency: %.0f ms, %.0f emails/s, "
+                            + "%,d rejected%n",
+                    NOTIFICATIONS, server.getConnections(), LATENCY_MICROS, elapsedNs / 1e6,
+                    NOTIFICATIONS / (elapsedNs / 1e9), server.getRejectedCount());
+        }
+    }
+}
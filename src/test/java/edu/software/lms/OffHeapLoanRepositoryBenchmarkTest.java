@@ -0,0 +1,111 @@
+package edu.software.lms;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GC pauses with a large loan history held by {@link OffHeapLoanRepository}
+ * against {@link InMemoryLoanRepository}: the history is loaded, then the
+ * same allocation-heavy workload and a few full collections run while it
+ * stays reachable.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark}. The default of 20M loans needs a
+ * large heap for the on-heap run, e.g.
+ * {@code -DargLine=-Xmx24g}; {@code -Dlms.benchmark.loans=N} picks a smaller
+ * history.</p>
+ */
+@Tag("benchmark")
+class OffHeapLoanRepositoryBenchmarkTest {
+
+    private static final int LOANS = Integer.getInteger("lms.benchmark.loans", 20_000_000);
+    private static final LocalDate DAY = LocalDate.of(2015, 1, 1);
+
+    /** Pause statistics collected from GC notifications. */
+    private static final class Pauses implements NotificationListener {
+        long count;
+        long totalMs;
+        long maxMs;
+
+        @Override
+        public synchronized void handleNotification(Notification n, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(n.getType())) return;
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) n.getUserData());
+            long ms = info.getGcInfo().getDuration();
+            count++;
+            totalMs += ms;
+            maxMs = Math.max(maxMs, ms);
+        }
+    }
+
+    @Test
+    void offHeapHistoryShortensGcPauses() throws Exception {
+        String offHeap = measure("off-heap", OffHeapLoanRepository::new);
+        String onHeap = measure("in-memory", InMemoryLoanRepository::new);
+        System.out.println(offHeap);
+        System.out.println(onHeap);
+    }
+
+    private static String measure(String name, Supplier<LoanRepository> factory) throws Exception {
+        System.gc();
+        LoanRepository repo = factory.get();
+        try {
+            for (int i = 0; i < LOANS; i++) {
+                LocalDate borrow = DAY.plusDays(i % 3_000);
+                Loan loan = new Loan("user" + (i % 50_000), i % 100_000, borrow, borrow.plusDays(28));
+                if (i % 10 != 0) loan.markReturned(borrow.plusDays(i % 40));
+                repo.addLoan(loan);
+            }
+
+            Pauses pauses = new Pauses();
+            List<NotificationEmitter> emitters = new ArrayList<>();
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                NotificationEmitter emitter = (NotificationEmitter) gc;
+                emitter.addNotificationListener(pauses, null, null);
+                emitters.add(emitter);
+            }
+
+            long start = System.nanoTime();
+            long sink = churn();
+            for (int i = 0; i < 3; i++) System.gc();
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            Thread.sleep(200); // notifications are delivered asynchronously
+
+            for (NotificationEmitter emitter : emitters) emitter.removeNotificationListener(pauses);
+            assertTrue(sink > 0);
+            Reference.reachabilityFence(repo); // the history must stay live while measuring
+            synchronized (pauses) {
+                return String.format("%s, %,d loans: %d collections, %d ms total GC, %d ms longest, %d ms run",
+                        name, LOANS, pauses.count, pauses.totalMs, pauses.maxMs, elapsedMs);
+            }
+        } finally {
+            if (repo instanceof OffHeapLoanRepository r) r.close();
+        }
+    }
+
+    /** Allocates short-lived request-sized garbage, as the services do. */
+    private static long churn() {
+        long sink = 0;
+        for (int round = 0; round < 200; round++) {
+            List<Loan> batch = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) batch.add(new Loan("u" + i, i, DAY, DAY.plusDays(i % 60)));
+            sink += batch.size();
+        }
+        return sink;
+    }
+}
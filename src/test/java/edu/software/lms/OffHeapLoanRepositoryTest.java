@@ -0,0 +1,57 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link OffHeapLoanRepository}: growth across chunks and
+ * closing, on top of the {@link LoanRepositoryContractTest} cases.
+ */
+class OffHeapLoanRepositoryTest extends LoanRepositoryContractTest<OffHeapLoanRepository> {
+
+    @Override
+    OffHeapLoanRepository createRepository() {
+        return new OffHeapLoanRepository();
+    }
+
+    @Override
+    boolean rebuildsViews() {
+        return true;
+    }
+
+    @Test
+    void growsAcrossChunksAndIndexResizes() {
+        int n = OffHeapLoanRepository.CHUNK_SLOTS + 5_000;
+        String[] ids = new String[n];
+        for (int i = 0; i < n; i++) {
+            Loan loan = new Loan("u" + (i % 50), i, DAY, DAY.plusDays(i % 60));
+            assertTrue(repo.addLoan(loan));
+            ids[i] = loan.getId();
+        }
+
+        assertEquals(n, repo.size());
+        assertTrue(repo.offHeapBytes() >= 2L * OffHeapLoanRepository.CHUNK_SLOTS * OffHeapLoanRepository.SLOT_SIZE);
+        for (int i = 0; i < n; i += 1_009) assertEquals(i, repo.getLoanById(ids[i]).getBookId());
+        List<Loan> u7 = repo.getLoansByUserId("u7");
+        assertEquals((n + 42) / 50, u7.size());
+        assertEquals(7, u7.getFirst().getBookId());
+        assertEquals(57, u7.get(1).getBookId());
+    }
+
+    @Test
+    void cannotBeUsedAfterClose() {
+        Loan loan = new Loan("u1", 1, DAY, DAY.plusDays(7));
+        repo.addLoan(loan);
+        repo.close();
+        repo.close();
+
+        assertEquals(0, repo.offHeapBytes());
+        assertThrows(IllegalStateException.class, () -> repo.getLoanById(loan.getId()));
+        assertThrows(IllegalStateException.class, () -> repo.addLoan(new Loan("u1", 2, DAY, DAY)));
+        assertEquals(DAY.plusDays(7), loan.getDueDate(), "views keep their values");
+    }
+
+}
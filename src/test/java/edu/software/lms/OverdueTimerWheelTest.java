@@ -0,0 +1,204 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link OverdueTimerWheel} and the day rollover of
+ * {@link ReminderService}.
+ */
+class OverdueTimerWheelTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 1, 1);
+
+    private static Loan loanDue(LocalDate due) {
+        return new Loan("u1", 1, due.minusDays(7), due);
+    }
+
+    @Test
+    void loansFireOnTheFirstOverdueDayOnly() {
+        OverdueTimerWheel wheel = new OverdueTimerWheel(DAY);
+        Loan soon = loanDue(DAY.plusDays(3));
+        Loan far = loanDue(DAY.plusDays(5_000)); // several levels up
+        assertTrue(wheel.schedule(soon));
+        assertTrue(wheel.schedule(far));
+        Loan dueToday = loanDue(DAY);
+        assertTrue(wheel.schedule(dueToday), "overdue from tomorrow");
+        assertEquals(3, wheel.size());
+
+        assertEquals(List.of(dueToday.getId()), wheel.advanceTo(DAY.plusDays(3)));
+        assertFalse(soon.isOverdue(DAY.plusDays(3)));
+        assertEquals(List.of(soon.getId()), wheel.advanceTo(DAY.plusDays(4)));
+        assertTrue(soon.isOverdue(DAY.plusDays(4)));
+
+        assertEquals(List.of(), wheel.advanceTo(DAY.plusDays(5_000)));
+        assertEquals(List.of(), wheel.advanceTo(DAY), "the clock never goes back");
+        assertEquals(List.of(far.getId()), wheel.advanceTo(DAY.plusDays(6_000)));
+        assertEquals(0, wheel.size());
+        assertEquals(DAY.plusDays(6_000), wheel.today());
+    }
+
+    @Test
+    void returnedAndOverdueLoansAreNotRegisteredAndCancelWorks() {
+        OverdueTimerWheel wheel = new OverdueTimerWheel(DAY);
+        Loan overdue = loanDue(DAY.minusDays(1));
+        Loan returned = loanDue(DAY.plusDays(10));
+        returned.markReturned(DAY);
+        assertFalse(wheel.schedule(overdue));
+        assertFalse(wheel.schedule(returned));
+
+        Loan loan = loanDue(DAY.plusDays(10));
+        assertTrue(wheel.schedule(loan));
+        assertTrue(wheel.schedule(loan), "rescheduling replaces the registration");
+        assertEquals(1, wheel.size());
+        assertTrue(wheel.cancel(loan.getId()));
+        assertFalse(wheel.cancel(loan.getId()));
+        assertEquals(List.of(), wheel.advanceTo(DAY.plusDays(30)));
+    }
+
+    @Test
+    void firesTheSameLoansAsAFullScan() {
+        Random random = new Random(42);
+        OverdueTimerWheel wheel = new OverdueTimerWheel(DAY);
+        Map<String, Loan> live = new HashMap<>();
+        LocalDate today = DAY;
+
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 100; i++) {
+                Loan loan = loanDue(today.plusDays(random.nextInt(round % 10 == 0 ? 20_000 : 100)));
+                wheel.schedule(loan);
+                live.put(loan.getId(), loan);
+            }
+            List<String> ids = new ArrayList<>(live.keySet());
+            for (int i = 0; i < 20; i++) {
+                String id = ids.get(random.nextInt(ids.size()));
+                if (live.remove(id) != null) wheel.cancel(id);
+            }
+
+            LocalDate next = today.plusDays(1 + random.nextInt(round % 25 == 0 ? 3_000 : 5));
+            Set<String> expected = new HashSet<>();
+            for (Loan loan : live.values()) {
+                if (!loan.isOverdue(today) && loan.isOverdue(next)) expected.add(loan.getId());
+            }
+            List<String> fired = wheel.advanceTo(next);
+            assertEquals(expected, new HashSet<>(fired), "round " + round);
+            assertEquals(expected.size(), fired.size());
+            fired.forEach(live::remove);
+            today = next;
+        }
+        assertEquals(live.size(), wheel.size());
+    }
+
+    @Test
+    void dayRolloverNotifiesOnlyNewlyOverdueLoans() {
+        InMemoryUserRepository users = new InMemoryUserRepository();
+        InMemoryBooks books = new InMemoryBooks();
+        InMemoryLoanRepository loans = new InMemoryLoanRepository();
+        MockTimeProvider time = new MockTimeProvider(DAY);
+        User alice = new User("alice", "pw", "a@mail", false);
+        users.addUser(alice);
+        books.addBook(new CD(1, "Hits", "Various", "CD-1"));
+        books.addBook(new CD(2, "Live", "Band", "CD-2"));
+        books.addBook(new Book(3, "Novel", "Author", "ISBN-3"));
+
+        OverdueTimerWheel wheel = new OverdueTimerWheel(DAY);
+        MediaBorrowingService service = new MediaBorrowingService(users, books, loans, time, wheel);
+        ReminderService reminders = new ReminderService(loans, time, users, wheel);
+        Observer observer = mock(Observer.class);
+        reminders.addObserver(observer);
+
+        service.borrowMany("alice", new int[] {1, 2, 3});
+        assertEquals(3, wheel.size());
+        assertTrue(service.returnMedia(loans.getLoansByBookId(2).getFirst().getId()).first);
+        assertEquals(2, wheel.size());
+
+        time.plusDays(7);
+        reminders.processDayRollover();
+        verifyNoInteractions(observer);
+
+        time.plusDays(1); // CD 1 is overdue from today, CD 2 was returned
+        reminders.processDayRollover();
+        verify(observer).notify(alice, "You have 1 newly overdue item(s).");
+
+        time.plusDays(1);
+        reminders.processDayRollover();
+        verifyNoMoreInteractions(observer);
+        assertEquals(1, wheel.size());
+
+        assertThrows(IllegalStateException.class,
+                () -> new ReminderService(loans, time, users).processDayRollover());
+    }
+
+    @Test
+    void dayRolloverResolvesEachUserOnceAndSkipsUnknownUsers() {
+        UserRepository users = mock(UserRepository.class);
+        User alice = new User("alice", "pw", "a@mail", false);
+        when(users.getUserById("alice")).thenReturn(alice);
+        InMemoryLoanRepository loans = new InMemoryLoanRepository();
+        OverdueTimerWheel wheel = new OverdueTimerWheel(DAY);
+        for (String userId : List.of("alice", "alice", "alice", "ghost")) {
+            Loan loan = new Loan(userId, 1, DAY, DAY.plusDays(1));
+            loans.addLoan(loan);
+            wheel.schedule(loan);
+        }
+        ReminderService reminders = new ReminderService(loans, () -> DAY.plusDays(2), users, wheel);
+        Observer observer = mock(Observer.class);
+        reminders.addObserver(observer);
+
+        reminders.processDayRollover();
+
+        verify(users).getUserById("alice");
+        verify(users).getUserById("ghost");
+        verifyNoMoreInteractions(users);
+        verify(observer).notify(alice, "You have 3 newly overdue item(s).");
+        verifyNoMoreInteractions(observer);
+    }
+
+    @Test
+    void userServiceRollsTheSharedWheelOverWithItsClock() {
+        MockTimeProvider time = new MockTimeProvider(DAY);
+        UserService userService = new UserService();
+        userService.setTimeProvider(time);
+        User alice = new User("alice", "pw", "a@mail", false);
+        userService.getUserRepository().addUser(alice);
+        userService.getLoanRepository().addLoan(new Loan(alice.getId(), 1, DAY, DAY.plusDays(1)));
+        assertEquals(DAY, userService.getOverdueWheel().today());
+        assertEquals(1, userService.getOverdueWheel().size());
+        Observer observer = mock(Observer.class);
+
+        userService.processDayRollover(observer);
+        verifyNoInteractions(observer);
+
+        time.plusDays(2);
+        userService.processDayRollover(observer);
+        userService.processDayRollover(observer);
+        verify(observer).notify(alice, "You have 1 newly overdue item(s).");
+        verifyNoMoreInteractions(observer);
+        assertEquals(DAY.plusDays(2), userService.getOverdueWheel().today());
+    }
+
+    @Test
+    void scheduleAllRegistersOpenLoansOfARepository() {
+        InMemoryLoanRepository loans = new InMemoryLoanRepository();
+        loans.addLoan(loanDue(DAY.plusDays(1)));
+        loans.addLoan(loanDue(DAY.minusDays(1)));
+        Loan returned = loanDue(DAY.plusDays(1));
+        returned.markReturned(DAY);
+        loans.addLoan(returned);
+
+        OverdueTimerWheel wheel = new OverdueTimerWheel(DAY);
+        assertEquals(1, wheel.scheduleAll(loans));
+        assertEquals(1, wheel.advanceTo(DAY.plusDays(2)).size());
+    }
+}
@@ -0,0 +1,296 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the journal-backed {@link PersistentStore}: state survives a
+ * restart, a torn tail is discarded, concurrent commits share fsyncs, and
+ * snapshots compact the journal.
+ */
+class PersistentStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void stateSurvivesRestart() throws IOException {
+        MockTimeProvider time = new MockTimeProvider(LocalDate.of(2025, 1, 1));
+        String returnedLoanId;
+
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            BookRepository books = store.getBookRepository();
+            UserRepository users = store.getUserRepository();
+            LoanRepository loans = store.getLoanRepository();
+
+            books.addBook(new Book(books.allocateId(), "Dune", "Herbert", "111"));
+            books.addBook(new CD(books.allocateId(), "Blue", "Mitchell", "222"));
+            books.reserveIds(10);
+            users.addUser(new User("alice", "pw", "alice@mail", false));
+            users.addUser(new User("bob", "pw", "bob@mail", false));
+            users.deleteUser("bob");
+
+            MediaBorrowingService service = new MediaBorrowingService(users, books, loans, time);
+            assertTrue(service.borrowMedia("alice", 1).first);
+            assertTrue(service.borrowMedia("alice", 2).first);
+            returnedLoanId = loans.getLoansByBookId(1).getFirst().getId();
+
+            time.plusDays(59);
+            assertTrue(service.returnMedia(returnedLoanId).first);
+        }
+
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            BookRepository books = store.getBookRepository();
+            UserRepository users = store.getUserRepository();
+            LoanRepository loans = store.getLoanRepository();
+
+            assertEquals(2, books.getAllBooks().size());
+            assertInstanceOf(CD.class, books.getBookById(2));
+            assertEquals(13, books.getNextId());
+
+            User alice = users.getUserByUsername("alice");
+            assertNotNull(alice);
+            assertNull(users.getUserById("bob"));
+            assertTrue(alice.getFineBalance() > 0);
+
+            Loan returned = loans.getLoanById(returnedLoanId);
+            assertTrue(returned.isReturned());
+            assertInstanceOf(MediaLoan.class, returned);
+            assertFalse(books.getBookById(1).isBorrowed());
+
+            Loan active = loans.getLoansByBookId(2).getFirst();
+            assertFalse(active.isReturned());
+            assertTrue(books.getBookById(2).isBorrowed());
+            assertEquals(List.of(active.getId()), alice.getLoanIds());
+        }
+    }
+
+    @Test
+    void tornTailIsDiscarded() throws IOException {
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            store.getBookRepository().addBook(new Book(1, "Kept", "A", "K"));
+        }
+        Path journal = PersistentStore.segmentFile(dir, 0);
+        long validLength = Files.size(journal);
+        // half-written frame: plausible length prefix, missing body and CRC
+        Files.write(journal, new byte[] {0, 0, 0, 40, 1, 0, 0}, StandardOpenOption.APPEND);
+
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            assertEquals(validLength, Files.size(journal));
+            assertNotNull(store.getBookRepository().getBookById(1));
+            assertTrue(store.getBookRepository().addBook(new Book(2, "After", "A", "AF")));
+        }
+
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            assertEquals(2, store.getBookRepository().getAllBooks().size());
+        }
+    }
+
+    @Test
+    void corruptRecordStopsReplay() throws IOException {
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            store.getBookRepository().addBook(new Book(1, "First", "A", "F"));
+            store.getBookRepository().addBook(new Book(2, "Second", "A", "S"));
+        }
+        Path journal = PersistentStore.segmentFile(dir, 0);
+        byte[] bytes = Files.readAllBytes(journal);
+        bytes[bytes.length - 6] ^= 0x5A; // inside the last record's payload
+        Files.write(journal, bytes);
+
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            assertNotNull(store.getBookRepository().getBookById(1));
+            assertNull(store.getBookRepository().getBookById(2));
+        }
+    }
+
+    @Test
+    void rejectedChangesAreNotJournaled() throws IOException {
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            assertTrue(store.getBookRepository().addBook(new Book(1, "A", "A", "A")));
+            assertFalse(store.getBookRepository().addBook(new Book(1, "B", "B", "B")));
+            assertFalse(store.getUserRepository().deleteUser("ghost"));
+            assertEquals(1, store.journal().syncCount());
+        }
+    }
+
+    @Test
+    void batchOfBooksIsJournaledWithOneFsync() throws IOException {
+        List<Book> batch = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) batch.add(new Book(i, "T" + i, "A", "isbn-" + i));
+        batch.add(new Book(101, "Twin", "A", "isbn-7"));
+        batch.add(null);
+
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            assertEquals(100, store.getBookRepository().addBooks(batch));
+            assertEquals(1, store.journal().syncCount());
+            assertEquals(0, store.getBookRepository().addBooks(batch.subList(0, 10)));
+            assertEquals(1, store.journal().syncCount(), "nothing added, nothing written");
+        }
+
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            assertEquals(100, store.getBookRepository().getAllBooks().size());
+            assertEquals(7, store.getBookRepository().getBookByISBN("isbn-7").getId());
+            assertNull(store.getBookRepository().getBookById(101));
+        }
+    }
+
+    @Test
+    void batchBorrowAndReturnAreJournaledWithOneFsyncEach() throws IOException {
+        MockTimeProvider time = new MockTimeProvider(LocalDate.of(2025, 1, 1));
+        List<String> loanIds;
+
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            List<Book> books = new ArrayList<>();
+            for (int i = 1; i <= 10; i++) books.add(new CD(i, "T" + i, "A", "isbn-" + i));
+            store.getBookRepository().addBooks(books);
+            store.getUserRepository().addUser(new User("alice", "pw", "a@mail", false));
+            MediaBorrowingService service = new MediaBorrowingService(store.getUserRepository(),
+                    store.getBookRepository(), store.getLoanRepository(), time);
+            long before = store.journal().syncCount();
+
+            assertTrue(service.borrowMany("alice", new int[] {1, 2, 3, 4, 5, 6, 7, 8}).stream().allMatch(r -> r.first));
+            assertEquals(before + 1, store.journal().syncCount(), "one fsync for eight loans");
+
+            loanIds = store.getLoanRepository().getLoansByUserId("alice").stream().map(Loan::getId).toList();
+            time.plusDays(1); // on time, so no fine is charged to the user
+            assertTrue(service.returnMany(loanIds).stream().allMatch(r -> r.first));
+            assertEquals(before + 2, store.journal().syncCount(), "one fsync for eight returns");
+        }
+
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            assertEquals(8, loanIds.size());
+            for (String id : loanIds) assertTrue(store.getLoanRepository().getLoanById(id).isReturned());
+        }
+    }
+
+    @Test
+    void concurrentCommitsShareFsyncs() throws Exception {
+        int threads = 16;
+        int perThread = 50;
+
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            UserRepository users = store.getUserRepository();
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int id = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        assertTrue(users.addUser(new User("u" + id + "_" + i, "pw", "m", false)));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) f.get();
+            pool.shutdown();
+
+            assertTrue(store.journal().syncCount() < threads * perThread,
+                    "fsyncs: " + store.journal().syncCount());
+        }
+
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            for (int t = 0; t < threads; t++) {
+                for (int i = 0; i < perThread; i++) {
+                    assertNotNull(store.getUserRepository().getUserById("u" + t + "_" + i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void snapshotCompactsJournalAndRestoresState() throws IOException {
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            BookRepository books = store.getBookRepository();
+            UserRepository users = store.getUserRepository();
+            books.addBook(new Book(books.allocateId(), "Before", "A", "B1"));
+            users.addUser(new User("carol", "pw", "c@mail", false));
+            User carol = users.getUserByUsername("carol");
+            carol.addFine(30);
+            users.updateUser(carol);
+
+            assertTrue(store.snapshotNow());
+            assertFalse(store.snapshotNow(), "nothing new to snapshot");
+
+            books.addBook(new Book(books.allocateId(), "After", "A", "B2"));
+            carol.payFine(10);
+            users.updateUser(carol);
+        }
+
+        assertFalse(Files.exists(PersistentStore.segmentFile(dir, 0)));
+        assertTrue(Files.exists(PersistentStore.snapshotFile(dir, 1)));
+        assertTrue(Files.exists(PersistentStore.segmentFile(dir, 1)));
+
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            assertEquals(2, store.getBookRepository().getAllBooks().size());
+            assertEquals(3, store.getBookRepository().getNextId());
+            assertEquals(20, store.getUserRepository().getUserByUsername("carol").getFineBalance());
+        }
+    }
+
+    @Test
+    void activeLoansSurviveSnapshot() throws IOException {
+        MockTimeProvider time = new MockTimeProvider(LocalDate.of(2025, 1, 1));
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            store.getBookRepository().addBook(new Book(1, "Dune", "Herbert", "111"));
+            store.getUserRepository().addUser(new User("dave", "pw", "d@mail", false));
+            MediaBorrowingService service = new MediaBorrowingService(store.getUserRepository(),
+                    store.getBookRepository(), store.getLoanRepository(), time);
+            assertTrue(service.borrowMedia("dave", 1).first);
+            assertTrue(store.snapshotNow());
+        }
+
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            assertTrue(store.getBookRepository().getBookById(1).isBorrowed());
+            assertEquals(1, store.getUserRepository().getUserById("dave").getLoanIds().size());
+        }
+    }
+
+    @Test
+    void backgroundSnapshotsRun() throws Exception {
+        try (PersistentStore store = PersistentStore.open(dir, Duration.ofMillis(20))) {
+            store.getBookRepository().addBook(new Book(1, "Dune", "Herbert", "111"));
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!Files.exists(PersistentStore.snapshotFile(dir, 1)) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(Files.exists(PersistentStore.snapshotFile(dir, 1)));
+        }
+
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            assertNotNull(store.getBookRepository().getBookById(1));
+        }
+    }
+
+    @Test
+    void legacyJournalIsMigrated() throws IOException {
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            store.getBookRepository().addBook(new Book(1, "Old", "A", "OLD"));
+        }
+        Files.move(PersistentStore.segmentFile(dir, 0), dir.resolve(PersistentStore.LEGACY_JOURNAL_FILE));
+
+        try (PersistentStore store = PersistentStore.open(dir, null)) {
+            assertNotNull(store.getBookRepository().getBookById(1));
+        }
+        assertFalse(Files.exists(dir.resolve(PersistentStore.LEGACY_JOURNAL_FILE)));
+    }
+}
@@ -0,0 +1,82 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Overdue notification scan over 5M overdue loans (or
+ * {@code -Dlms.benchmark.loans=N}): the former per-loan user lookup with
+ * {@code User} keys, the sequential scan keyed by user ID and the fork-join
+ * scan on the common pool. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class ReminderServiceBenchmarkTest {
+
+    private static final int LOANS = Integer.getInteger("lms.benchmark.loans", 5_000_000);
+    private static final int USERS = 100_000;
+    private static final LocalDate TODAY = LocalDate.of(2025, 6, 1);
+
+    @Test
+    void parallelScanAggregatesPerUserId() {
+        InMemoryUserRepository users = new InMemoryUserRepository();
+        for (int u = 0; u < USERS; u++) users.addUser(new User("user" + u, "password" + u, "u@mail", false));
+
+        List<Loan> loans = new ArrayList<>(LOANS);
+        for (int i = 0; i < LOANS; i++) {
+            loans.add(new Loan("user" + (i % USERS), i, TODAY.minusDays(60), TODAY.minusDays(1 + i % 30)));
+        }
+        LoanRepository repo = new InMemoryLoanRepository() {
+            @Override
+            public List<Loan> getOverdueLoans(LocalDate today) {
+                return loans;
+            }
+        };
+
+        LongAdder notified = new LongAdder();
+        ReminderService service = new ReminderService(repo, () -> TODAY, users);
+        service.addObserver((user, message) -> notified.increment());
+
+        long perLoanNs = time(() -> perLoanLookup(loans, users));
+        long sequentialNs = time(service::sendOverdueNotifications);
+        long parallelNs = time(() -> service.sendOverdueNotifications(ForkJoinPool.commonPool()));
+
+        assertEquals(USERS * 20L, notified.sum(), "one notification per user and run");
+        System.out.printf("overdue notifications over %,d loans, %,d users, %d threads: "
+                        + "per-loan lookup %.0f ms, sequential %.0f ms, fork-join %.0f ms%n",
+                LOANS, USERS, ForkJoinPool.getCommonPoolParallelism(),
+                perLoanNs / 1e6, sequentialNs / 1e6, parallelNs / 1e6);
+    }
+
+    /** The scan as it was: a user lookup per loan, counted in a map keyed by {@code User}. */
+    private static void perLoanLookup(List<Loan> loans, UserRepository users) {
+        Map<User, Long> counts = new HashMap<>();
+        for (Loan loan : loans) {
+            if (!loan.isReturned() && loan.isOverdue(TODAY)) {
+                counts.merge(users.getUserById(loan.getUserId()), 1L, Long::sum);
+            }
+        }
+        assertEquals(USERS, counts.size());
+    }
+
+    /** Best of several runs after warm-up. */
+    private static long time(Runnable scan) {
+        for (int i = 0; i < 3; i++) scan.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 7; i++) {
+            long start = System.nanoTime();
+            scan.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
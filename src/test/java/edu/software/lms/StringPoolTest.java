@@ -0,0 +1,120 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link StringPool} and its use by the record constructors. The
+ * heap saved on a generated catalog is measured with {@code -Pbenchmark}.
+ */
+class StringPoolTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 1, 1);
+
+    @AfterEach
+    void restoreSharedPool() {
+        StringPool.setShared(new StringPool(StringPool.DEFAULT_CAPACITY));
+    }
+
+    @Test
+    void returnsTheFirstEqualInstance() {
+        StringPool pool = new StringPool(64);
+        String first = new String("Tolkien");
+        String second = new String("Tolkien");
+
+        assertSame(first, pool.intern(first));
+        assertSame(first, pool.intern(second));
+        assertNull(pool.intern(null));
+    }
+
+    @Test
+    void capacityIsBoundedAndRoundedToAPowerOfTwo() {
+        assertEquals(1024, new StringPool(1000).capacity());
+        assertEquals(1024, new StringPool(1024).capacity());
+        assertEquals(1, new StringPool(1).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new StringPool(-1));
+        assertThrows(IllegalArgumentException.class, () -> StringPool.setShared(null));
+
+        StringPool pool = new StringPool(8);
+        for (int i = 0; i < 10_000; i++) assertEquals("s" + i, pool.intern("s" + i));
+        assertEquals(8, pool.capacity());
+
+        StringPool disabled = new StringPool(0);
+        String s = new String("x");
+        assertSame(s, disabled.intern(s));
+        assertNotSame(s, disabled.intern(new String("x")));
+    }
+
+    @Test
+    void concurrentInternAlwaysReturnsEqualStrings() throws Exception {
+        StringPool pool = new StringPool(256);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    String s = "user" + (i % 1_000);
+                    assertEquals(s, pool.intern(s));
+                }
+            }));
+        }
+        for (Future<?> f : futures) f.get();
+        executor.shutdown();
+    }
+
+    @Test
+    void recordsShareRepeatedStrings() {
+        Book a = new Book(1, new String("Dune"), new String("Herbert"), "1");
+        Book b = new CD(2, new String("Dune"), new String("Herbert"), "2");
+        b.setAuthor(new String("Herbert"));
+        User user = new User(new String("alice"), "pw", "a@mail", false);
+        Loan loan = new Loan(new String("alice"), 1, DAY, DAY.plusDays(7));
+
+        assertSame(a.getAuthor(), b.getAuthor());
+        assertSame(a.getName(), b.getName());
+        assertSame(user.getId(), loan.getUserId());
+    }
+
+    /** Walks two generated catalogs and prints the saving; run with {@code mvn test -Pbenchmark}. */
+    @Test
+    @Tag("benchmark")
+    void generatedCatalogTakesLessHeap() {
+        long pooled = catalogSize();
+        StringPool.setShared(new StringPool(0));
+        long unpooled = catalogSize();
+
+        System.out.printf("catalog heap: %,d bytes pooled, %,d bytes without pool (%.0f%% saved)%n",
+                pooled, unpooled, 100.0 * (unpooled - pooled) / unpooled);
+        assertTrue(pooled * 10 < unpooled * 8, "pooled=" + pooled + " unpooled=" + unpooled);
+    }
+
+    /**
+     * Builds 20k books by 2k authors (titles held by about two copies each),
+     * 5k users and 100k loans, with every string parsed separately as an
+     * import would, and measures the reachable heap.
+     */
+    private static long catalogSize() {
+        List<Object> catalog = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            catalog.add(new Book(i, "Collected Works, Volume " + (i / 2), "Author Number " + (i % 2_000), "ISBN-" + i));
+        }
+        for (int u = 0; u < 5_000; u++) {
+            catalog.add(new User("member-" + u, "pw", "member-" + u + "@mail", false));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            catalog.add(new Loan("member-" + (i % 5_000), i % 20_000, DAY, DAY.plusDays(28)));
+        }
+        return GraphLayout.parseInstance(catalog).totalSize();
+    }
+}
@@ -3,8 +3,13 @@ package edu.software.lms;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class TestReminder {
@@ -34,7 +39,7 @@ class TestReminder {
                 today.minusDays(2)
         );
 
-        when(repo.getAllLoans()).thenReturn(List.of(loan));
+        when(repo.getOverdueLoans(today)).thenReturn(List.of(loan));
 
         // Act
         reminder.sendOverdueNotifications();
@@ -66,7 +71,7 @@ class TestReminder {
                 today.plusDays(3)
         );
 
-        when(repo.getAllLoans()).thenReturn(List.of(loan));
+        when(repo.getOverdueLoans(today)).thenReturn(List.of(loan));
 
         // Act
         reminder.sendOverdueNotifications();
@@ -103,7 +108,7 @@ class TestReminder {
                 today.minusDays(1)   // also overdue
         );
 
-        when(repo.getAllLoans()).thenReturn(List.of(loan1, loan2));
+        when(repo.getOverdueLoans(today)).thenReturn(List.of(loan1, loan2));
 
         // Act
         reminder.sendOverdueNotifications();
@@ -144,7 +149,7 @@ class TestReminder {
                 today.minusDays(3)   // overdue for userB
         );
 
-        when(repo.getAllLoans()).thenReturn(List.of(loan1, loan2));
+        when(repo.getOverdueLoans(today)).thenReturn(List.of(loan1, loan2));
 
         // Act
         reminder.sendOverdueNotifications();
@@ -179,7 +184,7 @@ class TestReminder {
                 today.minusDays(1)   // overdue
         );
 
-        when(repo.getAllLoans()).thenReturn(List.of(loan));
+        when(repo.getOverdueLoans(today)).thenReturn(List.of(loan));
 
         // Act
         reminder.sendOverdueNotifications();
@@ -187,4 +192,46 @@ class TestReminder {
         // Assert
         verifyNoInteractions(email);
     }
+
+    @Test
+    void parallelScan_matchesSequentialAndLooksUpEachUserOnce() {
+        LoanRepository repo = mock(LoanRepository.class);
+        LocalDate today = LocalDate.of(2025, 6, 1);
+        TimeProvider tp = () -> today;
+
+        UserRepository userRepository = spy(new InMemoryUserRepository());
+        for (int u = 0; u < 50; u++) userRepository.addUser(new User("user" + u, "pass", "u@uni.com", false));
+
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            // user50 does not exist; every seventh loan is returned
+            Loan loan = new Loan("user" + (i % 51), i, today.minusDays(40), today.minusDays(1 + i % 10));
+            if (i % 7 == 0) loan.markReturned(today);
+            loans.add(loan);
+        }
+        when(repo.getOverdueLoans(today)).thenReturn(loans);
+
+        ReminderService reminder = new ReminderService(repo, tp, userRepository);
+        Map<User, String> sequential = new HashMap<>();
+        reminder.addObserver(sequential::put);
+        reminder.sendOverdueNotifications();
+
+        ReminderService parallel = new ReminderService(repo, tp, userRepository);
+        Map<User, String> fromParallel = new HashMap<>();
+        parallel.addObserver(fromParallel::put);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallel.sendOverdueNotifications(pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(50, sequential.size());
+        assertEquals(sequential, fromParallel);
+        long expected = loans.stream().filter(l -> l.getUserId().equals("user3") && !l.isReturned()).count();
+        assertEquals("You have " + expected + " overdue book(s).",
+                fromParallel.get(userRepository.getUserById("user3")));
+        verify(userRepository, times(2)).getUserById("user7");
+        verify(userRepository, times(2)).getUserById("user50");
+    }
 }
@@ -0,0 +1,92 @@
+package edu.software.lms;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link TimeOrderedLoanIdGenerator} and the pluggable loan ID
+ * generator of {@link Loan}.
+ */
+class TimeOrderedLoanIdGeneratorTest {
+
+    @Test
+    void idsAreVersion7AndCarryTheTimestamp() {
+        TimeOrderedLoanIdGenerator gen = new TimeOrderedLoanIdGenerator(() -> 1_700_000_000_000L);
+        UUID id = gen.nextId();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        assertEquals(1_700_000_000_000L, id.getMostSignificantBits() >>> 16);
+    }
+
+    @Test
+    void idsIncreaseWithinAMillisecondAndWhenTheClockStepsBack() {
+        AtomicLong now = new AtomicLong(1_000);
+        TimeOrderedLoanIdGenerator gen = new TimeOrderedLoanIdGenerator(now::get);
+
+        UUID prev = gen.nextId();
+        for (int i = 0; i < 10_000; i++) {
+            if (i == 5_000) now.set(500); // clock adjusted backwards
+            UUID next = gen.nextId();
+            assertTrue(next.compareTo(prev) > 0);
+            assertTrue(next.toString().compareTo(prev.toString()) > 0, "string form sorts too");
+            prev = next;
+        }
+    }
+
+    @Test
+    void concurrentCallersGetUniqueIncreasingIds() throws Exception {
+        TimeOrderedLoanIdGenerator gen = new TimeOrderedLoanIdGenerator();
+        int threads = 8;
+        int perThread = 20_000;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<List<UUID>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                List<UUID> ids = new ArrayList<>(perThread);
+                for (int i = 0; i < perThread; i++) ids.add(gen.nextId());
+                return ids;
+            }));
+        }
+
+        Set<UUID> all = new HashSet<>();
+        for (Future<List<UUID>> f : futures) {
+            List<UUID> ids = f.get();
+            for (int i = 1; i < ids.size(); i++) assertTrue(ids.get(i).compareTo(ids.get(i - 1)) > 0);
+            all.addAll(ids);
+        }
+        pool.shutdown();
+        assertEquals(threads * perThread, all.size());
+    }
+
+    @Test
+    void loansUseThePluggableGenerator() {
+        LoanIdGenerator original = Loan.getIdGenerator();
+        UUID fixed = UUID.fromString("01890a5d-ac96-7000-8000-000000000001");
+        try {
+            Loan.setIdGenerator(() -> fixed);
+            MediaLoan loan = new MediaLoan("u1", 1, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 8), MediaType.BOOK);
+            assertEquals(fixed.toString(), loan.getId());
+
+            InMemoryLoanRepository repo = new InMemoryLoanRepository();
+            repo.addLoan(loan);
+            assertSame(loan, repo.getLoanById(fixed.toString()));
+        } finally {
+            Loan.setIdGenerator(original);
+        }
+        assertThrows(IllegalArgumentException.class, () -> Loan.setIdGenerator(null));
+    }
+}